@@ -0,0 +1,102 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.deps.serializer;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BulkRegistryOperationResultParser
+{
+    private static Gson gson = SharedGson.DEFAULT;
+
+    private static final String IS_SUCCESSFUL_NAME = "isSuccessful";
+    @Expose(serialize = true, deserialize = true)
+    @SerializedName(IS_SUCCESSFUL_NAME)
+    private Boolean isSuccessful;
+
+    private static final String ERRORS_NAME = "errors";
+    @Expose(serialize = true, deserialize = true)
+    @SerializedName(ERRORS_NAME)
+    private List<DeviceRegistryOperationErrorParser> errors;
+
+    private static final String WARNINGS_NAME = "warnings";
+    @Expose(serialize = true, deserialize = true)
+    @SerializedName(WARNINGS_NAME)
+    private List<DeviceRegistryOperationErrorParser> warnings;
+
+    /**
+     * Empty constructor: Used only to keep GSON happy.
+     */
+    @SuppressWarnings("unused")
+    protected BulkRegistryOperationResultParser()
+    {
+    }
+
+    /**
+     * Constructor for a BulkRegistryOperationResultParser that is built from the response of a bulk registry operation.
+     * @param json the json to build from.
+     * @throws IllegalArgumentException if the json is null, empty, cannot be parsed, or has no isSuccessful field.
+     */
+    public BulkRegistryOperationResultParser(String json) throws IllegalArgumentException
+    {
+        if (json == null || json.isEmpty())
+        {
+            throw new IllegalArgumentException("The provided json cannot be null or empty");
+        }
+
+        BulkRegistryOperationResultParser parser;
+        try
+        {
+            parser = gson.fromJson(json, BulkRegistryOperationResultParser.class);
+        }
+        catch (JsonSyntaxException e)
+        {
+            throw new IllegalArgumentException("The provided json could not be parsed");
+        }
+
+        if (parser == null || parser.isSuccessful == null)
+        {
+            throw new IllegalArgumentException("The isSuccessful field must be present in the provided json");
+        }
+
+        this.isSuccessful = parser.isSuccessful;
+        this.errors = parser.errors == null ? new ArrayList<DeviceRegistryOperationErrorParser>() : parser.errors;
+        this.warnings = parser.warnings == null ? new ArrayList<DeviceRegistryOperationErrorParser>() : parser.warnings;
+    }
+
+    /**
+     * Getter for isSuccessful
+     *
+     * @return true if the operation succeeded for every device
+     */
+    public boolean isSuccessful()
+    {
+        return isSuccessful;
+    }
+
+    /**
+     * Getter for errors
+     *
+     * @return The devices the operation failed for
+     */
+    public List<DeviceRegistryOperationErrorParser> getErrors()
+    {
+        return errors;
+    }
+
+    /**
+     * Getter for warnings
+     *
+     * @return The devices the operation succeeded for with a warning
+     */
+    public List<DeviceRegistryOperationErrorParser> getWarnings()
+    {
+        return warnings;
+    }
+}
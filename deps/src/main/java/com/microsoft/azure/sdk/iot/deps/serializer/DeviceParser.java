@@ -70,7 +70,7 @@ public class DeviceParser
     @SerializedName(AUTHENTICATION_NAME)
     private AuthenticationParser authenticationParser;
 
-    private transient Gson gson = new Gson();
+    private transient Gson gson = SharedGson.DEFAULT;
 
     /**
      * Converts this into json format and returns it
@@ -0,0 +1,63 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.deps.serializer;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+public class DeviceRegistryOperationErrorParser
+{
+    private static final String DEVICE_ID_NAME = "deviceId";
+    @Expose(serialize = true, deserialize = true)
+    @SerializedName(DEVICE_ID_NAME)
+    private String deviceId;
+
+    private static final String ERROR_CODE_NAME = "errorCode";
+    @Expose(serialize = true, deserialize = true)
+    @SerializedName(ERROR_CODE_NAME)
+    private String errorCode;
+
+    private static final String ERROR_STATUS_NAME = "errorStatus";
+    @Expose(serialize = true, deserialize = true)
+    @SerializedName(ERROR_STATUS_NAME)
+    private String errorStatus;
+
+    /**
+     * Empty constructor: Used only to keep GSON happy.
+     */
+    @SuppressWarnings("unused")
+    public DeviceRegistryOperationErrorParser()
+    {
+    }
+
+    /**
+     * Getter for deviceId
+     *
+     * @return The id of the device the error is about
+     */
+    public String getDeviceId()
+    {
+        return deviceId;
+    }
+
+    /**
+     * Getter for errorCode
+     *
+     * @return The code of the error
+     */
+    public String getErrorCode()
+    {
+        return errorCode;
+    }
+
+    /**
+     * Getter for errorStatus
+     *
+     * @return The description of the error
+     */
+    public String getErrorStatus()
+    {
+        return errorStatus;
+    }
+}
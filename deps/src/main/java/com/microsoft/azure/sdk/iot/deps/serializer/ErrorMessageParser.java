@@ -4,7 +4,6 @@
 package com.microsoft.azure.sdk.iot.deps.serializer;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.annotations.SerializedName;
 
@@ -37,7 +36,7 @@ public class ErrorMessageParser
             return "";
         }
 
-        Gson gson = new GsonBuilder().create();
+        Gson gson = SharedGson.DEFAULT;
 
         String rootMessage = fullErrorMessage;
         String rootException = null;
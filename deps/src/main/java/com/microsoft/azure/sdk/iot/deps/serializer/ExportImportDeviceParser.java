@@ -40,7 +40,7 @@ public class ExportImportDeviceParser
     @SerializedName(AUTHENTICATION_NAME)
     private AuthenticationParser authentication;
 
-    private static Gson gson = new Gson();
+    private static Gson gson = SharedGson.DEFAULT;
 
     /**
      * Converts this into json and returns it
@@ -4,7 +4,6 @@
 package com.microsoft.azure.sdk.iot.deps.serializer;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
@@ -57,7 +56,7 @@ public class FileUploadResponseParser
     public FileUploadResponseParser(String json) throws IllegalArgumentException
     {
         /* Codes_SRS_FILE_UPLOAD_RESPONSE_21_001: [The constructor shall create an instance of the FileUploadResponseParser.] */
-        Gson gson = new GsonBuilder().disableHtmlEscaping().serializeNulls().create();
+        Gson gson = SharedGson.DISABLE_HTML_ESCAPING_SERIALIZE_NULLS;
         FileUploadResponseParser newFileUploadResponseParser;
 
         /* Codes_SRS_FILE_UPLOAD_RESPONSE_21_003: [If the provided json is null, empty, or not valid, the constructor shall throws IllegalArgumentException.] */
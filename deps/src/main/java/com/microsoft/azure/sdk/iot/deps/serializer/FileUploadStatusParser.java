@@ -4,7 +4,6 @@
 package com.microsoft.azure.sdk.iot.deps.serializer;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 
@@ -87,7 +86,7 @@ public class FileUploadStatusParser
      */
     public String toJson()
     {
-        Gson gson = new GsonBuilder().disableHtmlEscaping().serializeNulls().create();
+        Gson gson = SharedGson.DISABLE_HTML_ESCAPING_SERIALIZE_NULLS;
 
         /* Codes_SRS_FILE_UPLOAD_STATUS_21_004: [The toJson shall return a string with a json that represents the contend of the FileUploadStatusParser.] */
         return gson.toJson(this);
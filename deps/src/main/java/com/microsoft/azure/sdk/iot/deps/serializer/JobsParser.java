@@ -4,7 +4,6 @@
 package com.microsoft.azure.sdk.iot.deps.serializer;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
@@ -150,7 +149,7 @@ public class JobsParser
      */
     public String toJson()
     {
-        Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+        Gson gson = SharedGson.DISABLE_HTML_ESCAPING;
         /* Codes_SRS_JOBSPARSER_21_013: [The toJson shall return a String with a json that represents the content of this class.] */
         return gson.toJson(this);
     }
@@ -4,8 +4,8 @@
 package com.microsoft.azure.sdk.iot.deps.serializer;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
@@ -170,7 +170,7 @@ public class JobsResponseParser
      */
     public static JobsResponseParser createFromJson(String json) throws IllegalArgumentException, JsonParseException
     {
-        Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+        Gson gson = SharedGson.DISABLE_HTML_ESCAPING;
 
         /* Codes_SRS_JOBSRESPONSEPARSER_21_006: [If the json is null or empty, the createFromJson shall throws IllegalArgumentException.] */
         if((json == null) || json.isEmpty())
@@ -182,7 +182,9 @@ public class JobsResponseParser
         /* Codes_SRS_JOBSRESPONSEPARSER_21_001: [The createFromJson shall create a new instance of JobsResponseParser class.] */
         /* Codes_SRS_JOBSRESPONSEPARSER_21_005: [If the json contains `deviceJobStatistics`, the createFromJson shall parse the content of it for JobsStatisticsParser class.] */
         /* Codes_SRS_JOBSRESPONSEPARSER_21_007: [If the json is not valid, the createFromJson shall throws JsonParseException.] */
-        JobsResponseParser jobsResponseParser = gson.fromJson(json, JobsResponseParser.class);
+        /* The json is parsed once, the inner parsers take their content from the same tree. */
+        JsonElement jsonTree = gson.fromJson(json, JsonElement.class);
+        JobsResponseParser jobsResponseParser = gson.fromJson(jsonTree, JobsResponseParser.class);
 
         /* Codes_SRS_JOBSRESPONSEPARSER_21_008: [If the json do not contains `jobId`, the createFromJson shall throws IllegalArgumentException.] */
         if((jobsResponseParser.jobId == null) || jobsResponseParser.jobId.isEmpty())
@@ -212,21 +214,21 @@ public class JobsResponseParser
             jobsResponseParser.type = jobsResponseParser.jobType;
         }
 
-        Map map = gson.fromJson(json, Map.class);
+        JsonObject map = jsonTree.getAsJsonObject();
 
         /* Codes_SRS_JOBSRESPONSEPARSER_21_003: [If the json contains `updateTwin`, the createFromJson shall parse the content of it for TwinParser class.] */
-        if(map.containsKey(UPDATETWIN_TAG))
+        if(map.has(UPDATETWIN_TAG))
         {
-            jobsResponseParser.updateTwin.updateTwin(gson.toJson(map.get(UPDATETWIN_TAG)));
+            jobsResponseParser.updateTwin.updateTwin(map.get(UPDATETWIN_TAG).toString());
         }
 
         /* Codes_SRS_JOBSRESPONSEPARSER_21_004: [If the json contains `cloudToDeviceMethod`, the createFromJson shall parse the content of it for MethodParser class.] */
-        if(map.containsKey(CLOUDTODEVICEMETHOD_TAG))
+        if(map.has(CLOUDTODEVICEMETHOD_TAG))
         {
-            jobsResponseParser.cloudToDeviceMethod.fromJson(gson.toJson(map.get(CLOUDTODEVICEMETHOD_TAG)));
+            jobsResponseParser.cloudToDeviceMethod.fromJson(map.get(CLOUDTODEVICEMETHOD_TAG).toString());
         }
 
-        if (map.containsKey(OUTCOME_TAG))
+        if (map.has(OUTCOME_TAG))
         {
             Map responseMap = gson.fromJson(jobsResponseParser.outcome, Map.class);
             if (responseMap.containsKey(DEVICE_METHOD_RESPONSE_TAG))
@@ -243,7 +245,7 @@ public class JobsResponseParser
                 /*As out come has a value only for method response, in all other cases it should not be looked for values and Exception should be throw
                 * As this is already done by method parser, Initialise the outcome to empty method parser.*/
                 MethodParser methodParserResponse = new MethodParser();
-                methodParserResponse.fromJson(gson.toJson(map.get(OUTCOME_TAG)));
+                methodParserResponse.fromJson(map.get(OUTCOME_TAG).toString());
                 jobsResponseParser.methodResponse = methodParserResponse;
             }
         }
@@ -6,7 +6,6 @@
 package com.microsoft.azure.sdk.iot.deps.serializer;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 
@@ -41,7 +40,7 @@ public class QueryRequestParser
      */
     public String toJson()
     {
-        Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+        Gson gson = SharedGson.DISABLE_HTML_ESCAPING;
 
         //Codes_SRS_QUERY_REQUEST_PARSER_25_004: [The toJson shall return a string with a json that represents the contents of the QueryRequestParser.]
         return gson.toJson(this);
@@ -5,18 +5,20 @@
 
 package com.microsoft.azure.sdk.iot.deps.serializer;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
 public class QueryResponseParser
 {
-    private Gson gson;
-    private JsonObject[] jsonItems = null;
+    private List<String> jsonItems = null;
 
     /**
      * CONSTRUCTOR
@@ -28,16 +30,14 @@ public class QueryResponseParser
     public QueryResponseParser(String json) throws IllegalArgumentException
     {
         //Codes_SRS_QUERY_RESPONSE_PARSER_25_001: [The constructor shall create an instance of the QueryResponseParser.]
-        gson = new GsonBuilder().disableHtmlEscaping().create();
-
         //Codes_SRS_QUERY_RESPONSE_PARSER_25_003: [If the provided json is null, empty, or not valid, the constructor shall throws IllegalArgumentException.]
         ParserUtility.validateStringUTF8(json);
 
         try
         {
-            this.jsonItems = gson.fromJson(json, JsonObject[].class);
+            this.jsonItems = parseItems(json);
         }
-        catch (JsonSyntaxException malformed)
+        catch (IOException | IllegalStateException | NumberFormatException malformed)
         {
             //Codes_SRS_QUERY_RESPONSE_PARSER_25_004: [If the provided json do not contains a valid array of json items the constructor shall throws IllegalArgumentException.]
             throw new IllegalArgumentException("Malformed json:" + malformed);
@@ -45,19 +45,55 @@ public class QueryResponseParser
     }
 
     /**
-     * Getter for Json Items from Json Array
-     * @return the array of json as string
+     * Splits the array of the response in the json of each item. The items are copied token by token from the
+     * response, so no tree is built for a page that the caller will parse again item by item.
      */
-    public List<String> getJsonItems()
+    private static List<String> parseItems(String json) throws IOException
     {
-        List<String> jsonElements = new LinkedList<>();
+        List<String> items = new ArrayList<>();
+        JsonReader reader = new JsonReader(new StringReader(json));
+        reader.setLenient(true);
+
+        reader.beginArray();
+        while (reader.hasNext())
+        {
+            if (reader.peek() == JsonToken.NULL)
+            {
+                reader.nextNull();
+                items.add("null");
+                continue;
+            }
+
+            if (reader.peek() != JsonToken.BEGIN_OBJECT)
+            {
+                throw new IllegalStateException("Expected a json object but was " + reader.peek());
+            }
+
+            StringWriter item = new StringWriter();
+            JsonWriter writer = new JsonWriter(item);
+            writer.setLenient(true);
+            SharedGson.copyValue(reader, writer);
+            writer.flush();
+            items.add(item.toString());
+        }
+        reader.endArray();
 
-        for (JsonObject json : this.jsonItems)
+        if (reader.peek() != JsonToken.END_DOCUMENT)
         {
-            jsonElements.add(gson.toJson(json));
+            throw new IllegalStateException("Json not fully consumed");
         }
+
+        return items;
+    }
+
+    /**
+     * Getter for Json Items from Json Array
+     * @return the array of json as string
+     */
+    public List<String> getJsonItems()
+    {
         //Codes_SRS_QUERY_RESPONSE_PARSER_25_008: [The getJsonItems shall return the list of json items as strings .]
-        return jsonElements;
+        return new LinkedList<>(this.jsonItems);
     }
 
     /**
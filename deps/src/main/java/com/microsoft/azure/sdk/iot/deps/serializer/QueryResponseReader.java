@@ -0,0 +1,196 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.deps.serializer;
+
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the items of a query response one by one, from the bytes of the response.
+ *
+ * Unlike {@link QueryResponseParser}, which splits the whole page up front, an item is only tokenised when the caller
+ * asks for it, so a large page costs nothing before its first item is used. An item can be read as json, or as a
+ * {@link JsonElement} or a {@code Map} for the callers that only project a few fields.
+ *
+ * A reader is not thread safe.
+ */
+public class QueryResponseReader
+{
+    private static final TypeAdapter<JsonElement> JSON_ELEMENT_ADAPTER = SharedGson.DEFAULT.getAdapter(JsonElement.class);
+
+    private final JsonReader reader;
+    private boolean endOfArray;
+
+    /**
+     * CONSTRUCTOR
+     * Create a reader on the UTF-8 bytes of a query response. Only the start of the array is read.
+     *
+     * @param json the bytes of a json array.
+     * @throws IllegalArgumentException if the json is null, empty, or does not start with an array.
+     */
+    public QueryResponseReader(byte[] json) throws IllegalArgumentException
+    {
+        if (json == null || json.length == 0)
+        {
+            throw new IllegalArgumentException("json cannot be null or empty");
+        }
+
+        this.reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8));
+        this.reader.setLenient(true);
+
+        try
+        {
+            this.reader.beginArray();
+        }
+        catch (IOException | IllegalStateException malformed)
+        {
+            throw new IllegalArgumentException("Malformed json:" + malformed);
+        }
+    }
+
+    /**
+     * Checks if there is another item in the response.
+     *
+     * @return true if there is another item, false at the end of the array.
+     * @throws IllegalArgumentException if the json is not valid.
+     */
+    public boolean hasNext() throws IllegalArgumentException
+    {
+        if (this.endOfArray)
+        {
+            return false;
+        }
+
+        try
+        {
+            if (this.reader.hasNext())
+            {
+                return true;
+            }
+
+            this.reader.endArray();
+            if (this.reader.peek() != JsonToken.END_DOCUMENT)
+            {
+                throw new IllegalStateException("Json not fully consumed");
+            }
+            this.endOfArray = true;
+            return false;
+        }
+        catch (IOException | IllegalStateException malformed)
+        {
+            throw new IllegalArgumentException("Malformed json:" + malformed);
+        }
+    }
+
+    /**
+     * Reads the next item as json, as {@link QueryResponseParser#getJsonItems()} returns it.
+     *
+     * @return the json of the item, {@code "null"} for a null item.
+     * @throws IllegalArgumentException if the item is not a json object, or if the json is not valid.
+     * @throws NoSuchElementException if there is no more item.
+     */
+    public String nextJson() throws IllegalArgumentException, NoSuchElementException
+    {
+        try
+        {
+            if (nextIsNull())
+            {
+                return "null";
+            }
+
+            if (this.reader.peek() != JsonToken.BEGIN_OBJECT)
+            {
+                throw new IllegalStateException("Expected a json object but was " + this.reader.peek());
+            }
+
+            StringWriter item = new StringWriter();
+            JsonWriter writer = new JsonWriter(item);
+            writer.setLenient(true);
+            SharedGson.copyValue(this.reader, writer);
+            writer.flush();
+            return item.toString();
+        }
+        catch (IOException | IllegalStateException | NumberFormatException malformed)
+        {
+            throw new IllegalArgumentException("Malformed json:" + malformed);
+        }
+    }
+
+    /**
+     * Reads the next item as a tree.
+     *
+     * @return the item, {@code null} for a null item.
+     * @throws IllegalArgumentException if the json is not valid.
+     * @throws NoSuchElementException if there is no more item.
+     */
+    public JsonElement nextJsonElement() throws IllegalArgumentException, NoSuchElementException
+    {
+        try
+        {
+            return nextIsNull() ? null : JSON_ELEMENT_ADAPTER.read(this.reader);
+        }
+        catch (IOException | IllegalStateException | NumberFormatException malformed)
+        {
+            throw new IllegalArgumentException("Malformed json:" + malformed);
+        }
+    }
+
+    /**
+     * Reads the next item as a map. Nested objects are maps and numbers are doubles, as Gson reads them.
+     *
+     * @return the fields of the item, {@code null} for a null item.
+     * @throws IllegalArgumentException if the item is not a json object, or if the json is not valid.
+     * @throws NoSuchElementException if there is no more item.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> nextMap() throws IllegalArgumentException, NoSuchElementException
+    {
+        try
+        {
+            if (nextIsNull())
+            {
+                return null;
+            }
+
+            if (this.reader.peek() != JsonToken.BEGIN_OBJECT)
+            {
+                throw new IllegalStateException("Expected a json object but was " + this.reader.peek());
+            }
+
+            return (Map<String, Object>) SharedGson.OBJECT_ADAPTER.read(this.reader);
+        }
+        catch (IOException | IllegalStateException | NumberFormatException malformed)
+        {
+            throw new IllegalArgumentException("Malformed json:" + malformed);
+        }
+    }
+
+    private boolean nextIsNull() throws IOException
+    {
+        if (!hasNext())
+        {
+            throw new NoSuchElementException();
+        }
+
+        if (this.reader.peek() == JsonToken.NULL)
+        {
+            this.reader.nextNull();
+            return true;
+        }
+        return false;
+    }
+}
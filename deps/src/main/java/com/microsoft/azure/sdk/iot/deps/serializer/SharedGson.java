@@ -0,0 +1,96 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.deps.serializer;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Gson instances shared by the parsers, one per configuration the parsers use.
+ *
+ * Building a Gson, and the reflective type adapters it creates on first use of a class, is expensive,
+ * while a built Gson is immutable and thread safe. Sharing them means the cost is paid once per process
+ * instead of once per parse.
+ */
+final class SharedGson
+{
+    static final Gson DEFAULT = new Gson();
+    static final Gson DISABLE_HTML_ESCAPING = new GsonBuilder().disableHtmlEscaping().create();
+    static final Gson SERIALIZE_NULLS = new GsonBuilder().serializeNulls().create();
+    static final Gson DISABLE_HTML_ESCAPING_SERIALIZE_NULLS = new GsonBuilder().disableHtmlEscaping().serializeNulls().create();
+    static final Gson TWIN = new GsonBuilder().disableInnerClassSerialization().disableHtmlEscaping().create();
+    static final Gson METHOD = new GsonBuilder().enableComplexMapKeySerialization().serializeNulls().create();
+
+    /* Adapter of the hot path, built up front. */
+    static final TypeAdapter<Object> OBJECT_ADAPTER = DEFAULT.getAdapter(Object.class);
+
+    private SharedGson()
+    {
+    }
+
+    /**
+     * Copies the next value of the reader to the writer, token by token, without building a tree.
+     * Numbers are copied as written in the source, as Gson does when it goes through a {@code JsonElement}.
+     *
+     * @param reader the source, positioned before the value to copy.
+     * @param writer the destination.
+     * @throws IOException if the source is not valid json.
+     */
+    static void copyValue(JsonReader reader, JsonWriter writer) throws IOException
+    {
+        int depth = 0;
+        do
+        {
+            JsonToken token = reader.peek();
+            switch (token)
+            {
+                case BEGIN_OBJECT:
+                    reader.beginObject();
+                    writer.beginObject();
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    reader.endObject();
+                    writer.endObject();
+                    depth--;
+                    break;
+                case BEGIN_ARRAY:
+                    reader.beginArray();
+                    writer.beginArray();
+                    depth++;
+                    break;
+                case END_ARRAY:
+                    reader.endArray();
+                    writer.endArray();
+                    depth--;
+                    break;
+                case NAME:
+                    writer.name(reader.nextName());
+                    break;
+                case STRING:
+                    writer.value(reader.nextString());
+                    break;
+                case NUMBER:
+                    writer.jsonValue(reader.nextString());
+                    break;
+                case BOOLEAN:
+                    writer.value(reader.nextBoolean());
+                    break;
+                case NULL:
+                    reader.nextNull();
+                    writer.nullValue();
+                    break;
+                default:
+                    throw new IOException("Unexpected end of json");
+            }
+        }
+        while (depth > 0);
+    }
+}
@@ -4,7 +4,6 @@
 package com.microsoft.azure.sdk.iot.deps.serializer;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
 import com.google.gson.annotations.SerializedName;
 
@@ -107,7 +106,7 @@ public class TwinMetadata
 
     protected JsonElement toJsonElement()
     {
-        Gson gson = new GsonBuilder().create();
+        Gson gson = SharedGson.DEFAULT;
         return gson.toJsonTree(this);
     }
 }
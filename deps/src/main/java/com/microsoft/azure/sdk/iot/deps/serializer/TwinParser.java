@@ -150,7 +150,7 @@ public class TwinParser
     public JsonElement toJsonElement()
     {
         /* Codes_SRS_TWINPARSER_21_017: [The toJsonElement shall return a JsonElement with information in the TwinParser using json format.] */
-        Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+        Gson gson = SharedGson.DISABLE_HTML_ESCAPING;
         JsonObject twinJson = gson.toJsonTree(manager).getAsJsonObject();
 
         /* Codes_SRS_TWINPARSER_21_018: [The toJsonElement shall not include null fields.] */
@@ -217,7 +217,7 @@ public class TwinParser
         validateMap(reportedPropertyMap);
         validateMap(tagsMap);
 
-        Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+        Gson gson = SharedGson.DISABLE_HTML_ESCAPING;
         jsonTwin = gson.toJsonTree(manager).getAsJsonObject();
 
         /* Codes_SRS_TWINPARSER_21_075: [If Tags is not enable and `tagsMap` is not null, the updateTwin shall throw IOException.] */
@@ -612,21 +612,36 @@ public class TwinParser
             throw new IllegalArgumentException("Null json");
         }
 
-        /* Codes_SRS_TWINPARSER_21_043: [If the provided json is not valid, the updateTwin shall throws IllegalArgumentException.] */
-        validateJson(json);
-
         /* Codes_SRS_TWINPARSER_21_071: [If the provided json is empty, the updateTwin shall not change the collection and not call the OnDesiredCallback or the OnReportedCallback.] */
         if(!json.isEmpty())
         {
-            Gson gson = new GsonBuilder().disableInnerClassSerialization().disableHtmlEscaping().create();
+            /* The map and the manager are both read from the text, without a JsonElement tree in between; a tree
+             * would keep the last of two duplicated `properties` instead of failing. */
             Map<String, Object> jsonTree;
             try
             {
                 /* Codes_SRS_TWINPARSER_21_097: [If the provided json have any duplicated `properties` or `tags`, the updateTwin shall throw IllegalArgumentException.] */
                 /* Codes_SRS_TWINPARSER_21_098: [If the provided json is properties only and contains duplicated `desired` or `reported`, the updateTwin shall throws IllegalArgumentException.] */
                 /* Codes_SRS_TWINPARSER_21_094: [If the provided json have any duplicated `key`, the updateTwin shall use the content of the last one in the String.] */
-                jsonTree = (Map<String, Object>) gson.fromJson(json, HashMap.class);
-                manager = gson.fromJson(json, RegisterManagerParser.class);
+                jsonTree = (Map<String, Object>) SharedGson.TWIN.fromJson(json, HashMap.class);
+            }
+            catch (JsonSyntaxException e)
+            {
+                /* Codes_SRS_TWINPARSER_21_043: [If the provided json is not valid, the updateTwin shall throws IllegalArgumentException.] */
+                throw new IllegalArgumentException("Malformed Json: " + e);
+            }
+
+            /* Codes_SRS_TWINPARSER_21_043: [If the provided json is not valid, the updateTwin shall throws IllegalArgumentException.] */
+            validateJson(jsonTree);
+
+            if(jsonTree == null)
+            {
+                return;
+            }
+
+            try
+            {
+                manager = SharedGson.TWIN.fromJson(json, RegisterManagerParser.class);
             }
             catch (JsonSyntaxException e)
             {
@@ -1000,19 +1015,8 @@ public class TwinParser
         return this.manager.lastActivityTime;
     }
 
-    private void validateJson(String json) throws IllegalArgumentException
+    private void validateJson(Map<String, Object> map) throws IllegalArgumentException
     {
-        Map<String, Object> map;
-        try
-        {
-            Gson gson = new GsonBuilder().disableInnerClassSerialization().disableHtmlEscaping().create();
-            map = (Map<String, Object>) gson.fromJson(json, HashMap.class);
-        }
-        catch (Exception e)
-        {
-            throw new IllegalArgumentException("Malformed Json: " + e);
-        }
-
         if(map != null)
         {
             boolean propertiesLevel = false;
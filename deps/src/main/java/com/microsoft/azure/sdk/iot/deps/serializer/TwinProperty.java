@@ -3,12 +3,15 @@
 
 package com.microsoft.azure.sdk.iot.deps.serializer;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
 import com.google.gson.internal.LinkedTreeMap;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -317,6 +320,12 @@ public class TwinProperty
             throw new IllegalArgumentException("Malformed Json:" + e);
         }
 
+        reportChanges(diffField, diffMetadata, onCallback);
+    }
+
+    private void reportChanges(Map<String, Object> diffField, Map<String, Object> diffMetadata,
+                               TwinChangedCallback onCallback)
+    {
         if(reportMetadata)
         {
             for(Map.Entry<String, Object> entry : diffMetadata.entrySet())
@@ -352,21 +361,171 @@ public class TwinProperty
         }
     }
 
+    /**
+     * Apply a patch, as the hub sends for the `desired` properties, to the collection.
+     *
+     * The patch is read in one pass and only the paths it touches are changed: a property that is an object in the
+     * collection and in the patch is merged key by key instead of replaced, and the callback receives only the
+     * values that changed. A patch with a `$version` that is not newer than the collection one is already
+     * included in the collection, so it is discarded without changes or callback.
+     *
+     * @param json the patch.
+     * @param onCallback the callback to report the changes, it can be {@code null}.
+     * @throws IllegalArgumentException if the json is not valid.
+     */
     protected void update(String json, TwinChangedCallback onCallback) throws IllegalArgumentException
     {
-        Map   <String, Object> newValues;
+        Map<String, Object> patch;
         try
         {
             /* Codes_SRS_TWINPARSER_21_095: [If the provided json have any duplicated `key`, the updateReportedProperty shall throws IllegalArgumentException.] */
             /* Codes_SRS_TWINPARSER_21_096: [If the provided json have any duplicated `key`, the updateDesiredProperty shall throws IllegalArgumentException.] */
-            Gson gson = new GsonBuilder().create();
-            newValues = (Map<String, Object>) gson.fromJson(json, Map.class);
+            patch = readPatch(json);
         }
-        catch (Exception e)
+        catch (IOException | RuntimeException e)
         {
             throw new IllegalArgumentException("Malformed Json:" + e);
         }
-        update(newValues, onCallback);
+
+        Map<String, Object> diffField;
+        Map<String, Object> diffMetadata;
+        synchronized (lock)
+        {
+            Object patchVersion = patch.get(VERSION_TAG);
+            if((version != null) && (patchVersion instanceof Number) && (((Number)patchVersion).intValue() <= version))
+            {
+                return;
+            }
+
+            try
+            {
+                updateVersion(patch);
+                diffField = patchFields(patch);
+                diffMetadata = updateMetadata(patch);
+            }
+            catch (Exception e)
+            {
+                /* Codes_SRS_TWINPARSER_21_092: [If the provided json is not valid, the updateDesiredProperty shall throws IllegalArgumentException.] */
+                throw new IllegalArgumentException("Malformed Json:" + e);
+            }
+        }
+
+        reportChanges(diffField, diffMetadata, onCallback);
+    }
+
+    private static Map<String, Object> readPatch(String json) throws IOException
+    {
+        JsonReader reader = new JsonReader(new StringReader(json));
+        reader.setLenient(true);
+
+        /* A patch is an object, `beginObject` fails on anything else, including a null patch. */
+        Map<String, Object> patch = new LinkedHashMap<>();
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+            String key = reader.nextName();
+            if(patch.containsKey(key))
+            {
+                throw new IllegalArgumentException("Duplicated key " + key);
+            }
+            patch.put(key, SharedGson.OBJECT_ADAPTER.read(reader));
+        }
+        reader.endObject();
+
+        if(reader.peek() != JsonToken.END_DOCUMENT)
+        {
+            throw new IllegalArgumentException("Json not fully consumed");
+        }
+
+        return patch;
+    }
+
+    private Map<String, Object> patchFields(Map<String, Object> patch) throws IllegalArgumentException
+    {
+        Map<String, Object> diff = new HashMap<>();
+
+        for (Map.Entry<String, Object> entry : patch.entrySet())
+        {
+            String key = entry.getKey();
+            if(key.isEmpty())
+            {
+                throw new IllegalArgumentException("Invalid Key on Json");
+            }
+            if(key.contains("$"))
+            {
+                continue;
+            }
+
+            Property current = property.get(key);
+            Object value = entry.getValue();
+            if(value == null)
+            {
+                /* Codes_SRS_TWINPARSER_21_042: [If a valid key has a null value, the updateTwin shall delete this property.] */
+                if(current != null)
+                {
+                    property.remove(key);
+                    diff.put(key, null);
+                }
+            }
+            else if((current != null) && (current.value instanceof Map) && (value instanceof Map))
+            {
+                Map<String, Object> merged = new HashMap<>((Map<String, Object>)current.value);
+                Map<String, Object> changed = mergeMap(merged, (Map<String, Object>)value);
+                if(!changed.isEmpty())
+                {
+                    property.put(key, new Property(merged, null));
+                    diff.put(key, changed);
+                }
+            }
+            else if((current == null) || !current.value.equals(value))
+            {
+                property.put(key, new Property(value, null));
+                diff.put(key, value);
+            }
+        }
+
+        return diff;
+    }
+
+    /**
+     * Merge the patch in the target, copying the objects on the way to the changed values instead of changing
+     * them, and return the changed values with the same structure.
+     */
+    private static Map<String, Object> mergeMap(Map<String, Object> target, Map<String, Object> patch)
+    {
+        Map<String, Object> changed = new HashMap<>();
+
+        for (Map.Entry<String, Object> entry : patch.entrySet())
+        {
+            String key = entry.getKey();
+            Object current = target.get(key);
+            Object value = entry.getValue();
+            if(value == null)
+            {
+                if(target.containsKey(key))
+                {
+                    target.remove(key);
+                    changed.put(key, null);
+                }
+            }
+            else if((current instanceof Map) && (value instanceof Map))
+            {
+                Map<String, Object> merged = new HashMap<>((Map<String, Object>)current);
+                Map<String, Object> innerChanged = mergeMap(merged, (Map<String, Object>)value);
+                if(!innerChanged.isEmpty())
+                {
+                    target.put(key, merged);
+                    changed.put(key, innerChanged);
+                }
+            }
+            else if(!value.equals(current))
+            {
+                target.put(key, value);
+                changed.put(key, value);
+            }
+        }
+
+        return changed;
     }
 
     private void updateVersion(Map<String, Object> jsonTree)
@@ -4,7 +4,6 @@
 package com.microsoft.azure.sdk.iot.deps.serializer;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
@@ -130,13 +129,13 @@ public class TwinTags
 
     protected String toJson()
     {
-        Gson gson = new GsonBuilder().create();
+        Gson gson = SharedGson.DEFAULT;
         return gson.toJson(tags);
     }
 
     protected JsonElement toJsonElement()
     {
-        Gson gson = new GsonBuilder().create();
+        Gson gson = SharedGson.DEFAULT;
         /* Codes_SRS_TWINPARSER_21_017: [The toJsonElement shall return a JsonElement with information in the TwinParser using json format.] */
         return gson.toJsonTree(tags);
     }
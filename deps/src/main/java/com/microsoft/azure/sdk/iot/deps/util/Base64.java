@@ -3,258 +3,368 @@
 
 package com.microsoft.azure.sdk.iot.deps.util;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Base64 encoder and decoder, <a href="http://www.ietf.org/rfc/rfc2045.txt">RFC 2045</a>.
+ *
+ * <p>
+ *     The conversions are table driven and work on a group of 3 bytes (4 base64 values) at a time. Besides the
+ *     methods that return a new array, the encoder and the decoder can write straight into a caller provided
+ *     {@code byte[]}, {@link ByteBuffer} or {@link OutputStream}, so a serializer does not need an intermediate
+ *     array or String for each value.
+ * </p>
+ */
 public final class Base64
 {
-    private static final byte BYTE_START_UPPERCASE = 'A';
-    private static final byte BYTE_END_UPPERCASE = 'Z';
-    private static final byte BYTE_START_LOWERCASE = 'a';
-    private static final byte BYTE_END_LOWERCASE = 'z';
-    private static final byte BYTE_START_NUMBER = '0';
-    private static final byte BYTE_END_NUMBER = '9';
-    private static final byte BYTE_PLUS = '+';
-    private static final byte BYTE_SLASH = '/';
-
-    private static final int BASE64_END_UPPERCASE = 26;
-    private static final int BASE64_END_LOWERCASE = 52;
-    private static final int BASE64_END_NUMBER = 62;
-    private static final int BASE64_PLUS = 62;
-    private static final int BASE64_SLASH = 63;
     private static final byte BASE64_PAD = '=';
+    private static final int INVALID_BASE64 = -1;
 
     private static final int HALF_NIBBLE = 2;
     private static final int ONE_NIBBLE = 4;
     private static final int ONE_AND_HALF_NIBBLE = 6;
     private static final int ONE_BYTE = 8;
     private static final int TWO_BYTES = 16;
-    private static final int THREE_BYTES = 24;
+    private static final int THREE_NIBBLES = 12;
+    private static final int THREE_AND_HALF_NIBBLES = 18;
 
     private static final int ISOLATE_BYTE = 0xFF;
     private static final int ISOLATE_BASE64 = 0x3F;
-    private static final int ISOLATE_LSB_BASE64 = 0x0F;
-    private static final int ISOLATE_MSB_BASE64 = 0x03;
 
     private static final int BYTE_GROUP_SIZE = 3;
     private static final int BASE64_GROUP_SIZE = 4;
 
+    // Groups encoded at a time by the stream encoder, 4 KiB of base64 values.
+    private static final int STREAM_GROUPS_PER_CHUNK = 1024;
 
-    private static final int[] BASE64D16_CONVERSION_TABLE =
-        {
-            ((int)'A' + ((int)'E'<<ONE_BYTE) + ((int)'I'<<TWO_BYTES) + ((int)'M'<<THREE_BYTES)),
-            ((int)'Q' + ((int)'U'<<ONE_BYTE) + ((int)'Y'<<TWO_BYTES) + ((int)'c'<<THREE_BYTES)),
-            ((int)'g' + ((int)'k'<<ONE_BYTE) + ((int)'o'<<TWO_BYTES) + ((int)'s'<<THREE_BYTES)),
-            ((int)'w' + ((int)'0'<<ONE_BYTE) + ((int)'4'<<TWO_BYTES) + ((int)'8'<<THREE_BYTES)),
-        };
-
-    private static final int BASE64D8_CONVERSION_TABLE = ((int)'A' + ((int)'Q'<<ONE_BYTE) + ((int)'g'<<TWO_BYTES) + ((int)'w'<<THREE_BYTES));
+    private static final byte[] BASE64_ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
 
-    private static byte extractBase64FromInteger(final int integerValue, final int bytePosition)
-    {
-        return (byte)((integerValue >> (bytePosition << 3)) & ISOLATE_BYTE);
-    }
+    private static final int[] BASE64_VALUES = new int[256];
 
-    private static byte base64ToByte(final byte base64Value)
+    static
     {
-        if(base64Value < BASE64_END_UPPERCASE)
+        Arrays.fill(BASE64_VALUES, INVALID_BASE64);
+        for (int i = 0; i < BASE64_ALPHABET.length; i++)
         {
-            return (byte)(BYTE_START_UPPERCASE + base64Value);
+            BASE64_VALUES[BASE64_ALPHABET[i]] = i;
         }
+    }
 
-        if(base64Value < BASE64_END_LOWERCASE)
+    /**
+     * Convert a array of base64 encoded byte in a array of bytes, returning the bytes
+     * original values.
+     * <a href="http://www.ietf.org/rfc/rfc2045.txt">RFC 2045</a>.
+     *
+     * Base64 only uses 6 bits, so fits each set of 4 base64 in 3 bytes
+     *     Base64  |     c1    |     c2    |     c3    |     c4    |
+     *             |7 6 5 4 3 2 1 0:7 6 5 4 3 2 1 0:7 6 5 4 3 2 1 0|
+     *     Byte    |       b1      |       b2      |       b3      |
+     *
+     * @param base64Values is an array of base64 encoded values
+     * @return an array of bytes with the original values
+     * @throws IllegalArgumentException if the provided base64 values are null, or do not fits the required length
+     */
+    public static byte[] decodeBase64Local(final byte[] base64Values) throws IllegalArgumentException
+    {
+        /* Codes_SRS_BASE64_21_002: [If the `base64Values` is null, the decodeBase64Local shall throw IllegalArgumentException.] */
+        if(base64Values == null)
         {
-            return (byte)(BYTE_START_LOWERCASE + (base64Value - BASE64_END_UPPERCASE));
+            throw new IllegalArgumentException("null or empty base64Values");
         }
 
-        if(base64Value < BASE64_END_NUMBER)
+        /* Codes_SRS_BASE64_21_003: [If the `base64Values` is empty, the decodeBase64Local shall return a empty byte array.] */
+        if(base64Values.length == 0)
         {
-            return (byte)(BYTE_START_NUMBER + (base64Value - BASE64_END_LOWERCASE));
+            return new byte[0];
         }
 
-        if(base64Value == BASE64_END_NUMBER)
+        /* Codes_SRS_BASE64_21_004: [If the `base64Values` length is not multiple of 4, the decodeBase64Local shall throw IllegalArgumentException.] */
+        if((base64Values.length % BASE64_GROUP_SIZE) != 0)
         {
-            return BYTE_PLUS;
+            throw new IllegalArgumentException("invalid base64Values length");
         }
 
-        return BYTE_SLASH;
+        /* Codes_SRS_BASE64_21_001: [The decodeBase64Local shall decode the provided `base64Values` in a byte array using the Base64 format define in the RFC2045.] */
+        byte[] decodedResult = new byte[decodedLength(base64Values, 0, base64Values.length)];
+        decodeBase64Internal(base64Values, 0, base64Values.length, decodedResult, 0);
+        return decodedResult;
     }
 
-    private static byte base64d16ToByte(final byte base64d16Value)
+    /**
+     * Convert a range of base64 encoded bytes in the original bytes, written in the provided array.
+     *
+     * @param base64Values is an array with the base64 encoded values.
+     * @param offset is the position of the first base64 value.
+     * @param length is the number of base64 values, a multiple of 4.
+     * @param destination is the array that receives the original bytes.
+     * @param destinationOffset is the position of the first decoded byte in the destination.
+     * @return the number of bytes written in the destination, see {@link #decodedLength(byte[], int, int)}.
+     * @throws IllegalArgumentException if one of the arrays is null, if a range is out of its array, if the length is
+     *          not a multiple of 4, or if the range contains a value that is not base64.
+     */
+    public static int decodeBase64Local(final byte[] base64Values, int offset, int length, byte[] destination, int destinationOffset)
+            throws IllegalArgumentException
     {
-        return extractBase64FromInteger(BASE64D16_CONVERSION_TABLE[base64d16Value >> HALF_NIBBLE],
-            (base64d16Value & ISOLATE_MSB_BASE64));
-    }
+        if((base64Values == null) || (destination == null))
+        {
+            throw new IllegalArgumentException("null base64Values or destination");
+        }
 
-    private static byte base64d8ToByte(final byte base64d8Value)
-    {
-        return extractBase64FromInteger(BASE64D8_CONVERSION_TABLE, base64d8Value);
+        checkRange(base64Values.length, offset, length);
+        if((length % BASE64_GROUP_SIZE) != 0)
+        {
+            throw new IllegalArgumentException("invalid base64Values length");
+        }
+
+        int decodedLength = decodedLength(base64Values, offset, length);
+        checkRange(destination.length, destinationOffset, decodedLength);
+        decodeBase64Internal(base64Values, offset, length, destination, destinationOffset);
+        return decodedLength;
     }
 
-    private static byte byteToBase64(final byte byteValue) throws IllegalArgumentException
+    /**
+     * Convert the remaining base64 encoded bytes of a buffer in the original bytes, written in the destination buffer.
+     * The position of both buffers moves past the converted bytes.
+     *
+     * @param base64Values is the buffer with the base64 encoded values, its remaining length a multiple of 4.
+     * @param destination is the buffer that receives the original bytes.
+     * @throws IllegalArgumentException if one of the buffers is null, if the remaining length is not a multiple of 4,
+     *          if the destination has not enough room, or if the buffer contains a value that is not base64. The
+     *          positions of the buffers are not moved on failure.
+     */
+    public static void decodeBase64Local(ByteBuffer base64Values, ByteBuffer destination) throws IllegalArgumentException
     {
-        if((byteValue >= BYTE_START_UPPERCASE) && (byteValue <= BYTE_END_UPPERCASE))
+        if((base64Values == null) || (destination == null))
         {
-            return (byte)(byteValue - BYTE_START_UPPERCASE);
+            throw new IllegalArgumentException("null base64Values or destination");
         }
 
-        if((byteValue >= BYTE_START_LOWERCASE) && (byteValue <= BYTE_END_LOWERCASE))
+        int length = base64Values.remaining();
+        if((length % BASE64_GROUP_SIZE) != 0)
         {
-            return (byte)((BYTE_END_UPPERCASE - BYTE_START_UPPERCASE) + 1 +
-                (byteValue - BYTE_START_LOWERCASE));
+            throw new IllegalArgumentException("invalid base64Values length");
         }
 
-        if((byteValue >= BYTE_START_NUMBER) && (byteValue <= BYTE_END_NUMBER))
+        byte[] source;
+        int offset;
+        if(base64Values.hasArray())
         {
-            return (byte)((BYTE_END_UPPERCASE - BYTE_START_UPPERCASE) + 1 +
-                (BYTE_END_LOWERCASE - BYTE_START_LOWERCASE) + 1 +
-                (byteValue - BYTE_START_NUMBER));
+            source = base64Values.array();
+            offset = base64Values.arrayOffset() + base64Values.position();
         }
-
-        if(byteValue == BYTE_PLUS)
+        else
         {
-            return BASE64_PLUS;
+            source = new byte[length];
+            base64Values.duplicate().get(source);
+            offset = 0;
         }
 
-        if(byteValue == BYTE_SLASH)
+        int decodedLength = decodedLength(source, offset, length);
+        if(decodedLength > destination.remaining())
         {
-            return BASE64_SLASH;
+            throw new IllegalArgumentException("destination is too small");
         }
 
-        throw new IllegalArgumentException("provided byte value out of base64 range");
+        if(destination.hasArray() && !destination.isReadOnly())
+        {
+            decodeBase64Internal(source, offset, length, destination.array(), destination.arrayOffset() + destination.position());
+            destination.position(destination.position() + decodedLength);
+        }
+        else
+        {
+            byte[] decoded = new byte[decodedLength];
+            decodeBase64Internal(source, offset, length, decoded, 0);
+            destination.put(decoded);
+        }
+        base64Values.position(base64Values.position() + length);
     }
 
-    private static int numberOfValidBase64BytesWithoutPad(final byte[] bytesToEncode) throws IllegalArgumentException
+    /**
+     * Getter for the number of original bytes in a range of base64 encoded values.
+     *
+     * @param base64Values is an array with the base64 encoded values.
+     * @param offset is the position of the first base64 value.
+     * @param length is the number of base64 values, a multiple of 4.
+     * @return the number of bytes that the range decodes to.
+     * @throws IllegalArgumentException if the array is null, or if the range is out of the array.
+     */
+    public static int decodedLength(byte[] base64Values, int offset, int length) throws IllegalArgumentException
     {
-        int validLength = bytesToEncode.length;
-
-        if(bytesToEncode[validLength-1] == BASE64_PAD)
+        if(base64Values == null)
         {
-            validLength--;
+            throw new IllegalArgumentException("null base64Values");
         }
 
-        if(bytesToEncode[validLength-1] == BASE64_PAD)
+        checkRange(base64Values.length, offset, length);
+        if(length == 0)
         {
-            validLength--;
+            return 0;
         }
 
-        return validLength;
+        return (length / BASE64_GROUP_SIZE * BYTE_GROUP_SIZE) - (length - numberOfValidBase64BytesWithoutPad(base64Values, offset, length));
     }
 
-    private static int base64EstimatedLength(final byte[] base64sToDecode)
+    /**
+     * Convert a array of bytes in a array of MIME   Base64 values.
+     * <a href="http://www.ietf.org/rfc/rfc2045.txt">RFC 2045</a>.
+     *
+     * @param dataValues is an array of bytes with the original values
+     * @return an array of base64 encoded values
+     * @throws IllegalArgumentException if the provided base64 values are null, or do not fits the required length
+     */
+    public static byte[] encodeBase64Local(byte[] dataValues) throws IllegalArgumentException
     {
-        int estimatedLength;
-
-        if(base64sToDecode.length == 0)
+        /* Codes_SRS_BASE64_21_006: [If the `dataValues` is null, the encodeBase64Local shall throw IllegalArgumentException.] */
+        if(dataValues == null)
         {
-            return 0;
+            throw new IllegalArgumentException("null or empty dataValues");
         }
 
-        estimatedLength = base64sToDecode.length / BASE64_GROUP_SIZE * BYTE_GROUP_SIZE;
-        if(base64sToDecode[base64sToDecode.length - 1] == BASE64_PAD)
+        /* Codes_SRS_BASE64_21_007: [If the `dataValues` is empty, the encodeBase64Local shall return a empty byte array.] */
+        if(dataValues.length == 0)
         {
-            if(base64sToDecode[base64sToDecode.length - 2] == BASE64_PAD)
-            {
-                estimatedLength --;
-            }
-            estimatedLength --;
+            return new byte[0];
         }
 
-        return estimatedLength;
+        /* Codes_SRS_BASE64_21_005: [The encodeBase64Local shall encoded the provided `dataValues` in a byte array using the Base64 format define in the RFC2045.] */
+        byte[] encodedResult = new byte[encodedLength(dataValues.length)];
+        encodeBase64Internal(dataValues, 0, dataValues.length, encodedResult, 0);
+        return encodedResult;
     }
 
     /**
-     * Convert a array of base64 encoded byte in a array of bytes, returning the bytes
-     * original values.
-     * <a href="http://www.ietf.org/rfc/rfc2045.txt">RFC 2045</a>.
+     * Convert a range of bytes in MIME Base64 values, written in the provided array.
      *
-     * Base64 only uses 6 bits, so fits each set of 4 base64 in 3 bytes
-     *     Base64  |     c1    |     c2    |     c3    |     c4    |
-     *             |7 6 5 4 3 2 1 0:7 6 5 4 3 2 1 0:7 6 5 4 3 2 1 0|
-     *     Byte    |       b1      |       b2      |       b3      |
-     *
-     * @param base64Values is an array of base64 encoded values
-     * @return an array of bytes with the original values
-     * @throws IllegalArgumentException if the provided base64 values are null, or do not fits the required length
+     * @param dataValues is an array with the original values.
+     * @param offset is the position of the first byte to encode.
+     * @param length is the number of bytes to encode.
+     * @param destination is the array that receives the base64 encoded values.
+     * @param destinationOffset is the position of the first base64 value in the destination.
+     * @return the number of base64 values written in the destination, see {@link #encodedLength(int)}.
+     * @throws IllegalArgumentException if one of the arrays is null, or if a range is out of its array.
      */
-    public static byte[] decodeBase64Local(final byte[] base64Values) throws IllegalArgumentException
+    public static int encodeBase64Local(byte[] dataValues, int offset, int length, byte[] destination, int destinationOffset)
+            throws IllegalArgumentException
     {
-        /* Codes_SRS_BASE64_21_002: [If the `base64Values` is null, the decodeBase64Local shall throw IllegalArgumentException.] */
-        if(base64Values == null)
+        if((dataValues == null) || (destination == null))
         {
-            throw new IllegalArgumentException("null or empty base64Values");
+            throw new IllegalArgumentException("null dataValues or destination");
         }
 
-        /* Codes_SRS_BASE64_21_003: [If the `base64Values` is empty, the decodeBase64Local shall return a empty byte array.] */
-        if(base64Values.length == 0)
+        checkRange(dataValues.length, offset, length);
+        int encodedLength = encodedLength(length);
+        checkRange(destination.length, destinationOffset, encodedLength);
+        encodeBase64Internal(dataValues, offset, length, destination, destinationOffset);
+        return encodedLength;
+    }
+
+    /**
+     * Convert the remaining bytes of a buffer in MIME Base64 values, written in the destination buffer. The position
+     * of both buffers moves past the converted bytes.
+     *
+     * @param dataValues is the buffer with the original values.
+     * @param destination is the buffer that receives the base64 encoded values.
+     * @throws IllegalArgumentException if one of the buffers is null, or if the destination has not enough room. The
+     *          positions of the buffers are not moved on failure.
+     */
+    public static void encodeBase64Local(ByteBuffer dataValues, ByteBuffer destination) throws IllegalArgumentException
+    {
+        if((dataValues == null) || (destination == null))
         {
-            return new byte[0];
+            throw new IllegalArgumentException("null dataValues or destination");
         }
 
-        /* Codes_SRS_BASE64_21_004: [If the `base64Values` length is not multiple of 4, the decodeBase64Local shall throw IllegalArgumentException.] */
-        if((base64Values.length % BASE64_GROUP_SIZE) != 0)
+        int length = dataValues.remaining();
+        int encodedLength = encodedLength(length);
+        if(encodedLength > destination.remaining())
         {
-            throw new IllegalArgumentException("invalid base64Values length");
+            throw new IllegalArgumentException("destination is too small");
         }
 
-        /* Codes_SRS_BASE64_21_001: [The decodeBase64Local shall decode the provided `base64Values` in a byte array using the Base64 format define in the RFC2045.] */
-        int numberOfEncodedBytes = numberOfValidBase64BytesWithoutPad(base64Values);
-        int indexOfFirstEncodedByte = 0;
-        int decodedIndex = 0;
-        byte[] decodedResult = new byte[base64EstimatedLength(base64Values)];
-
-        while(numberOfEncodedBytes >= BASE64_GROUP_SIZE)
+        byte[] source;
+        int offset;
+        if(dataValues.hasArray())
         {
-            byte c1 = byteToBase64(base64Values[indexOfFirstEncodedByte++]);
-            byte c2 = byteToBase64(base64Values[indexOfFirstEncodedByte++]);
-            byte c3 = byteToBase64(base64Values[indexOfFirstEncodedByte++]);
-            byte c4 = byteToBase64(base64Values[indexOfFirstEncodedByte++]);
-            decodedResult[decodedIndex++] = (byte)((c1 << HALF_NIBBLE) | (c2 >> ONE_NIBBLE));
-            decodedResult[decodedIndex++] = (byte)((c2 << ONE_NIBBLE) | (c3 >> HALF_NIBBLE));
-            decodedResult[decodedIndex++] = (byte)((c3 << ONE_AND_HALF_NIBBLE) | c4);
-            numberOfEncodedBytes -= BASE64_GROUP_SIZE;
+            source = dataValues.array();
+            offset = dataValues.arrayOffset() + dataValues.position();
+        }
+        else
+        {
+            source = new byte[length];
+            dataValues.duplicate().get(source);
+            offset = 0;
         }
 
-        if(numberOfEncodedBytes == 3)
+        if(destination.hasArray() && !destination.isReadOnly())
+        {
+            encodeBase64Internal(source, offset, length, destination.array(), destination.arrayOffset() + destination.position());
+            destination.position(destination.position() + encodedLength);
+        }
+        else
         {
-            byte c1 = byteToBase64(base64Values[indexOfFirstEncodedByte++]);
-            byte c2 = byteToBase64(base64Values[indexOfFirstEncodedByte++]);
-            byte c3 = byteToBase64(base64Values[indexOfFirstEncodedByte]);
-            decodedResult[decodedIndex++] = (byte)((c1 << HALF_NIBBLE) | (c2 >> ONE_NIBBLE));
-            decodedResult[decodedIndex] = (byte)((c2 << ONE_NIBBLE) | (c3 >> HALF_NIBBLE));
+            byte[] encoded = new byte[encodedLength];
+            encodeBase64Internal(source, offset, length, encoded, 0);
+            destination.put(encoded);
         }
+        dataValues.position(dataValues.position() + length);
+    }
 
-        if(numberOfEncodedBytes == 2)
+    /**
+     * Convert a range of bytes in MIME Base64 values, written to the provided stream in chunks of 4 KiB.
+     *
+     * @param dataValues is an array with the original values.
+     * @param offset is the position of the first byte to encode.
+     * @param length is the number of bytes to encode.
+     * @param outputStream is the stream that receives the base64 encoded values. It is not flushed nor closed.
+     * @throws IllegalArgumentException if the array or the stream is null, or if the range is out of the array.
+     * @throws IOException if the stream cannot be written.
+     */
+    public static void encodeBase64Local(byte[] dataValues, int offset, int length, OutputStream outputStream)
+            throws IllegalArgumentException, IOException
+    {
+        if((dataValues == null) || (outputStream == null))
         {
-            byte c1 = byteToBase64(base64Values[indexOfFirstEncodedByte++]);
-            byte c2 = byteToBase64(base64Values[indexOfFirstEncodedByte]);
-            decodedResult[decodedIndex] = (byte)((c1 << HALF_NIBBLE) | (c2 >> ONE_NIBBLE));
+            throw new IllegalArgumentException("null dataValues or outputStream");
         }
 
-        return decodedResult;
+        checkRange(dataValues.length, offset, length);
+        byte[] chunk = new byte[Math.min(encodedLength(length), STREAM_GROUPS_PER_CHUNK * BASE64_GROUP_SIZE)];
+        int end = offset + length;
+        while(offset < end)
+        {
+            int chunkLength = Math.min(end - offset, STREAM_GROUPS_PER_CHUNK * BYTE_GROUP_SIZE);
+            int encodedLength = encodeBase64Internal(dataValues, offset, chunkLength, chunk, 0);
+            outputStream.write(chunk, 0, encodedLength);
+            offset += chunkLength;
+        }
     }
 
     /**
-     * Convert a array of bytes in a array of MIME   Base64 values.
-     * <a href="http://www.ietf.org/rfc/rfc2045.txt">RFC 2045</a>.
+     * Getter for the number of MIME Base64 values that encode a number of bytes.
      *
-     * @param dataValues is an array of bytes with the original values
-     * @return an array of base64 encoded values
-     * @throws IllegalArgumentException if the provided base64 values are null, or do not fits the required length
+     * @param dataLength is the number of bytes to encode.
+     * @return the number of base64 values, padding included.
+     * @throws IllegalArgumentException if the length is negative, or if its encoding does not fit in an array.
      */
-    public static byte[] encodeBase64Local(byte[] dataValues) throws IllegalArgumentException
+    public static int encodedLength(int dataLength) throws IllegalArgumentException
     {
-        /* Codes_SRS_BASE64_21_006: [If the `dataValues` is null, the encodeBase64Local shall throw IllegalArgumentException.] */
-        if(dataValues == null)
+        if(dataLength < 0)
         {
-            throw new IllegalArgumentException("null or empty dataValues");
+            throw new IllegalArgumentException("negative dataLength");
         }
 
-        /* Codes_SRS_BASE64_21_007: [If the `dataValues` is empty, the encodeBase64Local shall return a empty byte array.] */
-        if(dataValues.length == 0)
+        long encodedLength = ((dataLength + (long)BYTE_GROUP_SIZE - 1) / BYTE_GROUP_SIZE) * BASE64_GROUP_SIZE;
+        if(encodedLength > Integer.MAX_VALUE)
         {
-            return new byte[0];
+            throw new IllegalArgumentException("dataLength is too big to be encoded");
         }
 
-        /* Codes_SRS_BASE64_21_005: [The encodeBase64Local shall encoded the provided `dataValues` in a byte array using the Base64 format define in the RFC2045.] */
-        return encodeBase64Internal(dataValues);
+        return (int)encodedLength;
     }
 
     /**
@@ -280,45 +390,131 @@ public final class Base64
         }
 
         /* Codes_SRS_BASE64_21_008: [The encodeBase64StringLocal shall encoded the provided `dataValues` in a string using the Base64 format define in the RFC2045.] */
-        return new String(encodeBase64Internal(dataValues));
+        return new String(encodeBase64Local(dataValues), StandardCharsets.US_ASCII);
     }
 
-    private static byte[] encodeBase64Internal(byte[] dataValues) throws IllegalArgumentException
+    private static void checkRange(int arrayLength, int offset, int length) throws IllegalArgumentException
     {
-        int encodedLength = (((dataValues.length - 1) / BYTE_GROUP_SIZE) + 1) * BASE64_GROUP_SIZE;
-        int destinationPosition = 0;
-        int currentPosition = 0;
+        if((offset < 0) || (length < 0) || (offset > arrayLength - length))
+        {
+            throw new IllegalArgumentException("offset and length out of the array");
+        }
+    }
 
-        byte[] encodedResult = new byte[encodedLength];
+    private static int numberOfValidBase64BytesWithoutPad(final byte[] base64Values, int offset, int length)
+    {
+        int validLength = length;
 
-        while((dataValues.length - currentPosition) >= BYTE_GROUP_SIZE)
+        if(base64Values[offset + validLength - 1] == BASE64_PAD)
         {
-            encodedResult[destinationPosition++] = base64ToByte((byte)((dataValues[currentPosition] >> HALF_NIBBLE) & ISOLATE_BASE64));
-            encodedResult[destinationPosition++] = base64ToByte((byte)(((dataValues[currentPosition] << ONE_NIBBLE) & ISOLATE_BASE64) |
-                ((dataValues[currentPosition + 1] >> ONE_NIBBLE) & ISOLATE_LSB_BASE64)));
-            encodedResult[destinationPosition++] = base64ToByte((byte)(((dataValues[currentPosition + 1] << HALF_NIBBLE) & ISOLATE_BASE64) |
-                ((dataValues[currentPosition + 2] >> ONE_AND_HALF_NIBBLE) & ISOLATE_MSB_BASE64)));
-            encodedResult[destinationPosition++] = base64ToByte((byte)(dataValues[currentPosition + 2] & ISOLATE_BASE64));
-            currentPosition += BYTE_GROUP_SIZE;
+            validLength--;
+        }
+
+        if(base64Values[offset + validLength - 1] == BASE64_PAD)
+        {
+            validLength--;
         }
 
-        if((dataValues.length - currentPosition) == 2)
+        return validLength;
+    }
+
+    /*
+        Decodes a range whose length is a multiple of 4 into a destination big enough for it. The values of a group are
+        combined first and checked once, an invalid value makes the combined group negative.
+     */
+    private static void decodeBase64Internal(byte[] base64Values, int offset, int length, byte[] destination, int destinationOffset)
+            throws IllegalArgumentException
+    {
+        if(length == 0)
         {
-            encodedResult[destinationPosition++] = base64ToByte((byte)((dataValues[currentPosition] >> HALF_NIBBLE) & ISOLATE_BASE64));
-            encodedResult[destinationPosition++] = base64ToByte((byte)(((dataValues[currentPosition] << ONE_NIBBLE) & ISOLATE_BASE64) |
-                ((dataValues[currentPosition + 1] >> ONE_NIBBLE) & ISOLATE_LSB_BASE64)));
-            encodedResult[destinationPosition++] = base64d16ToByte((byte)(dataValues[currentPosition + 1] & ISOLATE_LSB_BASE64));
-            encodedResult[destinationPosition] = BASE64_PAD;
+            return;
         }
 
-        if((dataValues.length - currentPosition) == 1)
+        int numberOfEncodedBytes = numberOfValidBase64BytesWithoutPad(base64Values, offset, length);
+        int end = offset + numberOfEncodedBytes - (numberOfEncodedBytes % BASE64_GROUP_SIZE);
+        int position = offset;
+        int decodedIndex = destinationOffset;
+
+        while(position < end)
         {
-            encodedResult[destinationPosition++] = base64ToByte((byte)((dataValues[currentPosition] >> HALF_NIBBLE) & ISOLATE_BASE64));
-            encodedResult[destinationPosition++] = base64d8ToByte((byte)(dataValues[currentPosition] & ISOLATE_MSB_BASE64));
-            encodedResult[destinationPosition++] = BASE64_PAD;
-            encodedResult[destinationPosition] = BASE64_PAD;
+            int group = (BASE64_VALUES[base64Values[position] & ISOLATE_BYTE] << THREE_AND_HALF_NIBBLES) |
+                    (BASE64_VALUES[base64Values[position + 1] & ISOLATE_BYTE] << THREE_NIBBLES) |
+                    (BASE64_VALUES[base64Values[position + 2] & ISOLATE_BYTE] << ONE_AND_HALF_NIBBLE) |
+                    BASE64_VALUES[base64Values[position + 3] & ISOLATE_BYTE];
+            if(group < 0)
+            {
+                throw new IllegalArgumentException("provided byte value out of base64 range");
+            }
+            destination[decodedIndex] = (byte)(group >> TWO_BYTES);
+            destination[decodedIndex + 1] = (byte)(group >> ONE_BYTE);
+            destination[decodedIndex + 2] = (byte)group;
+            position += BASE64_GROUP_SIZE;
+            decodedIndex += BYTE_GROUP_SIZE;
         }
 
-        return encodedResult;
+        int remaining = numberOfEncodedBytes % BASE64_GROUP_SIZE;
+        if(remaining == 0)
+        {
+            return;
+        }
+
+        // At most 2 pads are removed, so 2 or 3 values are left.
+        int c1 = BASE64_VALUES[base64Values[position] & ISOLATE_BYTE];
+        int c2 = BASE64_VALUES[base64Values[position + 1] & ISOLATE_BYTE];
+        int c3 = (remaining == 3) ? BASE64_VALUES[base64Values[position + 2] & ISOLATE_BYTE] : 0;
+        if((c1 | c2 | c3) < 0)
+        {
+            throw new IllegalArgumentException("provided byte value out of base64 range");
+        }
+
+        destination[decodedIndex] = (byte)((c1 << HALF_NIBBLE) | (c2 >> ONE_NIBBLE));
+        if(remaining == 3)
+        {
+            destination[decodedIndex + 1] = (byte)((c2 << ONE_NIBBLE) | (c3 >> HALF_NIBBLE));
+        }
+    }
+
+    /*
+        Encodes a range into a destination big enough for it, one group of 3 bytes at a time, and returns the number of
+        base64 values written.
+     */
+    private static int encodeBase64Internal(byte[] dataValues, int offset, int length, byte[] destination, int destinationOffset)
+    {
+        int end = offset + length - (length % BYTE_GROUP_SIZE);
+        int currentPosition = offset;
+        int destinationPosition = destinationOffset;
+
+        while(currentPosition < end)
+        {
+            int group = ((dataValues[currentPosition] & ISOLATE_BYTE) << TWO_BYTES) |
+                    ((dataValues[currentPosition + 1] & ISOLATE_BYTE) << ONE_BYTE) |
+                    (dataValues[currentPosition + 2] & ISOLATE_BYTE);
+            destination[destinationPosition] = BASE64_ALPHABET[group >>> THREE_AND_HALF_NIBBLES];
+            destination[destinationPosition + 1] = BASE64_ALPHABET[(group >>> THREE_NIBBLES) & ISOLATE_BASE64];
+            destination[destinationPosition + 2] = BASE64_ALPHABET[(group >>> ONE_AND_HALF_NIBBLE) & ISOLATE_BASE64];
+            destination[destinationPosition + 3] = BASE64_ALPHABET[group & ISOLATE_BASE64];
+            currentPosition += BYTE_GROUP_SIZE;
+            destinationPosition += BASE64_GROUP_SIZE;
+        }
+
+        int remaining = length % BYTE_GROUP_SIZE;
+        if(remaining == 2)
+        {
+            int group = ((dataValues[currentPosition] & ISOLATE_BYTE) << ONE_BYTE) | (dataValues[currentPosition + 1] & ISOLATE_BYTE);
+            destination[destinationPosition++] = BASE64_ALPHABET[group >>> (ONE_BYTE + HALF_NIBBLE)];
+            destination[destinationPosition++] = BASE64_ALPHABET[(group >>> ONE_NIBBLE) & ISOLATE_BASE64];
+            destination[destinationPosition++] = BASE64_ALPHABET[(group << HALF_NIBBLE) & ISOLATE_BASE64];
+            destination[destinationPosition++] = BASE64_PAD;
+        }
+        else if(remaining == 1)
+        {
+            int value = dataValues[currentPosition] & ISOLATE_BYTE;
+            destination[destinationPosition++] = BASE64_ALPHABET[value >>> HALF_NIBBLE];
+            destination[destinationPosition++] = BASE64_ALPHABET[(value << ONE_NIBBLE) & ISOLATE_BASE64];
+            destination[destinationPosition++] = BASE64_PAD;
+            destination[destinationPosition++] = BASE64_PAD;
+        }
+
+        return destinationPosition - destinationOffset;
     }
 }
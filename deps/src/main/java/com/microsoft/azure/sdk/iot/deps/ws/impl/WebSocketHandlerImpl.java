@@ -7,15 +7,24 @@ package com.microsoft.azure.sdk.iot.deps.ws.impl;
 import com.microsoft.azure.sdk.iot.deps.ws.WebSocketHandler;
 import com.microsoft.azure.sdk.iot.deps.ws.WebSocketHeader;
 
-import java.io.ByteArrayOutputStream;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.security.SecureRandom;
 import java.util.Map;
-import java.util.Random;
 
 public class WebSocketHandlerImpl implements WebSocketHandler
 {
+    // Seeding a SecureRandom is expensive, so every thread keeps one for the masking keys of all its frames
+    private static final ThreadLocal<SecureRandom> MASKING_KEY_SOURCE = new ThreadLocal<SecureRandom>()
+    {
+        @Override
+        protected SecureRandom initialValue()
+        {
+            return new SecureRandom();
+        }
+    };
+
     private WebSocketUpgrade _webSocketUpgrade = null;
 
     @Override
@@ -92,14 +101,18 @@ public class WebSocketHandlerImpl implements WebSocketHandler
             // Get data length
             final int DATA_LENGTH = srcBuffer.remaining();
 
-            // Auto growing buffer for the WS frame, initialized to minimum size
-            ByteArrayOutputStream webSocketFrame = new ByteArrayOutputStream(WebSocketHeader.MIN_HEADER_LENGTH_MASKED + DATA_LENGTH);
+            // The frame is written in place in the destination buffer
+            dstBuffer.clear();
+            if (dstBuffer.capacity() < calculateHeaderSize(DATA_LENGTH) + DATA_LENGTH)
+            {
+                throw new OutOfMemoryError("insufficient output buffer size");
+            }
 
             // Create the first byte
             // We always send final WebSocket frame
             // We always send binary message (AMQP)
             byte firstByte = (byte) (WebSocketHeader.FINBIT_MASK | WebSocketHeader.OPCODE_BINARY);
-            webSocketFrame.write(firstByte);
+            dstBuffer.put(firstByte);
 
             // Create the second byte
             // RFC: "client MUST mask all frames that it sends to the server"
@@ -109,60 +122,42 @@ public class WebSocketHandlerImpl implements WebSocketHandler
             if (DATA_LENGTH <= WebSocketHeader.PAYLOAD_SHORT_MAX)
             {
                 secondByte = (byte) (secondByte | DATA_LENGTH);
-                webSocketFrame.write(secondByte);
+                dstBuffer.put(secondByte);
             }
             // RFC: If 126, the following 2 bytes interpreted as a 16-bit unsigned integer are the payload length
             else if (DATA_LENGTH <= WebSocketHeader.PAYLOAD_MEDIUM_MAX)
             {
                 // Create payload byte
                 secondByte = (byte) (secondByte | WebSocketHeader.PAYLOAD_EXTENDED_16);
-                webSocketFrame.write(secondByte);
+                dstBuffer.put(secondByte);
 
                 // Create extended length bytes
-                webSocketFrame.write((byte) (DATA_LENGTH >>> 8));
-                webSocketFrame.write((byte) (DATA_LENGTH));
+                dstBuffer.put((byte) (DATA_LENGTH >>> 8));
+                dstBuffer.put((byte) (DATA_LENGTH));
             }
             // RFC: If 127, the following 8 bytes interpreted as a 64-bit unsigned integer (the most significant bit MUST be 0) are the payload length.
             // No need for "else if" because if it is longer than what 8 byte length can hold... all bets are off anyway
             else
             {
                 secondByte = (byte) (secondByte | WebSocketHeader.PAYLOAD_EXTENDED_64);
-                webSocketFrame.write(secondByte);
-
-                webSocketFrame.write((byte) (DATA_LENGTH >>> 56));
-                webSocketFrame.write((byte) (DATA_LENGTH >>> 48));
-                webSocketFrame.write((byte) (DATA_LENGTH >>> 40));
-                webSocketFrame.write((byte) (DATA_LENGTH >>> 32));
-                webSocketFrame.write((byte) (DATA_LENGTH >>> 24));
-                webSocketFrame.write((byte) (DATA_LENGTH >>> 16));
-                webSocketFrame.write((byte) (DATA_LENGTH >>> 8));
-                webSocketFrame.write((byte) (DATA_LENGTH));
+                dstBuffer.put(secondByte);
+
+                // The length is an int, so the 4 most significant bytes are 0
+                dstBuffer.put((byte) 0);
+                dstBuffer.put((byte) 0);
+                dstBuffer.put((byte) 0);
+                dstBuffer.put((byte) 0);
+                dstBuffer.put((byte) (DATA_LENGTH >>> 24));
+                dstBuffer.put((byte) (DATA_LENGTH >>> 16));
+                dstBuffer.put((byte) (DATA_LENGTH >>> 8));
+                dstBuffer.put((byte) (DATA_LENGTH));
             }
 
             // Write mask
-            webSocketFrame.write(MASKING_KEY[0]);
-            webSocketFrame.write(MASKING_KEY[1]);
-            webSocketFrame.write(MASKING_KEY[2]);
-            webSocketFrame.write(MASKING_KEY[3]);
+            dstBuffer.put(MASKING_KEY, 0, MASKING_KEY.length);
 
             // Write masked data
-            for (int i = 0; i < DATA_LENGTH; i++)
-            {
-                byte nextByte = srcBuffer.get();
-                nextByte ^= MASKING_KEY[i % 4];
-                webSocketFrame.write(nextByte);
-            }
-
-            // Copy frame to destination buffer
-            dstBuffer.clear();
-            if (dstBuffer.capacity() >= webSocketFrame.size())
-            {
-                dstBuffer.put(webSocketFrame.toByteArray());
-            }
-            else
-            {
-                throw new OutOfMemoryError("insufficient output buffer size");
-            }
+            maskPayload(srcBuffer, dstBuffer, MASKING_KEY, DATA_LENGTH);
         }
         else
         {
@@ -266,12 +261,47 @@ public class WebSocketHandlerImpl implements WebSocketHandler
     protected byte[] createRandomMaskingKey()
     {
         final byte[] maskingKey = new byte[4];
-        Random random = new SecureRandom();
-        random.nextBytes(maskingKey);
+        MASKING_KEY_SOURCE.get().nextBytes(maskingKey);
 
         return maskingKey;
     }
 
+    /**
+     * Copy the payload from the source buffer to the destination buffer, XOR-ed with the masking key.
+     * The payload is masked 8 bytes at a time, with the key repeated in a long, and the tail one byte at a time.
+     *
+     * @param srcBuffer the payload, from its position
+     * @param dstBuffer the frame, at the position of the payload
+     * @param maskingKey the 4 bytes of the masking key
+     * @param length the number of bytes to mask
+     */
+    private static void maskPayload(ByteBuffer srcBuffer, ByteBuffer dstBuffer, byte[] maskingKey, int length)
+    {
+        ByteOrder srcOrder = srcBuffer.order();
+        ByteOrder dstOrder = dstBuffer.order();
+        srcBuffer.order(ByteOrder.BIG_ENDIAN);
+        dstBuffer.order(ByteOrder.BIG_ENDIAN);
+
+        // Big endian, so the first byte of the key is the first byte of the long
+        long key = ((maskingKey[0] & 0xFFL) << 24) | ((maskingKey[1] & 0xFFL) << 16) | ((maskingKey[2] & 0xFFL) << 8) | (maskingKey[3] & 0xFFL);
+        key |= key << 32;
+
+        int i = 0;
+        for (; i + 8 <= length; i += 8)
+        {
+            dstBuffer.putLong(srcBuffer.getLong() ^ key);
+        }
+
+        // i is a multiple of 8, so the key restarts at its first byte
+        for (; i < length; i++)
+        {
+            dstBuffer.put((byte) (srcBuffer.get() ^ maskingKey[i & 3]));
+        }
+
+        srcBuffer.order(srcOrder);
+        dstBuffer.order(dstOrder);
+    }
+
     public int calculateHeaderSize(int payloadSize)
     {
         int retVal = 0;
@@ -229,7 +229,12 @@ public class WebSocketImpl implements WebSocket, TransportLayer
 
         private void readInputBuffer()
         {
-            ByteBufferUtils.pour(_inputBuffer, _temp);
+            //Same as ByteBufferUtils.pour, without the duplicate buffer it creates for every call
+            int count = Math.min(_inputBuffer.remaining(), _temp.remaining());
+            int inputLimit = _inputBuffer.limit();
+            _inputBuffer.limit(_inputBuffer.position() + count);
+            _temp.put(_inputBuffer);
+            _inputBuffer.limit(inputLimit);
         }
 
         private boolean sendToUnderlyingInput()
@@ -355,22 +360,13 @@ public class WebSocketImpl implements WebSocket, TransportLayer
                                     readInputBuffer();
                                     _temp.flip();
 
-                                    final byte[] data;
-                                    if(_temp.remaining() >= _lastLength-_bytesRead)
-                                    {
-                                        data = new byte[(int)(_lastLength-_bytesRead)];
-                                        _temp.get(data, 0, (int)(_lastLength-_bytesRead));
-                                        _wsInputBuffer.put(data);
-                                        _bytesRead += _lastLength-_bytesRead;
-                                    }
-                                    //Otherwise the remaining bytes is < the rest that we need
-                                    else
-                                    {
-                                        data = new byte[_temp.remaining()];
-                                        _temp.get(data);
-                                        _wsInputBuffer.put(data);
-                                        _bytesRead += data.length;
-                                    }
+                                    //Copy the rest of the frame, or what we have of it, without an intermediate array
+                                    int frameBytes = (int) Math.min(_temp.remaining(), _lastLength - _bytesRead);
+                                    int tempLimit = _temp.limit();
+                                    _temp.limit(_temp.position() + frameBytes);
+                                    _wsInputBuffer.put(_temp);
+                                    _temp.limit(tempLimit);
+                                    _bytesRead += frameBytes;
 
                                     //Send whatever we have
                                     sendToUnderlyingInput();
@@ -0,0 +1,138 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.deps.serializer;
+
+import com.google.gson.JsonElement;
+import com.microsoft.azure.sdk.iot.deps.serializer.QueryResponseReader;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.*;
+
+/*
+    Unit tests for QueryResponseReader
+ */
+public class QueryResponseReaderTest
+{
+    private static final String VALID_JSON = "{\"deviceId\":\"devA\",\"properties\":{\"reported\":{\"temperature\":21}}}";
+
+    private static byte[] bytesOf(String json)
+    {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void readsTheItemsOneByOne()
+    {
+        //arrange
+        QueryResponseReader reader = new QueryResponseReader(bytesOf("[" + VALID_JSON + ",null," + VALID_JSON + "]"));
+
+        //act - assert
+        assertTrue(reader.hasNext());
+        assertEquals(VALID_JSON, reader.nextJson());
+        assertTrue(reader.hasNext());
+        assertEquals("null", reader.nextJson());
+        assertTrue(reader.hasNext());
+        assertEquals(VALID_JSON, reader.nextJson());
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    public void nextJsonElementReturnsTheItemTree()
+    {
+        //arrange
+        QueryResponseReader reader = new QueryResponseReader(bytesOf("[" + VALID_JSON + ",null]"));
+
+        //act
+        JsonElement item = reader.nextJsonElement();
+        JsonElement nullItem = reader.nextJsonElement();
+
+        //assert
+        assertEquals("devA", item.getAsJsonObject().get("deviceId").getAsString());
+        assertNull(nullItem);
+    }
+
+    @Test
+    public void nextMapReturnsTheItemFields()
+    {
+        //arrange
+        QueryResponseReader reader = new QueryResponseReader(bytesOf("[" + VALID_JSON + "]"));
+
+        //act
+        Map<String, Object> item = reader.nextMap();
+
+        //assert
+        assertEquals("devA", item.get("deviceId"));
+        Map<?, ?> reported = (Map<?, ?>) ((Map<?, ?>) item.get("properties")).get("reported");
+        assertEquals(21.0, reported.get("temperature"));
+    }
+
+    @Test
+    public void emptyArrayHasNoItem()
+    {
+        //arrange
+        QueryResponseReader reader = new QueryResponseReader(bytesOf("[]"));
+
+        //act - assert
+        assertFalse(reader.hasNext());
+    }
+
+    @Test (expected = NoSuchElementException.class)
+    public void nextJsonThrowsAfterTheLastItem()
+    {
+        //arrange
+        QueryResponseReader reader = new QueryResponseReader(bytesOf("[" + VALID_JSON + "]"));
+        reader.nextJson();
+
+        //act
+        reader.nextJson();
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnNullJson()
+    {
+        //act
+        new QueryResponseReader(null);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnEmptyJson()
+    {
+        //act
+        new QueryResponseReader(new byte[0]);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsIfTheJsonIsNotAnArray()
+    {
+        //act
+        new QueryResponseReader(bytesOf(VALID_JSON));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void nextJsonThrowsIfTheItemIsNotAnObject()
+    {
+        //arrange
+        QueryResponseReader reader = new QueryResponseReader(bytesOf("[1]"));
+
+        //act
+        reader.nextJson();
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void hasNextThrowsIfTheJsonContinuesAfterTheArray()
+    {
+        //arrange
+        QueryResponseReader reader = new QueryResponseReader(bytesOf("[" + VALID_JSON + "] abc"));
+        reader.nextJson();
+
+        //act
+        reader.hasNext();
+    }
+}
@@ -1997,6 +1997,35 @@ public class TwinParserTest {
         twinParser.updateDesiredProperty(json);
     }
 
+    /* Tests_SRS_TWINPARSER_21_092: [If the provided json is not valid, the updateDesiredProperty shall throws IllegalArgumentException.] */
+    @Test
+    public void updateDesiredPropertyJsonNullValueFailed()
+    {
+        // Arrange
+        OnDesiredCallback onDesiredCallback = new OnDesiredCallback();
+        TwinParser twinParser = new TwinParser();
+        twinParser.setDesiredCallback(onDesiredCallback);
+        Map<String, Object> newValues = new HashMap<>(PROPERTIES_SAMPLE_MAP);
+        twinParser.updateDesiredProperty(newValues);
+
+        String json = "null";
+
+        // Act
+        try
+        {
+            twinParser.updateDesiredProperty(json);
+            fail("A null patch shall not be accepted");
+        }
+        catch (IllegalArgumentException expected)
+        {
+            //Expected behavior, don't do anything
+        }
+
+        // Assert
+        assertNull(onDesiredCallback.diff);
+        assertTwin(twinParser, newValues, null, null);
+    }
+
     /* Tests_SRS_TWINPARSER_21_065: [If the provided json is empty, the updateDesiredProperty shall not change the collection and not call the OnDesiredCallback.] */
     @Test
     public void updateDesiredPropertyJsonEmptySucceed()
@@ -2047,6 +2076,57 @@ public class TwinParserTest {
         assertTwin(twinParser, newValues, null, null);
     }
 
+    @Test
+    public void updateDesiredPropertyJsonMergesInnerMapsSucceed()
+    {
+        // Arrange
+        OnDesiredCallback onDesiredCallback = new OnDesiredCallback();
+        TwinParser twinParser = new TwinParser();
+        twinParser.updateDesiredProperty("{\"keys\":{\"key1\":\"value1\",\"key2\":{\"key3\":\"value3\",\"key4\":\"value4\"}}}");
+        twinParser.setDesiredCallback(onDesiredCallback);
+
+        String json = "{\"keys\":{\"key1\":\"value1\",\"key2\":{\"key3\":\"value5\"}}}";
+
+        // Act
+        twinParser.updateDesiredProperty(json);
+
+        // Assert
+        Map<String, Object> innerChange = new HashMap<>();
+        innerChange.put("key3", "value5");
+        Map<String, Object> change = new HashMap<>();
+        change.put("key2", innerChange);
+        assertThat(onDesiredCallback.diff.size(), is(1));
+        Helpers.assertMap((Map<String, Object>)onDesiredCallback.diff.get("keys"), change);
+
+        Map<String, Object> innerValues = new HashMap<>();
+        innerValues.put("key3", "value5");
+        innerValues.put("key4", "value4");
+        Map<String, Object> values = new HashMap<>();
+        values.put("key1", "value1");
+        values.put("key2", innerValues);
+        Map<String, Object> desired = new HashMap<>();
+        desired.put("keys", values);
+        assertTwin(twinParser, desired, null, null);
+    }
+
+    @Test
+    public void updateDesiredPropertyJsonOldVersionIgnored()
+    {
+        // Arrange
+        OnDesiredCallback onDesiredCallback = new OnDesiredCallback();
+        TwinParser twinParser = new TwinParser();
+        twinParser.updateDesiredProperty("{\"key1\":\"value1\",\"$version\":5}");
+        twinParser.setDesiredCallback(onDesiredCallback);
+
+        // Act
+        twinParser.updateDesiredProperty("{\"key1\":\"value2\",\"$version\":5}");
+
+        // Assert
+        assertNull(onDesiredCallback.diff);
+        assertThat(twinParser.getDesiredPropertyVersion(), is(5));
+        assertThat(twinParser.getDesiredPropertyMap().get("key1").toString(), is("value1"));
+    }
+
     /* Tests_SRS_TWINPARSER_21_159: [The updateDeviceManager shall replace the `deviceId` by the provided one.] */
     /* Tests_SRS_TWINPARSER_21_166: [The updateDeviceManager shall return a json with the new device management information.] */
     @Test
@@ -6,9 +6,14 @@ package tests.unit.com.microsoft.azure.sdk.iot.deps.util;
 import com.microsoft.azure.sdk.iot.deps.util.Base64;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 /**
  * Unit tests for Base64
@@ -274,4 +279,136 @@ public class Base64Test
         // assert
         assertEquals(expectedBase64Result, result);
     }
+
+    @Test
+    public void encodeBase64IntoArraySuccess() throws IllegalArgumentException
+    {
+        // arrange
+        byte[] dataValues = "xxThis is a valid test (aBcDeFgHiJKLmnoPqRstuVWXyz)-01234567xx".getBytes();
+        String expectedBase64Result = "VGhpcyBpcyBhIHZhbGlkIHRlc3QgKGFCY0RlRmdIaUpLTG1ub1BxUnN0dVZXWHl6KS0wMTIzNDU2Nw==";
+        byte[] destination = new byte[expectedBase64Result.length() + 3];
+
+        // act
+        int result = Base64.encodeBase64Local(dataValues, 2, dataValues.length - 4, destination, 3);
+
+        // assert
+        assertEquals(expectedBase64Result.length(), result);
+        assertEquals(expectedBase64Result, new String(destination, 3, result));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void encodeBase64IntoArrayThrowsOnSmallDestination() throws IllegalArgumentException
+    {
+        // arrange
+        byte[] dataValues = "This is a valid test".getBytes();
+
+        // act
+        Base64.encodeBase64Local(dataValues, 0, dataValues.length, new byte[Base64.encodedLength(dataValues.length) - 1], 0);
+    }
+
+    @Test
+    public void encodeBase64IntoByteBufferSuccess() throws IllegalArgumentException
+    {
+        // arrange
+        String textToEncode = "This is a valid test (aBcDeFgHiJKLmnoPqRstuVWXyz)-012345678";
+        String expectedBase64Result = "VGhpcyBpcyBhIHZhbGlkIHRlc3QgKGFCY0RlRmdIaUpLTG1ub1BxUnN0dVZXWHl6KS0wMTIzNDU2Nzg=";
+        ByteBuffer dataValues = ByteBuffer.wrap(textToEncode.getBytes());
+        ByteBuffer destination = ByteBuffer.allocateDirect(expectedBase64Result.length());
+
+        // act
+        Base64.encodeBase64Local(dataValues, destination);
+
+        // assert
+        assertEquals(0, dataValues.remaining());
+        assertEquals(0, destination.remaining());
+        destination.flip();
+        byte[] result = new byte[destination.remaining()];
+        destination.get(result);
+        assertEquals(expectedBase64Result, new String(result));
+    }
+
+    @Test
+    public void encodeBase64IntoStreamSuccess() throws IllegalArgumentException, IOException
+    {
+        // arrange
+        byte[] dataValues = new byte[10000];
+        for (int i = 0; i < dataValues.length; i++)
+        {
+            dataValues[i] = (byte)(i * 31);
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // act
+        Base64.encodeBase64Local(dataValues, 0, dataValues.length, outputStream);
+
+        // assert
+        assertArrayEquals(Base64.encodeBase64Local(dataValues), outputStream.toByteArray());
+    }
+
+    @Test
+    public void decodeBase64IntoArraySuccess() throws IllegalArgumentException
+    {
+        // arrange
+        byte[] base64Values = "**VGhpcyBpcyBhIHZhbGlkIHRlc3QgKGFCY0RlRmdIaUpLTG1ub1BxUnN0dVZXWHl6KS0wMTIzNDU2Nzg=**".getBytes();
+        String expectedTextResult = "This is a valid test (aBcDeFgHiJKLmnoPqRstuVWXyz)-012345678";
+        byte[] destination = new byte[expectedTextResult.length() + 1];
+
+        // act
+        int result = Base64.decodeBase64Local(base64Values, 2, base64Values.length - 4, destination, 1);
+
+        // assert
+        assertEquals(expectedTextResult.length(), result);
+        assertEquals(expectedTextResult, new String(destination, 1, result));
+    }
+
+    @Test
+    public void decodeBase64IntoByteBufferSuccess() throws IllegalArgumentException
+    {
+        // arrange
+        String base64ToDecode = "VGhpcyBpcyBhIHZhbGlkIHRlc3QgKGFCY0RlRmdIaUpLTG1ub1BxUnN0dVZXWHl6KS0wMTIzNDU2Nw==";
+        String expectedTextResult = "This is a valid test (aBcDeFgHiJKLmnoPqRstuVWXyz)-01234567";
+        ByteBuffer base64Values = ByteBuffer.wrap(base64ToDecode.getBytes());
+        ByteBuffer destination = ByteBuffer.allocate(100);
+
+        // act
+        Base64.decodeBase64Local(base64Values, destination);
+
+        // assert
+        assertEquals(0, base64Values.remaining());
+        assertEquals(expectedTextResult, new String(destination.array(), 0, destination.position()));
+    }
+
+    @Test
+    public void decodeBase64IntoByteBufferThrowsOnInvalidValueAndKeepsPositions() throws IllegalArgumentException
+    {
+        // arrange
+        ByteBuffer base64Values = ByteBuffer.wrap("VGhp*yBp".getBytes());
+        ByteBuffer destination = ByteBuffer.allocate(100);
+
+        // act
+        try
+        {
+            Base64.decodeBase64Local(base64Values, destination);
+            fail("decodeBase64Local shall throw on a value out of base64 range");
+        }
+        catch (IllegalArgumentException expected)
+        {
+            // assert
+            assertEquals(0, base64Values.position());
+            assertEquals(0, destination.position());
+        }
+    }
+
+    @Test
+    public void encodedLengthAndDecodedLengthSuccess() throws IllegalArgumentException
+    {
+        // act - assert
+        assertEquals(0, Base64.encodedLength(0));
+        assertEquals(4, Base64.encodedLength(1));
+        assertEquals(4, Base64.encodedLength(3));
+        assertEquals(8, Base64.encodedLength(4));
+        assertEquals(1, Base64.decodedLength("QQ==".getBytes(), 0, 4));
+        assertEquals(2, Base64.decodedLength("QUI=".getBytes(), 0, 4));
+        assertEquals(3, Base64.decodedLength("QUJD".getBytes(), 0, 4));
+    }
 }
@@ -6,6 +6,7 @@ package com.microsoft.azure.sdk.iot.device;
 import com.microsoft.azure.sdk.iot.deps.serializer.ParserUtility;
 import com.microsoft.azure.sdk.iot.device.DeviceTwin.*;
 import com.microsoft.azure.sdk.iot.device.fileupload.FileUpload;
+import com.microsoft.azure.sdk.iot.device.fileupload.FileUploadOptions;
 import com.microsoft.azure.sdk.iot.device.transport.amqps.IoTHubConnectionType;
 
 import java.io.Closeable;
@@ -15,8 +16,11 @@ import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import static com.microsoft.azure.sdk.iot.device.IotHubClientProtocol.AMQPS;
 import static com.microsoft.azure.sdk.iot.device.IotHubClientProtocol.AMQPS_WS;
@@ -102,11 +106,16 @@ public final class DeviceClient implements Closeable
     private static final String SET_SEND_INTERVAL = "SetSendInterval";
     private static final String SET_CERTIFICATE_PATH = "SetCertificatePath";
     private static final String SET_SAS_TOKEN_EXPIRY_TIME = "SetSASTokenExpiryTime";
+    private static final String SET_REPORTED_PROPERTIES_COALESCING_WINDOW = "SetReportedPropertiesCoalescingWindow";
+    private static final String SET_DEVICE_TWIN_CACHE = "SetDeviceTwinCache";
+    private static final String SET_AMQP_RECEIVE_PREFETCH = "SetAmqpReceivePrefetch";
 
     private DeviceClientConfig config;
     private DeviceIO deviceIO;
 
     private DeviceTwin deviceTwin;
+    private long reportedPropertiesCoalescingWindowMillis = 0;
+    private DeviceTwinCache deviceTwinCache;
     private DeviceMethod deviceMethod;
     private FileUpload fileUpload;
 
@@ -353,6 +362,8 @@ public final class DeviceClient implements Closeable
         }
         else
         {
+            flushReportedProperties();
+
             // Codes_SRS_DEVICECLIENT_11_040: [The function shall finish all ongoing tasks.]
             // Codes_SRS_DEVICECLIENT_11_041: [The function shall cancel all recurring tasks.]
             while (!this.deviceIO.isEmpty())
@@ -396,6 +407,8 @@ public final class DeviceClient implements Closeable
         }
         else
         {
+            flushReportedProperties();
+
             /* Codes_SRS_DEVICECLIENT_21_008: [The closeNow shall closeNow the deviceIO connection.] */
             /* Codes_SRS_DEVICECLIENT_21_009: [If the closing a connection via deviceIO is not successful, the closeNow shall throw IOException.] */
             this.deviceIO.close();
@@ -474,6 +487,35 @@ public final class DeviceClient implements Closeable
     public void startDeviceTwin(IotHubEventCallback deviceTwinStatusCallback, Object deviceTwinStatusCallbackContext,
                                 PropertyCallBack genericPropertyCallBack, Object genericPropertyCallBackContext)
             throws IOException
+    {
+        startDeviceTwin(deviceTwinStatusCallback, deviceTwinStatusCallbackContext,
+                genericPropertyCallBack, genericPropertyCallBackContext, null, false);
+    }
+
+    /**
+     * Starts the device twin, delivering the desired property changes on the provided executor.
+     *
+     * By default the property callbacks run on the thread that receives the twin messages, so a slow callback holds
+     * the next twin responses and messages of the device until it returns. With an executor, that thread is free as
+     * soon as the changes are queued. The changes are still delivered in the order they arrived.
+     *
+     * @param deviceTwinStatusCallback the IotHubEventCallback callback for providing the status of Device Twin operations. Cannot be {@code null}.
+     * @param deviceTwinStatusCallbackContext the context to be passed to the status callback. Can be {@code null}.
+     * @param genericPropertyCallBack the PropertyCallBack callback for providing any changes in desired properties. Cannot be {@code null}.
+     * @param genericPropertyCallBackContext the context to be passed to the property callback. Can be {@code null}.
+     * @param executor the executor that runs the property callbacks. Can be {@code null} to run them on the receiving
+     *                 thread. The client does not shut it down on close.
+     * @param parallelPerProperty whether the changes of different properties can be delivered at the same time, the
+     *                            changes of one property are always delivered one at a time.
+     *
+     * @throws IllegalArgumentException if the callback is {@code null}
+     * @throws UnsupportedOperationException if called more than once on the same device
+     * @throws IOException if called when client is not opened
+     */
+    public void startDeviceTwin(IotHubEventCallback deviceTwinStatusCallback, Object deviceTwinStatusCallbackContext,
+                                PropertyCallBack genericPropertyCallBack, Object genericPropertyCallBackContext,
+                                Executor executor, boolean parallelPerProperty)
+            throws IOException
     {
         if (!this.deviceIO.isOpen())
         {
@@ -497,6 +539,13 @@ public final class DeviceClient implements Closeable
              */
             deviceTwin = new DeviceTwin(this.deviceIO, this.config, deviceTwinStatusCallback, deviceTwinStatusCallbackContext,
                     genericPropertyCallBack, genericPropertyCallBackContext);
+            if (this.reportedPropertiesCoalescingWindowMillis > 0)
+            {
+                deviceTwin.setReportedPropertiesCoalescingWindow(this.reportedPropertiesCoalescingWindowMillis);
+            }
+            deviceTwin.setCache(this.deviceTwinCache);
+            // The executor is in place before the first twin GET, so no change is delivered on the receive thread.
+            deviceTwin.setDesiredPropertyCallbackExecutor(executor, parallelPerProperty);
             deviceTwin.getDeviceTwin();
         }
         else
@@ -581,6 +630,44 @@ public final class DeviceClient implements Closeable
 
     }
 
+    /**
+     * Sends reported properties, and reports the status of the patch that carries them on the provided callback.
+     * With the option SetReportedPropertiesCoalescingWindow, the properties can share the patch with the ones
+     * reported by other calls in the same window, and the callback completes when that patch does.
+     *
+     * @param reportedProperties the Set for desired properties and their corresponding callback and context. Cannot be {@code null}.
+     * @param reportedPropertiesCallback the callback invoked with the status of the patch. Cannot be {@code null}.
+     * @param reportedPropertiesCallbackContext the context for the callback. Can be {@code null}.
+     *
+     * @throws IOException if called when client is not opened or called before starting twin.
+     * @throws IllegalArgumentException if reportedProperties is null or empty, or if the callback is null.
+     */
+    public void sendReportedProperties(Set<Property> reportedProperties, IotHubEventCallback reportedPropertiesCallback,
+                                       Object reportedPropertiesCallbackContext) throws IOException
+    {
+        if (this.deviceTwin == null)
+        {
+            throw new IOException("Start twin before using it");
+        }
+
+        if (!this.deviceIO.isOpen())
+        {
+            throw new IOException("Open the client connection before using it.");
+        }
+
+        if (reportedProperties == null || reportedProperties.isEmpty())
+        {
+            throw new IllegalArgumentException("Reported properties set cannot be null or empty.");
+        }
+
+        if (reportedPropertiesCallback == null)
+        {
+            throw new IllegalArgumentException("Callback cannot be null");
+        }
+
+        this.deviceTwin.updateReportedProperties(reportedProperties, reportedPropertiesCallback, reportedPropertiesCallbackContext);
+    }
+
     /**
      * Subscribes to device methods
      *
@@ -626,6 +713,55 @@ public final class DeviceClient implements Closeable
         this.deviceMethod.subscribeToDeviceMethod(deviceMethodCallback, deviceMethodCallbackContext);
     }
 
+    /**
+     * Subscribes to device methods, running the method callbacks on the provided executor.
+     *
+     * By default the callbacks run one at a time on the thread that receives the requests, so a slow method holds
+     * the other methods, the twin and the messages of the device until it returns. With an executor, independent
+     * methods run at the same time and the receive thread is free as soon as the request is queued.
+     *
+     * @param deviceMethodCallback Callback on which device methods shall be invoked. Cannot be {@code null}.
+     * @param deviceMethodCallbackContext Context for device method callback. Can be {@code null}.
+     * @param deviceMethodStatusCallback Callback for providing IotHub status for device methods. Cannot be {@code null}.
+     * @param deviceMethodStatusCallbackContext Context for device method status callback. Can be {@code null}.
+     * @param executor Executor that runs the device method callbacks. Cannot be {@code null}. The client does not
+     *                 shut it down on close.
+     * @param maxConcurrentCallsPerMethod How many calls of the same method name can run at the same time, the next
+     *                                    requests for that method wait in arrival order. Shall be at least 1.
+     *
+     * @throws IOException if called when client is not opened.
+     * @throws IllegalArgumentException if either callback or the executor are null, or if maxConcurrentCallsPerMethod is less than 1.
+     */
+    public void subscribeToDeviceMethod(DeviceMethodCallback deviceMethodCallback, Object deviceMethodCallbackContext,
+                                        IotHubEventCallback deviceMethodStatusCallback, Object deviceMethodStatusCallbackContext,
+                                        Executor executor, int maxConcurrentCallsPerMethod)
+            throws IOException
+    {
+        if (!this.deviceIO.isOpen())
+        {
+            throw new IOException("Open the client connection before using it.");
+        }
+
+        if (deviceMethodCallback == null || deviceMethodStatusCallback == null || executor == null)
+        {
+            throw new IllegalArgumentException("Callback and executor cannot be null");
+        }
+
+        if (maxConcurrentCallsPerMethod < 1)
+        {
+            throw new IllegalArgumentException("maxConcurrentCallsPerMethod shall be at least 1");
+        }
+
+        if (this.deviceMethod == null)
+        {
+            this.deviceMethod = new DeviceMethod(this.deviceIO, this.config, deviceMethodStatusCallback, deviceMethodStatusCallbackContext);
+        }
+
+        // The executor is in place before the subscription, so no request runs on the receive thread.
+        this.deviceMethod.setExecutor(executor, maxConcurrentCallsPerMethod);
+        this.deviceMethod.subscribeToDeviceMethod(deviceMethodCallback, deviceMethodCallbackContext);
+    }
+
     /**
      * Asynchronously upload a stream to the IoT Hub.
      *
@@ -685,6 +821,109 @@ public final class DeviceClient implements Closeable
         this.fileUpload.uploadToBlobAsync(destinationBlobName, inputStream, streamLength, callback, callbackContext);
     }
 
+    /**
+     * Asynchronously upload a stream to the IoT Hub in blocks, several blocks at the same time.
+     *
+     * <p>
+     *     If the upload fails, a new upload of the same stream with the same destination blob name and the same
+     *     options only sends the blocks that did not reach the storage, see {@link FileUploadOptions}.
+     * </p>
+     *
+     * @param destinationBlobName is a string with the name of the file in the storage.
+     * @param inputStream is a InputStream with the stream to upload in the blob.
+     * @param streamLength is a long with the number of bytes in the stream to upload.
+     * @param options is the block size and the number of blocks uploaded at the same time.
+     * @param callback the callback to be invoked when a file is uploaded.
+     * @param callbackContext a context to be passed to the callback. Can be {@code null}.
+     *
+     * @throws IllegalArgumentException if the provided blob name, or the stream is {@code null},
+     *          empty or not valid, or if the options or the callback is {@code null}.
+     * @throws IOException if the client cannot create a instance of the FileUpload or the transport.
+     * @throws UnsupportedOperationException if this method is called when using x509 authentication
+     */
+    public void uploadToBlobAsync(String destinationBlobName, InputStream inputStream, long streamLength, FileUploadOptions options,
+                                  IotHubEventCallback callback, Object callbackContext)
+            throws IllegalArgumentException, IOException
+    {
+        if (callback == null)
+        {
+            throw new IllegalArgumentException("Callback is null");
+        }
+
+        if (inputStream == null)
+        {
+            throw new IllegalArgumentException("The input stream cannot be null.");
+        }
+
+        if (streamLength < 0)
+        {
+            throw new IllegalArgumentException("Invalid stream size.");
+        }
+
+        if (options == null)
+        {
+            throw new IllegalArgumentException("The upload options cannot be null.");
+        }
+
+        ParserUtility.validateBlobName(destinationBlobName);
+
+        getFileUpload().uploadToBlobAsync(destinationBlobName, inputStream, streamLength, options, callback, callbackContext);
+    }
+
+    /**
+     * Asynchronously upload a file to the IoT Hub in blocks, several blocks at the same time. The blocks are read
+     * from the file with positional reads by the threads that upload them.
+     *
+     * <p>
+     *     If the upload fails, a new upload of the same file with the same destination blob name and the same
+     *     options only sends the blocks that did not reach the storage, see {@link FileUploadOptions}.
+     * </p>
+     *
+     * @param destinationBlobName is a string with the name of the file in the storage.
+     * @param file is the path of the file to upload.
+     * @param options is the block size and the number of blocks uploaded at the same time. {@code null} for the
+     *          default options.
+     * @param callback the callback to be invoked when a file is uploaded.
+     * @param callbackContext a context to be passed to the callback. Can be {@code null}.
+     *
+     * @throws IllegalArgumentException if the provided blob name is {@code null}, empty or not valid, if the file is
+     *          not a regular file, or if the callback is {@code null}.
+     * @throws IOException if the client cannot create a instance of the FileUpload or the transport.
+     * @throws UnsupportedOperationException if this method is called when using x509 authentication
+     */
+    public void uploadToBlobAsync(String destinationBlobName, Path file, FileUploadOptions options,
+                                  IotHubEventCallback callback, Object callbackContext)
+            throws IllegalArgumentException, IOException
+    {
+        if (callback == null)
+        {
+            throw new IllegalArgumentException("Callback is null");
+        }
+
+        if (file == null || !Files.isRegularFile(file))
+        {
+            throw new IllegalArgumentException("The file is not a regular file.");
+        }
+
+        ParserUtility.validateBlobName(destinationBlobName);
+
+        getFileUpload().uploadToBlobAsync(destinationBlobName, file, options, callback, callbackContext);
+    }
+
+    private FileUpload getFileUpload() throws IOException
+    {
+        if (this.config.getAuthenticationType() == DeviceClientConfig.AuthType.X509_CERTIFICATE)
+        {
+            throw new UnsupportedOperationException("File Upload does not support x509 authentication");
+        }
+
+        if (this.fileUpload == null)
+        {
+            this.fileUpload = new FileUpload(this.config);
+        }
+        return this.fileUpload;
+    }
+
     @SuppressWarnings("unused")
     protected DeviceClient()
     {
@@ -719,6 +958,73 @@ public final class DeviceClient implements Closeable
         }
     }
 
+    private void setOption_SetReportedPropertiesCoalescingWindow(Object value)
+    {
+        logger.LogInfo("Setting reported properties coalescing window as %s milliseconds, method name is %s ", value, logger.getMethodName());
+
+        if (value instanceof Long)
+        {
+            if ((long) value < 0)
+            {
+                throw new IllegalArgumentException("value cannot be negative = " + value);
+            }
+
+            this.reportedPropertiesCoalescingWindowMillis = (long) value;
+            if (this.deviceTwin != null)
+            {
+                this.deviceTwin.setReportedPropertiesCoalescingWindow(this.reportedPropertiesCoalescingWindowMillis);
+            }
+        }
+        else
+        {
+            throw new IllegalArgumentException("value is not long = " + value);
+        }
+    }
+
+    private void setOption_SetDeviceTwinCache(Object value)
+    {
+        logger.LogInfo("Setting device twin cache, method name is %s ", logger.getMethodName());
+
+        if (value instanceof DeviceTwinCache)
+        {
+            this.deviceTwinCache = (DeviceTwinCache) value;
+            if (this.deviceTwin != null)
+            {
+                this.deviceTwin.setCache(this.deviceTwinCache);
+            }
+        }
+        else
+        {
+            throw new IllegalArgumentException("value is not DeviceTwinCache = " + value);
+        }
+    }
+
+    private void setOption_SetAmqpReceivePrefetch(Object value)
+    {
+        logger.LogInfo("Setting AMQP receive prefetch as %s messages, method name is %s ", value, logger.getMethodName());
+
+        if (value instanceof Integer)
+        {
+            this.config.setAmqpReceivePrefetch((int) value);
+        }
+        else
+        {
+            throw new IllegalArgumentException("value is not int = " + value);
+        }
+    }
+
+    /**
+     * Sends the reported properties still waiting for the end of their coalescing window, so a close does not
+     * lose them.
+     */
+    private void flushReportedProperties()
+    {
+        if ((this.deviceTwin != null) && (this.deviceIO != null) && this.deviceIO.isOpen())
+        {
+            this.deviceTwin.flushReportedProperties();
+        }
+    }
+
     private void setOption_SetSendInterval(Object value)
     {
         logger.LogInfo("Setting send Interval as %s milliseconds, method name is %s ", value, logger.getMethodName());
@@ -865,6 +1171,24 @@ public final class DeviceClient implements Closeable
      *         SASToken expires. If the transport is already open then setting this
      *         option will restart the transport with the updated expiry time. The
      *         value is expected to be of type {@code long}.
+     *      - <b>SetReportedPropertiesCoalescingWindow</b> - this option is applicable for
+     *         all the protocols. The reported properties sent within this window, in
+     *         milliseconds, are merged, the last value of each property wins, and sent
+     *         as a single patch at its end. {@code 0}, the default, sends each update as
+     *         it comes. The pending patch is sent on close. The value is expected to be
+     *         of type {@code long}.
+     *      - <b>SetDeviceTwinCache</b> - this option is applicable for all the
+     *         protocols. The twin is saved in this cache every time it changes, and
+     *         startDeviceTwin resumes from the saved copy, instead of downloading the
+     *         twin, while it is younger than the maximum age of the cache. A desired
+     *         property patch that skips versions downloads the twin again. The value
+     *         is expected to be of type {@code DeviceTwinCache}.
+     *      - <b>SetAmqpReceivePrefetch</b> - this option is applicable only when the
+     *         transport configured with this client is AMQP, and only when the
+     *         transport is closed. This option specifies the number of messages the
+     *         service can send on each receiver link, telemetry, methods and twin,
+     *         before the client accepts them. The default is 1024. The value is
+     *         expected to be of type {@code int}.
      *
      * @param optionName the option name to modify
      * @param value an object of the appropriate type for the option's value
@@ -1000,6 +1324,42 @@ public final class DeviceClient implements Closeable
                     }
                     break;
                 }
+                case SET_REPORTED_PROPERTIES_COALESCING_WINDOW:
+                {
+                    setOption_SetReportedPropertiesCoalescingWindow(value);
+                    break;
+                }
+                case SET_DEVICE_TWIN_CACHE:
+                {
+                    setOption_SetDeviceTwinCache(value);
+                    break;
+                }
+                case SET_AMQP_RECEIVE_PREFETCH:
+                {
+                    if (this.ioTHubConnectionType == IoTHubConnectionType.USE_TRANSPORTCLIENT)
+                    {
+                        if (this.transportClient.getTransportClientState() == TransportClient.TransportClientState.OPENED)
+                        {
+                            throw new IllegalStateException("setOption " + SET_AMQP_RECEIVE_PREFETCH + " only works when the transport is closed");
+                        }
+                    }
+                    else
+                    {
+                        if ((this.deviceIO != null) && (this.deviceIO.isOpen()))
+                        {
+                            throw new IllegalStateException("setOption " + SET_AMQP_RECEIVE_PREFETCH + " only works when the transport is closed");
+                        }
+
+                        if ((this.deviceIO.getProtocol() != AMQPS) && (this.deviceIO.getProtocol() != AMQPS_WS))
+                        {
+                            logger.LogError("optionName is unknown = %s for %s, method name is %s ", optionName, this.deviceIO.getProtocol().toString(), logger.getMethodName());
+                            throw new IllegalArgumentException("optionName is unknown = " + optionName + " for " + this.deviceIO.getProtocol().toString());
+                        }
+                    }
+
+                    setOption_SetAmqpReceivePrefetch(value);
+                    break;
+                }
                 default:
                 {
                     throw new IllegalArgumentException("optionName is unknown = " + optionName);
@@ -16,8 +16,12 @@ public final class DeviceClientConfig
     private static final int DEFAULT_READ_TIMEOUT_MILLIS = 240000;
     /** The default value for messageLockTimeoutSecs. */
     private static final int DEFAULT_MESSAGE_LOCK_TIMEOUT_SECS = 180;
+    /** The default value for amqpReceivePrefetch, the window of the Proton FlowController. */
+    private static final int DEFAULT_AMQP_RECEIVE_PREFETCH = 1024;
 
     private boolean useWebsocket;
+    private int amqpReceivePrefetch = DEFAULT_AMQP_RECEIVE_PREFETCH;
+    private int iotHubPort;
 
     private IotHubX509Authentication x509Authentication;
     private IotHubSasTokenAuthentication sasTokenAuthentication;
@@ -194,6 +198,62 @@ public final class DeviceClientConfig
         this.useWebsocket = useWebsocket;
     }
 
+    /**
+     * Getter for the number of messages the service can send on each AMQP receiver link before the client
+     * accepts them.
+     *
+     * @return the credit given to each AMQP receiver link.
+     */
+    public int getAmqpReceivePrefetch()
+    {
+        return this.amqpReceivePrefetch;
+    }
+
+    /**
+     * Setter for the number of messages the service can send on each AMQP receiver link before the client
+     * accepts them. It applies to the connections opened after the call.
+     *
+     * @param amqpReceivePrefetch the credit given to each AMQP receiver link. Cannot be less than 1.
+     * @throws IllegalArgumentException if the prefetch is less than 1.
+     */
+    public void setAmqpReceivePrefetch(int amqpReceivePrefetch) throws IllegalArgumentException
+    {
+        if (amqpReceivePrefetch < 1)
+        {
+            throw new IllegalArgumentException("amqpReceivePrefetch shall be at least 1");
+        }
+
+        this.amqpReceivePrefetch = amqpReceivePrefetch;
+    }
+
+    /**
+     * Getter for the port the MQTT and AMQPS connections use instead of the standard 8883 and 5671.
+     *
+     * @return the IoT Hub port, or 0 to use the standard port of the protocol.
+     */
+    public int getIotHubPort()
+    {
+        return this.iotHubPort;
+    }
+
+    /**
+     * Setter for the port the MQTT and AMQPS connections use instead of the standard 8883 and 5671, for
+     * a hub stand-in listening on another port. The WebSocket and HTTPS connections always use 443. It
+     * applies to the connections opened after the call.
+     *
+     * @param iotHubPort the IoT Hub port, or 0 to use the standard port of the protocol.
+     * @throws IllegalArgumentException if the port is not between 0 and 65535.
+     */
+    public void setIotHubPort(int iotHubPort) throws IllegalArgumentException
+    {
+        if ((iotHubPort < 0) || (iotHubPort > 65535))
+        {
+            throw new IllegalArgumentException("iotHubPort shall be between 0 and 65535");
+        }
+
+        this.iotHubPort = iotHubPort;
+    }
+
     /**
      * Setter for the message callback. Can be {@code null}.
      * @param callback the message callback. Can be {@code null}.
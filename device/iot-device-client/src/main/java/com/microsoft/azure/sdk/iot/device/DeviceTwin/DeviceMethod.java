@@ -7,6 +7,13 @@ import com.microsoft.azure.sdk.iot.deps.serializer.MethodParser;
 import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportMessage;
 
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
 public final class DeviceMethod
 {
     private DeviceMethodCallback deviceMethodCallback;
@@ -17,6 +24,10 @@ public final class DeviceMethod
 
     private boolean isSubscribed = false;
 
+    private volatile Executor executor;
+    private volatile int maxConcurrentCallsPerMethod;
+    private final Map<String, MethodInvocations> methodInvocations = new HashMap<>();
+
     private DeviceIO deviceIO;
     private DeviceClientConfig config;
 
@@ -24,8 +35,6 @@ public final class DeviceMethod
 
     private final class deviceMethodResponseCallback implements MessageCallback
     {
-        DeviceClientConfig nestedConfig = config;
-
         /*
         **Codes_SRS_DEVICEMETHOD_25_007: [**On receiving a message from IOTHub with for method invoke, the callback DeviceMethodResponseMessageCallback is triggered.**]**
          */
@@ -59,55 +68,14 @@ public final class DeviceMethod
                             {
                                 isSubscribed = true;
                             }
-                            try
+
+                            if (executor == null)
                             {
-                                /*
-                                **Codes_SRS_DEVICEMETHOD_25_008: [**If the message is of type DeviceMethod and DEVICE_OPERATION_METHOD_RECEIVE_REQUEST then user registered device method callback gets invoked providing the user with method name and payload along with the user context. **]**
-                                 */
-                                DeviceMethodData responseData = deviceMethodCallback.call(methodMessage.getMethodName(), methodMessage.getBytes(), deviceMethodCallbackContext);
-                                /*
-                                **Codes_SRS_DEVICEMETHOD_25_010: [**User is expected to provide response message and status upon invoking the device method callback.**]**
-                                 */
-                                if (responseData != null)
-                                {
-                                    /*
-                                    **Codes_SRS_DEVICEMETHOD_25_011: [**If the user callback is successful and user has successfully provided the response message and status, then this method shall build a device method message of type DEVICE_OPERATION_METHOD_SEND_RESPONSE, serilize the user data by invoking MethodParser from serializer and save the user data as payload in the message before sending it to IotHub via sendeventAsync before marking the result as complete**]**
-                                    **Codes_SRS_DEVICEMETHOD_25_015: [**User can provide null response message upon invoking the device method callback which will be serialized as is, before sending it to IotHub.**]**
-                                     */
-                                    MethodParser methodParserObject = new MethodParser(responseData.getResponseMessage());
-                                    IotHubTransportMessage responseMessage = new IotHubTransportMessage(methodParserObject.toJson().getBytes(), MessageType.DEVICE_METHODS);
-                                    /*
-                                    **Codes_SRS_DEVICEMETHOD_25_012: [**The device method message sent to IotHub shall have same the request id as the invoking message.**]**
-                                     */
-                                    responseMessage.setRequestId(methodMessage.getRequestId());
-
-                                    /*
-                                    **Codes_SRS_DEVICEMETHOD_25_013: [**The device method message sent to IotHub shall have the status provided by the user as the message status.**]**
-                                     */
-                                    responseMessage.setStatus(String.valueOf(responseData.getStatus()));
-                                    responseMessage.setDeviceOperationType(DeviceOperations.DEVICE_OPERATION_METHOD_SEND_RESPONSE);
-
-                                    deviceIO.sendEventAsync(responseMessage, new deviceMethodRequestMessageCallback(), null, nestedConfig.getIotHubConnectionString());
-                                    result = IotHubMessageResult.COMPLETE;
-                                }
-                                else
-                                {
-                                    logger.LogInfo("User callback did not send any data for response");
-                                    result = IotHubMessageResult.REJECT;
-                                    /*
-                                    **Codes_SRS_DEVICEMETHOD_25_014: [**If the user invoked callback failed for any reason then the user shall be notified on the status callback registered by the user as ERROR before marking the status of the sent message as Rejected.**]**
-                                     */
-                                    deviceMethodStatusCallback.execute(iotHubStatus, deviceMethodStatusCallbackContext);
-                                }
+                                result = invokeMethod(methodMessage);
                             }
-                            catch (Exception e)
+                            else
                             {
-                                logger.LogInfo("User callback did not succeed");
-                                result = IotHubMessageResult.REJECT;
-                                /*
-                                **Codes_SRS_DEVICEMETHOD_25_014: [**If the user invoked callback failed for any reason then the user shall be notified on the status callback registered by the user as ERROR before marking the status of the sent message as Rejected.**]**
-                                 */
-                                deviceMethodStatusCallback.execute(iotHubStatus, deviceMethodStatusCallbackContext);
+                                result = dispatchMethod(methodMessage);
                             }
                         }
                         else
@@ -126,6 +94,98 @@ public final class DeviceMethod
         }
     }
 
+    /**
+     * The requests of one method name. At most maxConcurrentCallsPerMethod of them run at the same time, the
+     * others wait here in arrival order. The counters are guarded by the methodInvocations lock, and the entry
+     * leaves the map as soon as nothing runs or waits, so the map only holds the methods in use.
+     */
+    private final class MethodInvocations
+    {
+        private final String methodName;
+        private final Queue<IotHubTransportMessage> pending = new LinkedList<>();
+        private int running;
+
+        private MethodInvocations(String methodName)
+        {
+            this.methodName = methodName;
+        }
+
+        /**
+         * Takes a slot for the request, or queues it. Called with the methodInvocations lock held.
+         *
+         * @return {@code true} if the caller shall submit the request, {@code false} if it is queued.
+         */
+        private boolean reserve(IotHubTransportMessage methodMessage)
+        {
+            if (this.running >= maxConcurrentCallsPerMethod)
+            {
+                this.pending.add(methodMessage);
+                return false;
+            }
+            this.running++;
+            return true;
+        }
+
+        /**
+         * Gives back a slot. Called with the methodInvocations lock held.
+         */
+        private void release()
+        {
+            this.running--;
+            if ((this.running == 0) && this.pending.isEmpty())
+            {
+                methodInvocations.remove(this.methodName);
+            }
+        }
+
+        private void submit(final IotHubTransportMessage methodMessage)
+        {
+            executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        invokeMethod(methodMessage);
+                    }
+                    finally
+                    {
+                        next();
+                    }
+                }
+            });
+        }
+
+        private void next()
+        {
+            while (true)
+            {
+                IotHubTransportMessage methodMessage;
+                synchronized (methodInvocations)
+                {
+                    methodMessage = this.pending.poll();
+                    if (methodMessage == null)
+                    {
+                        release();
+                        return;
+                    }
+                }
+
+                try
+                {
+                    submit(methodMessage);
+                    return;
+                }
+                catch (RejectedExecutionException e)
+                {
+                    logger.LogError("Device method executor rejected the request for %s", this.methodName);
+                    deviceMethodStatusCallback.execute(IotHubStatusCode.ERROR, deviceMethodStatusCallbackContext);
+                }
+            }
+        }
+    }
+
     private final class deviceMethodRequestMessageCallback implements IotHubEventCallback
     {
         @Override
@@ -139,6 +199,107 @@ public final class DeviceMethod
         }
     }
 
+    /**
+     * Invokes the user callback for one request and queues its response.
+     */
+    private IotHubMessageResult invokeMethod(IotHubTransportMessage methodMessage)
+    {
+        IotHubStatusCode iotHubStatus = IotHubStatusCode.ERROR;
+        IotHubMessageResult result;
+
+        try
+        {
+            /*
+            **Codes_SRS_DEVICEMETHOD_25_008: [**If the message is of type DeviceMethod and DEVICE_OPERATION_METHOD_RECEIVE_REQUEST then user registered device method callback gets invoked providing the user with method name and payload along with the user context. **]**
+             */
+            DeviceMethodData responseData = deviceMethodCallback.call(methodMessage.getMethodName(), methodMessage.getBytes(), deviceMethodCallbackContext);
+            /*
+            **Codes_SRS_DEVICEMETHOD_25_010: [**User is expected to provide response message and status upon invoking the device method callback.**]**
+             */
+            if (responseData != null)
+            {
+                /*
+                **Codes_SRS_DEVICEMETHOD_25_011: [**If the user callback is successful and user has successfully provided the response message and status, then this method shall build a device method message of type DEVICE_OPERATION_METHOD_SEND_RESPONSE, serilize the user data by invoking MethodParser from serializer and save the user data as payload in the message before sending it to IotHub via sendeventAsync before marking the result as complete**]**
+                **Codes_SRS_DEVICEMETHOD_25_015: [**User can provide null response message upon invoking the device method callback which will be serialized as is, before sending it to IotHub.**]**
+                 */
+                MethodParser methodParserObject = new MethodParser(responseData.getResponseMessage());
+                IotHubTransportMessage responseMessage = new IotHubTransportMessage(methodParserObject.toJson().getBytes(), MessageType.DEVICE_METHODS);
+                /*
+                **Codes_SRS_DEVICEMETHOD_25_012: [**The device method message sent to IotHub shall have same the request id as the invoking message.**]**
+                 */
+                responseMessage.setRequestId(methodMessage.getRequestId());
+
+                /*
+                **Codes_SRS_DEVICEMETHOD_25_013: [**The device method message sent to IotHub shall have the status provided by the user as the message status.**]**
+                 */
+                responseMessage.setStatus(String.valueOf(responseData.getStatus()));
+                responseMessage.setDeviceOperationType(DeviceOperations.DEVICE_OPERATION_METHOD_SEND_RESPONSE);
+
+                deviceIO.sendEventAsync(responseMessage, new deviceMethodRequestMessageCallback(), null, config.getIotHubConnectionString());
+                result = IotHubMessageResult.COMPLETE;
+            }
+            else
+            {
+                logger.LogInfo("User callback did not send any data for response");
+                result = IotHubMessageResult.REJECT;
+                /*
+                **Codes_SRS_DEVICEMETHOD_25_014: [**If the user invoked callback failed for any reason then the user shall be notified on the status callback registered by the user as ERROR before marking the status of the sent message as Rejected.**]**
+                 */
+                deviceMethodStatusCallback.execute(iotHubStatus, deviceMethodStatusCallbackContext);
+            }
+        }
+        catch (Exception e)
+        {
+            logger.LogInfo("User callback did not succeed");
+            result = IotHubMessageResult.REJECT;
+            /*
+            **Codes_SRS_DEVICEMETHOD_25_014: [**If the user invoked callback failed for any reason then the user shall be notified on the status callback registered by the user as ERROR before marking the status of the sent message as Rejected.**]**
+             */
+            deviceMethodStatusCallback.execute(iotHubStatus, deviceMethodStatusCallbackContext);
+        }
+
+        return result;
+    }
+
+    /**
+     * Hands the request to the executor, or queues it if the method already runs as many times as allowed.
+     */
+    private IotHubMessageResult dispatchMethod(IotHubTransportMessage methodMessage)
+    {
+        String methodName = methodMessage.getMethodName();
+        MethodInvocations invocations;
+        synchronized (methodInvocations)
+        {
+            invocations = methodInvocations.get(methodName);
+            if (invocations == null)
+            {
+                invocations = new MethodInvocations(methodName);
+                methodInvocations.put(methodName, invocations);
+            }
+
+            if (!invocations.reserve(methodMessage))
+            {
+                return IotHubMessageResult.COMPLETE;
+            }
+        }
+
+        try
+        {
+            invocations.submit(methodMessage);
+            return IotHubMessageResult.COMPLETE;
+        }
+        catch (RejectedExecutionException e)
+        {
+            synchronized (methodInvocations)
+            {
+                invocations.release();
+            }
+            logger.LogError("Device method executor rejected the request for %s", methodName);
+            deviceMethodStatusCallback.execute(IotHubStatusCode.ERROR, deviceMethodStatusCallbackContext);
+            return IotHubMessageResult.REJECT;
+        }
+    }
+
     /**
      * This constructor creates an instance of device method class which helps facilitate the interation for device methods
      * between the user and IotHub.
@@ -212,4 +373,25 @@ public final class DeviceMethod
         }
 
     }
+
+    /**
+     * Runs the device method callbacks on the provided executor instead of the thread that receives the requests,
+     * so a slow method does not hold the other methods, the twin and the messages of the device.
+     *
+     * @param executor the executor that runs the callbacks, or {@code null} to run them on the receive thread,
+     *                 one at a time, as by default.
+     * @param maxConcurrentCallsPerMethod how many calls of the same method name can run at the same time, the
+     *                                    next requests wait in arrival order. Ignored if the executor is {@code null}.
+     * @throws IllegalArgumentException if the executor is not {@code null} and maxConcurrentCallsPerMethod is less than 1.
+     */
+    public void setExecutor(Executor executor, int maxConcurrentCallsPerMethod) throws IllegalArgumentException
+    {
+        if ((executor != null) && (maxConcurrentCallsPerMethod < 1))
+        {
+            throw new IllegalArgumentException("maxConcurrentCallsPerMethod shall be at least 1");
+        }
+
+        this.maxConcurrentCallsPerMethod = maxConcurrentCallsPerMethod;
+        this.executor = executor;
+    }
 }
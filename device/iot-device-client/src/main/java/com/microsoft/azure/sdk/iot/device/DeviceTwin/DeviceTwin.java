@@ -3,17 +3,29 @@
 
 package com.microsoft.azure.sdk.iot.device.DeviceTwin;
 
+import com.microsoft.azure.sdk.iot.deps.serializer.ParserUtility;
 import com.microsoft.azure.sdk.iot.deps.serializer.TwinChangedCallback;
 import com.microsoft.azure.sdk.iot.deps.serializer.TwinParser;
 import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportMessage;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import static com.microsoft.azure.sdk.iot.device.IotHubMessageResult.ABANDON;
 import static com.microsoft.azure.sdk.iot.device.IotHubMessageResult.COMPLETE;
@@ -28,6 +40,19 @@ public class DeviceTwin
 
     private final Object DEVICE_TWIN_LOCK = new Object();
 
+    /*
+        Twin limit of 5 levels of sub-maps, plus the root map
+     */
+    private static final int MAX_REPORTED_PROPERTIES_LEVEL = 6;
+
+    /*
+        Reported properties waiting for the end of the coalescing window, and the callbacks of their callers
+     */
+    private long reportedPropertiesWindowMillis = 0;
+    private Map<String, Object> pendingReportedProperties = new HashMap<>();
+    private List<Pair<IotHubEventCallback, Object>> pendingReportedPropertiesCallbacks = new ArrayList<>();
+    private ScheduledFuture<?> reportedPropertiesFlush;
+
     /*
         Callback to respond to user on all of its status
      */
@@ -46,6 +71,24 @@ public class DeviceTwin
 
     private ConcurrentSkipListMap<String, Pair<PropertyCallBack<String, Object>, Object>> onDesiredPropertyChangeMap;
 
+    /*
+        Desired property changes resolved under DEVICE_TWIN_LOCK, and delivered to the user callbacks once it is released
+     */
+    private List<DesiredPropertyChange> undeliveredDesiredPropertyChanges = new ArrayList<>();
+    private final DesiredPropertyChanges desiredPropertyChanges = new DesiredPropertyChanges();
+    private final Map<String, DesiredPropertyChanges> desiredPropertyChangesPerProperty = new HashMap<>();
+    private volatile Executor desiredPropertyExecutor;
+    private volatile boolean desiredPropertyParallelism;
+
+    /*
+        Local copy of the twin, and the twin json waiting to be saved in it once DEVICE_TWIN_LOCK is released
+     */
+    private DeviceTwinCache cache;
+    private String unsavedTwin;
+    private final Object TWIN_CACHE_LOCK = new Object();
+
+    private final CustomLogger logger = new CustomLogger(this.getClass());
+
     /*
         Callback invoked by serializer when desired property changes
     */
@@ -74,16 +117,16 @@ public class DeviceTwin
                                 /*
                                 **Codes_SRS_DEVICETWIN_25_022: [**OnDesiredPropertyChange callback shall look for the user registered call back on the property that changed provided in desiredPropertyMap and call the user providing the desired property change key and value pair**]**
                                  */
-                                callBackObjectPair.getKey().PropertyCall(desiredProperty.getKey(),
-                                        desiredProperty.getValue(), callBackObjectPair.getValue());
+                                undeliveredDesiredPropertyChanges.add(new DesiredPropertyChange(callBackObjectPair.getKey(),
+                                        desiredProperty.getKey(), desiredProperty.getValue(), callBackObjectPair.getValue()));
                             }
                             else
                             {
                                 /*
                                 **Codes_SRS_DEVICETWIN_25_023: [**OnDesiredPropertyChange callback shall look for the user registered call back on the property that changed and if no callback is registered or is null then OnDesiredPropertyChange shall call the user on generic callback providing with the desired property change key and value pair**]**
                                  */
-                                deviceTwinGenericPropertyChangeCallback.PropertyCall(desiredProperty.getKey(),
-                                        desiredProperty.getValue(), deviceTwinGenericPropertyChangeCallbackContext);
+                                undeliveredDesiredPropertyChanges.add(new DesiredPropertyChange(deviceTwinGenericPropertyChangeCallback,
+                                        desiredProperty.getKey(), desiredProperty.getValue(), deviceTwinGenericPropertyChangeCallbackContext));
                             }
 
                         }
@@ -92,14 +135,117 @@ public class DeviceTwin
                             /*
                             **Codes_SRS_DEVICETWIN_25_023: [**OnDesiredPropertyChange callback shall look for the user registered call back on the property that changed and if no callback is registered or is null then OnDesiredPropertyChange shall call the user on generic callback providing with the desired property change key and value pair**]**
                              */
-                            deviceTwinGenericPropertyChangeCallback.PropertyCall(desiredProperty.getKey(),
-                                    desiredProperty.getValue(), deviceTwinGenericPropertyChangeCallbackContext);
+                            undeliveredDesiredPropertyChanges.add(new DesiredPropertyChange(deviceTwinGenericPropertyChangeCallback,
+                                    desiredProperty.getKey(), desiredProperty.getValue(), deviceTwinGenericPropertyChangeCallbackContext));
 
                         }
                         desiredPropertyIt.remove();
                     }
                 }
             }
+
+            if (!Thread.holdsLock(DEVICE_TWIN_LOCK))
+            {
+                // Otherwise the twin response being handled delivers them once it releases the lock.
+                deliverDesiredPropertyChanges();
+            }
+        }
+    }
+
+    /*
+        One desired property change, with the user callback it shall be delivered to
+     */
+    private static final class DesiredPropertyChange
+    {
+        private final PropertyCallBack<String, Object> callback;
+        private final String key;
+        private final Object value;
+        private final Object context;
+
+        private DesiredPropertyChange(PropertyCallBack<String, Object> callback, String key, Object value, Object context)
+        {
+            this.callback = callback;
+            this.key = key;
+            this.value = value;
+            this.context = context;
+        }
+
+        private void deliver()
+        {
+            this.callback.PropertyCall(this.key, this.value, this.context);
+        }
+    }
+
+    /*
+        Ordered queue of desired property changes. A single thread at a time delivers them, on the executor if
+        there is one, otherwise on the thread that queued the first of them.
+     */
+    private final class DesiredPropertyChanges
+    {
+        private final Queue<DesiredPropertyChange> pending = new LinkedList<>();
+        private boolean running;
+
+        private void add(DesiredPropertyChange change)
+        {
+            synchronized (this)
+            {
+                this.pending.add(change);
+                if (this.running)
+                {
+                    return;
+                }
+                this.running = true;
+            }
+
+            Executor executor = desiredPropertyExecutor;
+            if (executor != null)
+            {
+                try
+                {
+                    executor.execute(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            deliver();
+                        }
+                    });
+                    return;
+                }
+                catch (RejectedExecutionException e)
+                {
+                    // Delivered on this thread instead, so no change is lost.
+                }
+            }
+
+            deliver();
+        }
+
+        private void deliver()
+        {
+            while (true)
+            {
+                DesiredPropertyChange change;
+                synchronized (this)
+                {
+                    change = this.pending.poll();
+                    if (change == null)
+                    {
+                        this.running = false;
+                        return;
+                    }
+                }
+
+                try
+                {
+                    change.deliver();
+                }
+                catch (RuntimeException e)
+                {
+                    // One failing callback does not hold the changes queued behind it.
+                    logger.LogError("Desired property callback for %s failed: %s", change.key, e);
+                }
+            }
         }
     }
 
@@ -129,6 +275,20 @@ public class DeviceTwin
          */
         @Override
         public IotHubMessageResult execute(Message message, Object callbackContext)
+        {
+            try
+            {
+                return handleResponse(message);
+            }
+            finally
+            {
+                // The user callbacks run once the lock is released, so they never hold the twin responses.
+                deliverDesiredPropertyChanges();
+                saveTwinToCache();
+            }
+        }
+
+        private IotHubMessageResult handleResponse(Message message)
         {
             synchronized (DEVICE_TWIN_LOCK)
             {
@@ -167,6 +327,10 @@ public class DeviceTwin
                             **Codes_SRS_DEVICETWIN_25_030: [**If the message is of type DEVICE_TWIN and DEVICE_OPERATION_TWIN_GET_RESPONSE then the payload is deserialized by calling updateTwin only if the status is ok.**]**
                              */
                             twinParser.updateTwin(new String(dtMessage.getBytes(), Message.DEFAULT_IOTHUB_MESSAGE_CHARSET));
+                            if (cache != null)
+                            {
+                                unsavedTwin = twinParser.toJson();
+                            }
                         }
                         break;
                     }
@@ -189,8 +353,23 @@ public class DeviceTwin
                         **Codes_SRS_DEVICETWIN_25_026: [**If the message is of type DEVICE_TWIN and DEVICE_OPERATION_TWIN_SUBSCRIBE_DESIRED_PROPERTIES_RESPONSE then the payload is deserialized by calling updateDesiredProperty.**]**
                          */
                         isSubscribed = true;
+                        Integer knownVersion = twinParser.getDesiredPropertyVersion();
                         twinParser.updateDesiredProperty(new String(dtMessage.getBytes(), Message.DEFAULT_IOTHUB_MESSAGE_CHARSET));
 
+                        if (cache != null)
+                        {
+                            Integer patchVersion = twinParser.getDesiredPropertyVersion();
+                            if (knownVersion != null && patchVersion != null && patchVersion > knownVersion + 1)
+                            {
+                                // Patches were missed, for instance while the device was away from a cached twin.
+                                requestDeviceTwin();
+                            }
+                            else
+                            {
+                                unsavedTwin = twinParser.toJson();
+                            }
+                        }
+
                         break;
                     }
                     default:
@@ -220,6 +399,50 @@ public class DeviceTwin
         }
     }
 
+    /*
+        Callback invoked when a reported properties patch sent with callbacks of the callers has completed
+    */
+    private final class ReportedPropertiesRequestCallback implements IotHubEventCallback
+    {
+        private final List<Pair<IotHubEventCallback, Object>> callbacks;
+
+        private ReportedPropertiesRequestCallback(List<Pair<IotHubEventCallback, Object>> callbacks)
+        {
+            this.callbacks = callbacks;
+        }
+
+        @Override
+        public void execute(IotHubStatusCode responseStatus, Object callbackContext)
+        {
+            synchronized (DEVICE_TWIN_LOCK)
+            {
+                deviceTwinStatusCallback.execute(responseStatus, deviceTwinStatusCallbackContext);
+            }
+
+            for (Pair<IotHubEventCallback, Object> callback : this.callbacks)
+            {
+                callback.getKey().execute(responseStatus, callback.getValue());
+            }
+        }
+    }
+
+    /*
+        One daemon thread ends the coalescing windows of all the twins of the process
+    */
+    private static final class CoalescingScheduler
+    {
+        private static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "azure-iot-sdk-twin-coalescing");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
     public DeviceTwin(DeviceIO client, DeviceClientConfig config, IotHubEventCallback deviceTwinCallback, Object deviceTwinCallbackContext,
                       PropertyCallBack genericPropertyCallback, Object genericPropertyCallbackContext)
     {
@@ -270,6 +493,88 @@ public class DeviceTwin
 
 
     public void getDeviceTwin()
+    {
+        if (this.cache != null && resumeFromCache())
+        {
+            return;
+        }
+
+        requestDeviceTwin();
+    }
+
+    /**
+     * Sets the local copy of the twin. From then on, the twin is saved in it every time it changes, and
+     * {@link #getDeviceTwin()} resumes from the saved copy when it is recent enough, instead of downloading it.
+     *
+     * @param cache the cache, or {@code null} to stop using one.
+     */
+    public void setCache(DeviceTwinCache cache)
+    {
+        synchronized (DEVICE_TWIN_LOCK)
+        {
+            this.cache = cache;
+        }
+    }
+
+    private boolean resumeFromCache()
+    {
+        String deviceId = this.config.getDeviceId();
+        String cachedTwin = this.cache.load(deviceId);
+        if (cachedTwin == null)
+        {
+            return false;
+        }
+
+        synchronized (DEVICE_TWIN_LOCK)
+        {
+            try
+            {
+                twinParser.updateTwin(cachedTwin);
+            }
+            catch (IllegalArgumentException e)
+            {
+                logger.LogError("Discarding the cached twin of %s, it is not valid: %s", deviceId, e.getMessage());
+                this.cache.remove(deviceId);
+                return false;
+            }
+
+            // The same status as a twin GET answered by the hub.
+            deviceTwinStatusCallback.execute(IotHubStatusCode.OK, deviceTwinStatusCallbackContext);
+        }
+
+        deliverDesiredPropertyChanges();
+        return true;
+    }
+
+    private void saveTwinToCache()
+    {
+        // Taken and written under the same lock, so an older twin never overwrites a newer one.
+        synchronized (TWIN_CACHE_LOCK)
+        {
+            DeviceTwinCache twinCache;
+            String twin;
+            synchronized (DEVICE_TWIN_LOCK)
+            {
+                twinCache = this.cache;
+                twin = this.unsavedTwin;
+                this.unsavedTwin = null;
+            }
+
+            if (twinCache != null && twin != null)
+            {
+                try
+                {
+                    twinCache.save(this.config.getDeviceId(), twin);
+                }
+                catch (IOException e)
+                {
+                    logger.LogError("Cannot save the twin in the cache: %s", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void requestDeviceTwin()
     {
         /*
         **Codes_SRS_DEVICETWIN_25_005: [**The method shall create a device twin message with empty payload to be sent IotHub.**]**
@@ -293,6 +598,24 @@ public class DeviceTwin
     }
 
     public synchronized void updateReportedProperties(Set<Property> reportedProperties) throws IOException
+    {
+        updateReportedProperties(reportedProperties, null, null);
+    }
+
+    /**
+     * Sends the reported properties to the hub, or, if coalescing is enabled, merges them in the patch that is sent
+     * at the end of the current window.
+     *
+     * @param reportedProperties the properties to report. Cannot be {@code null}.
+     * @param reportedPropertiesCallback callback invoked with the status of the patch that carries these
+     *                                   properties, on top of the twin status callback. Can be {@code null}.
+     * @param reportedPropertiesCallbackContext context for the callback. Can be {@code null}.
+     * @throws IOException if the twin has not been created.
+     * @throws IllegalArgumentException if reportedProperties is {@code null} or not valid.
+     */
+    public synchronized void updateReportedProperties(Set<Property> reportedProperties,
+                                                      IotHubEventCallback reportedPropertiesCallback,
+                                                      Object reportedPropertiesCallbackContext) throws IOException
     {
         if (reportedProperties == null)
         {
@@ -316,6 +639,99 @@ public class DeviceTwin
             reportedPropertiesMap.put(p.getKey(), p.getValue());
         }
 
+        if (this.reportedPropertiesWindowMillis <= 0)
+        {
+            List<Pair<IotHubEventCallback, Object>> callbacks = null;
+            if (reportedPropertiesCallback != null)
+            {
+                callbacks = new ArrayList<>();
+                callbacks.add(new Pair<>(reportedPropertiesCallback, reportedPropertiesCallbackContext));
+            }
+            sendReportedProperties(reportedPropertiesMap, callbacks);
+            return;
+        }
+
+        // Invalid properties fail the caller now instead of the merged patch later.
+        ParserUtility.validateMap(reportedPropertiesMap, MAX_REPORTED_PROPERTIES_LEVEL, false);
+
+        for (Map.Entry<String, Object> entry : reportedPropertiesMap.entrySet())
+        {
+            mergeReportedProperty(this.pendingReportedProperties, entry.getKey(), entry.getValue());
+        }
+        if (reportedPropertiesCallback != null)
+        {
+            this.pendingReportedPropertiesCallbacks.add(new Pair<>(reportedPropertiesCallback, reportedPropertiesCallbackContext));
+        }
+
+        if (this.reportedPropertiesFlush == null)
+        {
+            this.reportedPropertiesFlush = CoalescingScheduler.INSTANCE.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    flushReportedProperties();
+                }
+            }, this.reportedPropertiesWindowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Enables or disables the coalescing of reported properties. With a window, the properties reported in it are
+     * merged, the last value of each property wins, and sent as one patch at the end of the window. This bounds
+     * the twin traffic of devices that report often to one patch per window.
+     *
+     * @param windowMillis the window in milliseconds, {@code 0} to send each update as it comes, as by default.
+     * @throws IllegalArgumentException if the window is negative.
+     */
+    public synchronized void setReportedPropertiesCoalescingWindow(long windowMillis)
+    {
+        if (windowMillis < 0)
+        {
+            throw new IllegalArgumentException("Coalescing window cannot be negative");
+        }
+
+        if (windowMillis == 0)
+        {
+            flushReportedProperties();
+        }
+        this.reportedPropertiesWindowMillis = windowMillis;
+    }
+
+    /**
+     * Sends the reported properties merged in the current coalescing window now. Does nothing if there are none.
+     */
+    public synchronized void flushReportedProperties()
+    {
+        if (this.reportedPropertiesFlush != null)
+        {
+            this.reportedPropertiesFlush.cancel(false);
+            this.reportedPropertiesFlush = null;
+        }
+
+        if (this.pendingReportedProperties.isEmpty())
+        {
+            return;
+        }
+
+        Map<String, Object> reportedPropertiesMap = this.pendingReportedProperties;
+        List<Pair<IotHubEventCallback, Object>> callbacks = this.pendingReportedPropertiesCallbacks;
+        this.pendingReportedProperties = new HashMap<>();
+        this.pendingReportedPropertiesCallbacks = new ArrayList<>();
+
+        try
+        {
+            sendReportedProperties(reportedPropertiesMap, callbacks.isEmpty() ? null : callbacks);
+        }
+        catch (IllegalArgumentException | IllegalStateException e)
+        {
+            // The merged patch is not valid, or the client closed during the window.
+            new ReportedPropertiesRequestCallback(callbacks).execute(IotHubStatusCode.ERROR, null);
+        }
+    }
+
+    private void sendReportedProperties(Map<String, Object> reportedPropertiesMap, List<Pair<IotHubEventCallback, Object>> callbacks)
+    {
         /*
         **Codes_SRS_DEVICETWIN_25_011: [**The method shall send the property set to Twin Serializer for serilization by calling updateReportedProperty.**]**
          */
@@ -323,6 +739,14 @@ public class DeviceTwin
 
         if (serializedReportedProperties == null)
         {
+            if (callbacks != null)
+            {
+                // Nothing changed, so there is nothing to send or to wait for.
+                for (Pair<IotHubEventCallback, Object> callback : callbacks)
+                {
+                    callback.getKey().execute(IotHubStatusCode.OK_EMPTY, callback.getValue());
+                }
+            }
             return;
         }
 
@@ -344,8 +768,30 @@ public class DeviceTwin
         /*
         **Codes_SRS_DEVICETWIN_25_015: [**This method shall send the message to the lower transport layers by calling sendEventAsync.**]**
          */
-        this.deviceIO.sendEventAsync(updateReportedPropertiesRequest, new deviceTwinRequestMessageCallback(), null, this.config.getIotHubConnectionString());
+        IotHubEventCallback requestCallback = (callbacks == null) ? new deviceTwinRequestMessageCallback() : new ReportedPropertiesRequestCallback(callbacks);
+        this.deviceIO.sendEventAsync(updateReportedPropertiesRequest, requestCallback, null, this.config.getIotHubConnectionString());
+    }
 
+    /**
+     * Merges a property in the pending patch. A map is merged key by key in the pending one, so the last value of
+     * each property path wins.
+     */
+    private static void mergeReportedProperty(Map<String, Object> pending, String key, Object value)
+    {
+        Object current = pending.get(key);
+        if ((current instanceof Map) && (value instanceof Map))
+        {
+            Map<String, Object> merged = new HashMap<>((Map<String, Object>) current);
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet())
+            {
+                mergeReportedProperty(merged, entry.getKey(), entry.getValue());
+            }
+            pending.put(key, merged);
+        }
+        else
+        {
+            pending.put(key, value);
+        }
     }
 
     public void subscribeDesiredPropertiesNotification(Map<Property, Pair<PropertyCallBack<String, Object>, Object>> onDesiredPropertyChange)
@@ -381,4 +827,60 @@ public class DeviceTwin
             this.deviceIO.sendEventAsync(desiredPropertiesNotificationRequest, new deviceTwinRequestMessageCallback(), null, this.config.getIotHubConnectionString());
         }
     }
+
+    /**
+     * Sets the executor that delivers the desired property changes to the user callbacks.
+     *
+     * Without an executor the changes are delivered on the thread that receives them, after the twin has
+     * processed the message. With one, that thread is free as soon as the changes are queued. The changes are
+     * delivered in the order they arrived, either all of them one at a time, or with parallelPerProperty, one at a
+     * time per property so a slow callback only holds the later changes of its own property.
+     *
+     * @param executor the executor that runs the callbacks, or {@code null} to deliver them on the receiving thread.
+     *                 It is not shut down by the twin.
+     * @param parallelPerProperty whether the changes of different properties can be delivered at the same time.
+     */
+    public void setDesiredPropertyCallbackExecutor(Executor executor, boolean parallelPerProperty)
+    {
+        this.desiredPropertyParallelism = parallelPerProperty;
+        this.desiredPropertyExecutor = executor;
+    }
+
+    private void deliverDesiredPropertyChanges()
+    {
+        List<DesiredPropertyChange> changes;
+        synchronized (DEVICE_TWIN_LOCK)
+        {
+            if (undeliveredDesiredPropertyChanges.isEmpty())
+            {
+                return;
+            }
+            changes = undeliveredDesiredPropertyChanges;
+            undeliveredDesiredPropertyChanges = new ArrayList<>();
+        }
+
+        for (DesiredPropertyChange change : changes)
+        {
+            changesOf(change).add(change);
+        }
+    }
+
+    private DesiredPropertyChanges changesOf(DesiredPropertyChange change)
+    {
+        if (!desiredPropertyParallelism || desiredPropertyExecutor == null)
+        {
+            return desiredPropertyChanges;
+        }
+
+        synchronized (desiredPropertyChangesPerProperty)
+        {
+            DesiredPropertyChanges changes = desiredPropertyChangesPerProperty.get(change.key);
+            if (changes == null)
+            {
+                changes = new DesiredPropertyChanges();
+                desiredPropertyChangesPerProperty.put(change.key, changes);
+            }
+            return changes;
+        }
+    }
 }
@@ -0,0 +1,142 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.DeviceTwin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Local copy of the device twins, persisted in a directory with one file per device.
+ *
+ * A device twin started with a cache resumes from the twin it saved, including the desired {@code $version}, instead
+ * of downloading the whole twin again. The twin is downloaded when there is no saved copy, when the copy is older than
+ * the maximum age, or when a desired property patch shows that changes were missed since the copy was saved.
+ */
+public final class DeviceTwinCache
+{
+    private static final String FILE_EXTENSION = ".twin.json";
+    private static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+    private static final Charset CACHE_CHARSET = StandardCharsets.UTF_8;
+
+    private final File directory;
+    private final long maxAgeMillis;
+
+    /**
+     * Constructor.
+     *
+     * @param directory the directory where the twins are saved. It is created if it does not exist.
+     * @param maxAgeMillis how long a saved twin can be used, in milliseconds, after it was last saved.
+     * @throws IllegalArgumentException if the directory is {@code null} or cannot be created, or if
+     *                                  maxAgeMillis is not positive.
+     */
+    public DeviceTwinCache(File directory, long maxAgeMillis)
+    {
+        if (directory == null)
+        {
+            throw new IllegalArgumentException("directory cannot be null");
+        }
+
+        if (maxAgeMillis <= 0)
+        {
+            throw new IllegalArgumentException("maxAgeMillis shall be positive");
+        }
+
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IllegalArgumentException("Cannot create the directory " + directory);
+        }
+
+        this.directory = directory;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Reads the saved twin of a device.
+     *
+     * @param deviceId the device.
+     * @return the saved twin json, or {@code null} if there is none, if it is older than the maximum age, or if
+     *         it cannot be read.
+     */
+    public String load(String deviceId)
+    {
+        File file = fileOf(deviceId);
+        long age = System.currentTimeMillis() - file.lastModified();
+        if (!file.isFile() || age > this.maxAgeMillis)
+        {
+            return null;
+        }
+
+        try
+        {
+            return new String(Files.readAllBytes(file.toPath()), CACHE_CHARSET);
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Saves the twin of a device, replacing the previous copy. A reader sees either the previous copy or the
+     * new one, never a partial file.
+     *
+     * @param deviceId the device.
+     * @param twinJson the twin json.
+     * @throws IOException if the twin cannot be written.
+     */
+    public void save(String deviceId, String twinJson) throws IOException
+    {
+        File file = fileOf(deviceId);
+        File temporaryFile = new File(this.directory, file.getName() + TEMPORARY_FILE_EXTENSION);
+        Files.write(temporaryFile.toPath(), twinJson.getBytes(CACHE_CHARSET));
+        try
+        {
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e)
+        {
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Deletes the saved twin of a device, if any.
+     *
+     * @param deviceId the device.
+     */
+    public void remove(String deviceId)
+    {
+        File file = fileOf(deviceId);
+        if (file.exists() && !file.delete())
+        {
+            // Not used anymore once it is too old.
+            file.setLastModified(0);
+        }
+    }
+
+    private File fileOf(String deviceId)
+    {
+        if (deviceId == null || deviceId.isEmpty())
+        {
+            throw new IllegalArgumentException("deviceId cannot be null or empty");
+        }
+
+        try
+        {
+            // The device id can contain characters that are not valid in a file name.
+            return new File(this.directory, URLEncoder.encode(deviceId, CACHE_CHARSET.name()) + FILE_EXTENSION);
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.auth;
+
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The IotHubSSLContexts of the process, shared by all the devices that use the
+ * same certificates.
+ *
+ * Building a context parses the certificates, fills a key store and seeds a
+ * random generator, so a process that starts many devices with the same
+ * trusted certificate, or the same X509 certificate and key, builds it once.
+ * A context stays in the cache as long as an authentication holds it, and is
+ * dropped once the last one is gone.
+ */
+final class IotHubSSLContextCache
+{
+    /**
+     * Builds the context of a key the first time it is needed.
+     */
+    interface Factory
+    {
+        IotHubSSLContext create() throws IOException, GeneralSecurityException;
+    }
+
+    private static final class ContextReference extends WeakReference<IotHubSSLContext>
+    {
+        private final String key;
+
+        private ContextReference(String key, IotHubSSLContext context, ReferenceQueue<IotHubSSLContext> queue)
+        {
+            super(context, queue);
+            this.key = key;
+        }
+    }
+
+    /**
+     * The context of one key. Its lock is held while the context is built, so
+     * that concurrent devices wait for the first one instead of building their own.
+     */
+    private static final class Entry
+    {
+        private volatile ContextReference reference;
+    }
+
+    private static final Map<String, Entry> entries = new HashMap<>();
+    private static final ReferenceQueue<IotHubSSLContext> collected = new ReferenceQueue<>();
+
+    private IotHubSSLContextCache()
+    {
+    }
+
+    /**
+     * Getter for the context of a key, built by the factory if no authentication holds it.
+     *
+     * @param key the key of the certificates of the context, from {@link #keyOf(String...)}.
+     * @param factory builds the context if it is not in the cache.
+     * @return the shared context.
+     * @throws IOException if the factory cannot read a certificate.
+     * @throws GeneralSecurityException if the factory cannot build the context.
+     */
+    static IotHubSSLContext get(String key, Factory factory) throws IOException, GeneralSecurityException
+    {
+        Entry entry;
+        synchronized (entries)
+        {
+            expungeCollected();
+            entry = entries.get(key);
+            if (entry == null)
+            {
+                entry = new Entry();
+                entries.put(key, entry);
+            }
+        }
+
+        synchronized (entry)
+        {
+            IotHubSSLContext context = (entry.reference == null) ? null : entry.reference.get();
+            if (context == null)
+            {
+                context = factory.create();
+                entry.reference = new ContextReference(key, context, collected);
+            }
+            return context;
+        }
+    }
+
+    /**
+     * Builds the key of a set of certificates from their content. The key is a
+     * digest, so the cache does not keep a copy of a private key.
+     *
+     * @param parts the certificates and keys, {@code null} for a missing one.
+     * @return the key.
+     * @throws GeneralSecurityException if the digest is not available.
+     */
+    static String keyOf(String... parts) throws GeneralSecurityException
+    {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (String part : parts)
+        {
+            if (part == null)
+            {
+                digest.update((byte) 0);
+            }
+            else
+            {
+                byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+                digest.update((byte) 1);
+                digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) ':');
+                digest.update(bytes);
+            }
+        }
+
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest())
+        {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Reads a trusted certificate file, so that its content is part of the key
+     * instead of its path.
+     *
+     * @param path the path of the certificate file.
+     * @return the content of the file.
+     * @throws IOException if the file cannot be read.
+     */
+    static String readCertificate(String path) throws IOException
+    {
+        return new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8);
+    }
+
+    private static void expungeCollected()
+    {
+        ContextReference reference;
+        while ((reference = (ContextReference) collected.poll()) != null)
+        {
+            Entry entry = entries.get(reference.key);
+            if (entry != null && entry.reference == reference)
+            {
+                entries.remove(reference.key);
+            }
+        }
+    }
+}
@@ -5,12 +5,19 @@
 
 package com.microsoft.azure.sdk.iot.device.auth;
 
+import com.microsoft.azure.sdk.iot.device.CustomLogger;
+
 import javax.net.ssl.SSLContext;
 import java.io.IOException;
+import java.security.GeneralSecurityException;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class IotHubSasTokenAuthentication
 {
@@ -25,7 +32,39 @@ public class IotHubSasTokenAuthentication
     private static final long MILLISECONDS_PER_SECOND = 1000L;
     private static final long MINIMUM_EXPIRATION_TIME_OFFSET = 1L;
 
-    private IotHubSasToken sasToken;
+    /**
+     * A token signed with the device key is renewed once 75% of its validity
+     * has passed, less a random part of up to 10% of its validity, so devices
+     * started together do not all renew at the same time.
+     */
+    private static final int RENEWAL_MARGIN_PERCENT = 25;
+    private static final int RENEWAL_JITTER_PERCENT = 10;
+
+    private final CustomLogger logger = new CustomLogger(this.getClass());
+
+    private volatile IotHubSasToken sasToken;
+    private long renewalTimeMillis = Long.MAX_VALUE;
+
+    private final List<IotHubSasTokenRenewalListener> renewalListeners = new ArrayList<>();
+    private ScheduledFuture<?> renewalFuture;
+    private final Runnable renewalTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            List<IotHubSasTokenRenewalListener> listeners;
+            synchronized (IotHubSasTokenAuthentication.this)
+            {
+                renewalFuture = null;
+                if (renewalListeners.isEmpty())
+                {
+                    return;
+                }
+                listeners = renewSasToken();
+            }
+            notifyRenewalListeners(listeners);
+        }
+    };
     private IotHubSSLContext iotHubSSLContext;
 
     private String hostname;
@@ -55,24 +94,126 @@ public class IotHubSasTokenAuthentication
         this.sslContextNeedsUpdate = false;
 
         //Codes_SRS_IOTHUBSASTOKENAUTHENTICATION_34_002: [This constructor shall save the provided connection string.]
-        this.sasToken = new IotHubSasToken(hostname, deviceId, deviceKey, sharedAccessToken, calculateExpiryTime(this.tokenValidSecs));
+        long expiryTime = calculateExpiryTime(this.tokenValidSecs);
+        this.sasToken = new IotHubSasToken(hostname, deviceId, deviceKey, sharedAccessToken, expiryTime);
+        if (deviceKey != null)
+        {
+            this.renewalTimeMillis = calculateRenewalTimeMillis(expiryTime, this.tokenValidSecs);
+        }
     }
 
     /**
-     * Getter for SasToken. If the saved token has expired, this method shall renew it if possible
+     * Getter for SasToken. If the saved token has expired, or is close to its expiry, this method shall renew it
+     * if possible
      *
      * @return The value of SasToken
      */
     public String getRenewedSasToken()
     {
-        if (this.deviceKey != null && this.sasToken.isExpired())
+        List<IotHubSasTokenRenewalListener> listeners = null;
+        String token;
+        synchronized (this)
         {
-            //Codes_SRS_IOTHUBSASTOKENAUTHENTICATION_34_004: [If the saved sas token has expired and there is a device key present, the saved sas token shall be renewed.]
-            this.sasToken = new IotHubSasToken(this.hostname, this.deviceId, this.deviceKey, null, calculateExpiryTime(this.tokenValidSecs));
+            if (this.deviceKey != null && (this.sasToken.isExpired() || System.currentTimeMillis() >= this.renewalTimeMillis))
+            {
+                //Codes_SRS_IOTHUBSASTOKENAUTHENTICATION_34_004: [If the saved sas token has expired and there is a device key present, the saved sas token shall be renewed.]
+                listeners = renewSasToken();
+            }
+
+            //Codes_SRS_IOTHUBSASTOKENAUTHENTICATION_34_005: [This function shall return the saved sas token.]
+            token = this.sasToken.toString();
         }
 
-        //Codes_SRS_IOTHUBSASTOKENAUTHENTICATION_34_005: [This function shall return the saved sas token.]
-        return this.sasToken.toString();
+        if (listeners != null)
+        {
+            notifyRenewalListeners(listeners);
+        }
+        return token;
+    }
+
+    /**
+     * Register a connection to be notified of each renewal of the sas token. While at least one listener is
+     * registered, a token signed with the device key is renewed in the background ahead of its expiry, by a thread
+     * shared by all the devices of the process. A token provided by the user cannot be renewed, so the listener is
+     * then never called.
+     *
+     * @param listener the listener to notify. Cannot be {@code null}.
+     * @throws IllegalArgumentException if the listener is null.
+     */
+    public synchronized void addSasTokenRenewalListener(IotHubSasTokenRenewalListener listener) throws IllegalArgumentException
+    {
+        if (listener == null)
+        {
+            throw new IllegalArgumentException("listener cannot be null");
+        }
+
+        if (!this.renewalListeners.contains(listener))
+        {
+            this.renewalListeners.add(listener);
+            if (this.renewalFuture == null)
+            {
+                scheduleRenewal();
+            }
+        }
+    }
+
+    /**
+     * Unregister a connection from the renewals of the sas token. The background renewal stops with the last
+     * listener.
+     *
+     * @param listener the listener to remove.
+     */
+    public synchronized void removeSasTokenRenewalListener(IotHubSasTokenRenewalListener listener)
+    {
+        this.renewalListeners.remove(listener);
+        if (this.renewalListeners.isEmpty() && this.renewalFuture != null)
+        {
+            this.renewalFuture.cancel(false);
+            this.renewalFuture = null;
+        }
+    }
+
+    /*
+        Signs a new token and schedules its renewal. Called with the lock held, returns the listeners to notify once
+        the lock is released.
+     */
+    private List<IotHubSasTokenRenewalListener> renewSasToken()
+    {
+        long expiryTime = calculateExpiryTime(this.tokenValidSecs);
+        this.sasToken = new IotHubSasToken(this.hostname, this.deviceId, this.deviceKey, null, expiryTime);
+        this.renewalTimeMillis = calculateRenewalTimeMillis(expiryTime, this.tokenValidSecs);
+        scheduleRenewal();
+        return new ArrayList<>(this.renewalListeners);
+    }
+
+    private void scheduleRenewal()
+    {
+        if (this.renewalFuture != null)
+        {
+            this.renewalFuture.cancel(false);
+            this.renewalFuture = null;
+        }
+
+        if (this.deviceKey != null && !this.renewalListeners.isEmpty())
+        {
+            this.renewalFuture = IotHubSasTokenRenewalScheduler.getInstance().schedule(this.renewalTask, this.renewalTimeMillis - System.currentTimeMillis());
+        }
+    }
+
+    private void notifyRenewalListeners(List<IotHubSasTokenRenewalListener> listeners)
+    {
+        for (IotHubSasTokenRenewalListener listener : listeners)
+        {
+            try
+            {
+                listener.onSasTokenRenewed();
+            }
+            catch (RuntimeException e)
+            {
+                // One failing connection does not keep the others on the old token.
+                logger.LogError("Sas token renewal listener failed: %s", e.toString());
+            }
+        }
     }
 
     private Long calculateExpiryTime(long validInSecs)
@@ -80,6 +221,13 @@ public class IotHubSasTokenAuthentication
         return (System.currentTimeMillis() / MILLISECONDS_PER_SECOND) + validInSecs + MINIMUM_EXPIRATION_TIME_OFFSET;
     }
 
+    private static long calculateRenewalTimeMillis(long expiryTime, long validInSecs)
+    {
+        long validMillis = validInSecs * MILLISECONDS_PER_SECOND;
+        long jitterMillis = (long) (ThreadLocalRandom.current().nextDouble() * validMillis * RENEWAL_JITTER_PERCENT / 100);
+        return (expiryTime * MILLISECONDS_PER_SECOND) - (validMillis * RENEWAL_MARGIN_PERCENT / 100) - jitterMillis;
+    }
+
     /**
      * Getter for SasToken. If the saved token has expired, this method shall not renew it even if possible
      *
@@ -102,13 +250,22 @@ public class IotHubSasTokenAuthentication
         {
             if (this.iotHubSSLContext == null || this.sslContextNeedsUpdate)
             {
-                this.iotHubSSLContext = generateSSLContext();
+                // Devices with the same trusted cert share one context.
+                this.iotHubSSLContext = IotHubSSLContextCache.get(generateSSLContextKey(), new IotHubSSLContextCache.Factory()
+                {
+                    @Override
+                    public IotHubSSLContext create() throws IOException, GeneralSecurityException
+                    {
+                        return generateSSLContext();
+                    }
+                });
+                this.sslContextNeedsUpdate = false;
             }
 
             //Codes_SRS_IOTHUBSASTOKENAUTHENTICATION_34_008: [This function shall return the generated IotHubSSLContext.]
             return this.iotHubSSLContext.getSSlContext();
         }
-        catch (CertificateException |  NoSuchAlgorithmException | KeyManagementException | KeyStoreException e)
+        catch (GeneralSecurityException e)
         {
             throw new IOException(e.getMessage());
         }
@@ -176,6 +333,23 @@ public class IotHubSasTokenAuthentication
         }
     }
 
+    /**
+     * Builds the key of the shared SSLContext of this object from the content of its trusted cert.
+     * @return the key of the context.
+     * @throws IOException if the trusted cert file cannot be read
+     * @throws GeneralSecurityException if the key cannot be computed
+     */
+    private String generateSSLContextKey() throws IOException, GeneralSecurityException
+    {
+        String trustedCert = this.iotHubTrustedCert;
+        if (trustedCert == null && this.pathToIotHubTrustedCert != null)
+        {
+            trustedCert = IotHubSSLContextCache.readCertificate(this.pathToIotHubTrustedCert);
+        }
+
+        return IotHubSSLContextCache.keyOf(trustedCert);
+    }
+
     /**
      * Setter for the providing trusted certificate.
      * @param pathToCertificate path to the certificate for one way authentication.
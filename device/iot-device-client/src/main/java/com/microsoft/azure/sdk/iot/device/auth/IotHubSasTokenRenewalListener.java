@@ -0,0 +1,17 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.auth;
+
+/**
+ * Notified when an {@link IotHubSasTokenAuthentication} signs a new sas token with its device key, so a connection
+ * can hand the new token to the service before the previous one expires.
+ */
+public interface IotHubSasTokenRenewalListener
+{
+    /**
+     * Called after the sas token was renewed, on the thread that renewed it. The new token is returned by
+     * {@link IotHubSasTokenAuthentication#getCurrentSasToken()}. The call shall not block.
+     */
+    void onSasTokenRenewed();
+}
@@ -0,0 +1,68 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.auth;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The thread that renews the sas tokens of all the devices of the process.
+ *
+ * Signing a token is one HMAC, so a single thread serves any number of
+ * devices. It is a daemon thread that stops when no renewal is pending,
+ * so the scheduler never needs to be shut down.
+ */
+final class IotHubSasTokenRenewalScheduler
+{
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 60;
+
+    private static final class InstanceHolder
+    {
+        private static final IotHubSasTokenRenewalScheduler INSTANCE = new IotHubSasTokenRenewalScheduler();
+    }
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    private IotHubSasTokenRenewalScheduler()
+    {
+        this.executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "azure-iot-sdk-sas-token-renewal");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // The last thread stays while a renewal is queued, whatever its delay.
+        this.executor.setKeepAliveTime(IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        this.executor.allowCoreThreadTimeOut(true);
+        this.executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Getter for the scheduler shared by the process.
+     *
+     * @return the shared scheduler.
+     */
+    static IotHubSasTokenRenewalScheduler getInstance()
+    {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * Run a renewal after a delay.
+     *
+     * @param task is the renewal.
+     * @param delayMillis is the delay in milliseconds, 0 or less to run it now.
+     * @return the future of the renewal, to cancel it.
+     */
+    ScheduledFuture<?> schedule(Runnable task, long delayMillis)
+    {
+        return this.executor.schedule(task, Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+    }
+}
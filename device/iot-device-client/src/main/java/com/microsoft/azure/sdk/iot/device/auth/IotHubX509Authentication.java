@@ -7,6 +7,7 @@ package com.microsoft.azure.sdk.iot.device.auth;
 
 import javax.net.ssl.SSLContext;
 import java.io.IOException;
+import java.security.GeneralSecurityException;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
@@ -50,13 +51,21 @@ public class IotHubX509Authentication
             //Codes_SRS_IOTHUBX509AUTHENTICATION_34_005: [This function shall return the saved IotHubSSLContext.]
             if (this.iotHubSSLContext == null || this.sslContextNeedsUpdate)
             {
-                this.iotHubSSLContext = generateSSLContext();
+                // Devices with the same certificates and trusted cert share one context.
+                this.iotHubSSLContext = IotHubSSLContextCache.get(generateSSLContextKey(), new IotHubSSLContextCache.Factory()
+                {
+                    @Override
+                    public IotHubSSLContext create() throws IOException, GeneralSecurityException
+                    {
+                        return generateSSLContext();
+                    }
+                });
                 this.sslContextNeedsUpdate = false;
             }
 
             return this.iotHubSSLContext.getSSlContext();
         }
-        catch (CertificateException | UnrecoverableKeyException | NoSuchAlgorithmException | KeyManagementException | KeyStoreException e)
+        catch (GeneralSecurityException e)
         {
             throw new IOException(e.getMessage());
         }
@@ -92,6 +101,23 @@ public class IotHubX509Authentication
         }
     }
 
+    /**
+     * Builds the key of the shared SSLContext of this object from the content of its certificates and private key.
+     * @return the key of the context.
+     * @throws IOException if the trusted cert file cannot be read
+     * @throws GeneralSecurityException if the key cannot be computed
+     */
+    private String generateSSLContextKey() throws IOException, GeneralSecurityException
+    {
+        String trustedCert = this.iotHubTrustedCert;
+        if (trustedCert == null && this.pathToIotHubTrustedCert != null)
+        {
+            trustedCert = IotHubSSLContextCache.readCertificate(this.pathToIotHubTrustedCert);
+        }
+
+        return IotHubSSLContextCache.keyOf(trustedCert, this.iotHubX509.getPublicKeyCertificate(), this.iotHubX509.getPrivateKey());
+    }
+
     /**
      * Setter for the providing trusted certificate.
      * @param pathToCertificate path to the certificate for one way authentication.
@@ -0,0 +1,84 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.fileupload;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket shared by the uploads of the process.
+ *
+ * <p>
+ *     The bucket fills at {@code bytesPerSecond} and holds at most one second of bytes. A sender takes the tokens of
+ *     the bytes it sends and, if the bucket goes below zero, waits until the debt is paid back. So the senders that
+ *     come later wait behind it, and the average rate never goes over the limit.
+ * </p>
+ */
+final class BandwidthLimiter
+{
+    private static final double NANOSECONDS_PER_SECOND = 1_000_000_000.0;
+
+    private long bytesPerSecond;
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * Setter for the limit. It applies to the bytes sent after the call.
+     *
+     * @param bytesPerSecond is the limit, 0 or less for no limit.
+     */
+    synchronized void setBytesPerSecond(long bytesPerSecond)
+    {
+        this.bytesPerSecond = Math.max(0, bytesPerSecond);
+        this.tokens = this.bytesPerSecond;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Getter for the limit.
+     *
+     * @return the limit in bytes per second, 0 for no limit.
+     */
+    synchronized long getBytesPerSecond()
+    {
+        return this.bytesPerSecond;
+    }
+
+    /**
+     * Takes the tokens of the provided bytes, and waits if the bucket is in debt.
+     *
+     * @param bytes is the number of bytes to send.
+     * @throws InterruptedIOException if the thread is interrupted while it waits.
+     */
+    void acquire(int bytes) throws InterruptedIOException
+    {
+        long waitNanos;
+        synchronized (this)
+        {
+            if (this.bytesPerSecond == 0)
+            {
+                return;
+            }
+
+            long now = System.nanoTime();
+            this.tokens = Math.min(this.bytesPerSecond, this.tokens + (now - this.lastRefillNanos) * this.bytesPerSecond / NANOSECONDS_PER_SECOND);
+            this.lastRefillNanos = now;
+            this.tokens -= bytes;
+            waitNanos = (this.tokens >= 0) ? 0 : (long) (-this.tokens * NANOSECONDS_PER_SECOND / this.bytesPerSecond);
+        }
+
+        if (waitNanos > 0)
+        {
+            try
+            {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for upload bandwidth");
+            }
+        }
+    }
+}
@@ -0,0 +1,379 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.fileupload;
+
+import com.microsoft.azure.sdk.iot.deps.util.Base64;
+import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.blob.BlockEntry;
+import com.microsoft.azure.storage.blob.BlockListingFilter;
+import com.microsoft.azure.storage.blob.CloudBlockBlob;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.math.BigInteger;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Upload a content to a block blob in blocks, several blocks at the same time, and commit the block list at the end.
+ *
+ * <p>
+ *     The block ids are made of the position of the block and the MD5 of its bytes, so the blocks left uncommitted by
+ *     a failed upload are found and not sent again when they have the same bytes, and sent again when the content
+ *     changed since. Every block is still read to compute its id.
+ * </p>
+ * <p>
+ *     The blocks are sent by the block threads of the {@link FileUploadScheduler}, shared by all the uploads.
+ * </p>
+ */
+final class BlockBlobUpload
+{
+    private static final int MAX_BLOCK_COUNT = 50000;
+    private static final int MAX_BLOCK_ATTEMPTS = 3;
+    private static final String BLOCK_ID_FORMAT = "%08x%032x";
+
+    /*
+        The bytes of one block, read by the thread that uploads it.
+     */
+    private interface BlockContent
+    {
+        byte[] read() throws IOException;
+    }
+
+    /*
+        The content, walked block after block on the calling thread.
+     */
+    private interface BlockSource
+    {
+        BlockContent next(long offset, int blockLength) throws IOException;
+    }
+
+    private final CloudBlockBlob blob;
+    private final long length;
+    private final int blockSize;
+    private final int maxConcurrentBlocks;
+
+    /**
+     * CONSTRUCTOR
+     *
+     * @param blob is the destination blob. Cannot be {@code null}.
+     * @param length is the number of bytes to upload. Cannot be negative.
+     * @param options is the block size and the concurrency of the upload. Cannot be {@code null}.
+     * @throws IllegalArgumentException if one of the parameters is not valid, or if the content does not fit in
+     *          50000 blocks of the biggest size.
+     */
+    BlockBlobUpload(CloudBlockBlob blob, long length, FileUploadOptions options) throws IllegalArgumentException
+    {
+        if (blob == null)
+        {
+            throw new IllegalArgumentException("blob is null");
+        }
+
+        if (length < 0)
+        {
+            throw new IllegalArgumentException("length is negative");
+        }
+
+        if (options == null)
+        {
+            throw new IllegalArgumentException("options is null");
+        }
+
+        long minBlockSize = (length + MAX_BLOCK_COUNT - 1) / MAX_BLOCK_COUNT;
+        if (minBlockSize > FileUploadOptions.MAX_BLOCK_SIZE_IN_BYTES)
+        {
+            throw new IllegalArgumentException("length is bigger than the biggest block blob");
+        }
+
+        this.blob = blob;
+        this.length = length;
+        this.blockSize = (int) Math.max(options.getBlockSizeInBytes(), minBlockSize);
+        this.maxConcurrentBlocks = options.getMaxConcurrentBlocks();
+    }
+
+    /**
+     * Upload the next {@code length} bytes of a stream. The stream is read on the calling thread, and up to
+     * maxConcurrentBlocks blocks are held in memory.
+     *
+     * @param inputStream is the content to upload.
+     * @throws StorageException if the storage rejects a block or the block list.
+     * @throws IOException if the stream cannot be read, or ends before {@code length} bytes.
+     */
+    void upload(final InputStream inputStream) throws StorageException, IOException
+    {
+        uploadBlocks(new BlockSource()
+        {
+            @Override
+            public BlockContent next(long offset, int blockLength) throws IOException
+            {
+                final byte[] data = readFully(inputStream, blockLength);
+                return new BlockContent()
+                {
+                    @Override
+                    public byte[] read()
+                    {
+                        return data;
+                    }
+                };
+            }
+        });
+    }
+
+    /**
+     * Upload the first {@code length} bytes of a file. Each block is read with a positional read by the thread that
+     * uploads it.
+     *
+     * @param channel is the content to upload.
+     * @throws StorageException if the storage rejects a block or the block list.
+     * @throws IOException if the file cannot be read, or is shorter than {@code length} bytes.
+     */
+    void upload(final FileChannel channel) throws StorageException, IOException
+    {
+        uploadBlocks(new BlockSource()
+        {
+            @Override
+            public BlockContent next(final long offset, final int blockLength)
+            {
+                return new BlockContent()
+                {
+                    @Override
+                    public byte[] read() throws IOException
+                    {
+                        ByteBuffer buffer = ByteBuffer.allocate(blockLength);
+                        while (buffer.hasRemaining())
+                        {
+                            if (channel.read(buffer, offset + buffer.position()) < 0)
+                            {
+                                throw new EOFException("The file is shorter than " + length + " bytes");
+                            }
+                        }
+                        return buffer.array();
+                    }
+                };
+            }
+        });
+    }
+
+    private void uploadBlocks(BlockSource source) throws StorageException, IOException
+    {
+        final Map<String, Long> uncommittedBlocks = getUncommittedBlocks();
+        int blockCount = (int) ((this.length + this.blockSize - 1) / this.blockSize);
+        final String[] blockIds = new String[blockCount];
+
+        FileUploadScheduler scheduler = (this.maxConcurrentBlocks > 1) ? FileUploadScheduler.getInstance() : null;
+        final Semaphore freeSlots = new Semaphore(this.maxConcurrentBlocks);
+        List<Future<Void>> pendingBlocks = new ArrayList<>();
+
+        try
+        {
+            for (int blockIndex = 0; blockIndex < blockCount; blockIndex++)
+            {
+                final int index = blockIndex;
+                long offset = (long) blockIndex * this.blockSize;
+                int blockLength = (int) Math.min(this.blockSize, this.length - offset);
+
+                if (scheduler == null)
+                {
+                    blockIds[index] = uploadBlock(index, source.next(offset, blockLength), uncommittedBlocks);
+                    continue;
+                }
+
+                // Keeps at most maxConcurrentBlocks blocks in memory, and stops at the first failed block.
+                freeSlots.acquire();
+                checkBlocks(pendingBlocks, false);
+                final BlockContent content;
+                try
+                {
+                    content = source.next(offset, blockLength);
+                }
+                catch (IOException | RuntimeException e)
+                {
+                    freeSlots.release();
+                    throw e;
+                }
+
+                pendingBlocks.add(scheduler.submitBlock(new Callable<Void>()
+                {
+                    @Override
+                    public Void call() throws StorageException, IOException
+                    {
+                        try
+                        {
+                            blockIds[index] = uploadBlock(index, content, uncommittedBlocks);
+                        }
+                        finally
+                        {
+                            freeSlots.release();
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            checkBlocks(pendingBlocks, true);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("The block upload was interrupted");
+        }
+        finally
+        {
+            // After a failure, the other blocks of this upload do not hold the shared block threads.
+            for (Future<Void> pendingBlock : pendingBlocks)
+            {
+                pendingBlock.cancel(true);
+            }
+        }
+
+        List<BlockEntry> blockList = new ArrayList<>(blockCount);
+        for (String blockId : blockIds)
+        {
+            blockList.add(new BlockEntry(blockId));
+        }
+        this.blob.commitBlockList(blockList);
+    }
+
+    /*
+        Uploads the block unless the storage already has an uncommitted block with the same bytes, returns its id.
+     */
+    private String uploadBlock(int blockIndex, BlockContent content, Map<String, Long> uncommittedBlocks) throws StorageException, IOException
+    {
+        byte[] data = content.read();
+        String blockId = blockId(blockIndex, data);
+        Long uncommittedLength = uncommittedBlocks.get(blockId);
+        if ((uncommittedLength == null) || (uncommittedLength != data.length))
+        {
+            uploadBlock(blockId, data);
+        }
+        return blockId;
+    }
+
+    private void uploadBlock(String blockId, byte[] data) throws StorageException, IOException
+    {
+        for (int attempt = 1; ; attempt++)
+        {
+            try
+            {
+                InputStream blockStream = FileUploadScheduler.getInstance().throttle(new ByteArrayInputStream(data));
+                this.blob.uploadBlock(blockId, blockStream, data.length);
+                return;
+            }
+            catch (StorageException | IOException e)
+            {
+                if (attempt >= MAX_BLOCK_ATTEMPTS)
+                {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /*
+        Throws the failure of the first failed block. Waits for all the blocks if wait is true, else only looks at the
+        blocks that are done.
+     */
+    private static void checkBlocks(List<Future<Void>> pendingBlocks, boolean wait) throws StorageException, IOException, InterruptedException
+    {
+        Iterator<Future<Void>> iterator = pendingBlocks.iterator();
+        while (iterator.hasNext())
+        {
+            Future<Void> pendingBlock = iterator.next();
+            if (!wait && !pendingBlock.isDone())
+            {
+                continue;
+            }
+
+            try
+            {
+                pendingBlock.get();
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                if (cause instanceof StorageException)
+                {
+                    throw (StorageException) cause;
+                }
+                if (cause instanceof IOException)
+                {
+                    throw (IOException) cause;
+                }
+                throw new IOException("The block upload failed", cause);
+            }
+            iterator.remove();
+        }
+    }
+
+    private Map<String, Long> getUncommittedBlocks() throws StorageException
+    {
+        Map<String, Long> uncommittedBlocks = new HashMap<>();
+        try
+        {
+            for (BlockEntry blockEntry : this.blob.downloadBlockList(BlockListingFilter.UNCOMMITTED, null, null, null))
+            {
+                uncommittedBlocks.put(blockEntry.getId(), blockEntry.getSize());
+            }
+        }
+        catch (StorageException e)
+        {
+            // A blob that does not exist yet has no block.
+            if (e.getHttpStatusCode() != HttpURLConnection.HTTP_NOT_FOUND)
+            {
+                throw e;
+            }
+        }
+        return uncommittedBlocks;
+    }
+
+    private static String blockId(int blockIndex, byte[] data)
+    {
+        MessageDigest md5;
+        try
+        {
+            md5 = MessageDigest.getInstance("MD5");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // Every Java platform has MD5.
+            throw new IllegalStateException(e);
+        }
+
+        // All the ids of a blob have the same length.
+        String id = String.format(BLOCK_ID_FORMAT, blockIndex, new BigInteger(1, md5.digest(data)));
+        return Base64.encodeBase64StringLocal(id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] readFully(InputStream inputStream, int blockLength) throws IOException
+    {
+        byte[] data = new byte[blockLength];
+        int offset = 0;
+        while (offset < blockLength)
+        {
+            int read = inputStream.read(data, offset, blockLength - offset);
+            if (read < 0)
+            {
+                throw new EOFException("The stream ended before the expected length");
+            }
+            offset += read;
+        }
+        return data;
+    }
+}
@@ -11,23 +11,20 @@ import com.microsoft.azure.sdk.iot.device.transport.https.HttpsTransportManager;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.Queue;
-import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * Provide means to upload file in the Azure Storage using the IoTHub.
  */
 public final class FileUpload
 {
-    private static final int MAX_UPLOAD_PARALLEL = 10;
-
     private HttpsTransportManager httpsTransportManager;
     private static CustomLogger logger;
-    private ScheduledExecutorService taskScheduler;
+    private FileUploadScheduler uploadScheduler;
     private FileUploadStatusCallBack fileUploadStatusCallBack;
-    private static Queue<FileUploadInProgress> fileUploadInProgressesSet;
+    private Queue<FileUploadInProgress> fileUploadInProgressesSet;
 
     /**
      * CONSTRUCTOR
@@ -51,16 +48,9 @@ public final class FileUpload
         /* Codes_SRS_FILEUPLOAD_21_003: [If the constructor fail to create the new instance of the `HttpsTransportManager`, it shall throw IllegalArgumentException, threw by the HttpsTransportManager constructor.] */
         this.httpsTransportManager = new HttpsTransportManager(config);
 
-        try
-        {
-            /* Codes_SRS_FILEUPLOAD_21_012: [The constructor shall create an pool of 10 threads to execute the uploads in parallel.] */
-            taskScheduler = Executors.newScheduledThreadPool(MAX_UPLOAD_PARALLEL);
-        }
-        catch (IllegalArgumentException | NullPointerException e)
-        {
-            /* Codes_SRS_FILEUPLOAD_21_015: [If create the executor failed, the constructor shall throws IOException.] */
-            throw new IOException("Cannot create a pool of threads to manager uploads: " + e);
-        }
+        // The uploads of all the clients of the process share the upload threads and the upload bandwidth.
+        uploadScheduler = FileUploadScheduler.getInstance();
+
         /* Codes_SRS_FILEUPLOAD_21_013: [The constructor shall create a list `fileUploadInProgressesSet` to control the pending uploads.] */
         fileUploadInProgressesSet = new LinkedBlockingDeque<FileUploadInProgress>();
         /* Codes_SRS_FILEUPLOAD_21_014: [The constructor shall create an Event callback `fileUploadStatusCallBack` to receive the upload status.] */
@@ -128,7 +118,60 @@ public final class FileUpload
         FileUploadTask fileUploadTask = new FileUploadTask(blobName, inputStream, streamLength, httpsTransportManager, fileUploadStatusCallBack, newUpload);
 
         /* Codes_SRS_FILEUPLOAD_21_010: [The uploadToBlobAsync shall schedule the task `FileUploadTask` to immediately start.] */
-        newUpload.setTask(taskScheduler.submit(fileUploadTask));
+        newUpload.setTask(uploadScheduler.submit(this, fileUploadTask));
+    }
+
+    /**
+     * Upload the stream to container in blocks, several blocks at the same time, see {@link FileUploadOptions}.
+     * The upload process will be executed in background, as in
+     * {@link #uploadToBlobAsync(String, InputStream, long, IotHubEventCallback, Object)}.
+     *
+     * @param blobName is the name of the file in the container.
+     * @param inputStream is the input stream.
+     * @param streamLength is the stream length.
+     * @param options is the block size and the concurrency of the upload.
+     * @param statusCallback is the callback to notify that the upload is completed (with status).
+     * @param statusCallbackContext is the context of the callback, allowing multiple uploads in parallel.
+     * @throws IllegalArgumentException if one of the parameters is invalid.
+     */
+    public synchronized void uploadToBlobAsync(
+            String blobName, InputStream inputStream, long streamLength, FileUploadOptions options,
+            IotHubEventCallback statusCallback, Object statusCallbackContext)
+            throws IllegalArgumentException
+    {
+        if(options == null)
+        {
+            throw new IllegalArgumentException("options is null");
+        }
+
+        FileUploadInProgress newUpload = new FileUploadInProgress(statusCallback, statusCallbackContext);
+        FileUploadTask fileUploadTask = new FileUploadTask(blobName, inputStream, streamLength, options, httpsTransportManager, fileUploadStatusCallBack, newUpload);
+        fileUploadInProgressesSet.add(newUpload);
+        newUpload.setTask(uploadScheduler.submit(this, fileUploadTask));
+    }
+
+    /**
+     * Upload the file to container in blocks, several blocks at the same time, see {@link FileUploadOptions}.
+     * The blocks are read from the file with positional reads instead of one stream.
+     * The upload process will be executed in background, as in
+     * {@link #uploadToBlobAsync(String, InputStream, long, IotHubEventCallback, Object)}.
+     *
+     * @param blobName is the name of the file in the container.
+     * @param file is the path of the file to upload. It is opened when the upload starts.
+     * @param options is the block size and the concurrency of the upload. {@code null} for the default options.
+     * @param statusCallback is the callback to notify that the upload is completed (with status).
+     * @param statusCallbackContext is the context of the callback, allowing multiple uploads in parallel.
+     * @throws IllegalArgumentException if one of the parameters is invalid.
+     */
+    public synchronized void uploadToBlobAsync(
+            String blobName, Path file, FileUploadOptions options,
+            IotHubEventCallback statusCallback, Object statusCallbackContext)
+            throws IllegalArgumentException
+    {
+        FileUploadInProgress newUpload = new FileUploadInProgress(statusCallback, statusCallbackContext);
+        FileUploadTask fileUploadTask = new FileUploadTask(blobName, file, options, httpsTransportManager, fileUploadStatusCallBack, newUpload);
+        fileUploadInProgressesSet.add(newUpload);
+        newUpload.setTask(uploadScheduler.submit(this, fileUploadTask));
     }
 
     private final class FileUploadStatusCallBack implements IotHubEventCallback
@@ -162,14 +205,14 @@ public final class FileUpload
     }
 
     /**
-     * Close the file upload cancelling all existing uploads and shutting down the thread pool.
+     * Close the file upload cancelling the queued uploads and interrupting the running ones. The threads are shared
+     * by the clients of the process, and stay available to them.
      *
      * @throws IOException if an I/O error occurs in the inputStream.
      */
     public void closeNow() throws IOException
     {
-        /* Codes_SRS_FILEUPLOAD_21_017: [The closeNow shall shutdown the thread pool by calling `shutdownNow`.] */
-        taskScheduler.shutdownNow();
+        uploadScheduler.cancel(this);
 
         /* Codes_SRS_FILEUPLOAD_21_018: [If there is pending file uploads, the closeNow shall cancel the upload, and call the `statusCallback` reporting ERROR.] */
         for (FileUploadInProgress uploadInProgress : fileUploadInProgressesSet)
@@ -0,0 +1,103 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.fileupload;
+
+/**
+ * Options of a block upload to the blob storage.
+ *
+ * <p>
+ *     The content is split in blocks of {@code blockSizeInBytes} bytes, and up to {@code maxConcurrentBlocks} blocks
+ *     are uploaded at the same time, within the limit of the whole process set with
+ *     {@link FileUploadScheduler#setMaxConcurrentBlocks(int)}. A block that fails is sent again up to 3 times. If the upload still fails, the
+ *     blocks that reached the storage are kept for a week, and a new upload of the same content with the same
+ *     destination blob name and the same options only sends the missing blocks.
+ * </p>
+ * <p>
+ *     A blob holds at most 50000 blocks, so the block size is increased for bigger contents.
+ * </p>
+ */
+public final class FileUploadOptions
+{
+    /**
+     * The smallest block size, 64 KiB.
+     */
+    public static final int MIN_BLOCK_SIZE_IN_BYTES = 64 * 1024;
+
+    /**
+     * The biggest block size, 100 MiB.
+     */
+    public static final int MAX_BLOCK_SIZE_IN_BYTES = 100 * 1024 * 1024;
+
+    /**
+     * The default block size, 4 MiB.
+     */
+    public static final int DEFAULT_BLOCK_SIZE_IN_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * The default number of blocks uploaded at the same time.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_BLOCKS = 4;
+
+    private final int blockSizeInBytes;
+    private final int maxConcurrentBlocks;
+
+    /**
+     * CONSTRUCTOR
+     *
+     * <p>
+     *     Uses blocks of 4 MiB, up to 4 at the same time.
+     * </p>
+     */
+    public FileUploadOptions()
+    {
+        this(DEFAULT_BLOCK_SIZE_IN_BYTES, DEFAULT_MAX_CONCURRENT_BLOCKS);
+    }
+
+    /**
+     * CONSTRUCTOR
+     *
+     * <p>
+     *     Up to {@code maxConcurrentBlocks} blocks are held in memory during the upload.
+     * </p>
+     *
+     * @param blockSizeInBytes is the size of the blocks, between 64 KiB and 100 MiB.
+     * @param maxConcurrentBlocks is the number of blocks uploaded at the same time. Cannot be less than 1.
+     * @throws IllegalArgumentException if one of the parameters is not valid.
+     */
+    public FileUploadOptions(int blockSizeInBytes, int maxConcurrentBlocks) throws IllegalArgumentException
+    {
+        if ((blockSizeInBytes < MIN_BLOCK_SIZE_IN_BYTES) || (blockSizeInBytes > MAX_BLOCK_SIZE_IN_BYTES))
+        {
+            throw new IllegalArgumentException("blockSizeInBytes shall be between " + MIN_BLOCK_SIZE_IN_BYTES + " and " + MAX_BLOCK_SIZE_IN_BYTES);
+        }
+
+        if (maxConcurrentBlocks < 1)
+        {
+            throw new IllegalArgumentException("maxConcurrentBlocks shall be at least 1");
+        }
+
+        this.blockSizeInBytes = blockSizeInBytes;
+        this.maxConcurrentBlocks = maxConcurrentBlocks;
+    }
+
+    /**
+     * Getter for the block size.
+     *
+     * @return the size of the blocks in bytes.
+     */
+    public int getBlockSizeInBytes()
+    {
+        return this.blockSizeInBytes;
+    }
+
+    /**
+     * Getter for the concurrency.
+     *
+     * @return the number of blocks uploaded at the same time.
+     */
+    public int getMaxConcurrentBlocks()
+    {
+        return this.maxConcurrentBlocks;
+    }
+}
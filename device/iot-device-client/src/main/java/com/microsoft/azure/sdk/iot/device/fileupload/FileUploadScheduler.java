@@ -0,0 +1,383 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.fileupload;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The upload threads and the upload bandwidth shared by all the device clients of the process.
+ *
+ * <p>
+ *     At most {@code maxConcurrentUploads} uploads (10 by default) run at a time in the process. The other uploads
+ *     wait in a queue of their client, and the queues are served in turn, so a client with many uploads does not
+ *     delay the uploads of the other clients. The blocks of the uploads in blocks are sent by another set of
+ *     threads shared by all the uploads, at most {@code maxConcurrentBlocks} blocks (10 by default) at a time in the
+ *     process, whatever the {@link FileUploadOptions} of each upload. The bytes sent to the storage by all the uploads
+ *     can be limited with {@link #setMaxBytesPerSecond(long)}, to keep a share of the uplink for the telemetry. The
+ *     threads are daemon threads that stop when they are idle, so the scheduler never needs to be shut down.
+ * </p>
+ */
+public final class FileUploadScheduler
+{
+    private static final int DEFAULT_MAX_CONCURRENT_UPLOADS = 10;
+    private static final int DEFAULT_MAX_CONCURRENT_BLOCKS = 10;
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 60;
+    private static final int MAX_THROTTLED_READ_SIZE = 16 * 1024;
+
+    private static final class InstanceHolder
+    {
+        private static final FileUploadScheduler INSTANCE = new FileUploadScheduler(DEFAULT_MAX_CONCURRENT_UPLOADS);
+    }
+
+    /*
+        An upload of a client. The thread that runs it is interrupted when the uploads of the client are cancelled,
+        but the upload is not marked cancelled, it ends with its own status.
+     */
+    private final class Upload extends FutureTask<Void>
+    {
+        private final Object owner;
+        private Thread runner;
+
+        private Upload(Object owner, Runnable task)
+        {
+            super(task, null);
+            this.owner = owner;
+        }
+
+        @Override
+        public void run()
+        {
+            synchronized (this)
+            {
+                this.runner = Thread.currentThread();
+            }
+
+            try
+            {
+                super.run();
+            }
+            finally
+            {
+                synchronized (this)
+                {
+                    this.runner = null;
+                    // An interrupt of this upload does not leak to the next task of the thread.
+                    Thread.interrupted();
+                }
+                onUploadDone(this);
+            }
+        }
+
+        private synchronized void interruptRunner()
+        {
+            if (this.runner != null)
+            {
+                this.runner.interrupt();
+            }
+        }
+    }
+
+    /*
+        A stream that takes the tokens of the bytes it reads, in reads of at most 16 KiB.
+     */
+    private static final class ThrottledInputStream extends FilterInputStream
+    {
+        private final BandwidthLimiter bandwidthLimiter;
+
+        private ThrottledInputStream(InputStream inputStream, BandwidthLimiter bandwidthLimiter)
+        {
+            super(inputStream);
+            this.bandwidthLimiter = bandwidthLimiter;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int value = super.read();
+            if (value >= 0)
+            {
+                this.bandwidthLimiter.acquire(1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException
+        {
+            int read = super.read(buffer, offset, Math.min(length, MAX_THROTTLED_READ_SIZE));
+            if (read > 0)
+            {
+                this.bandwidthLimiter.acquire(read);
+            }
+            return read;
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor blockExecutor;
+    private final BandwidthLimiter bandwidthLimiter = new BandwidthLimiter();
+    private final Map<Object, ArrayDeque<Upload>> pendingUploads = new HashMap<>();
+    private final ArrayDeque<Object> waitingOwners = new ArrayDeque<>();
+    private final Set<Upload> runningUploads = new HashSet<>();
+    private int maxConcurrentUploads;
+
+    FileUploadScheduler(int maxConcurrentUploads)
+    {
+        this.maxConcurrentUploads = maxConcurrentUploads;
+        this.executor = newExecutor(maxConcurrentUploads, "azure-iot-sdk-file-upload-");
+        this.blockExecutor = newExecutor(DEFAULT_MAX_CONCURRENT_BLOCKS, "azure-iot-sdk-block-upload-");
+    }
+
+    /**
+     * Getter for the scheduler shared by the process.
+     *
+     * @return the shared scheduler.
+     */
+    public static FileUploadScheduler getInstance()
+    {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * Setter for the number of uploads that run at a time in the process.
+     *
+     * @param maxConcurrentUploads is the number of upload threads. Cannot be less than 1.
+     * @throws IllegalArgumentException if the number is less than 1.
+     */
+    public void setMaxConcurrentUploads(int maxConcurrentUploads) throws IllegalArgumentException
+    {
+        if (maxConcurrentUploads < 1)
+        {
+            throw new IllegalArgumentException("maxConcurrentUploads shall be at least 1");
+        }
+
+        synchronized (this)
+        {
+            resize(this.executor, maxConcurrentUploads);
+            this.maxConcurrentUploads = maxConcurrentUploads;
+            dispatch();
+        }
+    }
+
+    /**
+     * Getter for the number of uploads that run at a time in the process.
+     *
+     * @return the number of upload threads.
+     */
+    public synchronized int getMaxConcurrentUploads()
+    {
+        return this.maxConcurrentUploads;
+    }
+
+    /**
+     * Setter for the number of blocks that are sent at a time in the process, by all the uploads in blocks. The
+     * {@link FileUploadOptions} of an upload still limit the number of blocks of this upload.
+     *
+     * @param maxConcurrentBlocks is the number of block upload threads. Cannot be less than 1.
+     * @throws IllegalArgumentException if the number is less than 1.
+     */
+    public void setMaxConcurrentBlocks(int maxConcurrentBlocks) throws IllegalArgumentException
+    {
+        if (maxConcurrentBlocks < 1)
+        {
+            throw new IllegalArgumentException("maxConcurrentBlocks shall be at least 1");
+        }
+
+        synchronized (this)
+        {
+            resize(this.blockExecutor, maxConcurrentBlocks);
+        }
+    }
+
+    /**
+     * Getter for the number of blocks that are sent at a time in the process.
+     *
+     * @return the number of block upload threads.
+     */
+    public synchronized int getMaxConcurrentBlocks()
+    {
+        return this.blockExecutor.getMaximumPoolSize();
+    }
+
+    /**
+     * Setter for the bandwidth of the uploads of the process. It applies to the uploads that start after the call, and
+     * to the blocks sent after the call by the uploads in blocks.
+     *
+     * @param maxBytesPerSecond is the number of bytes per second sent to the storage, 0 for no limit.
+     * @throws IllegalArgumentException if the number is negative.
+     */
+    public void setMaxBytesPerSecond(long maxBytesPerSecond) throws IllegalArgumentException
+    {
+        if (maxBytesPerSecond < 0)
+        {
+            throw new IllegalArgumentException("maxBytesPerSecond cannot be negative");
+        }
+
+        this.bandwidthLimiter.setBytesPerSecond(maxBytesPerSecond);
+    }
+
+    /**
+     * Getter for the bandwidth of the uploads of the process.
+     *
+     * @return the number of bytes per second sent to the storage, 0 for no limit.
+     */
+    public long getMaxBytesPerSecond()
+    {
+        return this.bandwidthLimiter.getBytesPerSecond();
+    }
+
+    /**
+     * Queue an upload of a client.
+     *
+     * @param owner is the client of the upload, the uploads of the same owner share a queue.
+     * @param task is the upload.
+     * @return the future of the upload.
+     */
+    synchronized Future<?> submit(Object owner, Runnable task)
+    {
+        Upload upload = new Upload(owner, task);
+        ArrayDeque<Upload> ownerUploads = this.pendingUploads.get(owner);
+        if (ownerUploads == null)
+        {
+            ownerUploads = new ArrayDeque<>();
+            this.pendingUploads.put(owner, ownerUploads);
+            this.waitingOwners.add(owner);
+        }
+        ownerUploads.add(upload);
+        dispatch();
+        return upload;
+    }
+
+    /**
+     * Queue a block of an upload in blocks. The blocks wait for a free block thread in the order they are submitted.
+     *
+     * @param block is the upload of the block.
+     * @param <T> is the result of the block upload.
+     * @return the future of the block upload.
+     */
+    <T> Future<T> submitBlock(Callable<T> block)
+    {
+        return this.blockExecutor.submit(block);
+    }
+
+    /**
+     * Cancel the queued uploads of a client, and interrupt its running uploads.
+     *
+     * @param owner is the client of the uploads.
+     */
+    synchronized void cancel(Object owner)
+    {
+        ArrayDeque<Upload> ownerUploads = this.pendingUploads.remove(owner);
+        if (ownerUploads != null)
+        {
+            this.waitingOwners.remove(owner);
+            for (Upload upload : ownerUploads)
+            {
+                upload.cancel(false);
+            }
+        }
+
+        for (Upload upload : this.runningUploads)
+        {
+            if (upload.owner == owner)
+            {
+                upload.interruptRunner();
+            }
+        }
+    }
+
+    /**
+     * Wrap the stream of an upload, so its reads wait for the bandwidth of the process.
+     *
+     * @param inputStream is the stream to upload.
+     * @return the stream itself if the bandwidth is not limited, or a stream that waits for it.
+     */
+    InputStream throttle(InputStream inputStream)
+    {
+        if (this.bandwidthLimiter.getBytesPerSecond() == 0)
+        {
+            return inputStream;
+        }
+        return new ThrottledInputStream(inputStream, this.bandwidthLimiter);
+    }
+
+    private static ThreadPoolExecutor newExecutor(int threads, final String threadNamePrefix)
+    {
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(threads, threads, IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+        {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, threadNamePrefix + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        return threadPoolExecutor;
+    }
+
+    private static void resize(ThreadPoolExecutor threadPoolExecutor, int threads)
+    {
+        // The maximum pool size cannot go below the core size, so the order depends on the direction.
+        if (threads > threadPoolExecutor.getMaximumPoolSize())
+        {
+            threadPoolExecutor.setMaximumPoolSize(threads);
+            threadPoolExecutor.setCorePoolSize(threads);
+        }
+        else
+        {
+            threadPoolExecutor.setCorePoolSize(threads);
+            threadPoolExecutor.setMaximumPoolSize(threads);
+        }
+    }
+
+    private synchronized void onUploadDone(Upload upload)
+    {
+        this.runningUploads.remove(upload);
+        dispatch();
+    }
+
+    /*
+        Starts the next upload of each waiting client in turn, while there is a free thread.
+     */
+    private void dispatch()
+    {
+        while ((this.runningUploads.size() < this.maxConcurrentUploads) && !this.waitingOwners.isEmpty())
+        {
+            Object owner = this.waitingOwners.poll();
+            ArrayDeque<Upload> ownerUploads = this.pendingUploads.get(owner);
+            Upload upload = ownerUploads.poll();
+            if (ownerUploads.isEmpty())
+            {
+                this.pendingUploads.remove(owner);
+            }
+            else
+            {
+                this.waitingOwners.add(owner);
+            }
+
+            this.runningUploads.add(upload);
+            this.executor.execute(upload);
+        }
+    }
+}
@@ -20,7 +20,10 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 /**
  * Provide means to  asynchronous upload file in the Azure Storage using the IoTHub.
@@ -61,6 +64,8 @@ public final class FileUploadTask implements Runnable
     private String blobName;
     private InputStream inputStream;
     private long streamLength;
+    private Path file;
+    private FileUploadOptions options;
     private IotHubEventCallback userCallback;
     private Object userCallbackContext;
 
@@ -82,6 +87,25 @@ public final class FileUploadTask implements Runnable
      */
     FileUploadTask(String blobName, InputStream inputStream, long streamLength, HttpsTransportManager httpsTransportManager,
                     IotHubEventCallback userCallback, Object userCallbackContext) throws IllegalArgumentException
+    {
+        this(blobName, inputStream, streamLength, null, httpsTransportManager, userCallback, userCallbackContext);
+    }
+
+    /**
+     * Constructor of a stream upload in blocks
+     *
+     * @param blobName is the destination blob name in the storage. Cannot be {@code null}, or empty.
+     * @param inputStream is the byte stream with the information to store in the blob. Cannot be {@code null}.
+     * @param streamLength is the number of bytes to upload. Cannot be negative.
+     * @param options is the block size and the concurrency of the upload. {@code null} to upload the stream in one request.
+     * @param httpsTransportManager is the https transport to connect to the IoT Hub. Cannot be {@code null}.
+     * @param userCallback is the callback to call when the upload is completed. Cannot be {@code null}.
+     * @param userCallbackContext is the context for the callback. Can be any value.
+     * @throws IllegalArgumentException if one of the parameters is not valid.
+     */
+    FileUploadTask(String blobName, InputStream inputStream, long streamLength, FileUploadOptions options,
+                   HttpsTransportManager httpsTransportManager, IotHubEventCallback userCallback, Object userCallbackContext)
+            throws IllegalArgumentException
     {
         /* Codes_SRS_FILEUPLOADTASK_21_001: [If the `blobName` is null or empty, the constructor shall throw IllegalArgumentException.] */
         if((blobName == null) || blobName.isEmpty())
@@ -120,6 +144,53 @@ public final class FileUploadTask implements Runnable
         this.userCallback = userCallback;
         this.userCallbackContext = userCallbackContext;
         this.httpsTransportManager = httpsTransportManager;
+        this.options = options;
+
+        logger = new CustomLogger(this.getClass());
+        logger.LogInfo("HttpsFileUpload object is created successfully, method name is %s ", logger.getMethodName());
+    }
+
+    /**
+     * Constructor of a file upload in blocks. The blocks are read from the file with positional reads, by the threads
+     * that upload them.
+     *
+     * @param blobName is the destination blob name in the storage. Cannot be {@code null}, or empty.
+     * @param file is the path of the file to store in the blob. Cannot be {@code null}.
+     * @param options is the block size and the concurrency of the upload. {@code null} for the default options.
+     * @param httpsTransportManager is the https transport to connect to the IoT Hub. Cannot be {@code null}.
+     * @param userCallback is the callback to call when the upload is completed. Cannot be {@code null}.
+     * @param userCallbackContext is the context for the callback. Can be any value.
+     * @throws IllegalArgumentException if one of the parameters is not valid.
+     */
+    FileUploadTask(String blobName, Path file, FileUploadOptions options, HttpsTransportManager httpsTransportManager,
+                   IotHubEventCallback userCallback, Object userCallbackContext) throws IllegalArgumentException
+    {
+        if((blobName == null) || blobName.isEmpty())
+        {
+            throw new IllegalArgumentException("blobName is null or empty");
+        }
+
+        if(file == null)
+        {
+            throw new IllegalArgumentException("file is null");
+        }
+
+        if(httpsTransportManager == null)
+        {
+            throw new IllegalArgumentException("httpsTransportManager is null");
+        }
+
+        if(userCallback == null)
+        {
+            throw new IllegalArgumentException("statusCallback is null");
+        }
+
+        this.blobName = blobName;
+        this.file = file;
+        this.options = (options == null) ? new FileUploadOptions() : options;
+        this.userCallback = userCallback;
+        this.userCallbackContext = userCallbackContext;
+        this.httpsTransportManager = httpsTransportManager;
 
         logger = new CustomLogger(this.getClass());
         logger.LogInfo("HttpsFileUpload object is created successfully, method name is %s ", logger.getMethodName());
@@ -151,8 +222,7 @@ public final class FileUploadTask implements Runnable
             {
             /* Codes_SRS_FILEUPLOADTASK_21_019: [The run shall create a `CloudBlockBlob` using the `blobUri`.] */
                 CloudBlockBlob blob = new CloudBlockBlob(blobURI);
-            /* Codes_SRS_FILEUPLOADTASK_21_020: [The run shall upload the `inputStream` with the `streamLength` to the created `CloudBlockBlob`.] */
-                blob.upload(inputStream, streamLength);
+                uploadContent(blob);
             /* Codes_SRS_FILEUPLOADTASK_21_021: [If the upload to blob succeed, the run shall create a notification the IoT Hub with `isSuccess` equals true, `statusCode` equals 0.] */
                 fileUploadStatusParser = new FileUploadStatusParser(correlationId, true, 0, "Succeed to upload to storage.");
                 resultStatus = IotHubStatusCode.OK;
@@ -179,6 +249,26 @@ public final class FileUploadTask implements Runnable
         userCallback.execute(resultStatus, userCallbackContext);
     }
 
+    private void uploadContent(CloudBlockBlob blob) throws StorageException, IOException, IllegalArgumentException
+    {
+        if (this.file != null)
+        {
+            try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ))
+            {
+                new BlockBlobUpload(blob, channel.size(), this.options).upload(channel);
+            }
+        }
+        else if (this.options != null)
+        {
+            new BlockBlobUpload(blob, this.streamLength, this.options).upload(this.inputStream);
+        }
+        else
+        {
+            /* Codes_SRS_FILEUPLOADTASK_21_020: [The run shall upload the `inputStream` with the `streamLength` to the created `CloudBlockBlob`.] */
+            blob.upload(FileUploadScheduler.getInstance().throttle(this.inputStream), this.streamLength);
+        }
+    }
+
     private void addBlobInformation(Message responseMessage) throws IllegalArgumentException, URISyntaxException, UnsupportedEncodingException
     {
         /* Codes_SRS_FILEUPLOADTASK_21_015: [If the iothub accepts the request, it shall provide a `responseMessage` with the blob information with a correlationId.] */
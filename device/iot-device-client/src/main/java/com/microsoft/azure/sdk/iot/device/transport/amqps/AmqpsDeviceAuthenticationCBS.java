@@ -89,8 +89,14 @@ public final class AmqpsDeviceAuthenticationCBS extends AmqpsDeviceAuthenticatio
     {
         synchronized (queueLock)
         {
+            // The queued messages are sent when the link opens and has credit.
+            if (this.senderLink == null)
+            {
+                return;
+            }
+
             // Codes_SRS_AMQPSDEVICEAUTHENTICATIONCBS_12_005: [If there is no message in the queue to send the function shall do nothing.]
-            while (!this.waitingMessages.isEmpty())
+            while (!this.waitingMessages.isEmpty() && (this.senderLinkCredit > 0))
             {
                 byte[] msgData = new byte[1024];
                 int length;
@@ -230,6 +236,26 @@ public final class AmqpsDeviceAuthenticationCBS extends AmqpsDeviceAuthenticatio
 
         // Codes_SRS_AMQPSDEVICEAUTHENTICATIONCBS_12_034: [THe function shall put the message into the waiting queue.]
         this.waitingMessages.add(outgoingMessage);
+
+        // Sent right away, so the put-tokens of the devices of a session do not wait for a timer.
+        this.sendAuthenticationMessages();
+    }
+
+    /**
+     * Save the credit of the link, and send the messages that waited for it.
+     *
+     * @param link The link of the flow event.
+     * @return true if the link is owned by the authentication, false otherwise
+     */
+    @Override
+    protected Boolean onLinkFlow(Link link)
+    {
+        Boolean isFound = super.onLinkFlow(link);
+        if (isFound && link.getName().equals(this.getSenderLinkTag()))
+        {
+            this.sendAuthenticationMessages();
+        }
+        return isFound;
     }
 
     /**
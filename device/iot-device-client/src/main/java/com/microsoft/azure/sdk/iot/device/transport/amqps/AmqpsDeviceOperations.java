@@ -49,6 +49,11 @@ public class AmqpsDeviceOperations
     protected Sender senderLink;
     protected Receiver receiverLink;
 
+    /*
+        The credit the service gave to the sender link, so a link without credit does not stop the others.
+     */
+    protected int senderLinkCredit;
+
     /**
      * This constructor creates an instance of device operation class and initializes member variables
      */
@@ -77,6 +82,7 @@ public class AmqpsDeviceOperations
 
         this.amqpsSendLinkState = AmqpsDeviceOperationLinkState.CLOSED;
         this.amqpsRecvLinkState = AmqpsDeviceOperationLinkState.CLOSED;
+        this.senderLinkCredit = 0;
     }
 
     /**
@@ -170,6 +176,25 @@ public class AmqpsDeviceOperations
         }
         this.amqpsSendLinkState = AmqpsDeviceOperationLinkState.CLOSED;
         this.amqpsRecvLinkState = AmqpsDeviceOperationLinkState.CLOSED;
+        this.senderLinkCredit = 0;
+    }
+
+    /**
+     * Saves the credit of the sender link when the service updates it. The receiver link credit is given by the
+     * FlowController of the connection.
+     *
+     * @param link The link of the flow event.
+     * @return true if the link is owned by the operation, false otherwise
+     */
+    protected synchronized Boolean onLinkFlow(Link link)
+    {
+        if (link.getName().equals(this.getSenderLinkTag()))
+        {
+            this.senderLinkCredit = link.getCredit();
+            return true;
+        }
+
+        return link.getName().equals(this.getReceiverLinkTag());
     }
 
     /**
@@ -240,7 +265,7 @@ public class AmqpsDeviceOperations
      * @param offset The start offset to copy the bytes from
      * @param length The number of bytes to be send related to the offset
      * @param deliveryTag The unique identfier of the delivery
-     * @return delivery tag
+     * @return delivery tag, or -1 if the sender link has no credit
      * @throws IllegalStateException if sender link has not been initialized
      * @throws IllegalArgumentException if deliveryTag's length is 0
      */
@@ -258,6 +283,12 @@ public class AmqpsDeviceOperations
             throw new IllegalArgumentException("Trying deliveryTag cannot be null.");
         }
 
+        // The message waits in the transport queue until the service gives credit to this link.
+        if (this.senderLinkCredit <= 0)
+        {
+            return new AmqpsSendReturnValue(false, -1);
+        }
+
         // Codes_SRS_AMQPSDEVICEOPERATIONS_12_021: [The function shall create a Delivery object using the sender link and the deliveryTag.]
         Delivery delivery = this.senderLink.delivery(deliveryTag);
         try
@@ -266,6 +297,7 @@ public class AmqpsDeviceOperations
             this.senderLink.send(msgData, offset, length);
             // Codes_SRS_AMQPSDEVICEOPERATIONS_12_023: [The function shall advance the sender link.]
             this.senderLink.advance();
+            this.senderLinkCredit--;
             // Codes_SRS_AMQPSDEVICEOPERATIONS_12_024: [The function shall set the delivery hash to the value returned by the sender link.]
             return new AmqpsSendReturnValue(true, delivery.hashCode());
         }
@@ -37,7 +37,6 @@ public final class AmqpsIotHubConnection extends BaseHandler
     private static final int MAX_WAIT_TO_TERMINATE_EXECUTOR = 30;
     private State state;
 
-    private int linkCredit = -1;
     /** The {@link Delivery} tag. */
     private static final String WEB_SOCKET_PATH = "/$iothub/websocket";
     private static final String WEB_SOCKET_SUB_PROTOCOL = "AMQPWSB10";
@@ -115,7 +114,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
         }
         else
         {
-            this.hostName = String.format("%s:%d", this.deviceClientConfig.getIotHubHostname(), AMQP_PORT);
+            this.hostName = String.format("%s:%d", this.deviceClientConfig.getIotHubHostname(), getAmqpPort());
         }
 
         this.logger = new CustomLogger(this.getClass());
@@ -124,8 +123,9 @@ public final class AmqpsIotHubConnection extends BaseHandler
         // (Proton) object to handle communication handshake.]
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_005: [The constructor shall initialize a new FlowController
         // (Proton) object to handle communication flow.]
+        // The FlowController keeps the credit of every receiver link at the prefetch of the configuration.
         add(new Handshaker());
-        add(new FlowController());
+        add(new FlowController(this.deviceClientConfig.getAmqpReceivePrefetch()));
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_006: [The constructor shall set its state to CLOSED.]
         this.state = State.CLOSED;
@@ -141,7 +141,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
             logger.LogError(e);
             throw new IOException("Could not create Proton reactor");
         }
-        logger.LogInfo("AmqpsIotHubConnection object is created successfully using port %s in %s method ", useWebSockets ? AMQP_WEB_SOCKET_PORT : AMQP_PORT, logger.getMethodName());
+        logger.LogInfo("AmqpsIotHubConnection object is created successfully using port %s in %s method ", useWebSockets ? AMQP_WEB_SOCKET_PORT : getAmqpPort(), logger.getMethodName());
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_001: [The constructor shall initialize the AmqpsSessionManager member variable with the given config.]
         this.amqpsSessionManager = new AmqpsSessionManager(this.deviceClientConfig);
@@ -368,7 +368,8 @@ public final class AmqpsIotHubConnection extends BaseHandler
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_015: [If the state of the connection is CLOSED or there is not enough
         // credit, the function shall return -1.]
-        if (this.state == State.CLOSED || this.linkCredit <= 0)
+        // The credit is checked by the sender link of the message.
+        if (this.state == State.CLOSED)
         {
             deliveryHash = -1;
         }
@@ -446,7 +447,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
         }
         else
         {
-            event.getReactor().connectionToHost(this.deviceClientConfig.getIotHubHostname(), AMQP_PORT, this);
+            event.getReactor().connectionToHost(this.deviceClientConfig.getIotHubHostname(), getAmqpPort(), this);
         }
 
         logger.LogDebug("Exited from method %s", logger.getMethodName());
@@ -631,7 +632,7 @@ public final class AmqpsIotHubConnection extends BaseHandler
     }
 
     /**
-     * Event handler for the link flow event. Handles sending a single message.
+     * Event handler for the link flow event. Gives the new credit to the link that owns it.
      * @param event The Proton Event object.
      */
     @Override
@@ -639,8 +640,9 @@ public final class AmqpsIotHubConnection extends BaseHandler
     {
         logger.LogDebug("Entered in method %s", logger.getMethodName());
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_040: [The event handler shall save the remaining link credit.]
-        this.linkCredit = event.getLink().getCredit();
-		logger.LogDebug("The link credit value is %s, method name is %s", this.linkCredit, logger.getMethodName());
+        Link link = event.getLink();
+        this.amqpsSessionManager.onLinkFlow(link);
+        logger.LogDebug("The credit of link %s is %s, method name is %s", link.getName(), link.getCredit(), logger.getMethodName());
         logger.LogDebug("Exited from method %s", logger.getMethodName());
     }
 
@@ -815,6 +817,17 @@ public final class AmqpsIotHubConnection extends BaseHandler
         }
     }
 
+    /**
+     * Getter for the AMQPS port, the configured IoT Hub port if any.
+     *
+     * @return the AMQPS port.
+     */
+    private int getAmqpPort()
+    {
+        int port = this.deviceClientConfig.getIotHubPort();
+        return (port > 0) ? port : AMQP_PORT;
+    }
+
     /**
      * Create a Proton reactor
      *
@@ -1,17 +1,18 @@
 package com.microsoft.azure.sdk.iot.device.transport.amqps;
 
 import com.microsoft.azure.sdk.iot.device.*;
+import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenRenewalListener;
 import org.apache.qpid.proton.engine.*;
 
 import java.io.IOException;
 import java.nio.BufferOverflowException;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class AmqpsSessionDeviceOperation
 {
+    private final CustomLogger logger = new CustomLogger(this.getClass());
+
     private final DeviceClientConfig deviceClientConfig;
 
     private AmqpsDeviceAuthenticationState amqpsAuthenticatorState = AmqpsDeviceAuthenticationState.UNKNOWN;
@@ -23,15 +24,33 @@ public class AmqpsSessionDeviceOperation
 
     private Integer openLock = new Integer(1);
 
-    private long tokenRenewalPeriodInMillisecSecs = 4000; //45*60*100;
-
-    private ScheduledExecutorService taskSchedulerTokenRenewal;
-    private AmqpsDeviceAuthenticationCBSTokenRenewalTask tokenRenewalTask = null;
+    /*
+        Called by the shared renewal thread of the sas tokens, ahead of the expiry of the token on the CBS link.
+     */
+    private final IotHubSasTokenRenewalListener tokenRenewalListener = new IotHubSasTokenRenewalListener()
+    {
+        @Override
+        public void onSasTokenRenewed()
+        {
+            try
+            {
+                renewToken();
+            }
+            catch (IOException e)
+            {
+                logger.LogError(e);
+            }
+        }
+    };
 
     private static final int MAX_WAIT_TO_AUTHENTICATE = 10*1000;
     private final ObjectLock authenticationLock = new ObjectLock();
 
-    private List<UUID> cbsCorrelationIdList = Collections.synchronizedList(new ArrayList<UUID>());
+    /*
+        The put-tokens waiting for their reply on the CBS link, shared by all the devices of the session, so a
+        reply finds its device with one lookup.
+     */
+    private final Map<UUID, AmqpsSessionDeviceOperation> cbsCorrelationIds;
 
     /**
      * Create logical device entity to handle all operation.
@@ -40,6 +59,18 @@ public class AmqpsSessionDeviceOperation
      * @param amqpsDeviceAuthentication the authentication object associated with the device.
      */
     public AmqpsSessionDeviceOperation(final DeviceClientConfig deviceClientConfig, AmqpsDeviceAuthentication amqpsDeviceAuthentication)
+    {
+        this(deviceClientConfig, amqpsDeviceAuthentication, new ConcurrentHashMap<UUID, AmqpsSessionDeviceOperation>());
+    }
+
+    /**
+     * Create logical device entity to handle all operation, for a device that shares the CBS link of its session.
+     *
+     * @param deviceClientConfig the configuration of teh device.
+     * @param amqpsDeviceAuthentication the authentication object associated with the device.
+     * @param cbsCorrelationIds the pending put-tokens of the session, by correlation ID.
+     */
+    AmqpsSessionDeviceOperation(final DeviceClientConfig deviceClientConfig, AmqpsDeviceAuthentication amqpsDeviceAuthentication, Map<UUID, AmqpsSessionDeviceOperation> cbsCorrelationIds)
     {
         // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_001: [The constructor shall throw IllegalArgumentException if the deviceClientConfig or the amqpsDeviceAuthentication parameter is null.]
         if (deviceClientConfig == null)
@@ -54,6 +85,7 @@ public class AmqpsSessionDeviceOperation
         // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_002: [The constructor shall save the deviceClientConfig and amqpsDeviceAuthentication parameter value to a member variable.]
         this.deviceClientConfig = deviceClientConfig;
         this.amqpsDeviceAuthentication = amqpsDeviceAuthentication;
+        this.cbsCorrelationIds = cbsCorrelationIds;
 
         // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_003: [The constructor shall create AmqpsDeviceTelemetry, AmqpsDeviceMethods and AmqpsDeviceTwin and add them to the device operations list. ]
         this.amqpsDeviceOperationsList.add(new AmqpsDeviceTelemetry(this.deviceClientConfig));
@@ -64,14 +96,6 @@ public class AmqpsSessionDeviceOperation
         {
             // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_004: [The constructor shall set the authentication state to not authenticated if the authentication type is CBS.]
             this.amqpsAuthenticatorState = AmqpsDeviceAuthenticationState.NOT_AUTHENTICATED;
-
-            // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_044: [The constructor shall calculate the token renewal period as the 75% of the expiration period.]
-            this.tokenRenewalTask = new AmqpsDeviceAuthenticationCBSTokenRenewalTask(this);
-
-            // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_048: [The constructor saves the calculated renewal period if it is greater than zero.]
-            // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_045: [The constructor shall create AmqpsDeviceAuthenticationCBSTokenRenewalTask if the authentication type is CBS.]
-            // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_046: [The constructor shall create and start a scheduler with the calculated renewal period for AmqpsDeviceAuthenticationCBSTokenRenewalTask if the authentication type is CBS.]
-            this.scheduleRenewalThread();
         }
         else
         {
@@ -85,11 +109,12 @@ public class AmqpsSessionDeviceOperation
      */
     public void close()
     {
-        this.shutDownScheduler();
         this.closeLinks();
 
         if (this.deviceClientConfig.getAuthenticationType() == DeviceClientConfig.AuthType.CBS)
         {
+            this.deviceClientConfig.getSasTokenAuthentication().removeSasTokenRenewalListener(this.tokenRenewalListener);
+            this.cbsCorrelationIds.values().removeAll(Collections.singleton(this));
             this.amqpsAuthenticatorState = AmqpsDeviceAuthenticationState.NOT_AUTHENTICATED;
         }
     }
@@ -107,42 +132,108 @@ public class AmqpsSessionDeviceOperation
         // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_006: [The function shall start the authentication if the authentication type is CBS.]
         if (this.deviceClientConfig.getAuthenticationType() == DeviceClientConfig.AuthType.CBS)
         {
-            // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_060: [The function shall create a new UUID and add it to the correlationIdList if the authentication type is CBS.]
-            UUID correlationId = UUID.randomUUID();
-            synchronized (this.cbsCorrelationIdList)
-            {
-                // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_061: [The function shall use the correlationID to call authenticate on the authentication object if the authentication type is CBS.]
-                cbsCorrelationIdList.add(correlationId);
-            }
+            this.startAuthentication();
+            this.waitForAuthentication();
+        }
+        else
+        {
+            // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_049: [The function shall set the authentication state to authenticated if the authentication type is not CBS.]
+            this.amqpsAuthenticatorState = AmqpsDeviceAuthenticationState.AUTHENTICATED;
+        }
+    }
 
-            this.amqpsDeviceAuthentication.authenticate(this.deviceClientConfig, correlationId);
-            synchronized (this.authenticationLock)
+    /**
+     * Send the put-token of the device on the CBS link without waiting for the reply, so the devices of a session
+     * authenticate at the same time.
+     *
+     * @throws IOException throw if Proton operation throws.
+     */
+    void startAuthentication() throws IOException
+    {
+        // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_060: [The function shall create a new UUID and add it to the correlationIdList if the authentication type is CBS.]
+        UUID correlationId = UUID.randomUUID();
+        synchronized (this.authenticationLock)
+        {
+            // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_005: [The function shall set the authentication state to not authenticated if the authentication type is CBS.]
+            // Set before the put-token is sent, so a fast reply is not overwritten.
+            this.amqpsAuthenticatorState = AmqpsDeviceAuthenticationState.AUTHENTICATING;
+        }
+        this.cbsCorrelationIds.put(correlationId, this);
+
+        // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_061: [The function shall use the correlationID to call authenticate on the authentication object if the authentication type is CBS.]
+        this.amqpsDeviceAuthentication.authenticate(this.deviceClientConfig, correlationId);
+    }
+
+    /**
+     * Wait for the reply to the put-token sent by {@link #startAuthentication()}.
+     *
+     * @throws IOException if the wait is interrupted.
+     */
+    void waitForAuthentication() throws IOException
+    {
+        synchronized (this.authenticationLock)
+        {
+            try
             {
-                // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_005: [The function shall set the authentication state to not authenticated if the authentication type is CBS.]
-                this.amqpsAuthenticatorState = AmqpsDeviceAuthenticationState.AUTHENTICATING;
-                try
+                if (this.amqpsAuthenticatorState == AmqpsDeviceAuthenticationState.AUTHENTICATING)
                 {
                     // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_062: [The function shall start the authentication process and start the lock wait if the authentication type is CBS.]
                     this.authenticationLock.waitLock(MAX_WAIT_TO_AUTHENTICATE);
                 }
-                catch (InterruptedException e)
-                {
-                    cbsCorrelationIdList.remove(correlationId);
+            }
+            catch (InterruptedException e)
+            {
+                this.cbsCorrelationIds.values().removeAll(Collections.singleton(this));
 
-                    // Codes_SRS_AMQPSESSIONMANAGER_12_017: [The function shall throw IOException if the lock throws.]
-                    throw new IOException("Waited too long for the authentication message reply.");
-                }
+                // Codes_SRS_AMQPSESSIONMANAGER_12_017: [The function shall throw IOException if the lock throws.]
+                throw new IOException("Waited too long for the authentication message reply.");
+            }
+
+            if (this.amqpsAuthenticatorState == AmqpsDeviceAuthenticationState.AUTHENTICATING)
+            {
+                // No reply in time, a late reply is dropped instead of being matched to this device.
+                this.cbsCorrelationIds.values().removeAll(Collections.singleton(this));
+            }
+
+            if (this.amqpsAuthenticatorState != AmqpsDeviceAuthenticationState.AUTHENTICATED)
+            {
+                return;
             }
         }
-        else
+
+        // The token is renewed and sent again on the CBS link ahead of its expiry, while the links stay open.
+        this.deviceClientConfig.getSasTokenAuthentication().addSasTokenRenewalListener(this.tokenRenewalListener);
+    }
+
+    /**
+     * Handle the reply to a put-token of this device.
+     *
+     * @param amqpsMessage the reply read from the CBS link.
+     * @param correlationId the correlation ID of the put-token.
+     */
+    void authenticationMessageReceived(AmqpsMessage amqpsMessage, UUID correlationId)
+    {
+        synchronized (this.authenticationLock)
         {
-            // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_049: [The function shall set the authentication state to authenticated if the authentication type is not CBS.]
-            this.amqpsAuthenticatorState = AmqpsDeviceAuthenticationState.AUTHENTICATED;
+            // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_053: [The function shall call authenticationMessageReceived with the correlation ID on the authentication object and if it returns true set the authentication state to authenticated.]
+            if (this.amqpsDeviceAuthentication.authenticationMessageReceived(amqpsMessage, correlationId))
+            {
+                this.amqpsAuthenticatorState = AmqpsDeviceAuthenticationState.AUTHENTICATED;
+            }
+            else
+            {
+                logger.LogError("The CBS authentication of device %s was rejected", this.deviceClientConfig.getDeviceId());
+            }
+
+            // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_054: [The function shall call notify the lock if after receiving the message and the authentication is in authenticating state.]
+            // A rejected put-token ends the wait too, the device stays not authenticated.
+            this.authenticationLock.notifyLock();
         }
     }
 
     /**
-     * Start the token renewal process using CBS authentication.
+     * Send the renewed token on the CBS link. The device stays authenticated with the previous token until the
+     * reply, so the links stay open and the messages keep flowing.
      *
      * @throws IOException throw if Proton operation throws.
      */
@@ -151,15 +242,11 @@ public class AmqpsSessionDeviceOperation
         if ((this.deviceClientConfig.getAuthenticationType() == DeviceClientConfig.AuthType.CBS) &&
                 (this.amqpsAuthenticatorState == AmqpsDeviceAuthenticationState.AUTHENTICATED))
         {
-            // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_050: [The function shall renew the sas token if the authentication type is CBS and the authentication state is authenticated.]
-            this.deviceClientConfig.getSasTokenAuthentication().getRenewedSasToken();
+            UUID correlationId = UUID.randomUUID();
+            this.cbsCorrelationIds.put(correlationId, this);
 
-            // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_052: [The function shall restart the scheduler with the calculated renewal period if the authentication type is CBS.]
-            if (scheduleRenewalThread())
-            {
-                // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_051: [The function start the authentication with the new token.]
-                authenticate();
-            }
+            // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_051: [The function start the authentication with the new token.]
+            this.amqpsDeviceAuthentication.authenticate(this.deviceClientConfig, correlationId);
         }
     }
 
@@ -355,43 +442,8 @@ public class AmqpsSessionDeviceOperation
     {
         AmqpsMessage amqpsMessage = null;
 
-        if (this.amqpsAuthenticatorState == AmqpsDeviceAuthenticationState.AUTHENTICATING)
-        {
-            // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_023: [If the state is authenticating the function shall call getMessageFromReceiverLink on the authentication object.]
-            amqpsMessage = this.amqpsDeviceAuthentication.getMessageFromReceiverLink(linkName);
-
-            if (amqpsMessage != null)
-            {
-                synchronized (this.cbsCorrelationIdList)
-                {
-                    UUID uuidFound = null;
-                    // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_055: [The function shall find the correlation ID in the correlationIdlist.]
-                    for (UUID correlationId : this.cbsCorrelationIdList)
-                    {
-                        if (this.amqpsDeviceAuthentication.authenticationMessageReceived(amqpsMessage, correlationId))
-                        {
-                            synchronized (this.authenticationLock)
-                            {
-                                // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_053: [The function shall call authenticationMessageReceived with the correlation ID on the authentication object and if it returns true set the authentication state to authenticated.]
-                                this.amqpsAuthenticatorState = AmqpsDeviceAuthenticationState.AUTHENTICATED;
-                                // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_054: [The function shall call notify the lock if after receiving the message and the authentication is in authenticating state.]
-                                this.authenticationLock.notifyLock();
-
-                                uuidFound = correlationId;
-                                break;
-                            }
-                        }
-                    }
-                    // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_056: [The function shall remove the correlationId from the list if it is found.]
-                    if (uuidFound != null)
-                    {
-                        this.cbsCorrelationIdList.remove(uuidFound);
-                    }
-                }
-                return amqpsMessage;
-            }
-        }
-        else
+        // The replies of the CBS link are read by the session manager.
+        if (this.amqpsAuthenticatorState != AmqpsDeviceAuthenticationState.AUTHENTICATING)
         {
             // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_057: [If the state is other than authenticating the function shall try to read the message from the device operation objects.]
             for (int i = 0; i < this.amqpsDeviceOperationsList.size(); i++)
@@ -430,6 +482,25 @@ public class AmqpsSessionDeviceOperation
         return false;
     }
 
+    /**
+     * Delegate the link flow event to the device operation that owns the link.
+     *
+     * @param link the link of the flow event.
+     *
+     * @return Boolean true if found, false otherwise.
+     */
+    Boolean onLinkFlow(Link link)
+    {
+        for (int i = 0; i < this.amqpsDeviceOperationsList.size(); i++)
+        {
+            if (this.amqpsDeviceOperationsList.get(i).onLinkFlow(link))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Convert from IoTHub message to Proton using operation 
      * specific converter. 
@@ -489,72 +560,4 @@ public class AmqpsSessionDeviceOperation
 
         return amqpsHandleMessageReturnValue;
     }
-
-    /**
-     * Restart the renewal thread
-     *
-     * @return true is the renewal is successful
-     */
-    private Boolean scheduleRenewalThread()
-    {
-        long renewalPeriod = calculateRenewalTimeInMilliSecs(this.deviceClientConfig.getSasTokenAuthentication().getTokenValidSecs());
-        if (renewalPeriod > 0)
-        {
-            shutDownScheduler();
-            if (this.taskSchedulerTokenRenewal == null)
-            {
-                this.taskSchedulerTokenRenewal = Executors.newScheduledThreadPool(1);
-            }
-
-            this.tokenRenewalPeriodInMillisecSecs = renewalPeriod;
-            this.taskSchedulerTokenRenewal.scheduleAtFixedRate(this.tokenRenewalTask, 0, tokenRenewalPeriodInMillisecSecs, TimeUnit.MILLISECONDS);
-
-            return true;
-        }
-        return false;
-    }
-
-    /**
-     * Shut down the renewal thread
-     */
-    private void shutDownScheduler()
-    {
-        if (this.taskSchedulerTokenRenewal  != null)
-        {
-            taskSchedulerTokenRenewal.shutdown(); // Disable new tasks from being submitted
-            try
-            {
-                // Wait a while for existing tasks to terminate
-                if (!taskSchedulerTokenRenewal.awaitTermination(60, TimeUnit.SECONDS))
-                {
-                    taskSchedulerTokenRenewal.shutdownNow(); // Cancel currently executing tasks
-                    // Wait a while for tasks to respond to being cancelled
-                    if (!taskSchedulerTokenRenewal.awaitTermination(60, TimeUnit.SECONDS)) System.err.println("taskSchedulerTokenRenewal did not terminate correctly");
-                }
-            }
-            catch (InterruptedException ie)
-            {
-                // (Re-)Cancel if current thread also interrupted
-                taskSchedulerTokenRenewal.shutdownNow();
-                // Preserve interrupt status
-                Thread.currentThread().interrupt();
-            }
-        }
-    }
-
-    /**
-     * Calculate 75 percent of given time
-     *
-     * @param validInSecs the time
-     * @return 75% of the given time
-     */
-    private long calculateRenewalTimeInMilliSecs(long validInSecs)
-    {
-        if (validInSecs <= 0)
-        {
-            throw new IllegalArgumentException("validInSecs cannot be null.");
-        }
-
-        return 3 * (validInSecs / 4) * 1000;
-    }
 }
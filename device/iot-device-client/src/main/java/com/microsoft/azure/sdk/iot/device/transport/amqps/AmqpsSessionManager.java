@@ -4,9 +4,13 @@ import com.microsoft.azure.sdk.iot.device.DeviceClientConfig;
 import com.microsoft.azure.sdk.iot.device.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.device.MessageType;
 import com.microsoft.azure.sdk.iot.device.ObjectLock;
+import org.apache.qpid.proton.amqp.messaging.Properties;
 import org.apache.qpid.proton.engine.*;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.*;
 
 
@@ -23,9 +27,11 @@ public class AmqpsSessionManager
     private AmqpsDeviceAuthentication amqpsDeviceAuthentication;
     private ArrayList<AmqpsSessionDeviceOperation> amqpsDeviceSessionList = new ArrayList<>();
 
-    private long SEND_PERIOD_MILLISECONDS = 300;
-    private ScheduledExecutorService taskSchedulerCBSSend;
-    private AmqpsDeviceAuthenticationCBSSendTask cbsAuthSendTask = null;
+    /*
+        The number of devices of the session waiting for the reply to their put-token at the same time.
+     */
+    private static final int MAX_PENDING_CBS_AUTHENTICATIONS = 100;
+    private final Map<UUID, AmqpsSessionDeviceOperation> cbsCorrelationIds = new ConcurrentHashMap<>();
 
     private static final int MAX_WAIT_TO_AUTHENTICATE_MS = 10*1000;
 
@@ -58,12 +64,6 @@ public class AmqpsSessionManager
             case CBS:
                 // Codes_SRS_AMQPSESSIONMANAGER_12_005: [The constructor shall create AmqpsDeviceAuthenticationCBSTokenRenewalTask if the authentication type is CBS.]
                 this.amqpsDeviceAuthentication = new AmqpsDeviceAuthenticationCBS(this.deviceClientConfig);
-
-                // Codes_SRS_AMQPSESSIONMANAGER_12_006: [The constructor shall create and start a scheduler for AmqpsDeviceAuthenticationCBSTokenRenewalTask if the authentication type is CBS.]
-                this.cbsAuthSendTask = new AmqpsDeviceAuthenticationCBSSendTask((AmqpsDeviceAuthenticationCBS) this.amqpsDeviceAuthentication);
-                this.taskSchedulerCBSSend = Executors.newScheduledThreadPool(2);
-                this.taskSchedulerCBSSend.scheduleAtFixedRate(this.cbsAuthSendTask, 0, SEND_PERIOD_MILLISECONDS, TimeUnit.MILLISECONDS);
-
                 break;
             case X509_CERTIFICATE:
                 this.amqpsDeviceAuthentication = new AmqpsDeviceAuthenticationX509(this.deviceClientConfig);
@@ -88,7 +88,7 @@ public class AmqpsSessionManager
         }
 
         // Codes_SRS_AMQPSESSIONMANAGER_12_009: [The function shall create a new  AmqpsSessionDeviceOperation with the given deviceClietnConfig and add it to the session list.]
-        AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(deviceClientConfig, this.amqpsDeviceAuthentication);
+        AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(deviceClientConfig, this.amqpsDeviceAuthentication, this.cbsCorrelationIds);
         this.amqpsDeviceSessionList.add(amqpsSessionDeviceOperation);
     }
 
@@ -99,9 +99,6 @@ public class AmqpsSessionManager
      */
     void closeNow()
     {
-        // Codes_SRS_AMQPSESSIONMANAGER_12_043: [THe function shall shut down the scheduler.]
-        this.shutDownScheduler();
-
         // Codes_SRS_AMQPSESSIONMANAGER_12_010: [The function shall call all device session to closeNow links.]
         for (int i = 0; i < this.amqpsDeviceSessionList.size(); i++)
         {
@@ -113,6 +110,7 @@ public class AmqpsSessionManager
 
         // Codes_SRS_AMQPSESSIONMANAGER_12_011: [The function shall closeNow the authentication links.]
         this.amqpsDeviceAuthentication.closeLinks();
+        this.cbsCorrelationIds.clear();
 
         // Codes_SRS_AMQPSESSIONMANAGER_12_012: [The function shall closeNow the session.]
         if (this.session != null)
@@ -134,14 +132,28 @@ public class AmqpsSessionManager
             // Codes_SRS_AMQPSESSIONMANAGER_12_014: [The function shall do nothing if the authentication is not open.]
             if (this.isAuthenticationOpened())
             {
+                // The put-tokens of up to MAX_PENDING_CBS_AUTHENTICATIONS devices are on the CBS link at the same
+                // time, the next device starts when the oldest one has its reply.
+                ArrayDeque<AmqpsSessionDeviceOperation> pendingDevices = new ArrayDeque<>();
                 for (int i = 0; i < this.amqpsDeviceSessionList.size(); i++)
                 {
                     if (this.amqpsDeviceSessionList.get(i) != null)
                     {
+                        if (pendingDevices.size() >= MAX_PENDING_CBS_AUTHENTICATIONS)
+                        {
+                            pendingDevices.poll().waitForAuthentication();
+                        }
+
                         // Codes_SRS_AMQPSESSIONMANAGER_12_015: [The function shall call authenticate on all session list members.]
-                        this.amqpsDeviceSessionList.get(i).authenticate();
+                        this.amqpsDeviceSessionList.get(i).startAuthentication();
+                        pendingDevices.add(this.amqpsDeviceSessionList.get(i));
                     }
                 }
+
+                while (!pendingDevices.isEmpty())
+                {
+                    pendingDevices.poll().waitForAuthentication();
+                }
             }
         }
     }
@@ -364,6 +376,23 @@ public class AmqpsSessionManager
         {
             if (this.isAuthenticationOpened())
             {
+                if (this.deviceClientConfig.getAuthenticationType() == DeviceClientConfig.AuthType.CBS)
+                {
+                    // The reply to a put-token goes to the device that sent it.
+                    amqpsMessage = this.amqpsDeviceAuthentication.getMessageFromReceiverLink(linkName);
+                    if (amqpsMessage != null)
+                    {
+                        Properties properties = amqpsMessage.getProperties();
+                        Object correlationId = (properties == null) ? null : properties.getCorrelationId();
+                        AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = (correlationId == null) ? null : this.cbsCorrelationIds.remove(correlationId);
+                        if (amqpsSessionDeviceOperation != null)
+                        {
+                            amqpsSessionDeviceOperation.authenticationMessageReceived(amqpsMessage, (UUID) correlationId);
+                        }
+                        return amqpsMessage;
+                    }
+                }
+
                 for (int i = 0; i < this.amqpsDeviceSessionList.size(); i++)
                 {
                     // Codes_SRS_AMQPSESSIONMANAGER_12_035: [The function shall call device sessions getMessageFromReceiverLink if the authentication is open.]
@@ -416,6 +445,30 @@ public class AmqpsSessionManager
         return isLinkFound;
     }
 
+    /**
+     * Give the new credit of a link to the authentication or the device operation that owns it.
+     *
+     * @param link the link of the flow event.
+     *
+     * @return Boolean true if found, false otherwise.
+     */
+    boolean onLinkFlow(Link link)
+    {
+        if (this.amqpsDeviceAuthentication.onLinkFlow(link))
+        {
+            return true;
+        }
+
+        for (int i = 0; i < this.amqpsDeviceSessionList.size(); i++)
+        {
+            if (this.amqpsDeviceSessionList.get(i).onLinkFlow(link))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Get the status of the authentication links.
      * 
@@ -482,35 +535,4 @@ public class AmqpsSessionManager
 
         return amqpsConvertFromProtonReturnValue;
     }
-
-    /**
-     * Shut down the CBS authentication sender thread
-     */
-    private void shutDownScheduler()
-    {
-        if (this.taskSchedulerCBSSend != null)
-        {
-            this.taskSchedulerCBSSend.shutdown(); // Disable new tasks from being submitted
-            try
-            {
-                // Wait a while for existing tasks to terminate
-                if (!this.taskSchedulerCBSSend.awaitTermination(60, TimeUnit.SECONDS))
-                {
-                    this.taskSchedulerCBSSend.shutdownNow(); // Cancel currently executing tasks
-                    // Wait a while for tasks to respond to being cancelled
-                    if (!this.taskSchedulerCBSSend.awaitTermination(60, TimeUnit.SECONDS))
-                    {
-                        System.err.println("taskSchedulerTokenRenewal did not terminate correctly");
-                    }
-                }
-            }
-            catch (InterruptedException ie)
-            {
-                // (Re-)Cancel if current thread also interrupted
-                this.taskSchedulerCBSSend.shutdownNow();
-                // Preserve interrupt status
-                Thread.currentThread().interrupt();
-            }
-        }
-    }
 }
@@ -5,8 +5,10 @@ package com.microsoft.azure.sdk.iot.device.transport.https;
 
 import com.microsoft.azure.sdk.iot.device.MessageProperty;
 
+import java.io.ByteArrayOutputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import com.microsoft.azure.sdk.iot.deps.util.Base64;
@@ -34,8 +36,16 @@ public final class HttpsBatchMessage implements HttpsMessage
      */
     private static final Charset BATCH_CHARSET = StandardCharsets.UTF_8;
 
-    /** The current batched message body. */
-    private String batchBody;
+    private static final byte JSON_ARRAY_START = '[';
+    private static final byte JSON_ARRAY_SEPARATOR = ',';
+    private static final byte JSON_ARRAY_END = ']';
+    private static final byte[] JSON_BODY_START = "{\"body\":\"".getBytes(BATCH_CHARSET);
+
+    /**
+     * The current batched message body, encoded using UTF-8. The closing
+     * bracket of the JSON array is only added by getBody().
+     */
+    private final ByteArrayOutputStream batchBody;
 
     /** The current number of messages in the batch. */
     private int numMsgs;
@@ -44,7 +54,8 @@ public final class HttpsBatchMessage implements HttpsMessage
     public HttpsBatchMessage()
     {
         // Codes_SRS_HTTPSBATCHMESSAGE_11_001: [The constructor shall initialize the batch message with the body as an empty JSON array.]
-        this.batchBody = "[]";
+        this.batchBody = new ByteArrayOutputStream();
+        this.batchBody.write(JSON_ARRAY_START);
         this.numMsgs = 0;
     }
 
@@ -60,22 +71,25 @@ public final class HttpsBatchMessage implements HttpsMessage
     public void addMessage(HttpsSingleMessage msg)
             throws IotHubSizeExceededException
     {
-        String jsonMsg = msgToJson(msg);
+        byte[] jsonMsg = msgToJson(msg);
         // Codes_SRS_HTTPSBATCHMESSAGE_11_002: [The function shall add the message as a JSON object appended to the current JSON array.]
-        String newBatchBody = addJsonObjToArray(jsonMsg, this.batchBody);
+        int separatorLength = (this.numMsgs == 0) ? 0 : 1;
+        int newBatchBodyLength = this.batchBody.size() + separatorLength + jsonMsg.length + 1;
 
         // Codes_SRS_HTTPSBATCHMESSAGE_11_008: [If adding the message causes the batched message to exceed 256 kb in size, the function shall throw a IotHubSizeExceededException.]
         // Codes_SRS_HTTPSBATCHMESSAGE_11_009: [If the function throws a IotHubSizeExceededException, the batched message shall remain as if the message was never added.]
-        byte[] newBatchBodyBytes = newBatchBody.getBytes(BATCH_CHARSET);
-
-        if (newBatchBodyBytes.length > SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES)
+        if (newBatchBodyLength > SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES)
         {
             String errMsg = String.format("Service-bound message size (%d bytes) cannot exceed %d bytes.",
-                    newBatchBodyBytes.length, SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES);
+                    newBatchBodyLength, SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES);
             throw new IotHubSizeExceededException(errMsg);
         }
 
-        this.batchBody = newBatchBody;
+        if (separatorLength > 0)
+        {
+            this.batchBody.write(JSON_ARRAY_SEPARATOR);
+        }
+        this.batchBody.write(jsonMsg, 0, jsonMsg.length);
         this.numMsgs++;
     }
 
@@ -88,7 +102,9 @@ public final class HttpsBatchMessage implements HttpsMessage
     {
         // Codes_SRS_HTTPSBATCHMESSAGE_11_006: [The function shall return the current batch message body.]
         // Codes_SRS_HTTPSBATCHMESSAGE_11_007: [The batch message body shall be encoded using UTF-8.]
-        return this.batchBody.getBytes(BATCH_CHARSET);
+        byte[] body = Arrays.copyOf(this.batchBody.toByteArray(), this.batchBody.size() + 1);
+        body[body.length - 1] = JSON_ARRAY_END;
+        return body;
     }
 
     /**
@@ -138,21 +154,20 @@ public final class HttpsBatchMessage implements HttpsMessage
 
     /**
      * Converts a service-bound message to a JSON object with the correct
-     * format.
+     * format. The body is Base64 encoded straight into the returned array.
      *
      * @param msg the message to be converted to a corresponding JSON object.
      *
-     * @return the JSON string representation of the message.
+     * @return the UTF-8 encoded JSON representation of the message.
      */
-    private static String msgToJson(HttpsSingleMessage msg)
+    private static byte[] msgToJson(HttpsSingleMessage msg)
     {
-        StringBuilder jsonMsg = new StringBuilder("{");
-        // Codes_SRS_HTTPSBATCHMESSAGE_11_003: [The JSON object shall have the field "body" set to the raw message encoded in Base64.]
-        jsonMsg.append("\"body\":");
-        jsonMsg.append("\"").append(Base64.encodeBase64StringLocal(msg.getBody())).append("\",");
+        byte[] body = msg.getBody();
+
+        StringBuilder jsonMsgEnd = new StringBuilder("\",");
         // Codes_SRS_HTTPSBATCHMESSAGE_11_004: [The JSON object shall have the field "base64Encoded" set to true and always encode the body for a batch message.]
-        jsonMsg.append("\"base64Encoded\":");
-        jsonMsg.append(true);
+        jsonMsgEnd.append("\"base64Encoded\":");
+        jsonMsgEnd.append(true);
         // Codes_SRS_HTTPSBATCHMESSAGE_11_005: [The JSON object shall have the field "properties" set to a JSON object which has the field "content-type" set to the content type of the raw message.]
         MessageProperty[] properties = msg.getProperties();
         Map<String, String> allProperties = new HashMap<>(msg.getSystemProperties());
@@ -164,45 +179,30 @@ public final class HttpsBatchMessage implements HttpsMessage
         int numProperties = allProperties.size();
         if (numProperties > 0)
         {
-            jsonMsg.append(",");
-            jsonMsg.append("\"properties\":");
-            jsonMsg.append("{");
+            jsonMsgEnd.append(",");
+            jsonMsgEnd.append("\"properties\":");
+            jsonMsgEnd.append("{");
             for (String key : allProperties.keySet())
             {
-                jsonMsg.append("\"").append(key).append("\":");
-                jsonMsg.append("\"").append(allProperties.get(key)).append("\",");
+                jsonMsgEnd.append("\"").append(key).append("\":");
+                jsonMsgEnd.append("\"").append(allProperties.get(key)).append("\",");
             }
 
             //remove last trailing comma
-            jsonMsg.deleteCharAt(jsonMsg.length()-1);
+            jsonMsgEnd.deleteCharAt(jsonMsgEnd.length()-1);
 
-            jsonMsg.append("}");
+            jsonMsgEnd.append("}");
         }
 
-        jsonMsg.append("}");
-
-        return jsonMsg.toString();
-    }
+        jsonMsgEnd.append("}");
+        byte[] jsonMsgEndBytes = jsonMsgEnd.toString().getBytes(BATCH_CHARSET);
 
-    /**
-     * Adds a JSON object to a JSON array.
-     *
-     * @param jsonObj the object to be added to the JSON array.
-     * @param jsonArray the JSON array.
-     *
-     * @return the JSON string representation of the JSON array with the object
-     * added.
-     */
-    private static String addJsonObjToArray(String jsonObj, String jsonArray)
-    {
-        if (jsonArray.equals("[]"))
-        {
-            return "[" + jsonObj + "]";
-        }
-
-        // removes the closing brace of the JSON array.
-        String openJsonArray = jsonArray.substring(0, jsonArray.length() - 1);
+        // Codes_SRS_HTTPSBATCHMESSAGE_11_003: [The JSON object shall have the field "body" set to the raw message encoded in Base64.]
+        byte[] jsonMsg = new byte[JSON_BODY_START.length + Base64.encodedLength(body.length) + jsonMsgEndBytes.length];
+        System.arraycopy(JSON_BODY_START, 0, jsonMsg, 0, JSON_BODY_START.length);
+        int encodedLength = Base64.encodeBase64Local(body, 0, body.length, jsonMsg, JSON_BODY_START.length);
+        System.arraycopy(jsonMsgEndBytes, 0, jsonMsg, JSON_BODY_START.length + encodedLength, jsonMsgEndBytes.length);
 
-        return openJsonArray + "," + jsonObj + "]";
+        return jsonMsg;
     }
 }
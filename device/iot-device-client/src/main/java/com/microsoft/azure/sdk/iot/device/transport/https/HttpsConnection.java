@@ -292,7 +292,8 @@ public class HttpsConnection
             throw new IllegalArgumentException("SSL context cannot be null");
         }
         //Codes_SRS_HTTPSCONNECTION_25_024: [**The function shall set the the SSL context with the given value.**]**
-        this.connection.setSSLSocketFactory(sslContext.getSocketFactory());
+        // The factory of the context is shared so that the JDK can hand this request a kept-alive connection.
+        this.connection.setSSLSocketFactory(HttpsSocketFactory.forContext(sslContext));
     }
 
     @SuppressWarnings("unused")
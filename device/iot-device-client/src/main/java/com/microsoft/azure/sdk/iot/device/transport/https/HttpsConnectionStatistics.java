@@ -0,0 +1,72 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.https;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the TLS connections opened by the HTTPS transport of the process, and
+ * their handshakes.
+ *
+ * The JDK keeps the connections of a request alive for the next requests of
+ * the same host, so on a healthy device the number of connections, and of full
+ * handshakes, stays close to one however many messages are sent. A handshake
+ * that resumes an earlier TLS session is counted as resumed.
+ */
+public final class HttpsConnectionStatistics
+{
+    private static final AtomicLong connectionCount = new AtomicLong();
+    private static final AtomicLong handshakeCount = new AtomicLong();
+    private static final AtomicLong resumedHandshakeCount = new AtomicLong();
+
+    private HttpsConnectionStatistics()
+    {
+    }
+
+    /**
+     * Getter for the number of TLS connections opened since the process started.
+     *
+     * @return the number of connections.
+     */
+    public static long getConnectionCount()
+    {
+        return connectionCount.get();
+    }
+
+    /**
+     * Getter for the number of TLS handshakes completed since the process
+     * started, resumed or not.
+     *
+     * @return the number of handshakes.
+     */
+    public static long getHandshakeCount()
+    {
+        return handshakeCount.get();
+    }
+
+    /**
+     * Getter for the number of TLS handshakes that resumed an earlier session
+     * instead of negotiating a new one.
+     *
+     * @return the number of resumed handshakes.
+     */
+    public static long getResumedHandshakeCount()
+    {
+        return resumedHandshakeCount.get();
+    }
+
+    static void onConnectionOpened()
+    {
+        connectionCount.incrementAndGet();
+    }
+
+    static void onHandshakeCompleted(boolean resumed)
+    {
+        handshakeCount.incrementAndGet();
+        if (resumed)
+        {
+            resumedHandshakeCount.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.https;
+
+import javax.net.ssl.HandshakeCompletedEvent;
+import javax.net.ssl.HandshakeCompletedListener;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The socket factory of an {@link SSLContext}, shared by all the requests that
+ * use the context.
+ *
+ * The JDK only hands an idle kept-alive connection to a request that uses the
+ * same socket factory object as the request that opened it, and
+ * {@link SSLContext#getSocketFactory()} returns a new factory on every call.
+ * Sharing one factory per context lets the requests of a device reuse the same
+ * connection, and the sockets it creates report their handshakes to
+ * {@link HttpsConnectionStatistics}.
+ */
+final class HttpsSocketFactory extends SSLSocketFactory
+{
+    private static final Map<SSLContext, HttpsSocketFactory> factories = new WeakHashMap<>();
+
+    private final SSLSocketFactory delegate;
+
+    /** The sessions that already completed a handshake, to recognize the resumed ones. */
+    private final Map<SSLSession, Boolean> knownSessions = new WeakHashMap<>();
+
+    private final HandshakeCompletedListener handshakeListener = new HandshakeCompletedListener()
+    {
+        @Override
+        public void handshakeCompleted(HandshakeCompletedEvent event)
+        {
+            boolean resumed;
+            synchronized (knownSessions)
+            {
+                resumed = knownSessions.put(event.getSession(), Boolean.TRUE) != null;
+            }
+            HttpsConnectionStatistics.onHandshakeCompleted(resumed);
+        }
+    };
+
+    private HttpsSocketFactory(SSLSocketFactory delegate)
+    {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Getter for the socket factory of a context. The same factory is returned
+     * as long as the context is in use.
+     *
+     * @param sslContext the context of the requests.
+     * @return the socket factory of the context.
+     */
+    static HttpsSocketFactory forContext(SSLContext sslContext)
+    {
+        synchronized (factories)
+        {
+            HttpsSocketFactory factory = factories.get(sslContext);
+            if (factory == null)
+            {
+                factory = new HttpsSocketFactory(sslContext.getSocketFactory());
+                factories.put(sslContext, factory);
+            }
+            return factory;
+        }
+    }
+
+    @Override
+    public String[] getDefaultCipherSuites()
+    {
+        return this.delegate.getDefaultCipherSuites();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites()
+    {
+        return this.delegate.getSupportedCipherSuites();
+    }
+
+    @Override
+    public Socket createSocket() throws IOException
+    {
+        return track(this.delegate.createSocket());
+    }
+
+    @Override
+    public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException
+    {
+        return track(this.delegate.createSocket(socket, host, port, autoClose));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException
+    {
+        return track(this.delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException
+    {
+        return track(this.delegate.createSocket(host, port, localHost, localPort));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException
+    {
+        return track(this.delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException
+    {
+        return track(this.delegate.createSocket(address, port, localAddress, localPort));
+    }
+
+    private Socket track(Socket socket)
+    {
+        if (socket instanceof SSLSocket)
+        {
+            HttpsConnectionStatistics.onConnectionOpened();
+            ((SSLSocket) socket).addHandshakeCompletedListener(this.handshakeListener);
+        }
+        return socket;
+    }
+}
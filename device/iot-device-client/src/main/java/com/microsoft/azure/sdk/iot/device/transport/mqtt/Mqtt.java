@@ -403,37 +403,28 @@ abstract public class Mqtt implements MqttCallback
                         currentReconnectionAttempt++;
                         if (this.deviceClientConfig.getAuthenticationType() == DeviceClientConfig.AuthType.SAS_TOKEN)
                         {
-                            /*
-                            **Codes_SRS_Mqtt_99_050: [**The function shall check if SAS token has already expired.**]**
-                            */
-                            if (!IotHubSasToken.isExpired(new String(this.mqttConnection.getConnectionOptions().getPassword())))
+                            if (this.deviceClientConfig.getIotHubConnectionString().getSharedAccessKey() != null)
                             {
-                                connect(); // Try to reconnect
+                                /*
+                                **Codes_SRS_Mqtt_99_052: [**The function shall generate a new SAS token.**]**
+                                */
+                                // The token of the lost connection may be close to its expiry, the renewed one is signed ahead of it.
+                                String sasToken = this.deviceClientConfig.getSasTokenAuthentication().getRenewedSasToken();
+                                this.mqttConnection.getConnectionOptions().setPassword(sasToken.toCharArray());
                             }
-                            else
+                            else if (IotHubSasToken.isExpired(new String(this.mqttConnection.getConnectionOptions().getPassword())))
                             {
                                 /*
                                 **Codes_SRS_Mqtt_99_050: [**The function shall check if SAS token has already expired.**]**
                                 */
-                                if (this.deviceClientConfig.getIotHubConnectionString().getSharedAccessKey() != null)
-                                {
-                                   /*
-                                    **Codes_SRS_Mqtt_99_052: [**The function shall generate a new SAS token.**]**
-                                    */
-                                    String sasToken = this.deviceClientConfig.getSasTokenAuthentication().getRenewedSasToken();
-                                    this.mqttConnection.getConnectionOptions().setPassword(sasToken.toCharArray());
-
-                                    connect(); // Try to reconnect
-                                }
-                                else
-                                {
-                                    /*
-                                    **Codes_SRS_Mqtt_99_053: [**The function shall set user supplied SAS token expiration flag to true .**]**
-                                    */
-                                    this.userSpecifiedSASTokenExpiredOnRetry  = true;
-                                    return; // no reconnect exit now
-                                }
+                                /*
+                                **Codes_SRS_Mqtt_99_053: [**The function shall set user supplied SAS token expiration flag to true .**]**
+                                */
+                                this.userSpecifiedSASTokenExpiredOnRetry  = true;
+                                return; // no reconnect exit now
                             }
+
+                            connect(); // Try to reconnect
                         }
                         else if (this.deviceClientConfig.getAuthenticationType() == DeviceClientConfig.AuthType.X509_CERTIFICATE)
                         {
@@ -145,7 +145,8 @@ public class MqttIotHubConnection
                 else
                 {
                     //Codes_SRS_MQTTIOTHUBCONNECTION_25_019: [The function shall establish an MQTT connection with a server uri as ssl://<hostName>:8883 if websocket was not enabled.]
-                    final String serverUri = SSL_PREFIX + this.config.getIotHubHostname() + SSL_PORT_SUFFIX;
+                    int port = this.config.getIotHubPort();
+                    final String serverUri = SSL_PREFIX + this.config.getIotHubHostname() + ((port > 0) ? ":" + port : SSL_PORT_SUFFIX);
                     mqttConnection = new MqttConnection(serverUri,
                             this.config.getDeviceId(), this.iotHubUserName, this.iotHubUserPassword, sslContext);
                 }
@@ -67,6 +67,19 @@ public class MqttMessaging extends Mqtt
             throw new IOException("Message cannot be null");
         }
 
+        //Codes_SRS_MqttMessaging_25_024: [send method shall publish a message to the IOT Hub on the publish topic by calling method publish().]
+        this.publish(buildPublishTopic(message), message.getBytes());
+    }
+
+    /**
+     * Builds the topic to publish the provided message on, appending its system and application
+     * properties to the messaging publish topic.
+     *
+     * @param message the message to be published.
+     * @return the topic for the message.
+     */
+    String buildPublishTopic(Message message)
+    {
         MessageProperty[] messageProperties = message.getProperties();
         String messagePublishTopic;
         if(messageProperties.length > 0)
@@ -154,7 +167,6 @@ public class MqttMessaging extends Mqtt
             messagePublishTopic = this.publishTopic;
         }
 
-        //Codes_SRS_MqttMessaging_25_024: [send method shall publish a message to the IOT Hub on the publish topic by calling method publish().]
-        this.publish(messagePublishTopic, message.getBytes());
+        return messagePublishTopic;
     }
 }
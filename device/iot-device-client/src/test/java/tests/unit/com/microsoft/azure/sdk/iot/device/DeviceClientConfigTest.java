@@ -548,4 +548,82 @@ public class DeviceClientConfigTest
         //assert
         assertEquals(mockIotHubConnectionString, actualConnString);
     }
+
+    @Test
+    public void setAmqpReceivePrefetchSavesTheValue(@Mocked final IotHubConnectionString mockIotHubConnectionString)
+    {
+        //arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockIotHubConnectionString.isUsingX509();
+                result = false;
+            }
+        };
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+
+        //act
+        int defaultPrefetch = config.getAmqpReceivePrefetch();
+        config.setAmqpReceivePrefetch(10);
+
+        //assert
+        assertEquals(1024, defaultPrefetch);
+        assertEquals(10, config.getAmqpReceivePrefetch());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void setAmqpReceivePrefetchThrowsIfLessThanOne(@Mocked final IotHubConnectionString mockIotHubConnectionString)
+    {
+        //arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockIotHubConnectionString.isUsingX509();
+                result = false;
+            }
+        };
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+
+        //act
+        config.setAmqpReceivePrefetch(0);
+    }
+
+    @Test
+    public void setIotHubPortSavesTheValue(@Mocked final IotHubConnectionString mockIotHubConnectionString)
+    {
+        //arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockIotHubConnectionString.isUsingX509();
+                result = false;
+            }
+        };
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+
+        //act
+        int defaultPort = config.getIotHubPort();
+        config.setIotHubPort(18883);
+
+        //assert
+        assertEquals(0, defaultPort);
+        assertEquals(18883, config.getIotHubPort());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void setIotHubPortThrowsIfOutOfRange(@Mocked final IotHubConnectionString mockIotHubConnectionString)
+    {
+        //arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockIotHubConnectionString.isUsingX509();
+                result = false;
+            }
+        };
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+
+        //act
+        config.setIotHubPort(65536);
+    }
 }
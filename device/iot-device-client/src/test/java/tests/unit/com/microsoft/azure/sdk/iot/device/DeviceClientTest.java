@@ -2390,6 +2390,91 @@ public class DeviceClientTest
         };
     }
 
+    @Test
+    public void setOptionSetAmqpReceivePrefetchSuccess()
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = false;
+                mockDeviceIO.getProtocol();
+                result = IotHubClientProtocol.AMQPS;
+            }
+        };
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        Deencapsulation.setField(client, "config", mockConfig);
+        Deencapsulation.setField(client, "deviceIO", mockDeviceIO);
+
+        // act
+        client.setOption("SetAmqpReceivePrefetch", 10);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockConfig.setAmqpReceivePrefetch(10);
+                times = 1;
+            }
+        };
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void setOptionSetAmqpReceivePrefetchWrongProtocolThrows()
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = false;
+                mockDeviceIO.getProtocol();
+                result = IotHubClientProtocol.MQTT;
+            }
+        };
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        Deencapsulation.setField(client, "config", mockConfig);
+        Deencapsulation.setField(client, "deviceIO", mockDeviceIO);
+
+        // act
+        client.setOption("SetAmqpReceivePrefetch", 10);
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void setOptionSetAmqpReceivePrefetchDeviceIOOpenedThrows()
+            throws IOException, URISyntaxException
+    {
+        // arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = true;
+            }
+        };
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+
+        DeviceClient client = new DeviceClient(connString, protocol);
+        Deencapsulation.setField(client, "config", mockConfig);
+        Deencapsulation.setField(client, "deviceIO", mockDeviceIO);
+
+        // act
+        client.setOption("SetAmqpReceivePrefetch", 10);
+    }
+
     // Tests_SRS_DEVICECLIENT_12_027: [The function shall throw IOError if either the deviceIO or the tranportClient's open() or closeNow() throws.]
     @Test (expected = IOError.class)
     public void setOptionClientSASTokenExpiryTimeAfterClientOpenAMQPThrowsDeviceIOClose()
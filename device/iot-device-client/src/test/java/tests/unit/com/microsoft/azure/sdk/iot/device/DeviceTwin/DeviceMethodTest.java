@@ -12,6 +12,11 @@ import mockit.NonStrictExpectations;
 import mockit.Verifications;
 import org.junit.Test;
 
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
 import static com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceOperations.DEVICE_OPERATION_METHOD_RECEIVE_REQUEST;
 import static com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceOperations.DEVICE_OPERATION_METHOD_SUBSCRIBE_REQUEST;
 import static org.junit.Assert.*;
@@ -402,4 +407,172 @@ public class DeviceMethodTest
 
     }
 
+    private static final class RecordingExecutor implements Executor
+    {
+        private final Queue<Runnable> tasks = new LinkedList<>();
+
+        @Override
+        public void execute(Runnable command)
+        {
+            tasks.add(command);
+        }
+
+        private void runNext()
+        {
+            tasks.poll().run();
+        }
+    }
+
+    @Test
+    public void deviceMethodResponseCallbackRunsUserCallbackOnExecutor() throws IllegalArgumentException
+    {
+        //arrange
+        DeviceMethod testMethod = new DeviceMethod(mockedDeviceIO, mockedConfig, mockedStatusCB, null);
+        testMethod.subscribeToDeviceMethod(mockedDeviceMethodCB, null);
+        RecordingExecutor testExecutor = new RecordingExecutor();
+        testMethod.setExecutor(testExecutor, 1);
+
+        IotHubTransportMessage testMessage = new IotHubTransportMessage("TestPayload".getBytes(), MessageType.DEVICE_METHODS);
+        testMessage.setDeviceOperationType(DEVICE_OPERATION_METHOD_RECEIVE_REQUEST);
+        testMessage.setMethodName("testMethod");
+
+        final DeviceMethodData testUserData = new DeviceMethodData(100, "Some test message");
+        MessageCallback testDeviceMethodResponseMessageCallback = Deencapsulation.newInnerInstance("deviceMethodResponseCallback", testMethod);
+        new NonStrictExpectations()
+        {
+            {
+                mockedDeviceMethodCB.call(anyString, any, any);
+                result = testUserData;
+            }
+        };
+
+        //act
+        IotHubMessageResult result = testDeviceMethodResponseMessageCallback.execute(testMessage, null);
+
+        //assert
+        assertTrue(result == IotHubMessageResult.COMPLETE);
+        assertEquals(1, testExecutor.tasks.size());
+        new Verifications()
+        {
+            {
+                mockedDeviceMethodCB.call(anyString, any, any);
+                times = 0;
+            }
+        };
+
+        testExecutor.runNext();
+        new Verifications()
+        {
+            {
+                mockedDeviceMethodCB.call("testMethod", any, any);
+                times = 1;
+                mockedDeviceIO.sendEventAsync((Message)any, (IotHubEventCallback)any, null, null);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void deviceMethodResponseCallbackQueuesCallsAboveTheLimitOfTheMethod() throws IllegalArgumentException
+    {
+        //arrange
+        DeviceMethod testMethod = new DeviceMethod(mockedDeviceIO, mockedConfig, mockedStatusCB, null);
+        testMethod.subscribeToDeviceMethod(mockedDeviceMethodCB, null);
+        RecordingExecutor testExecutor = new RecordingExecutor();
+        testMethod.setExecutor(testExecutor, 1);
+
+        MessageCallback testDeviceMethodResponseMessageCallback = Deencapsulation.newInnerInstance("deviceMethodResponseCallback", testMethod);
+        new NonStrictExpectations()
+        {
+            {
+                mockedDeviceMethodCB.call(anyString, any, any);
+                result = new DeviceMethodData(200, null);
+            }
+        };
+
+        //act
+        for (String methodName : new String[] { "slowMethod", "slowMethod", "otherMethod" })
+        {
+            IotHubTransportMessage testMessage = new IotHubTransportMessage(new byte[0], MessageType.DEVICE_METHODS);
+            testMessage.setDeviceOperationType(DEVICE_OPERATION_METHOD_RECEIVE_REQUEST);
+            testMessage.setMethodName(methodName);
+            testDeviceMethodResponseMessageCallback.execute(testMessage, null);
+        }
+
+        //assert
+        // The second slowMethod waits for the first one, otherMethod does not.
+        assertEquals(2, testExecutor.tasks.size());
+        testExecutor.runNext();
+        assertEquals(2, testExecutor.tasks.size());
+        testExecutor.runNext();
+        testExecutor.runNext();
+        assertEquals(0, testExecutor.tasks.size());
+        new Verifications()
+        {
+            {
+                mockedDeviceMethodCB.call("slowMethod", any, any);
+                times = 2;
+                mockedDeviceMethodCB.call("otherMethod", any, any);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void deviceMethodResponseCallbackForgetsMethodsWithNothingRunningOrQueued() throws IllegalArgumentException
+    {
+        //arrange
+        DeviceMethod testMethod = new DeviceMethod(mockedDeviceIO, mockedConfig, mockedStatusCB, null);
+        testMethod.subscribeToDeviceMethod(mockedDeviceMethodCB, null);
+        RecordingExecutor testExecutor = new RecordingExecutor();
+        testMethod.setExecutor(testExecutor, 1);
+
+        MessageCallback testDeviceMethodResponseMessageCallback = Deencapsulation.newInnerInstance("deviceMethodResponseCallback", testMethod);
+        new NonStrictExpectations()
+        {
+            {
+                mockedDeviceMethodCB.call(anyString, any, any);
+                result = new DeviceMethodData(200, null);
+            }
+        };
+        Map<String, ?> methodInvocations = Deencapsulation.getField(testMethod, "methodInvocations");
+
+        //act
+        for (int i = 0; i < 100; i++)
+        {
+            IotHubTransportMessage testMessage = new IotHubTransportMessage(new byte[0], MessageType.DEVICE_METHODS);
+            testMessage.setDeviceOperationType(DEVICE_OPERATION_METHOD_RECEIVE_REQUEST);
+            testMessage.setMethodName("method" + i);
+            testDeviceMethodResponseMessageCallback.execute(testMessage, null);
+        }
+        IotHubTransportMessage queuedMessage = new IotHubTransportMessage(new byte[0], MessageType.DEVICE_METHODS);
+        queuedMessage.setDeviceOperationType(DEVICE_OPERATION_METHOD_RECEIVE_REQUEST);
+        queuedMessage.setMethodName("method0");
+        testDeviceMethodResponseMessageCallback.execute(queuedMessage, null);
+
+        //assert
+        assertEquals(100, methodInvocations.size());
+        while (!testExecutor.tasks.isEmpty())
+        {
+            testExecutor.runNext();
+        }
+        assertTrue(methodInvocations.isEmpty());
+        new Verifications()
+        {
+            {
+                mockedDeviceMethodCB.call("method0", any, any);
+                times = 2;
+            }
+        };
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void setExecutorThrowsOnInvalidLimit() throws IllegalArgumentException
+    {
+        //arrange
+        DeviceMethod testMethod = new DeviceMethod(mockedDeviceIO, mockedConfig, mockedStatusCB, null);
+
+        //act
+        testMethod.setExecutor(new RecordingExecutor(), 0);
+    }
 }
@@ -0,0 +1,103 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.DeviceTwin;
+
+import com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceTwinCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/* Unit tests for DeviceTwinCache
+ * 100% methods covered
+ */
+public class DeviceTwinCacheTest
+{
+    private static final String TWIN_JSON = "{\"properties\":{\"desired\":{\"prop1\":\"value1\",\"$version\":5},\"reported\":{}}}";
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("twincache").toFile();
+    }
+
+    @After
+    public void tearDown()
+    {
+        File[] files = directory.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnNullDirectory()
+    {
+        new DeviceTwinCache(null, 1000);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnNonPositiveMaxAge()
+    {
+        new DeviceTwinCache(directory, 0);
+    }
+
+    @Test
+    public void loadReturnsTheSavedTwin() throws IOException
+    {
+        DeviceTwinCache testCache = new DeviceTwinCache(directory, 60000);
+
+        testCache.save("device/1", TWIN_JSON);
+
+        assertEquals(TWIN_JSON, testCache.load("device/1"));
+        assertNull(testCache.load("device2"));
+    }
+
+    @Test
+    public void loadReturnsNullIfTheTwinIsTooOld() throws IOException
+    {
+        DeviceTwinCache testCache = new DeviceTwinCache(directory, 60000);
+        testCache.save("device1", TWIN_JSON);
+        File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+        assertTrue(files[0].setLastModified(System.currentTimeMillis() - 120000));
+
+        assertNull(testCache.load("device1"));
+    }
+
+    @Test
+    public void saveReplacesThePreviousTwin() throws IOException
+    {
+        DeviceTwinCache testCache = new DeviceTwinCache(directory, 60000);
+        testCache.save("device1", "{}");
+
+        testCache.save("device1", TWIN_JSON);
+
+        assertEquals(TWIN_JSON, testCache.load("device1"));
+        assertEquals(1, directory.listFiles().length);
+    }
+
+    @Test
+    public void removeDeletesTheSavedTwin() throws IOException
+    {
+        DeviceTwinCache testCache = new DeviceTwinCache(directory, 60000);
+        testCache.save("device1", TWIN_JSON);
+
+        testCache.remove("device1");
+
+        assertNull(testCache.load("device1"));
+    }
+}
@@ -12,10 +12,15 @@ import mockit.*;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
 
 import static org.junit.Assert.*;
 
@@ -535,6 +540,146 @@ public class DeviceTwinTest
         };
     }
 
+    @Test
+    public void updateReportedPropCoalescesUpdatesInTheWindow(@Mocked final TwinParser mockedTwinParserObject,
+                                                              @Mocked final IotHubTransportMessage mockedDeviceTwinMessage) throws IOException
+    {
+        new NonStrictExpectations()
+        {
+            {
+                new TwinParser(withAny(new TwinChangedCallback()
+                {
+                    @Override
+                    public void execute(Map<String, Object> map)
+                    {
+
+                    }
+                }), withAny(new TwinChangedCallback()
+                {
+                    @Override
+                    public void execute(Map<String, Object> map)
+                    {
+
+                    }
+                }));
+                result = mockedTwinParserObject;
+                mockedTwinParserObject.updateReportedProperty(withAny(new HashMap<String, Object>()));
+                result = "SerializedReportedProperties";
+                new IotHubTransportMessage(withAny(new byte[0]), MessageType.DEVICE_TWIN);
+                result = mockedDeviceTwinMessage;
+            }
+        };
+        DeviceTwin testTwin = new DeviceTwin(mockedDeviceIO, mockedConfig,
+                mockedStatusCB, null, mockedGenericPropertyCB, null);
+        testTwin.setReportedPropertiesCoalescingWindow(60000);
+        HashSet<Property> firstReportedProp = new HashSet<>();
+        firstReportedProp.add(new Property("prop1", 1));
+        firstReportedProp.add(new Property("prop2", "value2"));
+        HashSet<Property> secondReportedProp = new HashSet<>();
+        secondReportedProp.add(new Property("prop1", 2));
+
+        testTwin.updateReportedProperties(firstReportedProp);
+        testTwin.updateReportedProperties(secondReportedProp);
+
+        new Verifications()
+        {
+            {
+                mockedDeviceIO.sendEventAsync((Message)any, (IotHubEventCallback)any, any, (IotHubConnectionString)any);
+                times = 0;
+            }
+        };
+
+        testTwin.flushReportedProperties();
+
+        final List<Map<String, Object>> sentReportedProp = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockedTwinParserObject.updateReportedProperty(withCapture(sentReportedProp));
+                times = 1;
+                mockedDeviceIO.sendEventAsync(mockedDeviceTwinMessage, (IotHubEventCallback)any , null, null);
+                times = 1;
+            }
+        };
+        assertEquals(2, sentReportedProp.get(0).size());
+        assertEquals(2, sentReportedProp.get(0).get("prop1"));
+        assertEquals("value2", sentReportedProp.get(0).get("prop2"));
+    }
+
+    @Test
+    public void updateReportedPropCallsEveryCallerCallbackWhenTheMergedPatchCompletes(@Mocked final TwinParser mockedTwinParserObject,
+                                                                                       @Mocked final IotHubTransportMessage mockedDeviceTwinMessage,
+                                                                                       @Mocked final IotHubEventCallback mockedCallerCB) throws IOException
+    {
+        new NonStrictExpectations()
+        {
+            {
+                new TwinParser(withAny(new TwinChangedCallback()
+                {
+                    @Override
+                    public void execute(Map<String, Object> map)
+                    {
+
+                    }
+                }), withAny(new TwinChangedCallback()
+                {
+                    @Override
+                    public void execute(Map<String, Object> map)
+                    {
+
+                    }
+                }));
+                result = mockedTwinParserObject;
+                mockedTwinParserObject.updateReportedProperty(withAny(new HashMap<String, Object>()));
+                result = "SerializedReportedProperties";
+                new IotHubTransportMessage(withAny(new byte[0]), MessageType.DEVICE_TWIN);
+                result = mockedDeviceTwinMessage;
+            }
+        };
+        DeviceTwin testTwin = new DeviceTwin(mockedDeviceIO, mockedConfig,
+                mockedStatusCB, null, mockedGenericPropertyCB, null);
+        testTwin.setReportedPropertiesCoalescingWindow(60000);
+        HashSet<Property> reportedProp = new HashSet<>();
+        reportedProp.add(new Property("prop1", 1));
+        final Object firstContext = new Object();
+        final Object secondContext = new Object();
+
+        testTwin.updateReportedProperties(reportedProp, mockedCallerCB, firstContext);
+        testTwin.updateReportedProperties(reportedProp, mockedCallerCB, secondContext);
+        testTwin.flushReportedProperties();
+
+        final List<IotHubEventCallback> requestCallbacks = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockedDeviceIO.sendEventAsync(mockedDeviceTwinMessage, withCapture(requestCallbacks), null, null);
+                times = 1;
+            }
+        };
+        requestCallbacks.get(0).execute(IotHubStatusCode.OK, null);
+
+        new Verifications()
+        {
+            {
+                mockedCallerCB.execute(IotHubStatusCode.OK, firstContext);
+                times = 1;
+                mockedCallerCB.execute(IotHubStatusCode.OK, secondContext);
+                times = 1;
+                mockedStatusCB.execute(IotHubStatusCode.OK, null);
+                times = 1;
+            }
+        };
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void setReportedPropertiesCoalescingWindowThrowsOnNegativeWindow() throws IOException
+    {
+        DeviceTwin testTwin = new DeviceTwin(mockedDeviceIO, mockedConfig,
+                mockedStatusCB, null, mockedGenericPropertyCB, null);
+
+        testTwin.setReportedPropertiesCoalescingWindow(-1);
+    }
+
     /*
     **Tests_SRS_DEVICETWIN_25_027: [**If the message is of type DEVICE_TWIN and DEVICE_OPERATION_TWIN_UPDATE_REPORTED_PROPERTIES_RESPONSE then the user call with a valid status is triggered.**]**
      */
@@ -917,4 +1062,222 @@ public class DeviceTwinTest
         };
     }
 
+    private static final class RecordingExecutor implements Executor
+    {
+        private final Queue<Runnable> tasks = new LinkedList<>();
+
+        @Override
+        public void execute(Runnable command)
+        {
+            tasks.add(command);
+        }
+
+        private void runNext()
+        {
+            tasks.poll().run();
+        }
+    }
+
+    @Test
+    public void desiredChangeIsDeliveredOnExecutor() throws IOException
+    {
+        DeviceTwin testTwin = new DeviceTwin(mockedDeviceIO, mockedConfig,
+                mockedStatusCB, null, mockedGenericPropertyCB, null);
+        RecordingExecutor testExecutor = new RecordingExecutor();
+        testTwin.setDesiredPropertyCallbackExecutor(testExecutor, false);
+        TwinChangedCallback onDesiredChange = Deencapsulation.newInnerInstance("OnDesiredPropertyChanged", testTwin);
+        final HashMap<String, Object> desiredPropertyMap = new HashMap<>();
+        desiredPropertyMap.put("DesiredProp1", "DesiredValue1");
+        desiredPropertyMap.put("DesiredProp2", "DesiredValue2");
+
+        //act
+        onDesiredChange.execute(desiredPropertyMap);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedGenericPropertyCB.PropertyCall(anyString, any, any);
+                times = 0;
+            }
+        };
+        assertEquals(1, testExecutor.tasks.size());
+
+        testExecutor.runNext();
+
+        new Verifications()
+        {
+            {
+                mockedGenericPropertyCB.PropertyCall("DesiredProp1", "DesiredValue1", null);
+                times = 1;
+                mockedGenericPropertyCB.PropertyCall("DesiredProp2", "DesiredValue2", null);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void desiredChangesAfterAFailingCallbackAreStillDelivered() throws IOException
+    {
+        final List<String> deliveredKeys = new ArrayList<>();
+        PropertyCallBack<String, Object> failingFirstCallback = new PropertyCallBack<String, Object>()
+        {
+            @Override
+            public void PropertyCall(String propertyKey, Object propertyValue, Object context)
+            {
+                deliveredKeys.add(propertyKey);
+                if (deliveredKeys.size() == 1)
+                {
+                    throw new IllegalStateException("Failing user callback");
+                }
+            }
+        };
+        DeviceTwin testTwin = new DeviceTwin(mockedDeviceIO, mockedConfig,
+                mockedStatusCB, null, failingFirstCallback, null);
+        RecordingExecutor testExecutor = new RecordingExecutor();
+        testTwin.setDesiredPropertyCallbackExecutor(testExecutor, false);
+        TwinChangedCallback onDesiredChange = Deencapsulation.newInnerInstance("OnDesiredPropertyChanged", testTwin);
+        final HashMap<String, Object> desiredPropertyMap = new HashMap<>();
+        desiredPropertyMap.put("DesiredProp1", "DesiredValue1");
+        desiredPropertyMap.put("DesiredProp2", "DesiredValue2");
+
+        //act
+        onDesiredChange.execute(desiredPropertyMap);
+        testExecutor.runNext();
+
+        //assert
+        assertEquals(2, deliveredKeys.size());
+        assertTrue(deliveredKeys.contains("DesiredProp1"));
+        assertTrue(deliveredKeys.contains("DesiredProp2"));
+        assertEquals(0, testExecutor.tasks.size());
+
+        // The queue is not left marked as running, the next change is delivered too.
+        desiredPropertyMap.clear();
+        desiredPropertyMap.put("DesiredProp3", "DesiredValue3");
+        onDesiredChange.execute(desiredPropertyMap);
+        assertEquals(1, testExecutor.tasks.size());
+        testExecutor.runNext();
+        assertEquals("DesiredProp3", deliveredKeys.get(2));
+    }
+
+    @Test
+    public void desiredChangesOfDifferentPropertiesAreDeliveredInParallel() throws IOException
+    {
+        DeviceTwin testTwin = new DeviceTwin(mockedDeviceIO, mockedConfig,
+                mockedStatusCB, null, mockedGenericPropertyCB, null);
+        RecordingExecutor testExecutor = new RecordingExecutor();
+        testTwin.setDesiredPropertyCallbackExecutor(testExecutor, true);
+        TwinChangedCallback onDesiredChange = Deencapsulation.newInnerInstance("OnDesiredPropertyChanged", testTwin);
+        final HashMap<String, Object> desiredPropertyMap = new HashMap<>();
+        desiredPropertyMap.put("DesiredProp1", "DesiredValue1");
+        desiredPropertyMap.put("DesiredProp2", "DesiredValue2");
+
+        //act
+        onDesiredChange.execute(desiredPropertyMap);
+
+        //assert
+        assertEquals(2, testExecutor.tasks.size());
+    }
+
+    @Test
+    public void desiredChangeIsDeliveredAfterTheTwinLockIsReleased() throws IOException
+    {
+        DeviceTwin testTwin = new DeviceTwin(mockedDeviceIO, mockedConfig,
+                mockedStatusCB, null, mockedGenericPropertyCB, null);
+        TwinChangedCallback onDesiredChange = Deencapsulation.newInnerInstance("OnDesiredPropertyChanged", testTwin);
+        final HashMap<String, Object> desiredPropertyMap = new HashMap<>();
+        desiredPropertyMap.put("DesiredProp1", "DesiredValue1");
+
+        //act
+        synchronized (Deencapsulation.getField(testTwin, "DEVICE_TWIN_LOCK"))
+        {
+            onDesiredChange.execute(desiredPropertyMap);
+        }
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedGenericPropertyCB.PropertyCall(anyString, any, any);
+                times = 0;
+            }
+        };
+
+        Deencapsulation.invoke(testTwin, "deliverDesiredPropertyChanges");
+
+        new Verifications()
+        {
+            {
+                mockedGenericPropertyCB.PropertyCall("DesiredProp1", "DesiredValue1", null);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void getDeviceTwinResumesFromCache(@Mocked final TwinParser mockedTwinParserObject,
+                                              @Mocked final DeviceTwinCache mockedCache) throws IOException
+    {
+        new NonStrictExpectations()
+        {
+            {
+                mockedConfig.getDeviceId();
+                result = "testDevice";
+                mockedCache.load("testDevice");
+                result = "CachedTwin";
+            }
+        };
+        DeviceTwin testTwin = new DeviceTwin(mockedDeviceIO, mockedConfig,
+                mockedStatusCB, null, mockedGenericPropertyCB, null);
+        testTwin.setCache(mockedCache);
+
+        //act
+        testTwin.getDeviceTwin();
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedTwinParserObject.updateTwin("CachedTwin");
+                times = 1;
+                mockedStatusCB.execute(IotHubStatusCode.OK, null);
+                times = 1;
+                mockedDeviceIO.sendEventAsync((Message)any, (IotHubEventCallback)any, any, (IotHubConnectionString)any);
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void getDeviceTwinRequestsTheTwinIfCacheHasNone(@Mocked final TwinParser mockedTwinParserObject,
+                                                          @Mocked final DeviceTwinCache mockedCache,
+                                                          @Mocked final IotHubTransportMessage mockedDeviceTwinMessage) throws IOException
+    {
+        new NonStrictExpectations()
+        {
+            {
+                mockedConfig.getDeviceId();
+                result = "testDevice";
+                mockedCache.load("testDevice");
+                result = null;
+            }
+        };
+        DeviceTwin testTwin = new DeviceTwin(mockedDeviceIO, mockedConfig,
+                mockedStatusCB, null, mockedGenericPropertyCB, null);
+        testTwin.setCache(mockedCache);
+
+        //act
+        testTwin.getDeviceTwin();
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedTwinParserObject.updateTwin(anyString);
+                times = 0;
+                mockedDeviceIO.sendEventAsync((Message)any, (IotHubEventCallback)any, any, (IotHubConnectionString)any);
+                times = 1;
+            }
+        };
+    }
 }
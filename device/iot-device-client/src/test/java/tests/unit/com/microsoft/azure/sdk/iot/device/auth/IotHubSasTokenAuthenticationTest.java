@@ -8,6 +8,7 @@ package tests.unit.com.microsoft.azure.sdk.iot.device.auth;
 import com.microsoft.azure.sdk.iot.device.auth.IotHubSSLContext;
 import com.microsoft.azure.sdk.iot.device.auth.IotHubSasToken;
 import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenAuthentication;
+import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenRenewalListener;
 import mockit.*;
 import org.junit.Test;
 
@@ -17,6 +18,7 @@ import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
+import java.util.UUID;
 
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.*;
@@ -37,6 +39,9 @@ public class IotHubSasTokenAuthenticationTest
     @Mocked
     IotHubSasToken mockSasToken;
 
+    @Mocked
+    IotHubSasTokenRenewalListener mockRenewalListener;
+
     private static String expectedDeviceId = "deviceId";
     private static String expectedHostname = "hostname";
     private static String expectedDeviceKey = "deviceKey";
@@ -95,6 +100,148 @@ public class IotHubSasTokenAuthenticationTest
         assertEquals(mockSasToken.toString(), actualSasToken);
     }
 
+    @Test
+    public void constructorSetsRenewalTimeBeforeExpiry()
+    {
+        //arrange
+        long validMillis = expectedExpiryTime * MILLISECONDS_PER_SECOND;
+        long now = System.currentTimeMillis();
+
+        //act
+        IotHubSasTokenAuthentication sasAuth = new IotHubSasTokenAuthentication(expectedHostname, expectedDeviceId, expectedDeviceKey, null);
+
+        //assert
+        long renewalTimeMillis = Deencapsulation.getField(sasAuth, "renewalTimeMillis");
+        assertTrue(renewalTimeMillis >= now + validMillis * 65 / 100 - MILLISECONDS_PER_SECOND);
+        assertTrue(renewalTimeMillis <= System.currentTimeMillis() + validMillis * 75 / 100 + 2 * MILLISECONDS_PER_SECOND);
+    }
+
+    @Test
+    public void constructorDoesNotScheduleRenewalOfUserToken()
+    {
+        //act
+        IotHubSasTokenAuthentication sasAuth = new IotHubSasTokenAuthentication(expectedHostname, expectedDeviceId, null, expectedSasToken);
+
+        //assert
+        long renewalTimeMillis = Deencapsulation.getField(sasAuth, "renewalTimeMillis");
+        assertEquals(Long.MAX_VALUE, renewalTimeMillis);
+    }
+
+    @Test
+    public void getRenewedSasTokenRenewsAheadOfExpiry()
+    {
+        //arrange
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockSasToken, "isExpired");
+                result = false;
+            }
+        };
+        IotHubSasTokenAuthentication sasAuth = new IotHubSasTokenAuthentication(expectedHostname, expectedDeviceId, expectedDeviceKey, null);
+        Deencapsulation.setField(sasAuth, "renewalTimeMillis", System.currentTimeMillis() - 1);
+
+        //act
+        sasAuth.getRenewedSasToken();
+
+        //assert
+        long renewalTimeMillis = Deencapsulation.getField(sasAuth, "renewalTimeMillis");
+        assertTrue(renewalTimeMillis > System.currentTimeMillis());
+    }
+
+    @Test
+    public void getRenewedSasTokenNotifiesRenewalListeners()
+    {
+        //arrange
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockSasToken, "isExpired");
+                result = false;
+            }
+        };
+        IotHubSasTokenAuthentication sasAuth = new IotHubSasTokenAuthentication(expectedHostname, expectedDeviceId, expectedDeviceKey, null);
+        sasAuth.addSasTokenRenewalListener(mockRenewalListener);
+        Deencapsulation.setField(sasAuth, "renewalTimeMillis", System.currentTimeMillis() - 1);
+
+        //act
+        sasAuth.getRenewedSasToken();
+        sasAuth.removeSasTokenRenewalListener(mockRenewalListener);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockRenewalListener.onSasTokenRenewed();
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void addSasTokenRenewalListenerRenewsInBackground() throws InterruptedException
+    {
+        //arrange
+        IotHubSasTokenAuthentication sasAuth = new IotHubSasTokenAuthentication(expectedHostname, expectedDeviceId, expectedDeviceKey, null);
+        long now = System.currentTimeMillis();
+        Deencapsulation.setField(sasAuth, "renewalTimeMillis", now);
+
+        //act
+        sasAuth.addSasTokenRenewalListener(mockRenewalListener);
+
+        //assert
+        for (int i = 0; i < 100 && (Long) Deencapsulation.getField(sasAuth, "renewalTimeMillis") == now; i++)
+        {
+            Thread.sleep(50);
+        }
+        sasAuth.removeSasTokenRenewalListener(mockRenewalListener);
+        new Verifications()
+        {
+            {
+                mockRenewalListener.onSasTokenRenewed();
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void removeSasTokenRenewalListenerCancelsRenewal()
+    {
+        //arrange
+        IotHubSasTokenAuthentication sasAuth = new IotHubSasTokenAuthentication(expectedHostname, expectedDeviceId, expectedDeviceKey, null);
+        sasAuth.addSasTokenRenewalListener(mockRenewalListener);
+        assertNotNull(Deencapsulation.getField(sasAuth, "renewalFuture"));
+
+        //act
+        sasAuth.removeSasTokenRenewalListener(mockRenewalListener);
+
+        //assert
+        assertNull(Deencapsulation.getField(sasAuth, "renewalFuture"));
+    }
+
+    @Test
+    public void addSasTokenRenewalListenerDoesNotScheduleRenewalOfUserToken()
+    {
+        //arrange
+        IotHubSasTokenAuthentication sasAuth = new IotHubSasTokenAuthentication(expectedHostname, expectedDeviceId, null, expectedSasToken);
+
+        //act
+        sasAuth.addSasTokenRenewalListener(mockRenewalListener);
+
+        //assert
+        assertNull(Deencapsulation.getField(sasAuth, "renewalFuture"));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void addSasTokenRenewalListenerThrowsIfListenerIsNull()
+    {
+        //arrange
+        IotHubSasTokenAuthentication sasAuth = new IotHubSasTokenAuthentication(expectedHostname, expectedDeviceId, expectedDeviceKey, null);
+
+        //act
+        sasAuth.addSasTokenRenewalListener(null);
+    }
+
     //Tests_SRS_IOTHUBSASTOKENAUTHENTICATION_34_008: [This function shall return the generated IotHubSSLContext.]
     @Test
     public void getIotHubSSLContextGets() throws CertificateException, NoSuchAlgorithmException, KeyStoreException, KeyManagementException, IOException
@@ -110,6 +257,48 @@ public class IotHubSasTokenAuthenticationTest
         assertEquals(mockSSLContext, actualSSLContext);
     }
 
+    @Test
+    public void getSSLContextSharesTheContextOfTheSameTrustedCert() throws IOException
+    {
+        //arrange
+        final String expectedCert = "sharedTrustedCert-" + UUID.randomUUID();
+        IotHubSasTokenAuthentication firstAuth = new IotHubSasTokenAuthentication(expectedHostname, expectedDeviceId, expectedDeviceKey, expectedSasToken);
+        IotHubSasTokenAuthentication secondAuth = new IotHubSasTokenAuthentication(expectedHostname, "otherDeviceId", expectedDeviceKey, expectedSasToken);
+        firstAuth.setIotHubTrustedCert(expectedCert);
+        secondAuth.setIotHubTrustedCert(expectedCert);
+
+        //act
+        firstAuth.getSSLContext();
+        secondAuth.getSSLContext();
+
+        //assert
+        assertSame(Deencapsulation.getField(firstAuth, "iotHubSSLContext"), Deencapsulation.getField(secondAuth, "iotHubSSLContext"));
+        new Verifications()
+        {
+            {
+                Deencapsulation.newInstance(IotHubSSLContext.class, new Class[] {String.class, boolean.class}, expectedCert, false);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void getSSLContextDoesNotShareTheContextOfAnotherTrustedCert() throws IOException
+    {
+        //arrange
+        IotHubSasTokenAuthentication firstAuth = new IotHubSasTokenAuthentication(expectedHostname, expectedDeviceId, expectedDeviceKey, expectedSasToken);
+        IotHubSasTokenAuthentication secondAuth = new IotHubSasTokenAuthentication(expectedHostname, expectedDeviceId, expectedDeviceKey, expectedSasToken);
+        firstAuth.setIotHubTrustedCert("firstTrustedCert-" + UUID.randomUUID());
+        secondAuth.setIotHubTrustedCert("secondTrustedCert-" + UUID.randomUUID());
+
+        //act
+        firstAuth.getSSLContext();
+        secondAuth.getSSLContext();
+
+        //assert
+        assertNotSame(Deencapsulation.getField(firstAuth, "iotHubSSLContext"), Deencapsulation.getField(secondAuth, "iotHubSSLContext"));
+    }
+
     // Tests_SRS_IOTHUBSASTOKENAUTHENTICATION_12_001: [This function shall return the tokenValidSecs as the number of seconds the current sas token valid for.]
     @Test
     public void getTokenValidSecs()
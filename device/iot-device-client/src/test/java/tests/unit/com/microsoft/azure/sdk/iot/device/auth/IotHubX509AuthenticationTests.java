@@ -21,8 +21,10 @@ import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
+import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 
@@ -148,6 +150,38 @@ public class IotHubX509AuthenticationTests
         assertEquals(mockSSLcontext, actualSSLContext);
     }
 
+    @Test
+    public void getSSLContextSharesTheContextOfTheSameCertificates() throws IOException
+    {
+        //arrange
+        final String sharedKey = "sharedKey-" + UUID.randomUUID();
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockIotHubX509, "getPublicKeyCertificate");
+                result = publicKeyCertificate;
+                Deencapsulation.invoke(mockIotHubX509, "getPrivateKey");
+                result = sharedKey;
+            }
+        };
+        IotHubX509Authentication firstAuth = new IotHubX509Authentication(publicKeyCertificate, false, sharedKey, false);
+        IotHubX509Authentication secondAuth = new IotHubX509Authentication(publicKeyCertificate, false, sharedKey, false);
+
+        //act
+        firstAuth.getSSLContext();
+        secondAuth.getSSLContext();
+
+        //assert
+        assertSame(Deencapsulation.getField(firstAuth, "iotHubSSLContext"), Deencapsulation.getField(secondAuth, "iotHubSSLContext"));
+        new Verifications()
+        {
+            {
+                Deencapsulation.newInstance(IotHubSSLContext.class, new Class[] {String.class, String.class}, publicKeyCertificate, sharedKey);
+                times = 1;
+            }
+        };
+    }
+
     // Tests_SRS_IOTHUBSASTOKENAUTHENTICATION_34_019: [If this has a saved iotHubTrustedCert, this function shall generate a new IotHubSSLContext object with that saved cert as the trusted cert.]
     @Test
     public void generateSSLContextUsesSavedTrustedCert() throws CertificateException, NoSuchAlgorithmException, KeyStoreException, KeyManagementException, IOException, UnrecoverableKeyException
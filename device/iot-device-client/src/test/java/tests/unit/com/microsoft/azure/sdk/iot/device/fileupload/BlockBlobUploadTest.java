@@ -0,0 +1,195 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.fileupload;
+
+import com.microsoft.azure.sdk.iot.device.fileupload.FileUploadOptions;
+import com.microsoft.azure.storage.blob.BlockEntry;
+import com.microsoft.azure.storage.blob.BlockListingFilter;
+import com.microsoft.azure.storage.blob.CloudBlockBlob;
+import mockit.Deencapsulation;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Unit tests for the block upload of the file upload task.
+ */
+public class BlockBlobUploadTest
+{
+    private static final int BLOCK_SIZE = FileUploadOptions.MIN_BLOCK_SIZE_IN_BYTES;
+
+    @Mocked
+    private CloudBlockBlob mockCloudBlockBlob;
+
+    private Object newBlockBlobUpload(long length, int maxConcurrentBlocks)
+    {
+        return Deencapsulation.newInstance("com.microsoft.azure.sdk.iot.device.fileupload.BlockBlobUpload",
+                new Class[] {CloudBlockBlob.class, long.class, FileUploadOptions.class},
+                mockCloudBlockBlob, length, new FileUploadOptions(BLOCK_SIZE, maxConcurrentBlocks));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorTooBigLengthThrows() throws Exception
+    {
+        // act
+        newBlockBlobUpload((long) FileUploadOptions.MAX_BLOCK_SIZE_IN_BYTES * 50000 + 1, 1);
+    }
+
+    @Test
+    public void uploadSendsEveryBlockAndCommits() throws Exception
+    {
+        // arrange
+        final int length = BLOCK_SIZE * 3 + 10;
+        Object blockBlobUpload = newBlockBlobUpload(length, 2);
+
+        // act
+        Deencapsulation.invoke(blockBlobUpload, "upload", new Class[] {InputStream.class}, new ByteArrayInputStream(new byte[length]));
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockCloudBlockBlob.uploadBlock(anyString, (InputStream) any, BLOCK_SIZE);
+                times = 3;
+                mockCloudBlockBlob.uploadBlock(anyString, (InputStream) any, 10);
+                times = 1;
+                mockCloudBlockBlob.commitBlockList((Iterable<BlockEntry>) any);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void uploadRetriesFailedBlock() throws Exception
+    {
+        // arrange
+        Object blockBlobUpload = newBlockBlobUpload(BLOCK_SIZE, 1);
+        new NonStrictExpectations()
+        {
+            {
+                mockCloudBlockBlob.uploadBlock(anyString, (InputStream) any, anyLong);
+                result = new IOException();
+                result = null;
+            }
+        };
+
+        // act
+        Deencapsulation.invoke(blockBlobUpload, "upload", new Class[] {InputStream.class}, new ByteArrayInputStream(new byte[BLOCK_SIZE]));
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockCloudBlockBlob.uploadBlock(anyString, (InputStream) any, anyLong);
+                times = 2;
+                mockCloudBlockBlob.commitBlockList((Iterable<BlockEntry>) any);
+                times = 1;
+            }
+        };
+    }
+
+    @Test (expected = IOException.class)
+    public void uploadFailsAfterThreeAttempts() throws Exception
+    {
+        // arrange
+        Object blockBlobUpload = newBlockBlobUpload(BLOCK_SIZE, 1);
+        new NonStrictExpectations()
+        {
+            {
+                mockCloudBlockBlob.uploadBlock(anyString, (InputStream) any, anyLong);
+                result = new IOException();
+            }
+        };
+
+        // act
+        Deencapsulation.invoke(blockBlobUpload, "upload", new Class[] {InputStream.class}, new ByteArrayInputStream(new byte[BLOCK_SIZE]));
+    }
+
+    @Test
+    public void uploadSkipsUncommittedBlocksWithTheSameContent() throws Exception
+    {
+        // arrange
+        final Object blockBlobUpload = newBlockBlobUpload(BLOCK_SIZE * 2, 1);
+        final String firstBlockId = Deencapsulation.invoke(blockBlobUpload, "blockId", 0, new byte[BLOCK_SIZE]);
+        uncommittedBlockExpectations(firstBlockId);
+
+        // act
+        Deencapsulation.invoke(blockBlobUpload, "upload", new Class[] {InputStream.class}, new ByteArrayInputStream(new byte[BLOCK_SIZE * 2]));
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockCloudBlockBlob.uploadBlock(firstBlockId, (InputStream) any, anyLong);
+                times = 0;
+                mockCloudBlockBlob.uploadBlock(anyString, (InputStream) any, anyLong);
+                times = 1;
+                mockCloudBlockBlob.commitBlockList((Iterable<BlockEntry>) any);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void uploadSendsUncommittedBlocksWithOtherContent() throws Exception
+    {
+        // arrange
+        final Object blockBlobUpload = newBlockBlobUpload(BLOCK_SIZE * 2, 1);
+        byte[] previousContent = new byte[BLOCK_SIZE];
+        Arrays.fill(previousContent, (byte) 1);
+        final String previousBlockId = Deencapsulation.invoke(blockBlobUpload, "blockId", 0, previousContent);
+        uncommittedBlockExpectations(previousBlockId);
+
+        // act
+        Deencapsulation.invoke(blockBlobUpload, "upload", new Class[] {InputStream.class}, new ByteArrayInputStream(new byte[BLOCK_SIZE * 2]));
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockCloudBlockBlob.uploadBlock(previousBlockId, (InputStream) any, anyLong);
+                times = 0;
+                mockCloudBlockBlob.uploadBlock(anyString, (InputStream) any, anyLong);
+                times = 2;
+                mockCloudBlockBlob.commitBlockList((Iterable<BlockEntry>) any);
+                times = 1;
+            }
+        };
+    }
+
+    @Test (expected = EOFException.class)
+    public void uploadShortStreamThrows() throws Exception
+    {
+        // arrange
+        Object blockBlobUpload = newBlockBlobUpload(BLOCK_SIZE, 1);
+
+        // act
+        Deencapsulation.invoke(blockBlobUpload, "upload", new Class[] {InputStream.class}, new ByteArrayInputStream(new byte[10]));
+    }
+
+    private void uncommittedBlockExpectations(final String blockId) throws Exception
+    {
+        final ArrayList<BlockEntry> uncommittedBlocks = new ArrayList<>();
+        uncommittedBlocks.add(new BlockEntry(blockId));
+        new NonStrictExpectations(uncommittedBlocks.get(0))
+        {
+            {
+                mockCloudBlockBlob.downloadBlockList(BlockListingFilter.UNCOMMITTED, null, null, null);
+                result = uncommittedBlocks;
+                uncommittedBlocks.get(0).getId();
+                result = blockId;
+                uncommittedBlocks.get(0).getSize();
+                result = (long) BLOCK_SIZE;
+            }
+        };
+    }
+}
@@ -0,0 +1,58 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.fileupload;
+
+import com.microsoft.azure.sdk.iot.device.fileupload.FileUploadOptions;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for file upload options class.
+ */
+public class FileUploadOptionsTest
+{
+    @Test
+    public void constructorDefaultsSucceed()
+    {
+        // act
+        FileUploadOptions options = new FileUploadOptions();
+
+        // assert
+        assertEquals(FileUploadOptions.DEFAULT_BLOCK_SIZE_IN_BYTES, options.getBlockSizeInBytes());
+        assertEquals(FileUploadOptions.DEFAULT_MAX_CONCURRENT_BLOCKS, options.getMaxConcurrentBlocks());
+    }
+
+    @Test
+    public void constructorStoresParameters()
+    {
+        // act
+        FileUploadOptions options = new FileUploadOptions(FileUploadOptions.MIN_BLOCK_SIZE_IN_BYTES, 8);
+
+        // assert
+        assertEquals(FileUploadOptions.MIN_BLOCK_SIZE_IN_BYTES, options.getBlockSizeInBytes());
+        assertEquals(8, options.getMaxConcurrentBlocks());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorSmallBlockSizeThrows()
+    {
+        // act
+        new FileUploadOptions(FileUploadOptions.MIN_BLOCK_SIZE_IN_BYTES - 1, 1);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorBigBlockSizeThrows()
+    {
+        // act
+        new FileUploadOptions(FileUploadOptions.MAX_BLOCK_SIZE_IN_BYTES + 1, 1);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorZeroConcurrencyThrows()
+    {
+        // act
+        new FileUploadOptions(FileUploadOptions.DEFAULT_BLOCK_SIZE_IN_BYTES, 0);
+    }
+}
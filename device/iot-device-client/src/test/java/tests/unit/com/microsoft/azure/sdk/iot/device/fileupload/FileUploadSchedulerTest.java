@@ -0,0 +1,230 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.fileupload;
+
+import com.microsoft.azure.sdk.iot.device.fileupload.FileUploadScheduler;
+import mockit.Deencapsulation;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the file upload scheduler shared by the clients of the process.
+ */
+public class FileUploadSchedulerTest
+{
+    private static Future<?> submit(FileUploadScheduler scheduler, Object owner, Runnable task)
+    {
+        return Deencapsulation.invoke(scheduler, "submit", new Class[] {Object.class, Runnable.class}, owner, task);
+    }
+
+    private static Runnable recordingTask(final List<String> record, final String name)
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                record.add(name);
+            }
+        };
+    }
+
+    @Test
+    public void getInstanceReturnsSharedScheduler()
+    {
+        // act - assert
+        assertSame(FileUploadScheduler.getInstance(), FileUploadScheduler.getInstance());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void setMaxConcurrentUploadsZeroThrows()
+    {
+        // arrange
+        FileUploadScheduler scheduler = Deencapsulation.newInstance(FileUploadScheduler.class, 1);
+
+        // act
+        scheduler.setMaxConcurrentUploads(0);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void setMaxConcurrentBlocksZeroThrows()
+    {
+        // arrange
+        FileUploadScheduler scheduler = Deencapsulation.newInstance(FileUploadScheduler.class, 1);
+
+        // act
+        scheduler.setMaxConcurrentBlocks(0);
+    }
+
+    @Test
+    public void setMaxConcurrentBlocksUpAndDown()
+    {
+        // arrange
+        FileUploadScheduler scheduler = Deencapsulation.newInstance(FileUploadScheduler.class, 1);
+
+        // act - assert
+        assertEquals(10, scheduler.getMaxConcurrentBlocks());
+        scheduler.setMaxConcurrentBlocks(20);
+        assertEquals(20, scheduler.getMaxConcurrentBlocks());
+        scheduler.setMaxConcurrentBlocks(2);
+        assertEquals(2, scheduler.getMaxConcurrentBlocks());
+    }
+
+    @Test
+    public void submitBlockRunsNoMoreThanMaxConcurrentBlocks() throws Exception
+    {
+        // arrange
+        FileUploadScheduler scheduler = Deencapsulation.newInstance(FileUploadScheduler.class, 1);
+        scheduler.setMaxConcurrentBlocks(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        List<Future<Void>> blocks = new ArrayList<>();
+
+        // act
+        for (int i = 0; i < 6; i++)
+        {
+            Callable<Void> block = new Callable<Void>()
+            {
+                @Override
+                public Void call() throws Exception
+                {
+                    int now = running.incrementAndGet();
+                    synchronized (maxRunning)
+                    {
+                        maxRunning.set(Math.max(maxRunning.get(), now));
+                    }
+                    release.await();
+                    running.decrementAndGet();
+                    return null;
+                }
+            };
+            blocks.add(Deencapsulation.<Future<Void>>invoke(scheduler, "submitBlock", new Class[] {Callable.class}, block));
+        }
+        release.countDown();
+        for (Future<Void> block : blocks)
+        {
+            block.get(10, TimeUnit.SECONDS);
+        }
+
+        // assert
+        assertTrue(maxRunning.get() <= 2);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void setMaxBytesPerSecondNegativeThrows()
+    {
+        // arrange
+        FileUploadScheduler scheduler = Deencapsulation.newInstance(FileUploadScheduler.class, 1);
+
+        // act
+        scheduler.setMaxBytesPerSecond(-1);
+    }
+
+    @Test
+    public void throttleOnlyWrapsWhenLimited()
+    {
+        // arrange
+        FileUploadScheduler scheduler = Deencapsulation.newInstance(FileUploadScheduler.class, 1);
+        InputStream inputStream = new ByteArrayInputStream(new byte[10]);
+
+        // act - assert
+        assertSame(inputStream, Deencapsulation.invoke(scheduler, "throttle", inputStream));
+        scheduler.setMaxBytesPerSecond(1000);
+        assertNotSame(inputStream, Deencapsulation.invoke(scheduler, "throttle", inputStream));
+        assertEquals(1000, scheduler.getMaxBytesPerSecond());
+    }
+
+    @Test
+    public void submitServesClientsInTurn() throws Exception
+    {
+        // arrange
+        FileUploadScheduler scheduler = Deencapsulation.newInstance(FileUploadScheduler.class, 1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> record = Collections.synchronizedList(new ArrayList<String>());
+        Object busyClient = new Object();
+        Object otherClient = new Object();
+        submit(scheduler, busyClient, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        submit(scheduler, busyClient, recordingTask(record, "busy1"));
+        submit(scheduler, busyClient, recordingTask(record, "busy2"));
+        Future<?> last = submit(scheduler, otherClient, recordingTask(record, "other1"));
+        Future<?> busyLast = submit(scheduler, busyClient, recordingTask(record, "busy3"));
+
+        // act
+        release.countDown();
+        last.get();
+        busyLast.get();
+
+        // assert
+        assertEquals(Arrays.asList("busy1", "other1", "busy2", "busy3"), record);
+    }
+
+    @Test
+    public void cancelCancelsQueuedUploadsAndInterruptsRunningOnes() throws Exception
+    {
+        // arrange
+        FileUploadScheduler scheduler = Deencapsulation.newInstance(FileUploadScheduler.class, 1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final boolean[] interrupted = new boolean[1];
+        Object client = new Object();
+        Future<?> running = submit(scheduler, client, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                started.countDown();
+                try
+                {
+                    Thread.sleep(60000);
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted[0] = true;
+                }
+            }
+        });
+        Future<?> queued = submit(scheduler, client, recordingTask(new ArrayList<String>(), "queued"));
+        started.await();
+
+        // act
+        Deencapsulation.invoke(scheduler, "cancel", new Class[] {Object.class}, client);
+        running.get();
+
+        // assert
+        assertTrue(interrupted[0]);
+        assertFalse(running.isCancelled());
+        assertTrue(queued.isCancelled());
+    }
+}
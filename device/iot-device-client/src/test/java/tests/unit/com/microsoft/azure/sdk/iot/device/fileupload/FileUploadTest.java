@@ -9,6 +9,7 @@ import com.microsoft.azure.sdk.iot.device.IotHubEventCallback;
 import com.microsoft.azure.sdk.iot.device.IotHubStatusCode;
 import com.microsoft.azure.sdk.iot.device.fileupload.FileUpload;
 import com.microsoft.azure.sdk.iot.device.fileupload.FileUploadInProgress;
+import com.microsoft.azure.sdk.iot.device.fileupload.FileUploadScheduler;
 import com.microsoft.azure.sdk.iot.device.fileupload.FileUploadTask;
 import com.microsoft.azure.sdk.iot.device.transport.https.HttpsTransportManager;
 import mockit.Deencapsulation;
@@ -22,10 +23,8 @@ import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Queue;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.ScheduledExecutorService;
 
 import static org.junit.Assert.assertNotNull;
 
@@ -51,10 +50,7 @@ public class FileUploadTest
     private FileUploadTask mockFileUploadTask;
 
     @Mocked
-    private Executors mockExecutors;
-
-    @Mocked
-    private ScheduledExecutorService mockScheduler;
+    private FileUploadScheduler mockScheduler;
 
     @Mocked
     private FileUploadInProgress mockFileUploadInProgress;
@@ -66,7 +62,7 @@ public class FileUploadTest
             {
                 new HttpsTransportManager(mockConfig);
                 result = mockHttpsTransportManager;
-                Executors.newScheduledThreadPool(10);
+                FileUploadScheduler.getInstance();
                 result = mockScheduler;
             }
         };
@@ -81,7 +77,6 @@ public class FileUploadTest
     }
 
     /* Tests_SRS_FILEUPLOAD_21_002: [The constructor shall create a new instance of `HttpsTransportManager` with the provided `config`.] */
-    /* Tests_SRS_FILEUPLOAD_21_012: [The constructor shall create an pool of 10 threads to execute the uploads in parallel.] */
     /* Tests_SRS_FILEUPLOAD_21_013: [The constructor shall create a list `fileUploadInProgressesSet` to control the pending uploads.] */
     @Test
     public void constructorSuccess(@Mocked final LinkedBlockingDeque<?> mockFileUploadInProgressQueue) throws IOException
@@ -92,7 +87,7 @@ public class FileUploadTest
             {
                 new HttpsTransportManager(mockConfig);
                 result = mockHttpsTransportManager;
-                Executors.newScheduledThreadPool(10);
+                FileUploadScheduler.getInstance();
                 result = mockScheduler;
             }
         };
@@ -106,7 +101,7 @@ public class FileUploadTest
             {
                 new HttpsTransportManager(mockConfig);
                 times = 1;
-                Executors.newScheduledThreadPool(10);
+                FileUploadScheduler.getInstance();
                 times = 1;
                 new LinkedBlockingDeque<>();
                 times = 1;
@@ -133,26 +128,6 @@ public class FileUploadTest
         FileUpload fileUpload = new FileUpload(mockConfig);
     }
 
-    /* Tests_SRS_FILEUPLOAD_21_015: [If create the executor failed, the constructor shall throws IOException.] */
-    @Test (expected = IOException.class)
-    public void constructorExecutorThrows() throws IOException
-    {
-        // arrange
-        new NonStrictExpectations()
-        {
-            {
-                new HttpsTransportManager(mockConfig);
-                result = mockHttpsTransportManager;
-                Executors.newScheduledThreadPool(10);
-                result = new IllegalArgumentException();
-                times = 1;
-            }
-        };
-
-        // act
-        FileUpload fileUpload = new FileUpload(mockConfig);
-    }
-
     /* Tests_SRS_FILEUPLOAD_21_004: [The uploadToBlobAsync shall asynchronously upload the InputStream `inputStream` to the blob in `blobName`.] */
     /* Tests_SRS_FILEUPLOAD_21_009: [The uploadToBlobAsync shall create a `FileUploadTask` to control this file upload.] */
     /* Tests_SRS_FILEUPLOAD_21_010: [The uploadToBlobAsync shall schedule the task `FileUploadTask` to immediately start.] */
@@ -166,7 +141,7 @@ public class FileUploadTest
         final Map<String, Object> context = new HashMap<>();
 
         constructorExpectations();
-        FileUpload fileUpload = new FileUpload(mockConfig);
+        final FileUpload fileUpload = new FileUpload(mockConfig);
 
         // assert
         new NonStrictExpectations()
@@ -184,7 +159,7 @@ public class FileUploadTest
                         blobName, mockInputStream, streamLength, mockHttpsTransportManager, (IotHubEventCallback)any, mockFileUploadInProgress);
                 result = mockFileUploadTask;
                 times = 1;
-                mockScheduler.submit(mockFileUploadTask);
+                Deencapsulation.invoke(mockScheduler, "submit", new Class[] {Object.class, Runnable.class}, fileUpload, mockFileUploadTask);
                 times = 1;
             }
         };
@@ -294,13 +269,12 @@ public class FileUploadTest
         fileUpload.uploadToBlobAsync(blobName, mockInputStream, streamLength, null, context);
     }
 
-    /* Tests_SRS_FILEUPLOAD_21_017: [The closeNow shall shutdown the thread pool by calling `shutdownNow`.] */
     @Test
-    public void closeNowSuccess() throws IOException
+    public void closeNowCancelsUploadsOfTheClient() throws IOException
     {
         // arrange
         constructorExpectations();
-        FileUpload fileUpload = new FileUpload(mockConfig);
+        final FileUpload fileUpload = new FileUpload(mockConfig);
 
         // act
         fileUpload.closeNow();
@@ -309,7 +283,7 @@ public class FileUploadTest
         new Verifications()
         {
             {
-                mockScheduler.shutdownNow();
+                Deencapsulation.invoke(mockScheduler, "cancel", new Class[] {Object.class}, fileUpload);
                 times = 1;
             }
         };
@@ -334,7 +308,7 @@ public class FileUploadTest
             {
                 new HttpsTransportManager(mockConfig);
                 result = mockHttpsTransportManager;
-                Executors.newScheduledThreadPool(10);
+                FileUploadScheduler.getInstance();
                 result = mockScheduler;
                 Deencapsulation.invoke(mockFileUploadInProgress, "isCancelled");
                 result = true;
@@ -393,7 +367,7 @@ public class FileUploadTest
                 new HttpsTransportManager(mockConfig);
                 result = mockHttpsTransportManager;
 
-                Executors.newScheduledThreadPool(10);
+                FileUploadScheduler.getInstance();
                 result = mockScheduler;
 
                 new LinkedBlockingDeque<>();
@@ -141,6 +141,7 @@ public class AmqpsDeviceAuthenticationCBSTest
         final byte[] bytes = new byte[1024];
         Deencapsulation.setField(amqpsDeviceAuthenticationCBS, "waitingMessages", mockQueue);
         Deencapsulation.setField(amqpsDeviceAuthenticationCBS, "senderLink", mockSender);
+        Deencapsulation.setField(amqpsDeviceAuthenticationCBS, "senderLinkCredit", 1);
 
         new StrictExpectations()
         {
@@ -161,6 +162,111 @@ public class AmqpsDeviceAuthenticationCBSTest
         Deencapsulation.invoke(amqpsDeviceAuthenticationCBS, "sendAuthenticationMessages");
     }
 
+    @Test
+    public void authenticateSendsTheMessageIfTheLinkIsOpen()
+    {
+        // arrange
+        final AmqpsDeviceAuthenticationCBS amqpsDeviceAuthenticationCBS = new AmqpsDeviceAuthenticationCBS(mockDeviceClientConfig);
+        Deencapsulation.setField(amqpsDeviceAuthenticationCBS, "waitingMessages", mockQueue);
+        Deencapsulation.setField(amqpsDeviceAuthenticationCBS, "senderLink", mockSender);
+        Deencapsulation.setField(amqpsDeviceAuthenticationCBS, "senderLinkCredit", 1);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockQueue.isEmpty();
+                returns(false, true);
+                mockQueue.remove();
+                result = mockMessageImpl;
+            }
+        };
+
+        // act
+        Deencapsulation.invoke(amqpsDeviceAuthenticationCBS, "authenticate", mockDeviceClientConfig, mockUUID);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockQueue.add((MessageImpl) any);
+                times = 1;
+                mockQueue.remove();
+                times = 1;
+                mockMessageImpl.encode((byte[]) any, anyInt, anyInt);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void sendAuthenticationMessagesWaitsForCredit()
+    {
+        // arrange
+        final AmqpsDeviceAuthenticationCBS amqpsDeviceAuthenticationCBS = new AmqpsDeviceAuthenticationCBS(mockDeviceClientConfig);
+        Deencapsulation.setField(amqpsDeviceAuthenticationCBS, "waitingMessages", mockQueue);
+        Deencapsulation.setField(amqpsDeviceAuthenticationCBS, "senderLink", mockSender);
+        Deencapsulation.setField(amqpsDeviceAuthenticationCBS, "senderLinkCredit", 0);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockQueue.isEmpty();
+                result = false;
+            }
+        };
+
+        // act
+        Deencapsulation.invoke(amqpsDeviceAuthenticationCBS, "sendAuthenticationMessages");
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockQueue.remove();
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void onLinkFlowSendsTheWaitingMessages()
+    {
+        // arrange
+        final AmqpsDeviceAuthenticationCBS amqpsDeviceAuthenticationCBS = new AmqpsDeviceAuthenticationCBS(mockDeviceClientConfig);
+        final String senderLinkTag = Deencapsulation.getField(amqpsDeviceAuthenticationCBS, "senderLinkTag");
+        Deencapsulation.setField(amqpsDeviceAuthenticationCBS, "waitingMessages", mockQueue);
+        Deencapsulation.setField(amqpsDeviceAuthenticationCBS, "senderLink", mockSender);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockSender.getName();
+                result = senderLinkTag;
+                mockSender.getCredit();
+                result = 1;
+                mockQueue.isEmpty();
+                returns(false, true);
+                mockQueue.remove();
+                result = mockMessageImpl;
+            }
+        };
+
+        // act
+        Boolean isFound = Deencapsulation.invoke(amqpsDeviceAuthenticationCBS, "onLinkFlow", mockSender);
+
+        // assert
+        assertTrue(isFound);
+        new Verifications()
+        {
+            {
+                mockQueue.remove();
+                times = 1;
+                mockSender.send((byte[]) any, anyInt, anyInt);
+                times = 1;
+            }
+        };
+    }
+
     // Tests_SRS_AMQPSDEVICEAUTHENTICATIONCBS_12_006: [The function shall read the message from the queue.]
     // Tests_SRS_AMQPSDEVICEAUTHENTICATIONCBS_12_007: [The function shall encode the message to a buffer.]
     // Tests_SRS_AMQPSDEVICEAUTHENTICATIONCBS_12_009: [The function shall set the delivery tag for the sender.]
@@ -173,6 +279,7 @@ public class AmqpsDeviceAuthenticationCBSTest
         final byte[] bytes = new byte[1024];
         Deencapsulation.setField(amqpsDeviceAuthenticationCBS, "waitingMessages", mockQueue);
         Deencapsulation.setField(amqpsDeviceAuthenticationCBS, "senderLink", mockSender);
+        Deencapsulation.setField(amqpsDeviceAuthenticationCBS, "senderLinkCredit", 1);
 
         new StrictExpectations()
         {
@@ -203,6 +310,7 @@ public class AmqpsDeviceAuthenticationCBSTest
         Deencapsulation.invoke(amqpsDeviceAuthenticationCBS, "openLinks", mockSession);
         Deencapsulation.setField(amqpsDeviceAuthenticationCBS, "receiverLink", mockReceiver);
         Deencapsulation.setField(amqpsDeviceAuthenticationCBS, "senderLink", mockSender);
+        Deencapsulation.setField(amqpsDeviceAuthenticationCBS, "senderLinkCredit", 1);
         Deencapsulation.setField(amqpsDeviceAuthenticationCBS, "receiverLinkTag", linkName);
 
         new NonStrictExpectations()
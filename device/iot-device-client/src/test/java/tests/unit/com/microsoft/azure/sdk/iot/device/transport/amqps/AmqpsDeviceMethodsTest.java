@@ -196,6 +196,7 @@ public class AmqpsDeviceMethodsTest
 
         AmqpsDeviceMethods amqpsDeviceMethods = Deencapsulation.newInstance(AmqpsDeviceMethods.class, mockDeviceClientConfig);
         Deencapsulation.invoke(amqpsDeviceMethods, "openLinks", mockSession);
+        Deencapsulation.setField(amqpsDeviceMethods, "senderLinkCredit", 1);
 
         //act
         AmqpsSendReturnValue amqpsSendReturnValue = Deencapsulation.invoke(amqpsDeviceMethods, "sendMessageAndGetDeliveryHash", MessageType.DEVICE_METHODS, bytes, 0, 1, bytes);
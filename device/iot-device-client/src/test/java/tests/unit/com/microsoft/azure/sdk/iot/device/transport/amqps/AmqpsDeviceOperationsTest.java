@@ -517,6 +517,7 @@ public class AmqpsDeviceOperationsTest
         final int length = 1;
         final byte[] deliveryTag = new byte[1];
         Deencapsulation.setField(amqpsDeviceOperations, "senderLink", mockSender);
+        Deencapsulation.setField(amqpsDeviceOperations, "senderLinkCredit", 1);
 
         new NonStrictExpectations()
         {
@@ -534,6 +535,8 @@ public class AmqpsDeviceOperationsTest
         //assert
         int deliveryHash = Deencapsulation.invoke(amqpsSendReturnValue, "getDeliveryHash");
         assertTrue(deliveryHash != -1);
+        int actualCredit = Deencapsulation.getField(amqpsDeviceOperations, "senderLinkCredit");
+        assertEquals(0, actualCredit);
         new Verifications()
         {
             {
@@ -563,6 +566,7 @@ public class AmqpsDeviceOperationsTest
         final int length = 1;
         final byte[] deliveryTag = new byte[1];
         Deencapsulation.setField(amqpsDeviceOperations, "senderLink", mockSender);
+        Deencapsulation.setField(amqpsDeviceOperations, "senderLinkCredit", 1);
 
         new NonStrictExpectations()
         {
@@ -592,6 +596,88 @@ public class AmqpsDeviceOperationsTest
         };
     }
 
+    @Test
+    public void sendMessageAndGetDeliveryHashDoesNotSendWithoutCredit()
+    {
+        //arrange
+        AmqpsDeviceOperations amqpsDeviceOperations = Deencapsulation.newInstance(AmqpsDeviceOperations.class);
+        final byte[] msgData = new byte[1];
+        final int offset = 0;
+        final int length = 1;
+        final byte[] deliveryTag = new byte[1];
+        Deencapsulation.setField(amqpsDeviceOperations, "senderLink", mockSender);
+        Deencapsulation.setField(amqpsDeviceOperations, "senderLinkCredit", 0);
+
+        //act
+        AmqpsSendReturnValue amqpsSendReturnValue = Deencapsulation.invoke(amqpsDeviceOperations, "sendMessageAndGetDeliveryHash", MessageType.DEVICE_TELEMETRY, msgData, offset, length, deliveryTag);
+
+        //assert
+        boolean deliverySuccessful = Deencapsulation.invoke(amqpsSendReturnValue, "isDeliverySuccessful");
+        int deliveryHash = Deencapsulation.invoke(amqpsSendReturnValue, "getDeliveryHash");
+        assertFalse(deliverySuccessful);
+        assertEquals(-1, deliveryHash);
+        new Verifications()
+        {
+            {
+                mockSender.delivery((byte[]) any);
+                times = 0;
+                mockSender.send((byte[]) any, anyInt, anyInt);
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void onLinkFlowSavesTheSenderLinkCredit()
+    {
+        //arrange
+        final AmqpsDeviceOperations amqpsDeviceOperations = Deencapsulation.newInstance(AmqpsDeviceOperations.class);
+        final String senderLinkTag = Deencapsulation.getField(amqpsDeviceOperations, "senderLinkTag");
+
+        new NonStrictExpectations()
+        {
+            {
+                mockLink.getName();
+                result = senderLinkTag;
+                mockLink.getCredit();
+                result = 10;
+            }
+        };
+
+        //act
+        Boolean isFound = Deencapsulation.invoke(amqpsDeviceOperations, "onLinkFlow", mockLink);
+
+        //assert
+        int actualCredit = Deencapsulation.getField(amqpsDeviceOperations, "senderLinkCredit");
+        assertTrue(isFound);
+        assertEquals(10, actualCredit);
+    }
+
+    @Test
+    public void onLinkFlowReturnsFalseForAnotherLink()
+    {
+        //arrange
+        final AmqpsDeviceOperations amqpsDeviceOperations = Deencapsulation.newInstance(AmqpsDeviceOperations.class);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockLink.getName();
+                result = "otherLink";
+                mockLink.getCredit();
+                result = 10;
+            }
+        };
+
+        //act
+        Boolean isFound = Deencapsulation.invoke(amqpsDeviceOperations, "onLinkFlow", mockLink);
+
+        //assert
+        int actualCredit = Deencapsulation.getField(amqpsDeviceOperations, "senderLinkCredit");
+        assertFalse(isFound);
+        assertEquals(0, actualCredit);
+    }
+
     /*
     **Tests_SRS_AMQPSDEVICEOPERATIONS_12_036: [**The function shall throw IllegalArgumentException if the linkName is empty.**]**
     */
@@ -209,6 +209,7 @@ public class AmqpsDeviceTelemetryTest
         //arrange
         AmqpsDeviceTelemetry amqpsDeviceTelemetry = Deencapsulation.newInstance(AmqpsDeviceTelemetry.class, mockDeviceClientConfig);
         Deencapsulation.invoke(amqpsDeviceTelemetry, "openLinks", mockSession);
+        Deencapsulation.setField(amqpsDeviceTelemetry, "senderLinkCredit", 1);
         final byte[] msgData = new byte[1];
         final int offset = 0;
         final int length = 1;
@@ -227,6 +227,7 @@ public class AmqpsDeviceTwinTest
 
         AmqpsDeviceTwin amqpsDeviceTwin = Deencapsulation.newInstance(AmqpsDeviceTwin.class, mockDeviceClientConfig);
         Deencapsulation.invoke(amqpsDeviceTwin, "openLinks", mockSession);
+        Deencapsulation.setField(amqpsDeviceTwin, "senderLinkCredit", 1);
 
         //act
 
@@ -341,6 +341,8 @@ public class AmqpsIotHubConnectionTest {
             {
                 mockConfig.isUseWebsocket();
                 result = false;
+                mockConfig.getAmqpReceivePrefetch();
+                result = 50;
             }
         };
 
@@ -357,7 +359,7 @@ public class AmqpsIotHubConnectionTest {
             {
                 new Handshaker();
                 times = 1;
-                new FlowController();
+                new FlowController(50);
                 times = 1;
             }
         };
@@ -967,25 +969,6 @@ public class AmqpsIotHubConnectionTest {
         final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig);
 
         Deencapsulation.setField(connection, "state", State.CLOSED);
-        Deencapsulation.setField(connection, "linkCredit", 100);
-
-        Integer expectedDeliveryHash = -1;
-        Integer actualDeliveryHash = connection.sendMessage(Message.Factory.create(), MessageType.DEVICE_TELEMETRY, mockConnectionString);
-
-        assertEquals(expectedDeliveryHash, actualDeliveryHash);
-    }
-
-    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_015: [If the state of the connection is CLOSED or there is not enough
-    // credit, the function shall return -1.]
-    @Test
-    public void sendMessageDoesNothingIfNotEnoughLinkCredit() throws IOException
-    {
-        baseExpectations();
-
-        final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig);
-
-        Deencapsulation.setField(connection, "state", State.OPEN);
-        Deencapsulation.setField(connection, "linkCredit", -1);
 
         Integer expectedDeliveryHash = -1;
         Integer actualDeliveryHash = connection.sendMessage(Message.Factory.create(), MessageType.DEVICE_TELEMETRY, mockConnectionString);
@@ -1015,7 +998,6 @@ public class AmqpsIotHubConnectionTest {
         final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig);
         Deencapsulation.setField(connection, "amqpsSessionManager", mockAmqpsSessionManager);
         Deencapsulation.setField(connection, "state", State.OPEN);
-        Deencapsulation.setField(connection, "linkCredit", 100);
 
         // act
         Integer actualDeliveryHash = connection.sendMessage(mockProtonMessage, MessageType.DEVICE_TELEMETRY, mockConnectionString);
@@ -1555,7 +1537,7 @@ public class AmqpsIotHubConnectionTest {
 
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_040: [The event handler shall save the remaining link credit.]
     @Test
-    public void onLinkFlow() throws IOException
+    public void onLinkFlowGivesTheCreditToTheLink() throws IOException
     {
         baseExpectations();
 
@@ -1564,25 +1546,18 @@ public class AmqpsIotHubConnectionTest {
             {
                 mockEvent.getLink();
                 result = mockSender;
-                mockSender.getCredit();
-                result = 100;
             }
         };
 
         final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig);
-        connection.onLinkFlow(mockEvent);
-
-        Integer expectedLinkCredit = 100;
-        Integer actualLinkCredit = Deencapsulation.getField(connection, "linkCredit");
+        Deencapsulation.setField(connection, "amqpsSessionManager", mockAmqpsSessionManager);
 
-        assertEquals(expectedLinkCredit, actualLinkCredit);
+        connection.onLinkFlow(mockEvent);
 
         new Verifications()
         {
             {
-                mockEvent.getLink();
-                times = 1;
-                mockSender.getCredit();
+                Deencapsulation.invoke(mockAmqpsSessionManager, "onLinkFlow", mockSender);
                 times = 1;
             }
         };
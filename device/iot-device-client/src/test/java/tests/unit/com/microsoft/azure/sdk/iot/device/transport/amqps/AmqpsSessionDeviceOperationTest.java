@@ -2,6 +2,7 @@ package tests.unit.com.microsoft.azure.sdk.iot.device.transport.amqps;
 
 import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenAuthentication;
+import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenRenewalListener;
 import com.microsoft.azure.sdk.iot.device.transport.amqps.*;
 import mockit.Deencapsulation;
 import mockit.Mocked;
@@ -16,9 +17,6 @@ import org.junit.Test;
 import java.io.IOException;
 import java.nio.BufferOverflowException;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 import static junit.framework.TestCase.assertFalse;
 import static junit.framework.TestCase.assertNotNull;
@@ -87,24 +85,12 @@ public class AmqpsSessionDeviceOperationTest
     @Mocked
     IotHubSasTokenAuthentication mockIotHubSasTokenAuthentication;
 
-    @Mocked
-    Executors mockExecutors;
-
-    @Mocked
-    ScheduledExecutorService mockScheduledExecutorService;
-
-    @Mocked
-    AmqpsDeviceAuthenticationCBSTokenRenewalTask mockAmqpsDeviceAuthenticationCBSTokenRenewalTask;
-
     @Mocked
     UUID mockUUID;
 
     @Mocked
     ObjectLock mockLock;
 
-    @Mocked
-    List<UUID> mockListUUID;
-
 
     // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_001: [The constructor shall throw IllegalArgumentException if the deviceClientConfig or the amqpsDeviceAuthentication parameter is null.]
     @Test (expected = IllegalArgumentException.class)
@@ -157,32 +143,15 @@ public class AmqpsSessionDeviceOperationTest
     // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_002: [The constructor shall save the deviceClientConfig and amqpsDeviceAuthentication parameter value to a member variable.]
     // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_003: [The constructor shall create AmqpsDeviceTelemetry, AmqpsDeviceMethods and AmqpsDeviceTwin and add them to the device operations list. ]
     // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_004: [The constructor shall set the authentication state to not authenticated if the authentication type is CBS.]
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_044: [The constructor shall calculate the token renewal period as the 75% of the expiration period.]
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_048: [The constructor saves the calculated renewal period if it is greater than zero.]
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_045: [The constructor shall create AmqpsDeviceAuthenticationCBSTokenRenewalTask if the authentication type is CBS.]
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_046: [The constructor shall create and start a scheduler with the calculated renewal period for AmqpsDeviceAuthenticationCBSTokenRenewalTask if the authentication type is CBS.]
     @Test
     public void constructorSuccessCBS() throws IllegalArgumentException
     {
         // arrange
-        final long tokenValidSecs = 3600;
-        final long expectedRenewalTimeMillisecs = 2700 * 1000;
-
         new NonStrictExpectations()
         {
             {
                 mockDeviceClientConfig.getAuthenticationType();
                 result = DeviceClientConfig.AuthType.CBS;
-                mockDeviceClientConfig.getSasTokenAuthentication();
-                result = mockIotHubSasTokenAuthentication;
-                mockIotHubSasTokenAuthentication.getTokenValidSecs();
-                result = tokenValidSecs;
-
-                new AmqpsDeviceAuthenticationCBSTokenRenewalTask((AmqpsSessionDeviceOperation)any);
-                result = mockAmqpsDeviceAuthenticationCBSTokenRenewalTask;
-                mockExecutors.newScheduledThreadPool(1);
-                result = mockScheduledExecutorService;
-                mockScheduledExecutorService.scheduleAtFixedRate(mockAmqpsDeviceAuthenticationCBSTokenRenewalTask, 0, expectedRenewalTimeMillisecs, TimeUnit.MILLISECONDS);
             }
         };
 
@@ -193,12 +162,10 @@ public class AmqpsSessionDeviceOperationTest
         DeviceClientConfig actualDeviceClientConfig = Deencapsulation.getField(amqpsSessionDeviceOperation, "deviceClientConfig");
         AmqpsDeviceAuthentication actualAmqpsDeviceAuthentication = Deencapsulation.getField(amqpsSessionDeviceOperation, "amqpsDeviceAuthentication");
         AmqpsDeviceAuthenticationState authenticatorState = Deencapsulation.getField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState");
-        long actualRenewalPeriod = Deencapsulation.getField(amqpsSessionDeviceOperation, "tokenRenewalPeriodInMillisecSecs");
 
         assertEquals(mockDeviceClientConfig, actualDeviceClientConfig);
         assertEquals(mockAmqpsDeviceAuthenticationCBS, actualAmqpsDeviceAuthentication);
         assertEquals(AmqpsDeviceAuthenticationState.NOT_AUTHENTICATED, authenticatorState);
-        assertEquals(actualRenewalPeriod, expectedRenewalTimeMillisecs);
         new Verifications()
         {
             {
@@ -208,15 +175,12 @@ public class AmqpsSessionDeviceOperationTest
                 times = 1;
                 Deencapsulation.newInstance(AmqpsDeviceTwin.class, mockDeviceClientConfig);
                 times = 1;
-                mockExecutors.newScheduledThreadPool(1);
-                times = 1;
-                mockScheduledExecutorService.scheduleAtFixedRate(mockAmqpsDeviceAuthenticationCBSTokenRenewalTask, 0, expectedRenewalTimeMillisecs, TimeUnit.MILLISECONDS);
-                times = 1;
+                mockIotHubSasTokenAuthentication.addSasTokenRenewalListener((IotHubSasTokenRenewalListener) any);
+                times = 0;
             }
         };
     }
 
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_058: [The function shall shut down the executor threads.]
     // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_059: [The function shall close the operation links.]
     @Test
     public void close()
@@ -224,16 +188,28 @@ public class AmqpsSessionDeviceOperationTest
         // arrange
         final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "deviceClientConfig", mockDeviceClientConfig);
-        Deencapsulation.setField(amqpsSessionDeviceOperation, "taskSchedulerTokenRenewal", mockScheduledExecutorService);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceClientConfig.getAuthenticationType();
+                result = DeviceClientConfig.AuthType.CBS;
+                mockDeviceClientConfig.getSasTokenAuthentication();
+                result = mockIotHubSasTokenAuthentication;
+            }
+        };
 
         // act
         amqpsSessionDeviceOperation.close();
 
         // assert
+        AmqpsDeviceAuthenticationState authenticatorState = Deencapsulation.getField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState");
+
+        assertEquals(AmqpsDeviceAuthenticationState.NOT_AUTHENTICATED, authenticatorState);
         new Verifications()
         {
             {
-                mockScheduledExecutorService.shutdownNow();
+                mockIotHubSasTokenAuthentication.removeSasTokenRenewalListener((IotHubSasTokenRenewalListener) any);
                 times = 1;
                 Deencapsulation.invoke(mockAmqpsDeviceOperations, "closeLinks");
                 times = 3;
@@ -255,7 +231,6 @@ public class AmqpsSessionDeviceOperationTest
         final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "deviceClientConfig", mockDeviceClientConfig);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "authenticationLock", mockLock);
-        Deencapsulation.setField(amqpsSessionDeviceOperation, "cbsCorrelationIdList", mockListUUID);
 
         new NonStrictExpectations()
         {
@@ -272,16 +247,84 @@ public class AmqpsSessionDeviceOperationTest
 
         // assert
         AmqpsDeviceAuthenticationState authenticatorState = Deencapsulation.getField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState");
+        Map<UUID, AmqpsSessionDeviceOperation> cbsCorrelationIds = Deencapsulation.getField(amqpsSessionDeviceOperation, "cbsCorrelationIds");
 
+        // the mocked lock returns without a reply, as when the wait times out
         assertEquals(AmqpsDeviceAuthenticationState.AUTHENTICATING, authenticatorState);
+        assertTrue(cbsCorrelationIds.isEmpty());
         new Verifications()
         {
             {
-                mockListUUID.add(mockUUID);
-                times = 1;
                 Deencapsulation.invoke(mockAmqpsDeviceAuthentication, "authenticate", mockDeviceClientConfig, mockUUID);
                 times = 1;
                 mockLock.waitLock(MAX_WAIT_TO_AUTHENTICATE);
+                mockDeviceClientConfig.getSasTokenAuthentication().addSasTokenRenewalListener((IotHubSasTokenRenewalListener) any);
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void waitForAuthenticationAddsTheRenewalListenerOnceAuthenticated() throws IllegalArgumentException, IOException, InterruptedException
+    {
+        // arrange
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        Deencapsulation.setField(amqpsSessionDeviceOperation, "authenticationLock", mockLock);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceClientConfig.getAuthenticationType();
+                result = DeviceClientConfig.AuthType.CBS;
+                mockDeviceClientConfig.getSasTokenAuthentication();
+                result = mockIotHubSasTokenAuthentication;
+            }
+        };
+        Deencapsulation.invoke(amqpsSessionDeviceOperation, "startAuthentication");
+        Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.AUTHENTICATED);
+
+        // act
+        Deencapsulation.invoke(amqpsSessionDeviceOperation, "waitForAuthentication");
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockLock.waitLock(anyLong);
+                times = 0;
+                mockIotHubSasTokenAuthentication.addSasTokenRenewalListener((IotHubSasTokenRenewalListener) any);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void waitForAuthenticationDoesNotAddTheRenewalListenerIfRejected() throws IllegalArgumentException, IOException, InterruptedException
+    {
+        // arrange
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        Deencapsulation.setField(amqpsSessionDeviceOperation, "authenticationLock", mockLock);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceClientConfig.getAuthenticationType();
+                result = DeviceClientConfig.AuthType.CBS;
+                mockDeviceClientConfig.getSasTokenAuthentication();
+                result = mockIotHubSasTokenAuthentication;
+            }
+        };
+        Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.NOT_AUTHENTICATED);
+
+        // act
+        Deencapsulation.invoke(amqpsSessionDeviceOperation, "waitForAuthentication");
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockIotHubSasTokenAuthentication.addSasTokenRenewalListener((IotHubSasTokenRenewalListener) any);
+                times = 0;
             }
         };
     }
@@ -332,28 +375,21 @@ public class AmqpsSessionDeviceOperationTest
         amqpsSessionDeviceOperation.authenticate();
     }
 
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_050: [The function shall renew the sas token if the authentication type is CBS and the authentication state is authenticated.]
     // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_051: [The function start the authentication with the new token.]
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_052: [The function shall restart the scheduler with the calculated renewal period if the authentication type is CBS. ]
     @Test
-    public void renewTokenSuccess() throws IllegalArgumentException, IOException
+    public void renewTokenSendsTokenAndStaysAuthenticated() throws IllegalArgumentException, IOException
     {
         // arrange
-        final long tokenValidSecs = 3600;
-        final long expectedRenewalTimeMillisecs = 2700 * 1000;
         final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.AUTHENTICATED);
-        Deencapsulation.setField(amqpsSessionDeviceOperation, "taskSchedulerTokenRenewal", mockScheduledExecutorService);
 
         new NonStrictExpectations()
         {
             {
                 mockDeviceClientConfig.getAuthenticationType();
                 result = DeviceClientConfig.AuthType.CBS;
-                mockDeviceClientConfig.getSasTokenAuthentication();
-                result = mockIotHubSasTokenAuthentication;
-                mockIotHubSasTokenAuthentication.getTokenValidSecs();
-                result = tokenValidSecs;
+                UUID.randomUUID();
+                result = mockUUID;
             }
         };
 
@@ -362,42 +398,33 @@ public class AmqpsSessionDeviceOperationTest
 
         // assert
         AmqpsDeviceAuthenticationState authenticatorState = Deencapsulation.getField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState");
+        Map<UUID, AmqpsSessionDeviceOperation> cbsCorrelationIds = Deencapsulation.getField(amqpsSessionDeviceOperation, "cbsCorrelationIds");
 
-        assertEquals(AmqpsDeviceAuthenticationState.AUTHENTICATING, authenticatorState);
-
+        assertEquals(AmqpsDeviceAuthenticationState.AUTHENTICATED, authenticatorState);
+        assertEquals(amqpsSessionDeviceOperation, cbsCorrelationIds.get(mockUUID));
         new Verifications()
         {
             {
-                mockScheduledExecutorService.shutdownNow();
-                times = 1;
-                mockScheduledExecutorService.scheduleAtFixedRate((AmqpsDeviceAuthenticationCBSTokenRenewalTask)any, 0, expectedRenewalTimeMillisecs, TimeUnit.MILLISECONDS);
+                Deencapsulation.invoke(mockAmqpsDeviceAuthentication, "authenticate", mockDeviceClientConfig, mockUUID);
                 times = 1;
+                mockLock.waitLock(anyLong);
+                times = 0;
             }
         };
     }
 
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_050: [The function shall renew the sas token if the authentication type is CBS and the authentication state is authenticated.]
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_051: [The function start the authentication with the new token.]
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_052: [The function shall restart the scheduler with the calculated renewal period if the authentication type is CBS. ]
-    @Test (expected = IllegalArgumentException.class)
-    public void renewTokenCalculationNegative() throws IllegalArgumentException, IOException
+    @Test
+    public void renewTokenDoesNothingIfNotAuthenticated() throws IllegalArgumentException, IOException
     {
         // arrange
-        final long tokenValidSecs = 3600;
-        final long expectedRenewalTimeMillisecs = 2700 * 1000;
         final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
-        Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.AUTHENTICATED);
-        Deencapsulation.setField(amqpsSessionDeviceOperation, "taskSchedulerTokenRenewal", mockScheduledExecutorService);
+        Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.NOT_AUTHENTICATED);
 
         new NonStrictExpectations()
         {
             {
                 mockDeviceClientConfig.getAuthenticationType();
                 result = DeviceClientConfig.AuthType.CBS;
-                mockDeviceClientConfig.getSasTokenAuthentication();
-                result = mockIotHubSasTokenAuthentication;
-                mockIotHubSasTokenAuthentication.getTokenValidSecs();
-                result = -1;
             }
         };
 
@@ -405,28 +432,15 @@ public class AmqpsSessionDeviceOperationTest
         amqpsSessionDeviceOperation.renewToken();
 
         // assert
-        AmqpsDeviceAuthenticationState authenticatorState = Deencapsulation.getField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState");
-
-        assertEquals(AmqpsDeviceAuthenticationState.AUTHENTICATED, authenticatorState);
-
         new Verifications()
         {
             {
-                mockScheduledExecutorService.shutdownNow();
-                times = 0;
-                mockExecutors.newScheduledThreadPool(1);
-                times = 0;
-                mockScheduledExecutorService.scheduleAtFixedRate((AmqpsDeviceAuthenticationCBSTokenRenewalTask)any, 0, expectedRenewalTimeMillisecs, TimeUnit.MILLISECONDS);
+                Deencapsulation.invoke(mockAmqpsDeviceAuthentication, "authenticate", mockDeviceClientConfig, (UUID) any);
                 times = 0;
             }
         };
     }
 
-
-
-
-
-
     // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_007: [The function shall return the current authentication state.]
     @Test
     public void getAmqpsAuthenticatorState()
@@ -807,147 +821,93 @@ public class AmqpsSessionDeviceOperationTest
         assertNull(actualAmqpsMessage);
     }
 
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_023: [If the state is authenticating the function shall call getMessageFromReceiverLink on the authentication object.]
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_055: [The function shall find the correlation ID in the correlationIdlist.]
     // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_053: [The function shall call authenticationMessageReceived with the correlation ID on the authentication object and if it returns true set the authentication state to authenticated.]
     // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_054: [The function shall call notify the lock if after receiving the message and the authentication is in authenticating state.]
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_056: [The function shall remove the correlationId from the list if it is found.]
     @Test
-    public void getMessageFromReceiverLinkAuthenticating() throws IllegalArgumentException, IOException
+    public void authenticationMessageReceivedAuthenticates() throws IllegalArgumentException
     {
         // arrange
-        final String linkName = "linkName";
-        final String propertyKey = "status-code";
-        final Integer propertyValue = 200;
-        final List<UUID> cbsCorrelationIdList = Collections.synchronizedList(new ArrayList<UUID>());
-        cbsCorrelationIdList.add(mockUUID);
         final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.AUTHENTICATING);
-        Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsDeviceAuthentication", mockAmqpsDeviceAuthentication);
-        Deencapsulation.setField(amqpsSessionDeviceOperation, "cbsCorrelationIdList", cbsCorrelationIdList);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "authenticationLock", mockLock);
 
         new NonStrictExpectations()
         {
             {
-                Deencapsulation.invoke(mockAmqpsDeviceAuthentication, "getMessageFromReceiverLink", linkName);
-                result = mockAmqpsMessage;
                 Deencapsulation.invoke(mockAmqpsDeviceAuthentication, "authenticationMessageReceived", mockAmqpsMessage, mockUUID);
                 result = true;
             }
         };
 
         // act
-        AmqpsMessage actualAmqpsMessage = Deencapsulation.invoke(amqpsSessionDeviceOperation, "getMessageFromReceiverLink", linkName);
+        Deencapsulation.invoke(amqpsSessionDeviceOperation, "authenticationMessageReceived", mockAmqpsMessage, mockUUID);
 
         // assert
         AmqpsDeviceAuthenticationState actualAmqpsDeviceAuthenticationState = Deencapsulation.getField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState");
-        assertNotNull(actualAmqpsMessage);
-        assertTrue(actualAmqpsDeviceAuthenticationState == actualAmqpsDeviceAuthenticationState.AUTHENTICATED);
+        assertEquals(AmqpsDeviceAuthenticationState.AUTHENTICATED, actualAmqpsDeviceAuthenticationState);
 
         new Verifications()
         {
             {
                 mockLock.notifyLock();
                 times = 1;
-                cbsCorrelationIdList.remove(mockUUID);
-                times = 1;
             }
         };
     }
 
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_023: [If the state is authenticating the function shall call getMessageFromReceiverLink on the authentication object.]
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_055: [The function shall find the correlation ID in the correlationIdlist.]
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_053: [The function shall call authenticationMessageReceived with the correlation ID on the authentication object and if it returns true set the authentication state to authenticated.]
     // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_054: [The function shall call notify the lock if after receiving the message and the authentication is in authenticating state.]
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_056: [The function shall remove the correlationId from the list if it is found.]
     @Test
-    public void getMessageFromReceiverLinkAuthenticatingNoUUID() throws IllegalArgumentException, IOException
+    public void authenticationMessageReceivedRejectedEndsTheWait() throws IllegalArgumentException
     {
         // arrange
-        final String linkName = "linkName";
-        final String propertyKey = "status-code";
-        final Integer propertyValue = 200;
-        final List<UUID> cbsCorrelationIdList = Collections.synchronizedList(new ArrayList<UUID>());
         final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.AUTHENTICATING);
-        Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsDeviceAuthentication", mockAmqpsDeviceAuthentication);
-        Deencapsulation.setField(amqpsSessionDeviceOperation, "cbsCorrelationIdList", cbsCorrelationIdList);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "authenticationLock", mockLock);
 
         new NonStrictExpectations()
         {
             {
-                Deencapsulation.invoke(mockAmqpsDeviceAuthentication, "getMessageFromReceiverLink", linkName);
-                result = mockAmqpsMessage;
                 Deencapsulation.invoke(mockAmqpsDeviceAuthentication, "authenticationMessageReceived", mockAmqpsMessage, mockUUID);
-                result = true;
+                result = false;
             }
         };
 
         // act
-        AmqpsMessage actualAmqpsMessage = Deencapsulation.invoke(amqpsSessionDeviceOperation, "getMessageFromReceiverLink", linkName);
+        Deencapsulation.invoke(amqpsSessionDeviceOperation, "authenticationMessageReceived", mockAmqpsMessage, mockUUID);
 
         // assert
         AmqpsDeviceAuthenticationState actualAmqpsDeviceAuthenticationState = Deencapsulation.getField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState");
-        assertNotNull(actualAmqpsMessage);
-        assertTrue(actualAmqpsDeviceAuthenticationState == actualAmqpsDeviceAuthenticationState.AUTHENTICATING);
+        assertEquals(AmqpsDeviceAuthenticationState.AUTHENTICATING, actualAmqpsDeviceAuthenticationState);
 
         new Verifications()
         {
             {
                 mockLock.notifyLock();
-                times = 0;
-                cbsCorrelationIdList.remove(mockUUID);
-                times = 0;
+                times = 1;
             }
         };
     }
 
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_023: [If the state is authenticating the function shall call getMessageFromReceiverLink on the authentication object.]
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_055: [The function shall find the correlation ID in the correlationIdlist.]
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_053: [The function shall call authenticationMessageReceived with the correlation ID on the authentication object and if it returns true set the authentication state to authenticated.]
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_054: [The function shall call notify the lock if after receiving the message and the authentication is in authenticating state.]
-    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_056: [The function shall remove the correlationId from the list if it is found.]
     @Test
-    public void getMessageFromReceiverLinkAuthenticatingNotAuthenticationMessage() throws IllegalArgumentException, IOException
+    public void getMessageFromReceiverLinkAuthenticatingReadsNothing() throws IllegalArgumentException
     {
         // arrange
         final String linkName = "linkName";
-        final String propertyKey = "status-code";
-        final Integer propertyValue = 200;
-        final List<UUID> cbsCorrelationIdList = Collections.synchronizedList(new ArrayList<UUID>());
-        cbsCorrelationIdList.add(mockUUID);
         final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.AUTHENTICATING);
-        Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsDeviceAuthentication", mockAmqpsDeviceAuthentication);
-        Deencapsulation.setField(amqpsSessionDeviceOperation, "cbsCorrelationIdList", cbsCorrelationIdList);
-        Deencapsulation.setField(amqpsSessionDeviceOperation, "authenticationLock", mockLock);
-
-        new NonStrictExpectations()
-        {
-            {
-                Deencapsulation.invoke(mockAmqpsDeviceAuthentication, "getMessageFromReceiverLink", linkName);
-                result = mockAmqpsMessage;
-                Deencapsulation.invoke(mockAmqpsDeviceAuthentication, "authenticationMessageReceived", mockAmqpsMessage, mockUUID);
-                result = false;
-            }
-        };
 
         // act
         AmqpsMessage actualAmqpsMessage = Deencapsulation.invoke(amqpsSessionDeviceOperation, "getMessageFromReceiverLink", linkName);
 
         // assert
-        AmqpsDeviceAuthenticationState actualAmqpsDeviceAuthenticationState = Deencapsulation.getField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState");
-        assertNotNull(actualAmqpsMessage);
-        assertTrue(actualAmqpsDeviceAuthenticationState == actualAmqpsDeviceAuthenticationState.AUTHENTICATING);
+        assertNull(actualAmqpsMessage);
 
         new Verifications()
         {
             {
-                mockLock.notifyLock();
+                Deencapsulation.invoke(mockAmqpsDeviceAuthentication, "getMessageFromReceiverLink", linkName);
                 times = 0;
-                cbsCorrelationIdList.remove(mockUUID);
+                Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "getMessageFromReceiverLink", linkName);
                 times = 0;
             }
         };
@@ -959,10 +919,6 @@ public class AmqpsSessionDeviceOperationTest
     {
         // arrange
         final String linkName = "linkName";
-        final String propertyKey = "status-code";
-        final Integer propertyValue = 200;
-        final List<UUID> cbsCorrelationIdList = Collections.synchronizedList(new ArrayList<UUID>());
-        cbsCorrelationIdList.add(mockUUID);
         final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
         Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsAuthenticatorState", AmqpsDeviceAuthenticationState.UNKNOWN);
         ArrayList<AmqpsDeviceOperations> operationList = new ArrayList<>();
@@ -1040,6 +996,36 @@ public class AmqpsSessionDeviceOperationTest
         assertFalse(isFound);
     }
 
+    @Test
+    public void onLinkFlowCallsTheOperations()
+    {
+        // arrange
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "onLinkFlow", mockLink);
+                result = false;
+                Deencapsulation.invoke(mockAmqpsDeviceMethods, "onLinkFlow", mockLink);
+                result = true;
+            }
+        };
+
+        // act
+        Boolean isFound = Deencapsulation.invoke(amqpsSessionDeviceOperation, "onLinkFlow", mockLink);
+
+        // assert
+        assertTrue(isFound);
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsDeviceTwin, "onLinkFlow", mockLink);
+                times = 0;
+            }
+        };
+    }
+
     // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_040: [The function shall call all device operation's convertToProton, and if any of them not null return with the value.]
     // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_041: [The function shall call all device operation's convertFromProton, and if any of them not null return with the value.]
     @Test
@@ -3,15 +3,15 @@ package tests.unit.com.microsoft.azure.sdk.iot.device.transport.amqps;
 import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.transport.amqps.*;
 import mockit.*;
+import org.apache.qpid.proton.amqp.messaging.Properties;
 import org.apache.qpid.proton.engine.*;
 import org.junit.Test;
 
 import javax.net.ssl.SSLContext;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.UUID;
 
 import static org.junit.Assert.*;
 
@@ -38,7 +38,7 @@ public class AmqpsSessionManagerTest
     AmqpsSessionDeviceOperation mockAmqpsSessionDeviceOperation1;
 
     @Mocked
-    ScheduledExecutorService mockScheduledExecutorService;
+    Properties mockProperties;
 
     @Mocked
     ObjectLock mockObjectLock;
@@ -113,8 +113,6 @@ public class AmqpsSessionManagerTest
                 result = DeviceClientConfig.AuthType.SAS_TOKEN;
                 new AmqpsDeviceAuthenticationSAS(mockDeviceClientConfig);
                 result = mockAmqpsDeviceAuthenticationSAS;
-                new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthenticationSAS);
-                result = mockAmqpsSessionDeviceOperation;
             }
         };
 
@@ -138,7 +136,6 @@ public class AmqpsSessionManagerTest
 
     // Tests_SRS_AMQPSESSIONMANAGER_12_004: [The constructor shall create AmqpsDeviceAuthenticationCBS if the authentication type is CBS.]
     // Tests_SRS_AMQPSESSIONMANAGER_12_005: [The constructor shall create AmqpsDeviceAuthenticationCBSTokenRenewalTask if the authentication type is CBS.]
-    // Tests_SRS_AMQPSESSIONMANAGER_12_006: [The constructor shall create and start a scheduler for AmqpsDeviceAuthenticationCBSTokenRenewalTask if the authentication type is CBS.]
     // Tests_SRS_AMQPSESSIONMANAGER_12_007: [The constructor shall add the create a AmqpsSessionDeviceOperation with the given deviceClientConfig.]
     @Test
     public void constructorCreatesCBS() throws IllegalArgumentException
@@ -151,8 +148,6 @@ public class AmqpsSessionManagerTest
                 result = DeviceClientConfig.AuthType.CBS;
                 new AmqpsDeviceAuthenticationCBS(mockDeviceClientConfig);
                 result = mockAmqpsDeviceAuthenticationCBS;
-                new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthenticationCBS);
-                result = mockAmqpsSessionDeviceOperation;
             }
         };
 
@@ -199,11 +194,12 @@ public class AmqpsSessionManagerTest
         // assert
         ArrayList<AmqpsSessionDeviceOperation> actualList =  Deencapsulation.getField(amqpsSessionManager, "amqpsDeviceSessionList");
         assertEquals(actualList.size(), 2);
+        final Map<UUID, AmqpsSessionDeviceOperation> cbsCorrelationIds = Deencapsulation.getField(amqpsSessionManager, "cbsCorrelationIds");
 
         new Verifications()
         {
             {
-                new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthenticationCBS);
+                Deencapsulation.newInstance(AmqpsSessionDeviceOperation.class, new Class[] {DeviceClientConfig.class, AmqpsDeviceAuthentication.class, Map.class}, mockDeviceClientConfig, mockAmqpsDeviceAuthenticationCBS, cbsCorrelationIds);
                 times = 1;
             }
         };
@@ -212,7 +208,6 @@ public class AmqpsSessionManagerTest
     // Tests_SRS_AMQPSESSIONMANAGER_12_010: [The function shall call all device session to closeNow links.]
     // Tests_SRS_AMQPSESSIONMANAGER_12_011: [The function shall closeNow the authentication links.]
     // Tests_SRS_AMQPSESSIONMANAGER_12_012: [The function shall closeNow the session.]
-    // Tests_SRS_AMQPSESSIONMANAGER_12_043: [THe function shall shut down the scheduler.]
     @Test
     public void closeNowSuccess() throws IllegalArgumentException, InterruptedException
     {
@@ -226,17 +221,8 @@ public class AmqpsSessionManagerTest
         sessionList.add(mockAmqpsSessionDeviceOperation);
         sessionList.add(mockAmqpsSessionDeviceOperation1);
         Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceSessionList", sessionList);
-        Deencapsulation.setField(amqpsSessionManager, "taskSchedulerCBSSend", mockScheduledExecutorService);
-
-        new NonStrictExpectations()
-        {
-            {
-                mockScheduledExecutorService.awaitTermination(anyInt, TimeUnit.SECONDS);
-                result = false;
-                mockScheduledExecutorService.awaitTermination(anyInt, TimeUnit.SECONDS);
-                result = false;
-            }
-        };
+        Map<UUID, AmqpsSessionDeviceOperation> cbsCorrelationIds = Deencapsulation.getField(amqpsSessionManager, "cbsCorrelationIds");
+        cbsCorrelationIds.put(UUID.randomUUID(), mockAmqpsSessionDeviceOperation);
 
         // act
         Deencapsulation.invoke(amqpsSessionManager, "closeNow");
@@ -246,14 +232,11 @@ public class AmqpsSessionManagerTest
         assertEquals(2, actualList.size());
         Session actualSession =  Deencapsulation.getField(amqpsSessionManager, "session");
         assertNull(actualSession);
+        assertTrue(cbsCorrelationIds.isEmpty());
 
         new Verifications()
         {
             {
-                mockScheduledExecutorService.shutdown();
-                times = 1;
-                mockScheduledExecutorService.shutdownNow();
-                times = 1;
                 Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "close");
                 times = 1;
                 Deencapsulation.invoke(mockAmqpsSessionDeviceOperation1, "close");
@@ -313,12 +296,16 @@ public class AmqpsSessionManagerTest
         Deencapsulation.invoke(amqpsSessionManager, "authenticate");
 
         // assert
-        new Verifications()
+        new VerificationsInOrder()
         {
             {
-                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "authenticate");
+                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "startAuthentication");
                 times = 1;
-                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation1, "authenticate");
+                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation1, "startAuthentication");
+                times = 1;
+                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "waitForAuthentication");
+                times = 1;
+                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation1, "waitForAuthentication");
                 times = 1;
             }
         };
@@ -871,6 +858,59 @@ public class AmqpsSessionManagerTest
         };
     }
 
+    @Test
+    public void getMessageFromReceiverLinkPassesCbsReplyToItsDevice() throws IllegalArgumentException, InterruptedException
+    {
+        // arrange
+        final String linkName = "linkName";
+        final UUID correlationId = UUID.randomUUID();
+        final AmqpsSessionManager amqpsSessionManager = new AmqpsSessionManager(mockDeviceClientConfig);
+        Deencapsulation.setField(amqpsSessionManager, "session", mockSession);
+        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceAuthentication", mockAmqpsDeviceAuthenticationCBS);
+
+        ArrayList<AmqpsSessionDeviceOperation> sessionList = new ArrayList<>();
+        sessionList.add(mockAmqpsSessionDeviceOperation);
+        sessionList.add(mockAmqpsSessionDeviceOperation1);
+        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceSessionList", sessionList);
+        Map<UUID, AmqpsSessionDeviceOperation> cbsCorrelationIds = Deencapsulation.getField(amqpsSessionManager, "cbsCorrelationIds");
+        cbsCorrelationIds.put(correlationId, mockAmqpsSessionDeviceOperation1);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceClientConfig.getAuthenticationType();
+                result = DeviceClientConfig.AuthType.CBS;
+                mockAmqpsDeviceAuthenticationCBS.operationLinksOpened();
+                result = true;
+                Deencapsulation.invoke(mockAmqpsDeviceAuthenticationCBS, "getMessageFromReceiverLink", linkName);
+                result = mockAmqpsMessage;
+                mockAmqpsMessage.getProperties();
+                result = mockProperties;
+                mockProperties.getCorrelationId();
+                result = correlationId;
+            }
+        };
+
+        // act
+        AmqpsMessage amqpsMessage = Deencapsulation.invoke(amqpsSessionManager, "getMessageFromReceiverLink", linkName);
+
+        // assert
+        assertEquals(mockAmqpsMessage, amqpsMessage);
+        assertTrue(cbsCorrelationIds.isEmpty());
+
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation1, "authenticationMessageReceived", mockAmqpsMessage, correlationId);
+                times = 1;
+                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "authenticationMessageReceived", mockAmqpsMessage, correlationId);
+                times = 0;
+                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "getMessageFromReceiverLink", linkName);
+                times = 0;
+            }
+        };
+    }
+
     // Tests_SRS_AMQPSESSIONMANAGER_12_037: [The function shall return with the authentication isLinkFound's return value if the authentication is not open.]
     @Test
     public void isLinkFoundCallsAuth() throws IllegalArgumentException, InterruptedException
@@ -935,6 +975,42 @@ public class AmqpsSessionManagerTest
         assertEquals(true, isFound);
     }
 
+    @Test
+    public void onLinkFlowCallsTheDeviceSessionThatOwnsTheLink() throws IllegalArgumentException
+    {
+        // arrange
+        final AmqpsSessionManager amqpsSessionManager = new AmqpsSessionManager(mockDeviceClientConfig);
+        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceAuthentication", mockAmqpsDeviceAuthenticationCBS);
+
+        ArrayList<AmqpsSessionDeviceOperation> sessionList = new ArrayList<>();
+        sessionList.add(mockAmqpsSessionDeviceOperation);
+        sessionList.add(mockAmqpsSessionDeviceOperation1);
+        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceSessionList", sessionList);
+
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsDeviceAuthenticationCBS, "onLinkFlow", mockLink);
+                result = false;
+                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "onLinkFlow", mockLink);
+                result = true;
+            }
+        };
+
+        // act
+        Boolean isFound = Deencapsulation.invoke(amqpsSessionManager, "onLinkFlow", mockLink);
+
+        // assert
+        assertEquals(true, isFound);
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation1, "onLinkFlow", mockLink);
+                times = 0;
+            }
+        };
+    }
+
     // Tests_SRS_AMQPSESSIONMANAGER_12_039: [The function shall return with the return value of authentication.operationLinksOpened.]
     @Test
     public void isAuthenticationOpenedTrue() throws IllegalArgumentException, InterruptedException
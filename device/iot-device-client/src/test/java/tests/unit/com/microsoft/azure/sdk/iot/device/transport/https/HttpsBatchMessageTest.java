@@ -70,6 +70,32 @@ public class HttpsBatchMessageTest
         assertThat(testBatchBody, containsString(expectedMsgBody));
     }
 
+    // Tests_SRS_HTTPSBATCHMESSAGE_11_002: [The function shall add the message as a JSON object appended to the current JSON array.]
+    @Test
+    public void addMessageAppendsMessagesToJsonArray(
+            @Mocked final HttpsSingleMessage mockMsg) throws
+            IotHubSizeExceededException
+    {
+        final String msgBody = "test-msg-body";
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getBody();
+                result = msgBody.getBytes();
+            }
+        };
+
+        HttpsBatchMessage batchMsg = new HttpsBatchMessage();
+        batchMsg.addMessage(mockMsg);
+        batchMsg.addMessage(mockMsg);
+        String testBatchBody = new String(batchMsg.getBody(), UTF8);
+
+        final String expectedMsgJson = "{\"body\":\"" + Base64.encodeBase64StringLocal(msgBody.getBytes())
+                + "\",\"base64Encoded\":true}";
+        assertThat(testBatchBody, is("[" + expectedMsgJson + "," + expectedMsgJson + "]"));
+        assertThat(batchMsg.numMessages(), is(2));
+    }
+
     // Tests_SRS_HTTPSBATCHMESSAGE_11_004: [The JSON object shall have the field "base64Encoded" set to true and always encode the body for a batch message.]
     @Test
     public void addMessageSetsBase64Correctly(
@@ -13,6 +13,7 @@ import org.junit.Test;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
@@ -349,12 +350,44 @@ public class HttpsConnectionTest
         new Verifications()
         {
             {
-                mockUrlConn.setSSLSocketFactory(mockedContext.getSocketFactory());
+                mockUrlConn.setSSLSocketFactory((SSLSocketFactory) any);
                 times = 1;
             }
         };
     }
 
+    @Test
+    public void setSSLContextSharesOneSocketFactoryPerContext(@Mocked final SSLContext mockedContext) throws IOException
+    {
+        final HttpsMethod httpsMethod = HttpsMethod.POST;
+        final List<SSLSocketFactory> factories = new LinkedList<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "https";
+                mockUrl.openConnection();
+                result = mockUrlConn;
+            }
+        };
+        final HttpsConnection firstConn = new HttpsConnection(mockUrl, httpsMethod);
+        final HttpsConnection secondConn = new HttpsConnection(mockUrl, httpsMethod);
+
+        Deencapsulation.invoke(firstConn, "setSSLContext", mockedContext);
+        Deencapsulation.invoke(secondConn, "setSSLContext", mockedContext);
+
+        new Verifications()
+        {
+            {
+                mockedContext.getSocketFactory();
+                times = 1;
+                mockUrlConn.setSSLSocketFactory(withCapture(factories));
+                times = 2;
+            }
+        };
+        assertThat(factories.get(0) == factories.get(1), is(true));
+    }
+
     //Tests_SRS_HTTPSCONNECTION_25_025: [The function shall throw IllegalArgumentException if the context is null value.**]**
     @Test (expected = IllegalArgumentException.class)
     public void setSSLContextThrowsOnNullContext(@Mocked final SSLContext mockedContext) throws IOException
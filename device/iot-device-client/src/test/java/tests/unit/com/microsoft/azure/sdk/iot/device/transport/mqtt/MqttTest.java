@@ -1053,6 +1053,9 @@ public class MqttTest {
                 mockDeviceClientConfig.getAuthenticationType();
                 result = DeviceClientConfig.AuthType.SAS_TOKEN;
 
+                mockDeviceClientConfig.getIotHubConnectionString().getSharedAccessKey();
+                result = null;
+
                 IotHubSasToken.isExpired(anyString);
                 result = false;
 
@@ -1081,6 +1084,56 @@ public class MqttTest {
         }
     }
 
+    @Test
+    public void connectionLostReconnectsWithRenewedSASTokenIfSharedKeyBased() throws IOException, MqttException
+    {
+        //arrange
+        Mqtt mockMqtt = null;
+        Throwable t = new Throwable();
+        baseConstructorExpectations();
+
+        new StrictExpectations()
+        {
+            {
+                mockMqttAsyncClient.isConnected();
+                result = false;
+
+                mockDeviceClientConfig.getAuthenticationType();
+                result = DeviceClientConfig.AuthType.SAS_TOKEN;
+
+                mockDeviceClientConfig.getIotHubConnectionString().getSharedAccessKey();
+                result = anyString;
+
+                mockDeviceClientConfig.getSasTokenAuthentication().getRenewedSasToken();
+                result = EXPECTED_EXPIRED_SAS_TOKEN;
+
+                mockMqttConnectionOptions.setPassword(EXPECTED_EXPIRED_SAS_TOKEN.toCharArray());
+
+                mockMqttAsyncClient.isConnected();
+                result = false;
+
+                mockMqttAsyncClient.connect(mockMqttConnectionOptions);
+                result = mockMqttToken;
+                mockMqttToken.waitForCompletion();
+
+                mockMqttAsyncClient.isConnected();
+                result = true;
+            }
+        };
+
+        //act
+        try
+        {
+            mockMqtt = instantiateMqtt(true);
+            Deencapsulation.invoke(mockMqtt, "setDeviceClientConfig", mockDeviceClientConfig);
+            mockMqtt.connectionLost(t);
+        }
+        catch (Exception e)
+        {
+            System.out.print("Completed throwing exception - " + e.getCause() + e.getMessage());
+        }
+    }
+
     /*
      **Tests_SRS_Mqtt_99_050: [**The function shall check if SAS token has already expired.**]**
     */
@@ -1111,10 +1164,6 @@ public class MqttTest {
                 result = false;
                 mockDeviceClientConfig.getAuthenticationType();
                 result = DeviceClientConfig.AuthType.SAS_TOKEN;
-                mockMqttConnectionOptions.getPassword();
-                result = EXPECTED_EXPIRED_SAS_TOKEN.toCharArray();
-                IotHubSasToken.isExpired(EXPECTED_EXPIRED_SAS_TOKEN);
-                result = true; // SAS token has expired
                 mockDeviceClientConfig.getIotHubConnectionString().getSharedAccessKey();
                 result = anyString;
 
@@ -1169,11 +1218,11 @@ public class MqttTest {
                 mockDeviceClientConfig.getAuthenticationType();
                 result = DeviceClientConfig.AuthType.SAS_TOKEN;
 
-                IotHubSasToken.isExpired(anyString);
-                result = true; // User specified SAS token has expired
-
                 mockDeviceClientConfig.getIotHubConnectionString().getSharedAccessKey();
                 result = null;
+
+                IotHubSasToken.isExpired(anyString);
+                result = true; // User specified SAS token has expired
             }
         };
 
@@ -1213,6 +1262,9 @@ public class MqttTest {
                 mockDeviceClientConfig.getAuthenticationType();
                 result = DeviceClientConfig.AuthType.SAS_TOKEN;
 
+                mockDeviceClientConfig.getIotHubConnectionString().getSharedAccessKey();
+                result = null;
+
                 IotHubSasToken.isExpired(anyString);
                 result = false;
 
@@ -1229,6 +1281,9 @@ public class MqttTest {
                 mockDeviceClientConfig.getAuthenticationType();
                 result = DeviceClientConfig.AuthType.SAS_TOKEN;
 
+                mockDeviceClientConfig.getIotHubConnectionString().getSharedAccessKey();
+                result = null;
+
                 IotHubSasToken.isExpired(anyString);
                 result = false;
 
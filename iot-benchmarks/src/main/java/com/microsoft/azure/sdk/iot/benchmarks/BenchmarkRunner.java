@@ -0,0 +1,48 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar.
+ *
+ * Accepts the same command line as the standard JMH runner, but always attaches the GC profiler, so every
+ * run reports the allocation rate and the GC churn next to the throughput of each benchmark. Unless the
+ * caller asks for something else, the results are also written as json to {@code jmh-result.json}, so they
+ * can be compared between changes.
+ */
+public class BenchmarkRunner
+{
+    private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException
+    {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+
+        OptionsBuilder optionsBuilder = new OptionsBuilder();
+        optionsBuilder.parent(commandLineOptions);
+        optionsBuilder.addProfiler(GCProfiler.class);
+
+        if (!commandLineOptions.getResult().hasValue())
+        {
+            optionsBuilder.result(DEFAULT_RESULT_FILE);
+        }
+
+        if (!commandLineOptions.getResultFormat().hasValue())
+        {
+            optionsBuilder.resultFormat(ResultFormatType.JSON);
+        }
+
+        Options options = optionsBuilder.build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,101 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.deps.serializer;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the twin (de)serialization paths used by the device and service clients. The twin size is
+ * a parameter, so the cost of a small patch can be compared against the size of the twin it is applied to.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TwinParserBenchmark
+{
+    @Param({"10", "100", "1000"})
+    public int propertyCount;
+
+    private String fullTwinJson;
+    private String[] desiredPatchJson;
+    private Map<String, Object>[] reportedPropertyMap;
+    private TwinParser loadedTwinParser;
+    private TwinChangedCallback onChangedCallback;
+    private int patchIndex;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup()
+    {
+        StringBuilder desired = new StringBuilder();
+        StringBuilder reported = new StringBuilder();
+        for (int i = 0; i < propertyCount; i++)
+        {
+            desired.append("\"desiredKey").append(i).append("\":{\"value\":\"desiredValue").append(i).append("\",\"count\":").append(i).append("},");
+            reported.append("\"reportedKey").append(i).append("\":\"reportedValue").append(i).append("\",");
+        }
+        fullTwinJson = "{\"deviceId\":\"benchmarkDevice\",\"etag\":\"AAAAAAAAAAE=\",\"properties\":{" +
+                "\"desired\":{" + desired + "\"$version\":3}," +
+                "\"reported\":{" + reported + "\"$version\":2}}}";
+
+        // Alternate between two values, so every patch really changes the twin.
+        desiredPatchJson = new String[]
+            {
+                "{\"desiredKey0\":{\"value\":\"patchedValueA\"},\"$version\":4}",
+                "{\"desiredKey0\":{\"value\":\"patchedValueB\"},\"$version\":5}"
+            };
+        reportedPropertyMap = new Map[2];
+        reportedPropertyMap[0] = new HashMap<>();
+        reportedPropertyMap[0].put("reportedKey0", "updatedValueA");
+        reportedPropertyMap[1] = new HashMap<>();
+        reportedPropertyMap[1].put("reportedKey0", "updatedValueB");
+
+        onChangedCallback = new TwinChangedCallback()
+        {
+            @Override
+            public void execute(Map<String, Object> changes)
+            {
+            }
+        };
+
+        loadedTwinParser = new TwinParser(onChangedCallback, onChangedCallback);
+        loadedTwinParser.updateTwin(fullTwinJson);
+    }
+
+    @Benchmark
+    public TwinParser updateTwinFullDocument()
+    {
+        TwinParser twinParser = new TwinParser(onChangedCallback, onChangedCallback);
+        twinParser.updateTwin(fullTwinJson);
+        return twinParser;
+    }
+
+    @Benchmark
+    public TwinParser updateDesiredPropertyPatch()
+    {
+        loadedTwinParser.updateDesiredProperty(desiredPatchJson[patchIndex++ & 1]);
+        return loadedTwinParser;
+    }
+
+    @Benchmark
+    public void updateTwinReportedMap(Blackhole blackhole) throws IOException
+    {
+        blackhole.consume(loadedTwinParser.updateTwin(null, reportedPropertyMap[patchIndex++ & 1], null));
+    }
+
+    @Benchmark
+    public String toJson()
+    {
+        return loadedTwinParser.toJson();
+    }
+}
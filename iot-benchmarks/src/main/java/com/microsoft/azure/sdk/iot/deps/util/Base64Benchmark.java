@@ -0,0 +1,122 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.deps.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the Base64 codec used for the HTTPS batch bodies, the SAS signatures and the file upload metadata, both
+ * when it allocates its result and when it writes into a buffer or a stream of the caller.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Base64Benchmark
+{
+    @Param({"32", "1024", "65536"})
+    public int size;
+
+    private byte[] data;
+    private byte[] encodedData;
+
+    private byte[] encodeDestination;
+    private byte[] decodeDestination;
+    private ByteBuffer dataBuffer;
+    private ByteBuffer encodedDataBuffer;
+    private ByteBuffer encodeDestinationBuffer;
+    private ByteBuffer decodeDestinationBuffer;
+    private ByteBuffer directEncodeDestinationBuffer;
+    private ByteArrayOutputStream outputStream;
+
+    @Setup
+    public void setup()
+    {
+        data = new byte[size];
+        new Random(size).nextBytes(data);
+        encodedData = Base64.encodeBase64Local(data);
+
+        encodeDestination = new byte[Base64.encodedLength(size)];
+        decodeDestination = new byte[size];
+        dataBuffer = ByteBuffer.wrap(data);
+        encodedDataBuffer = ByteBuffer.wrap(encodedData);
+        encodeDestinationBuffer = ByteBuffer.allocate(encodeDestination.length);
+        decodeDestinationBuffer = ByteBuffer.allocate(size);
+        directEncodeDestinationBuffer = ByteBuffer.allocateDirect(encodeDestination.length);
+        outputStream = new ByteArrayOutputStream(encodeDestination.length);
+    }
+
+    @Benchmark
+    public byte[] encode()
+    {
+        return Base64.encodeBase64Local(data);
+    }
+
+    @Benchmark
+    public String encodeToString()
+    {
+        return Base64.encodeBase64StringLocal(data);
+    }
+
+    @Benchmark
+    public byte[] decode()
+    {
+        return Base64.decodeBase64Local(encodedData);
+    }
+
+    @Benchmark
+    public int encodeIntoArray()
+    {
+        return Base64.encodeBase64Local(data, 0, size, encodeDestination, 0);
+    }
+
+    @Benchmark
+    public int decodeIntoArray()
+    {
+        return Base64.decodeBase64Local(encodedData, 0, encodedData.length, decodeDestination, 0);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeIntoHeapBuffer()
+    {
+        dataBuffer.clear();
+        encodeDestinationBuffer.clear();
+        Base64.encodeBase64Local(dataBuffer, encodeDestinationBuffer);
+        return encodeDestinationBuffer;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeIntoDirectBuffer()
+    {
+        dataBuffer.clear();
+        directEncodeDestinationBuffer.clear();
+        Base64.encodeBase64Local(dataBuffer, directEncodeDestinationBuffer);
+        return directEncodeDestinationBuffer;
+    }
+
+    @Benchmark
+    public ByteBuffer decodeIntoHeapBuffer()
+    {
+        encodedDataBuffer.clear();
+        decodeDestinationBuffer.clear();
+        Base64.decodeBase64Local(encodedDataBuffer, decodeDestinationBuffer);
+        return decodeDestinationBuffer;
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream encodeToOutputStream() throws IOException
+    {
+        outputStream.reset();
+        Base64.encodeBase64Local(data, 0, size, outputStream);
+        return outputStream;
+    }
+}
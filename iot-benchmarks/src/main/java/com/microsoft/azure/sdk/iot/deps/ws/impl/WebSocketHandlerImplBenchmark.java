@@ -0,0 +1,62 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.deps.ws.impl;
+
+import com.microsoft.azure.sdk.iot.deps.ws.WebSocketHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the WebSocket framing used by AMQPS_WS, for small and large frames.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WebSocketHandlerImplBenchmark
+{
+    @Param({"1024", "65536"})
+    public int payloadSize;
+
+    private WebSocketHandlerImpl webSocketHandler;
+    private ByteBuffer payload;
+    private ByteBuffer frame;
+    private ByteBuffer wrappedFrame;
+
+    @Setup
+    public void setup()
+    {
+        webSocketHandler = new WebSocketHandlerImpl();
+
+        byte[] data = new byte[payloadSize];
+        new Random(payloadSize).nextBytes(data);
+        payload = ByteBuffer.wrap(data);
+
+        frame = ByteBuffer.allocate(payloadSize + webSocketHandler.calculateHeaderSize(payloadSize));
+
+        webSocketHandler.wrapBuffer(payload.duplicate(), frame);
+        frame.flip();
+        wrappedFrame = frame.duplicate();
+    }
+
+    @Benchmark
+    public ByteBuffer wrapBuffer()
+    {
+        payload.rewind();
+        webSocketHandler.wrapBuffer(payload, frame);
+        return frame;
+    }
+
+    @Benchmark
+    public WebSocketHandler.WebsocketTuple unwrapBuffer()
+    {
+        wrappedFrame.rewind();
+        return webSocketHandler.unwrapBuffer(wrappedFrame);
+    }
+}
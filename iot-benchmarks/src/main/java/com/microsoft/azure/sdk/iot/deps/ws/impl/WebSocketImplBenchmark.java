@@ -0,0 +1,172 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.deps.ws.impl;
+
+import com.microsoft.azure.sdk.iot.deps.ws.WebSocketHeader;
+import org.apache.qpid.proton.engine.TransportException;
+import org.apache.qpid.proton.engine.impl.TransportInput;
+import org.apache.qpid.proton.engine.impl.TransportOutput;
+import org.apache.qpid.proton.engine.impl.TransportWrapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the reassembly of received AMQPS_WS frames, from the bytes read from the socket to the AMQP bytes handed to
+ * Proton, for small frames and for large frames that span many reads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WebSocketImplBenchmark
+{
+    @Param({"1024", "65536"})
+    public int payloadSize;
+
+    private TransportWrapper webSocketTransport;
+    private CountingTransportInput amqpInput;
+    private ByteBuffer frame;
+
+    /**
+     * Stands for Proton, which takes every byte it is given.
+     */
+    private static class CountingTransportInput implements TransportInput
+    {
+        private final ByteBuffer tail = ByteBuffer.allocate(16 * 1024);
+        private long bytesReceived;
+
+        @Override
+        public int capacity()
+        {
+            return tail.remaining();
+        }
+
+        @Override
+        public int position()
+        {
+            return tail.position();
+        }
+
+        @Override
+        public ByteBuffer tail()
+        {
+            return tail;
+        }
+
+        @Override
+        public void process()
+        {
+            bytesReceived += tail.position();
+            tail.clear();
+        }
+
+        @Override
+        public void close_tail()
+        {
+        }
+    }
+
+    @Setup
+    public void setup() throws TransportException
+    {
+        WebSocketImpl webSocket = new WebSocketImpl();
+        webSocket.configure("host", "/$iothub/websocket", 443, "AMQPWSB10", null, new WebSocketHandlerImpl()
+        {
+            // The benchmark has no server to answer the upgrade request, accept any reply
+            @Override
+            public Boolean validateUpgradeReply(ByteBuffer buffer)
+            {
+                buffer.position(buffer.limit());
+                return true;
+            }
+        });
+
+        amqpInput = new CountingTransportInput();
+        webSocketTransport = webSocket.wrap(amqpInput, new TransportOutput()
+        {
+            @Override
+            public int pending()
+            {
+                return 0;
+            }
+
+            @Override
+            public ByteBuffer head()
+            {
+                return ByteBuffer.allocate(0);
+            }
+
+            @Override
+            public void pop(int bytes)
+            {
+            }
+
+            @Override
+            public void close_head()
+            {
+            }
+        });
+
+        // Send the upgrade request and take the reply, to reach the connected state
+        webSocketTransport.pending();
+        webSocketTransport.tail().put((byte) 0);
+        webSocketTransport.process();
+
+        byte[] data = new byte[payloadSize];
+        new Random(payloadSize).nextBytes(data);
+        frame = createServerFrame(data);
+    }
+
+    @Benchmark
+    public long readFrame() throws TransportException
+    {
+        frame.rewind();
+        while (frame.hasRemaining())
+        {
+            // The socket hands over no more than the WebSocket input buffer takes, as the reactor does
+            ByteBuffer tail = webSocketTransport.tail();
+            int count = Math.min(tail.remaining(), frame.remaining());
+            ByteBuffer read = frame.duplicate();
+            read.limit(read.position() + count);
+            tail.put(read);
+            frame.position(read.position());
+
+            webSocketTransport.process();
+        }
+
+        return amqpInput.bytesReceived;
+    }
+
+    /**
+     * Frames sent by the service are not masked, unlike the frames created by {@link WebSocketHandlerImpl#wrapBuffer}.
+     */
+    private static ByteBuffer createServerFrame(byte[] payload)
+    {
+        ByteBuffer serverFrame = ByteBuffer.allocate(payload.length + WebSocketHeader.MAX_HEADER_LENGTH_NOMASK);
+        serverFrame.put(WebSocketHeader.FINAL_OPCODE_BINARY);
+        if (payload.length <= WebSocketHeader.PAYLOAD_SHORT_MAX)
+        {
+            serverFrame.put((byte) payload.length);
+        }
+        else if (payload.length <= WebSocketHeader.PAYLOAD_MEDIUM_MAX)
+        {
+            serverFrame.put(WebSocketHeader.PAYLOAD_EXTENDED_16);
+            serverFrame.putShort((short) payload.length);
+        }
+        else
+        {
+            serverFrame.put(WebSocketHeader.PAYLOAD_EXTENDED_64);
+            serverFrame.putLong(payload.length);
+        }
+        serverFrame.put(payload);
+        serverFrame.flip();
+
+        return serverFrame;
+    }
+}
@@ -0,0 +1,65 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.device.DeviceClientConfig;
+import com.microsoft.azure.sdk.iot.device.IotHubConnectionString;
+import com.microsoft.azure.sdk.iot.device.Message;
+import org.apache.qpid.proton.message.impl.MessageImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URISyntaxException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversion between IoT Hub messages and Proton messages on the AMQPS telemetry links.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AmqpsDeviceTelemetryBenchmark
+{
+    private static final String CONNECTION_STRING =
+            "HostName=benchmark.azure-devices.net;DeviceId=benchmarkDevice;SharedAccessKey=YmVuY2htYXJrLWRldmljZS1rZXktdmFsdWUxMjM0NQ==";
+
+    @Param({"256", "4096"})
+    public int messageSize;
+
+    private AmqpsDeviceTelemetry amqpsDeviceTelemetry;
+    private Message message;
+    private MessageImpl protonMessage;
+
+    @Setup
+    public void setup() throws URISyntaxException
+    {
+        DeviceClientConfig config = new DeviceClientConfig(new IotHubConnectionString(CONNECTION_STRING), DeviceClientConfig.AuthType.SAS_TOKEN);
+        amqpsDeviceTelemetry = new AmqpsDeviceTelemetry(config);
+
+        byte[] body = new byte[messageSize];
+        new Random(messageSize).nextBytes(body);
+        message = new Message(body);
+        message.setMessageId("8b4bdcc5-8a82-4aab-9ed4-4e6c0a0d9a17");
+        message.setCorrelationId("correlation-1");
+        message.setProperty("temperature", "25.1");
+        message.setProperty("location", "building 43");
+
+        protonMessage = amqpsDeviceTelemetry.iotHubMessageToProtonMessage(message);
+    }
+
+    @Benchmark
+    public AmqpsConvertToProtonReturnValue convertToProton()
+    {
+        return amqpsDeviceTelemetry.convertToProton(message);
+    }
+
+    @Benchmark
+    public Message protonMessageToIoTHubMessage()
+    {
+        return amqpsDeviceTelemetry.protonMessageToIoTHubMessage(protonMessage);
+    }
+}
@@ -0,0 +1,60 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.https;
+
+import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.exceptions.IotHubSizeExceededException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of building a HTTPS batch body out of a number of telemetry messages.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HttpsBatchMessageBenchmark
+{
+    @Param({"1", "10", "100"})
+    public int messagesPerBatch;
+
+    @Param({"256", "2048"})
+    public int messageSize;
+
+    private HttpsSingleMessage[] messages;
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(messageSize);
+        messages = new HttpsSingleMessage[messagesPerBatch];
+        for (int i = 0; i < messagesPerBatch; i++)
+        {
+            byte[] body = new byte[messageSize];
+            random.nextBytes(body);
+            Message message = new Message(body);
+            message.setMessageId("message-" + i);
+            message.setProperty("temperature", "25." + i);
+            message.setProperty("sensor", "benchmark");
+            messages[i] = HttpsSingleMessage.parseHttpsMessage(message);
+        }
+    }
+
+    @Benchmark
+    public byte[] addMessages() throws IotHubSizeExceededException
+    {
+        HttpsBatchMessage batchMessage = new HttpsBatchMessage();
+        for (HttpsSingleMessage message : messages)
+        {
+            batchMessage.addMessage(message);
+        }
+
+        return batchMessage.getBody();
+    }
+}
@@ -0,0 +1,63 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.mqtt;
+
+import com.microsoft.azure.sdk.iot.device.Message;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.openjdk.jmh.annotations.*;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the publish topic of a telemetry message, and parsing the properties out of the topic
+ * of a cloud to device message. Nothing is sent, the connection is never opened.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MqttTopicBenchmark
+{
+    private static final String DEVICE_ID = "benchmarkDevice";
+    private static final String RECEIVED_TOPIC = "devices/" + DEVICE_ID + "/messages/devicebound/" +
+            "%24.mid=8b4bdcc5-8a82-4aab-9ed4-4e6c0a0d9a17&%24.cid=correlation-1&%24.to=%2Fdevices%2F" + DEVICE_ID +
+            "%2Fmessages%2Fdevicebound&iothub-ack=full&temperature=25.1&location=building%2043";
+
+    private MqttMessaging mqttMessaging;
+    private Message message;
+    private MqttMessage receivedMessage;
+
+    @Setup
+    public void setup() throws IOException, NoSuchAlgorithmException
+    {
+        MqttConnection mqttConnection = new MqttConnection("ssl://localhost:8883", DEVICE_ID, "benchmark.azure-devices.net/" + DEVICE_ID, null, SSLContext.getDefault());
+        mqttMessaging = new MqttMessaging(mqttConnection, DEVICE_ID);
+
+        byte[] payload = "{\"temperature\":25.1}".getBytes();
+        receivedMessage = new MqttMessage(payload);
+        message = new Message(payload);
+        message.setMessageId("8b4bdcc5-8a82-4aab-9ed4-4e6c0a0d9a17");
+        message.setCorrelationId("correlation-1");
+        message.setProperty("temperature", "25.1");
+        message.setProperty("location", "building 43");
+    }
+
+    @Benchmark
+    public String buildPublishTopic()
+    {
+        return mqttMessaging.buildPublishTopic(message);
+    }
+
+    @Benchmark
+    public Message parseReceivedTopic() throws IOException
+    {
+        mqttMessaging.messageArrived(RECEIVED_TOPIC, receivedMessage);
+        return mqttMessaging.receive();
+    }
+}
@@ -0,0 +1,40 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.service.auth;
+
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionStringBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the service SAS token, which is signed again for every request the service clients send.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IotHubServiceSasTokenBenchmark
+{
+    private static final String CONNECTION_STRING =
+            "HostName=benchmark.azure-devices.net;SharedAccessKeyName=iothubowner;SharedAccessKey=YmVuY2htYXJrLXNlcnZpY2Uta2V5LXZhbHVlMTIzNDU=";
+
+    private IotHubConnectionString iotHubConnectionString;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        iotHubConnectionString = IotHubConnectionStringBuilder.createConnectionString(CONNECTION_STRING);
+    }
+
+    @Benchmark
+    public String buildToken()
+    {
+        return new IotHubServiceSasToken(iotHubConnectionString).toString();
+    }
+}
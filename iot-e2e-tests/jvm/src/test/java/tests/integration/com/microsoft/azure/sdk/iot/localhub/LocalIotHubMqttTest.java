@@ -0,0 +1,166 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.integration.com.microsoft.azure.sdk.iot.localhub;
+
+import com.microsoft.azure.sdk.iot.device.DeviceClient;
+import com.microsoft.azure.sdk.iot.device.DeviceTwin.Device;
+import com.microsoft.azure.sdk.iot.device.DeviceTwin.Property;
+import com.microsoft.azure.sdk.iot.device.IotHubClientProtocol;
+import com.microsoft.azure.sdk.iot.device.IotHubEventCallback;
+import com.microsoft.azure.sdk.iot.device.IotHubStatusCode;
+import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.localhub.LocalIotHub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Smoke test of the device client against the local hub over MQTT, on the free ports the local hub binds by
+ * default, so it runs offline and without elevated rights.
+ */
+public class LocalIotHubMqttTest
+{
+    private static final String DEVICE_ID = "local-hub-smoke-device";
+    private static final int MESSAGES_TO_SEND = 10;
+    private static final long MAX_WAIT_SECONDS = 30;
+
+    private LocalIotHub localIotHub;
+    private DeviceClient deviceClient;
+
+    private static class CountingCallback implements IotHubEventCallback
+    {
+        final CountDownLatch latch;
+        final AtomicInteger failures = new AtomicInteger();
+
+        CountingCallback(int count)
+        {
+            this.latch = new CountDownLatch(count);
+        }
+
+        @Override
+        public void execute(IotHubStatusCode status, Object context)
+        {
+            if (status != IotHubStatusCode.OK && status != IotHubStatusCode.OK_EMPTY)
+            {
+                this.failures.incrementAndGet();
+            }
+            this.latch.countDown();
+        }
+    }
+
+    private static class DesiredPropertiesDevice extends Device
+    {
+        final CountDownLatch desiredReceived = new CountDownLatch(1);
+        volatile Object desiredValue;
+
+        @Override
+        public void PropertyCall(String propertyKey, Object propertyValue, Object context)
+        {
+            if ("color".equals(propertyKey))
+            {
+                this.desiredValue = propertyValue;
+                this.desiredReceived.countDown();
+            }
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.localIotHub = new LocalIotHub();
+        this.localIotHub.start();
+
+        this.deviceClient = new DeviceClient(this.localIotHub.getDeviceConnectionString(DEVICE_ID), IotHubClientProtocol.MQTT);
+        this.deviceClient.getConfig().getSasTokenAuthentication().setIotHubTrustedCert(this.localIotHub.getTrustedCertificate());
+        this.deviceClient.getConfig().setIotHubPort(this.localIotHub.getMqttPort());
+        this.deviceClient.open();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if (this.deviceClient != null)
+        {
+            this.deviceClient.closeNow();
+        }
+        if (this.localIotHub != null)
+        {
+            this.localIotHub.close();
+        }
+    }
+
+    @Test
+    public void localHubBindsUnprivilegedPorts()
+    {
+        assertTrue(this.localIotHub.getMqttPort() > 1023);
+        assertTrue(this.localIotHub.getAmqpsPort() > 1023);
+        assertTrue(this.localIotHub.getHttpsPort() > 1023);
+    }
+
+    @Test
+    public void sendTelemetryOverMqtt() throws Exception
+    {
+        CountingCallback callback = new CountingCallback(MESSAGES_TO_SEND);
+        for (int i = 0; i < MESSAGES_TO_SEND; i++)
+        {
+            this.deviceClient.sendEventAsync(new Message("telemetry " + i), callback, null);
+        }
+
+        assertTrue("Telemetry was not acknowledged", callback.latch.await(MAX_WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(0, callback.failures.get());
+        assertEquals(MESSAGES_TO_SEND, this.localIotHub.getDevice(DEVICE_ID).getTelemetryCount());
+    }
+
+    @Test
+    public void getAndPatchTwinOverMqtt() throws Exception
+    {
+        // arrange
+        CountingCallback twinCallback = new CountingCallback(1);
+        DesiredPropertiesDevice device = new DesiredPropertiesDevice();
+        device.setDesiredPropertyCallback(new Property("color", null), device, null);
+
+        // act - twin GET, desired properties subscription and reported properties PATCH, in this order on the connection
+        this.deviceClient.startDeviceTwin(twinCallback, null, device, null);
+        this.deviceClient.subscribeToDesiredProperties(device.getDesiredProp());
+        Set<Property> reported = new HashSet<>();
+        reported.add(new Property("temperature", 21));
+        this.deviceClient.sendReportedProperties(reported);
+
+        // assert
+        assertTrue("Reported properties did not reach the local hub", waitForReportedProperty("\"temperature\":21"));
+        assertEquals(0, twinCallback.failures.get());
+
+        // act - the subscription went before the PATCH, so the local hub pushes this patch to the device
+        this.localIotHub.updateDesiredProperties(DEVICE_ID, "{\"color\":\"blue\"}");
+
+        // assert
+        assertTrue("Desired property was not delivered", device.desiredReceived.await(MAX_WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals("blue", device.desiredValue);
+        assertEquals(0, twinCallback.failures.get());
+    }
+
+    private boolean waitForReportedProperty(String expected) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(MAX_WAIT_SECONDS);
+        while (System.currentTimeMillis() < deadline)
+        {
+            if (this.localIotHub.getDevice(DEVICE_ID).getReportedProperties().contains(expected))
+            {
+                return true;
+            }
+            Thread.sleep(100);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.loadgenerator;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free latency histogram with log-linear buckets: values below 128 nanoseconds are counted exactly,
+ * larger values within 1/64 (about 1.5%) of their magnitude. Recording is a couple of atomic increments
+ * and never allocates, so it can be called from the SDK callback threads of every simulated device.
+ */
+final class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKET_COUNT << 1;
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (63 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * Records one latency.
+     *
+     * @param nanos the latency in nanoseconds, negative values are counted as 0.
+     */
+    void record(long nanos)
+    {
+        long value = Math.max(0, nanos);
+        this.counts.incrementAndGet(bucketOf(value));
+        this.totalCount.incrementAndGet();
+
+        long max;
+        while (value > (max = this.maxValue.get()))
+        {
+            if (this.maxValue.compareAndSet(max, value))
+            {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Moves every recorded latency into the target histogram and leaves this one empty. Latencies
+     * recorded concurrently end up in either histogram, none is lost.
+     *
+     * @param target the histogram receiving the counts.
+     */
+    void drainInto(LatencyHistogram target)
+    {
+        long drained = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++)
+        {
+            long count = this.counts.getAndSet(bucket, 0);
+            if (count != 0)
+            {
+                target.counts.addAndGet(bucket, count);
+                drained += count;
+            }
+        }
+        this.totalCount.addAndGet(-drained);
+        target.totalCount.addAndGet(drained);
+
+        long max = this.maxValue.getAndSet(0);
+        long targetMax;
+        while (max > (targetMax = target.maxValue.get()))
+        {
+            if (target.maxValue.compareAndSet(targetMax, max))
+            {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Adds the counts of another histogram to this one, leaving the other untouched.
+     *
+     * @param other the histogram to add.
+     */
+    void add(LatencyHistogram other)
+    {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++)
+        {
+            long count = other.counts.get(bucket);
+            if (count != 0)
+            {
+                this.counts.addAndGet(bucket, count);
+            }
+        }
+        this.totalCount.addAndGet(other.totalCount.get());
+
+        long otherMax = other.maxValue.get();
+        long max;
+        while (otherMax > (max = this.maxValue.get()))
+        {
+            if (this.maxValue.compareAndSet(max, otherMax))
+            {
+                break;
+            }
+        }
+    }
+
+    long getCount()
+    {
+        return this.totalCount.get();
+    }
+
+    long getMaxValue()
+    {
+        return this.maxValue.get();
+    }
+
+    /**
+     * Getter for the latency at the given percentile.
+     *
+     * @param percentile the percentile, between 0 and 100.
+     * @return the latency in nanoseconds, or 0 if nothing was recorded.
+     */
+    long getValueAtPercentile(double percentile)
+    {
+        long total = this.totalCount.get();
+        if (total == 0)
+        {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++)
+        {
+            seen += this.counts.get(bucket);
+            if (seen >= rank)
+            {
+                return Math.min(valueOf(bucket), this.maxValue.get());
+            }
+        }
+        return this.maxValue.get();
+    }
+
+    private static int bucketOf(long value)
+    {
+        if (value < LINEAR_LIMIT)
+        {
+            return (int) value;
+        }
+
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * The middle of the range of values counted in a bucket.
+     */
+    private static long valueOf(int bucket)
+    {
+        if (bucket < LINEAR_LIMIT)
+        {
+            return bucket;
+        }
+
+        int shift = (bucket - LINEAR_LIMIT) / SUB_BUCKET_COUNT + 1;
+        long subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return (subBucket << shift) + (1L << (shift - 1));
+    }
+}
@@ -0,0 +1,441 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.loadgenerator;
+
+import com.microsoft.azure.sdk.iot.device.DeviceClient;
+import com.microsoft.azure.sdk.iot.device.IotHubClientProtocol;
+import com.microsoft.azure.sdk.iot.device.TransportClient;
+import com.microsoft.azure.sdk.iot.localhub.LocalIotHub;
+import com.microsoft.azure.sdk.iot.service.Device;
+import com.microsoft.azure.sdk.iot.service.RegistryManager;
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubNotFoundException;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fleet load generator. Connects a number of simulated devices to an IoT Hub, or to an embedded
+ * {@link LocalIotHub}, drives telemetry, reported property updates and direct methods at the
+ * configured rates, and reports throughput, latency percentiles, threads, heap and garbage collection.
+ *
+ * <p>The devices are registered on the hub when they do not exist yet, and are left registered so the
+ * next run does not pay for it again.
+ */
+public final class LoadGenerator
+{
+    private static final long DRAIN_TIMEOUT_SECONDS = 30;
+
+    private final LoadGeneratorOptions options;
+    private final LoadStatistics statistics = new LoadStatistics();
+    private final List<SimulatedDevice> devices = new ArrayList<>();
+    private final List<TransportClient> transportClients = new ArrayList<>();
+
+    private LoadGenerator(LoadGeneratorOptions options)
+    {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        LoadGeneratorOptions options;
+        try
+        {
+            options = LoadGeneratorOptions.parse(args);
+        }
+        catch (IllegalArgumentException e)
+        {
+            System.out.println(e.getMessage());
+            System.out.print(LoadGeneratorOptions.USAGE);
+            return;
+        }
+
+        new LoadGenerator(options).run();
+    }
+
+    private void run() throws Exception
+    {
+        LocalIotHub localHub = null;
+        String serviceConnectionString = this.options.connectionString;
+        String trustedCert = null;
+        int iotHubPort = 0;
+        if (this.options.trustedCertPath != null)
+        {
+            trustedCert = new String(Files.readAllBytes(Paths.get(this.options.trustedCertPath)), StandardCharsets.US_ASCII);
+        }
+
+        if (this.options.localHub)
+        {
+            // The HTTPS transport and the method invokers always connect to 443, MQTT and AMQPS devices reach
+            // free ports through the client config.
+            boolean standardHttpsPort = (this.options.protocol == IotHubClientProtocol.HTTPS) || (this.options.methodRate > 0);
+            localHub = new LocalIotHub(0, 0, standardHttpsPort ? LocalIotHub.STANDARD_HTTPS_PORT : 0);
+            localHub.start();
+            if (this.options.protocol == IotHubClientProtocol.MQTT)
+            {
+                iotHubPort = localHub.getMqttPort();
+            }
+            else if (this.options.protocol == IotHubClientProtocol.AMQPS)
+            {
+                iotHubPort = localHub.getAmqpsPort();
+            }
+            localHub.trustForServiceClients();
+            serviceConnectionString = localHub.getServiceConnectionString();
+            trustedCert = localHub.getTrustedCertificate();
+            System.out.println("Started the local hub on " + localHub.getHostName());
+        }
+
+        ExecutorService openExecutor = Executors.newFixedThreadPool(this.options.openThreads);
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(this.options.schedulerThreads);
+        scheduler.setRemoveOnCancelPolicy(true);
+        List<MethodInvoker> methodInvokers = new ArrayList<>();
+        List<Thread> methodInvokerThreads = new ArrayList<>();
+        try
+        {
+            List<String> connectionStrings = getDeviceConnectionStrings(localHub, serviceConnectionString, openExecutor);
+            createClients(connectionStrings, trustedCert, iotHubPort);
+
+            System.out.format("Connecting %d devices over %s%s...%n", this.devices.size(), this.options.protocol,
+                    (this.options.devicesPerConnection > 0) ? " multiplexed by " + this.options.devicesPerConnection : "");
+            RuntimeSnapshot beforeOpen = RuntimeSnapshot.capture();
+            long openStart = System.nanoTime();
+            openClients(openExecutor);
+            RuntimeSnapshot afterOpen = RuntimeSnapshot.capture();
+            System.out.format("Connected %d devices in %.1f s, %d failed%n", this.statistics.getConnectedDevices(),
+                    (System.nanoTime() - openStart) / (double) TimeUnit.SECONDS.toNanos(1), this.statistics.getConnectionFailures());
+
+            List<SimulatedDevice> connectedDevices = getConnectedDevices();
+            if (connectedDevices.isEmpty())
+            {
+                System.out.println("No device connected, nothing to load");
+                return;
+            }
+
+            boolean twin = this.options.twinIntervalSeconds > 0;
+            boolean methods = this.options.methodRate > 0;
+            LoadReporter reporter = new LoadReporter(System.out, this.statistics, twin, methods);
+            RuntimeSnapshot atStart = RuntimeSnapshot.capture();
+            reporter.start();
+            long loadStart = System.nanoTime();
+
+            Random random = new Random();
+            for (SimulatedDevice device : connectedDevices)
+            {
+                device.start(scheduler, this.options.telemetryRate, this.options.twinIntervalSeconds, random);
+            }
+
+            if (methods)
+            {
+                for (int i = 0; i < this.options.methodThreads; i++)
+                {
+                    MethodInvoker invoker = new MethodInvoker(serviceConnectionString, connectedDevices, this.statistics,
+                            this.options.methodRate / this.options.methodThreads);
+                    Thread thread = new Thread(invoker, "load-generator-method-" + i);
+                    thread.setDaemon(true);
+                    methodInvokers.add(invoker);
+                    methodInvokerThreads.add(thread);
+                    thread.start();
+                }
+            }
+
+            long durationNanos = TimeUnit.SECONDS.toNanos(this.options.durationSeconds);
+            long reportIntervalNanos = TimeUnit.SECONDS.toNanos(this.options.reportIntervalSeconds);
+            long nextReport = loadStart + reportIntervalNanos;
+            while (nextReport - loadStart <= durationNanos)
+            {
+                TimeUnit.NANOSECONDS.sleep(Math.max(0, nextReport - System.nanoTime()));
+                reporter.reportInterval(TimeUnit.NANOSECONDS.toSeconds(nextReport - loadStart));
+                nextReport += reportIntervalNanos;
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, loadStart + durationNanos - System.nanoTime()));
+
+            for (SimulatedDevice device : connectedDevices)
+            {
+                device.stop();
+            }
+            for (MethodInvoker invoker : methodInvokers)
+            {
+                invoker.stop();
+            }
+            double durationSeconds = (System.nanoTime() - loadStart) / (double) TimeUnit.SECONDS.toNanos(1);
+
+            waitForInFlightOperations(methodInvokerThreads);
+            reporter.reportSummary(durationSeconds, beforeOpen, afterOpen, atStart);
+        }
+        finally
+        {
+            for (MethodInvoker invoker : methodInvokers)
+            {
+                invoker.stop();
+            }
+            scheduler.shutdownNow();
+            openExecutor.shutdownNow();
+            closeClients();
+            if (localHub != null)
+            {
+                localHub.close();
+            }
+        }
+    }
+
+    private List<String> getDeviceConnectionStrings(LocalIotHub localHub, String serviceConnectionString, ExecutorService executor)
+            throws IOException, InterruptedException, ExecutionException
+    {
+        List<String> deviceIds = new ArrayList<>();
+        for (int i = 0; i < this.options.devices; i++)
+        {
+            deviceIds.add(this.options.devicePrefix + i);
+        }
+
+        List<String> connectionStrings = new ArrayList<>();
+        if (localHub != null)
+        {
+            for (String deviceId : deviceIds)
+            {
+                connectionStrings.add(localHub.getDeviceConnectionString(deviceId));
+            }
+            return connectionStrings;
+        }
+
+        System.out.format("Registering %d devices...%n", deviceIds.size());
+        final RegistryManager registryManager = RegistryManager.createFromConnectionString(serviceConnectionString);
+        List<Future<String>> futures = new ArrayList<>();
+        for (final String deviceId : deviceIds)
+        {
+            futures.add(executor.submit(new Callable<String>()
+            {
+                @Override
+                public String call() throws IOException, IotHubException, NoSuchAlgorithmException
+                {
+                    return registryManager.getDeviceConnectionString(getOrAddDevice(registryManager, deviceId));
+                }
+            }));
+        }
+        for (Future<String> future : futures)
+        {
+            connectionStrings.add(future.get());
+        }
+        return connectionStrings;
+    }
+
+    private static Device getOrAddDevice(RegistryManager registryManager, String deviceId) throws IOException, IotHubException, NoSuchAlgorithmException
+    {
+        try
+        {
+            return registryManager.getDevice(deviceId);
+        }
+        catch (IotHubNotFoundException e)
+        {
+            return registryManager.addDevice(Device.createFromId(deviceId, null, null));
+        }
+    }
+
+    private void createClients(List<String> connectionStrings, String trustedCert, int iotHubPort) throws URISyntaxException
+    {
+        byte[] payload = new byte[this.options.messageSize];
+        Arrays.fill(payload, (byte) 'x');
+
+        TransportClient transportClient = null;
+        for (int i = 0; i < connectionStrings.size(); i++)
+        {
+            DeviceClient client;
+            if (this.options.devicesPerConnection > 0)
+            {
+                if (i % this.options.devicesPerConnection == 0)
+                {
+                    transportClient = new TransportClient(this.options.protocol);
+                    this.transportClients.add(transportClient);
+                }
+                client = new DeviceClient(connectionStrings.get(i), transportClient);
+            }
+            else
+            {
+                client = new DeviceClient(connectionStrings.get(i), this.options.protocol);
+            }
+
+            if (trustedCert != null)
+            {
+                client.getConfig().getSasTokenAuthentication().setIotHubTrustedCert(trustedCert);
+            }
+            if (iotHubPort > 0)
+            {
+                client.getConfig().setIotHubPort(iotHubPort);
+            }
+
+            this.devices.add(new SimulatedDevice(client.getConfig().getDeviceId(), client, this.statistics, payload));
+        }
+    }
+
+    /**
+     * Opens the connections in parallel, then subscribes every device to what the load needs.
+     */
+    private void openClients(ExecutorService executor) throws InterruptedException
+    {
+        final boolean methods = this.options.methodRate > 0;
+        final boolean twin = this.options.twinIntervalSeconds > 0;
+        final AtomicInteger opened = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+
+        if (this.options.devicesPerConnection > 0)
+        {
+            for (int i = 0; i < this.transportClients.size(); i++)
+            {
+                final TransportClient transportClient = this.transportClients.get(i);
+                final List<SimulatedDevice> multiplexedDevices = this.devices.subList(
+                        i * this.options.devicesPerConnection,
+                        Math.min(this.devices.size(), (i + 1) * this.options.devicesPerConnection));
+                tasks.add(new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                    {
+                        try
+                        {
+                            transportClient.open();
+                        }
+                        catch (IOException | RuntimeException e)
+                        {
+                            System.out.println("Failed to open a multiplexed connection: " + e);
+                            for (int device = 0; device < multiplexedDevices.size(); device++)
+                            {
+                                statistics.connectionFailed();
+                            }
+                            return null;
+                        }
+
+                        for (SimulatedDevice device : multiplexedDevices)
+                        {
+                            subscribe(device, methods, twin);
+                        }
+                        return null;
+                    }
+                });
+            }
+        }
+        else
+        {
+            for (final SimulatedDevice device : this.devices)
+            {
+                tasks.add(new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                    {
+                        try
+                        {
+                            device.getClient().open();
+                        }
+                        catch (IOException | RuntimeException e)
+                        {
+                            System.out.println("Failed to open " + device.getDeviceId() + ": " + e);
+                            statistics.connectionFailed();
+                            return null;
+                        }
+
+                        subscribe(device, methods, twin);
+                        int count = opened.incrementAndGet();
+                        if (count % 1000 == 0)
+                        {
+                            System.out.format("  %d devices connected%n", count);
+                        }
+                        return null;
+                    }
+                });
+            }
+        }
+
+        executor.invokeAll(tasks);
+    }
+
+    private void subscribe(SimulatedDevice device, boolean methods, boolean twin)
+    {
+        try
+        {
+            device.subscribe(methods, twin);
+            this.statistics.deviceConnected();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            System.out.println("Failed to subscribe " + device.getDeviceId() + ": " + e);
+            this.statistics.connectionFailed();
+        }
+    }
+
+    private List<SimulatedDevice> getConnectedDevices()
+    {
+        List<SimulatedDevice> connectedDevices = new ArrayList<>();
+        for (SimulatedDevice device : this.devices)
+        {
+            if (device.isConnected())
+            {
+                connectedDevices.add(device);
+            }
+        }
+        return connectedDevices;
+    }
+
+    /**
+     * Gives the operations already sent a chance to be acknowledged before the summary.
+     */
+    private void waitForInFlightOperations(List<Thread> methodInvokerThreads) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_TIMEOUT_SECONDS);
+        for (Thread thread : methodInvokerThreads)
+        {
+            thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        }
+
+        while (System.nanoTime() < deadline && (inFlight(this.statistics.telemetry) > 0 || inFlight(this.statistics.reportedProperties) > 0))
+        {
+            Thread.sleep(100);
+        }
+    }
+
+    private static long inFlight(LoadStatistics.Operation operation)
+    {
+        return operation.getStarted() - operation.getSucceeded() - operation.getFailed();
+    }
+
+    private void closeClients()
+    {
+        for (TransportClient transportClient : this.transportClients)
+        {
+            try
+            {
+                transportClient.closeNow();
+            }
+            catch (IOException | RuntimeException e)
+            {
+                System.out.println("Failed to close a multiplexed connection: " + e);
+            }
+        }
+
+        if (this.transportClients.isEmpty())
+        {
+            for (SimulatedDevice device : this.devices)
+            {
+                if (device.isConnected())
+                {
+                    try
+                    {
+                        device.getClient().closeNow();
+                    }
+                    catch (IOException | RuntimeException e)
+                    {
+                        System.out.println("Failed to close " + device.getDeviceId() + ": " + e);
+                    }
+                }
+            }
+        }
+    }
+}
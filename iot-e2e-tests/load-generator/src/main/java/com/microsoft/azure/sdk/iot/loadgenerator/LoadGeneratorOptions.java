@@ -0,0 +1,214 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.loadgenerator;
+
+import com.microsoft.azure.sdk.iot.device.IotHubClientProtocol;
+
+/**
+ * Command line of the load generator.
+ */
+final class LoadGeneratorOptions
+{
+    static final String USAGE =
+            "Usage: java -jar load-generator.jar (--connection-string <service connection string> | --local-hub) [options]\n"
+            + "  --connection-string <string>  IoT Hub connection string with registry write and service connect rights\n"
+            + "  --local-hub                   run against an embedded local hub instead of an IoT Hub\n"
+            + "  --devices <n>                 number of simulated devices (default 100)\n"
+            + "  --device-prefix <string>      prefix of the simulated device ids (default loadgen-)\n"
+            + "  --protocol <protocol>         mqtt, mqtt_ws, amqps, amqps_ws or https (default mqtt)\n"
+            + "  --multiplex <n>               devices per multiplexed TransportClient connection, amqps and amqps_ws only (default 0, one connection per device)\n"
+            + "  --telemetry-rate <rate>       telemetry messages per second per device (default 1)\n"
+            + "  --message-size <bytes>        telemetry payload size (default 256)\n"
+            + "  --twin-interval <seconds>     seconds between reported property updates of each device (default 0, disabled)\n"
+            + "  --method-rate <rate>          direct method calls per second across the fleet (default 0, disabled)\n"
+            + "  --method-threads <n>          threads invoking direct methods (default 4)\n"
+            + "  --duration <seconds>          how long the load runs once every device is connected (default 60)\n"
+            + "  --report-interval <seconds>   seconds between progress reports (default 10)\n"
+            + "  --scheduler-threads <n>       threads scheduling the device operations (default the number of processors)\n"
+            + "  --open-threads <n>            threads opening the device connections (default 16)\n"
+            + "  --trusted-cert <path>         PEM file with the certificate the devices shall trust\n";
+
+    String connectionString;
+    boolean localHub;
+    int devices = 100;
+    String devicePrefix = "loadgen-";
+    IotHubClientProtocol protocol = IotHubClientProtocol.MQTT;
+    int devicesPerConnection = 0;
+    double telemetryRate = 1;
+    int messageSize = 256;
+    long twinIntervalSeconds = 0;
+    double methodRate = 0;
+    int methodThreads = 4;
+    long durationSeconds = 60;
+    long reportIntervalSeconds = 10;
+    int schedulerThreads = Runtime.getRuntime().availableProcessors();
+    int openThreads = 16;
+    String trustedCertPath;
+
+    /**
+     * Parses the command line.
+     *
+     * @param args the command line arguments.
+     * @return the options.
+     * @throws IllegalArgumentException if an argument is unknown, misses its value or has an invalid value.
+     */
+    static LoadGeneratorOptions parse(String[] args)
+    {
+        LoadGeneratorOptions options = new LoadGeneratorOptions();
+        for (int i = 0; i < args.length; i++)
+        {
+            String name = args[i];
+            if (name.equals("--local-hub"))
+            {
+                options.localHub = true;
+                continue;
+            }
+
+            if (i + 1 >= args.length)
+            {
+                throw new IllegalArgumentException("Missing value for " + name);
+            }
+            String value = args[++i];
+
+            switch (name)
+            {
+                case "--connection-string":
+                    options.connectionString = value;
+                    break;
+                case "--devices":
+                    options.devices = parsePositiveInt(name, value);
+                    break;
+                case "--device-prefix":
+                    options.devicePrefix = value;
+                    break;
+                case "--protocol":
+                    options.protocol = parseProtocol(value);
+                    break;
+                case "--multiplex":
+                    options.devicesPerConnection = parseNonNegativeInt(name, value);
+                    break;
+                case "--telemetry-rate":
+                    options.telemetryRate = parseNonNegativeDouble(name, value);
+                    break;
+                case "--message-size":
+                    options.messageSize = parseNonNegativeInt(name, value);
+                    break;
+                case "--twin-interval":
+                    options.twinIntervalSeconds = parseNonNegativeInt(name, value);
+                    break;
+                case "--method-rate":
+                    options.methodRate = parseNonNegativeDouble(name, value);
+                    break;
+                case "--method-threads":
+                    options.methodThreads = parsePositiveInt(name, value);
+                    break;
+                case "--duration":
+                    options.durationSeconds = parsePositiveInt(name, value);
+                    break;
+                case "--report-interval":
+                    options.reportIntervalSeconds = parsePositiveInt(name, value);
+                    break;
+                case "--scheduler-threads":
+                    options.schedulerThreads = parsePositiveInt(name, value);
+                    break;
+                case "--open-threads":
+                    options.openThreads = parsePositiveInt(name, value);
+                    break;
+                case "--trusted-cert":
+                    options.trustedCertPath = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + name);
+            }
+        }
+
+        if (options.localHub == (options.connectionString != null))
+        {
+            throw new IllegalArgumentException("Exactly one of --connection-string and --local-hub is required");
+        }
+
+        if (options.devicesPerConnection > 0
+                && options.protocol != IotHubClientProtocol.AMQPS && options.protocol != IotHubClientProtocol.AMQPS_WS)
+        {
+            throw new IllegalArgumentException("--multiplex is only supported for amqps and amqps_ws");
+        }
+
+        if (options.localHub && (options.protocol == IotHubClientProtocol.MQTT_WS || options.protocol == IotHubClientProtocol.AMQPS_WS))
+        {
+            throw new IllegalArgumentException("The local hub does not serve WebSockets");
+        }
+
+        if (options.protocol == IotHubClientProtocol.HTTPS && (options.twinIntervalSeconds > 0 || options.methodRate > 0))
+        {
+            throw new IllegalArgumentException("The device twin and direct methods are not supported over https");
+        }
+
+        return options;
+    }
+
+    private static IotHubClientProtocol parseProtocol(String value)
+    {
+        switch (value.toLowerCase())
+        {
+            case "mqtt":
+                return IotHubClientProtocol.MQTT;
+            case "mqtt_ws":
+                return IotHubClientProtocol.MQTT_WS;
+            case "amqps":
+                return IotHubClientProtocol.AMQPS;
+            case "amqps_ws":
+                return IotHubClientProtocol.AMQPS_WS;
+            case "https":
+                return IotHubClientProtocol.HTTPS;
+            default:
+                throw new IllegalArgumentException("Unknown protocol " + value);
+        }
+    }
+
+    private static int parsePositiveInt(String name, String value)
+    {
+        int parsed = parseNonNegativeInt(name, value);
+        if (parsed == 0)
+        {
+            throw new IllegalArgumentException(name + " must be greater than 0");
+        }
+        return parsed;
+    }
+
+    private static int parseNonNegativeInt(String name, String value)
+    {
+        try
+        {
+            int parsed = Integer.parseInt(value);
+            if (parsed < 0)
+            {
+                throw new IllegalArgumentException(name + " cannot be negative");
+            }
+            return parsed;
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException(name + " expects an integer but received " + value);
+        }
+    }
+
+    private static double parseNonNegativeDouble(String name, String value)
+    {
+        try
+        {
+            double parsed = Double.parseDouble(value);
+            if (parsed < 0 || Double.isNaN(parsed) || Double.isInfinite(parsed))
+            {
+                throw new IllegalArgumentException(name + " must be a positive number");
+            }
+            return parsed;
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException(name + " expects a number but received " + value);
+        }
+    }
+}
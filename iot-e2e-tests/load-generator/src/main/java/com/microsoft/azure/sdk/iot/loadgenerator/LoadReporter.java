@@ -0,0 +1,181 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.loadgenerator;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prints the progress of the load at every report interval, and a summary at the end.
+ */
+final class LoadReporter
+{
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    /**
+     * Latencies and counters of one operation, per interval and since the load started.
+     */
+    private static final class OperationReport
+    {
+        private final String name;
+        private final LoadStatistics.Operation operation;
+        private final LatencyHistogram total = new LatencyHistogram();
+        private long lastSucceeded;
+
+        OperationReport(String name, LoadStatistics.Operation operation)
+        {
+            this.name = name;
+            this.operation = operation;
+        }
+
+        void printInterval(PrintStream out, double intervalSeconds)
+        {
+            LatencyHistogram interval = new LatencyHistogram();
+            this.operation.drainLatenciesInto(interval);
+            this.total.add(interval);
+
+            long succeeded = this.operation.getSucceeded();
+            double rate = (succeeded - this.lastSucceeded) / intervalSeconds;
+            this.lastSucceeded = succeeded;
+
+            out.format(" | %s %.1f/s p50 %.2f p99 %.2f p999 %.2f ms failed %d in-flight %d",
+                    this.name, rate,
+                    toMillis(interval.getValueAtPercentile(50)),
+                    toMillis(interval.getValueAtPercentile(99)),
+                    toMillis(interval.getValueAtPercentile(99.9)),
+                    this.operation.getFailed(),
+                    inFlight());
+        }
+
+        void printSummary(PrintStream out, double durationSeconds)
+        {
+            // Latencies recorded since the last interval.
+            this.operation.drainLatenciesInto(this.total);
+
+            out.format("%-20s started %d, succeeded %d, failed %d, in-flight %d, %.1f/s%n",
+                    this.name, this.operation.getStarted(), this.operation.getSucceeded(), this.operation.getFailed(), inFlight(),
+                    this.operation.getSucceeded() / durationSeconds);
+            out.format("%-20s p50 %.2f ms, p99 %.2f ms, p999 %.2f ms, max %.2f ms%n",
+                    "", toMillis(this.total.getValueAtPercentile(50)), toMillis(this.total.getValueAtPercentile(99)),
+                    toMillis(this.total.getValueAtPercentile(99.9)), toMillis(this.total.getMaxValue()));
+        }
+
+        private long inFlight()
+        {
+            return this.operation.getStarted() - this.operation.getSucceeded() - this.operation.getFailed();
+        }
+    }
+
+    private final PrintStream out;
+    private final LoadStatistics statistics;
+    private final OperationReport[] operations;
+    private RuntimeSnapshot lastSnapshot;
+    private long lastReportNanos;
+
+    /**
+     * @param out where the reports are printed.
+     * @param statistics the statistics of the load.
+     * @param twin whether the reported property updates are part of the load.
+     * @param methods whether the direct methods are part of the load.
+     */
+    LoadReporter(PrintStream out, LoadStatistics statistics, boolean twin, boolean methods)
+    {
+        this.out = out;
+        this.statistics = statistics;
+
+        OperationReport telemetry = new OperationReport("telemetry", statistics.telemetry);
+        OperationReport reportedProperties = new OperationReport("reported properties", statistics.reportedProperties);
+        OperationReport directMethods = new OperationReport("direct methods", statistics.methods);
+        if (twin && methods)
+        {
+            this.operations = new OperationReport[] { telemetry, reportedProperties, directMethods };
+        }
+        else if (twin)
+        {
+            this.operations = new OperationReport[] { telemetry, reportedProperties };
+        }
+        else if (methods)
+        {
+            this.operations = new OperationReport[] { telemetry, directMethods };
+        }
+        else
+        {
+            this.operations = new OperationReport[] { telemetry };
+        }
+    }
+
+    /**
+     * Marks the start of the load, the first interval starts here.
+     */
+    void start()
+    {
+        this.lastSnapshot = RuntimeSnapshot.capture();
+        this.lastReportNanos = System.nanoTime();
+    }
+
+    /**
+     * Prints one line for the interval since the last call.
+     *
+     * @param elapsedSeconds the seconds since the load started.
+     */
+    void reportInterval(long elapsedSeconds)
+    {
+        long now = System.nanoTime();
+        double intervalSeconds = Math.max(1, now - this.lastReportNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        this.lastReportNanos = now;
+
+        this.out.format("[%5ds] devices %d", elapsedSeconds, this.statistics.getConnectedDevices());
+        for (OperationReport operation : this.operations)
+        {
+            operation.printInterval(this.out, intervalSeconds);
+        }
+
+        RuntimeSnapshot snapshot = RuntimeSnapshot.capture();
+        this.out.format(" | threads %d heap %d MB gc %d (%d ms)%n",
+                snapshot.threadCount,
+                snapshot.heapUsedBytes / BYTES_PER_MEGABYTE,
+                snapshot.gcCount - this.lastSnapshot.gcCount,
+                snapshot.gcTimeMillis - this.lastSnapshot.gcTimeMillis);
+        this.lastSnapshot = snapshot;
+    }
+
+    /**
+     * Prints the totals of the load.
+     *
+     * @param durationSeconds how long the load ran.
+     * @param beforeOpen the runtime before the devices connected.
+     * @param afterOpen the runtime once the devices connected.
+     * @param atStart the runtime when the load started.
+     */
+    void reportSummary(double durationSeconds, RuntimeSnapshot beforeOpen, RuntimeSnapshot afterOpen, RuntimeSnapshot atStart)
+    {
+        RuntimeSnapshot atEnd = RuntimeSnapshot.capture();
+        long connectedDevices = Math.max(1, this.statistics.getConnectedDevices());
+
+        this.out.println();
+        this.out.format("Summary over %.1f s%n", durationSeconds);
+        for (OperationReport operation : this.operations)
+        {
+            operation.printSummary(this.out, durationSeconds);
+        }
+        this.out.format("%-20s %d connected, %d failed to connect, %d connection drops%n",
+                "devices", this.statistics.getConnectedDevices(), this.statistics.getConnectionFailures(), this.statistics.getConnectionDrops());
+        this.out.format("%-20s %d before connecting, %d connected, %d at the end, %d peak, %.2f per device%n",
+                "threads", beforeOpen.threadCount, afterOpen.threadCount, atEnd.threadCount, atEnd.peakThreadCount,
+                (afterOpen.threadCount - beforeOpen.threadCount) / (double) connectedDevices);
+        this.out.format("%-20s %d MB before connecting, %d MB connected, %d MB used and %d MB committed at the end%n",
+                "heap", beforeOpen.heapUsedBytes / BYTES_PER_MEGABYTE, afterOpen.heapUsedBytes / BYTES_PER_MEGABYTE,
+                atEnd.heapUsedBytes / BYTES_PER_MEGABYTE, atEnd.heapCommittedBytes / BYTES_PER_MEGABYTE);
+        this.out.format("%-20s %d collections, %d ms during the load%n",
+                "gc", atEnd.gcCount - atStart.gcCount, atEnd.gcTimeMillis - atStart.gcTimeMillis);
+    }
+
+    private static double toMillis(long nanos)
+    {
+        return nanos / NANOS_PER_MILLI;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.loadgenerator;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and latency histograms shared by every simulated device and by the method invokers.
+ */
+final class LoadStatistics
+{
+    /**
+     * Counters and latencies of one kind of operation: telemetry, reported properties or direct methods.
+     */
+    static final class Operation
+    {
+        private final AtomicLong started = new AtomicLong();
+        private final AtomicLong succeeded = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final LatencyHistogram latencies = new LatencyHistogram();
+
+        void started()
+        {
+            this.started.incrementAndGet();
+        }
+
+        void succeeded(long latencyNanos)
+        {
+            this.succeeded.incrementAndGet();
+            this.latencies.record(latencyNanos);
+        }
+
+        void failed()
+        {
+            this.failed.incrementAndGet();
+        }
+
+        long getStarted()
+        {
+            return this.started.get();
+        }
+
+        long getSucceeded()
+        {
+            return this.succeeded.get();
+        }
+
+        long getFailed()
+        {
+            return this.failed.get();
+        }
+
+        /**
+         * Moves the latencies recorded since the last call into the given histogram.
+         */
+        void drainLatenciesInto(LatencyHistogram target)
+        {
+            this.latencies.drainInto(target);
+        }
+    }
+
+    final Operation telemetry = new Operation();
+    final Operation reportedProperties = new Operation();
+    final Operation methods = new Operation();
+
+    private final AtomicLong connectedDevices = new AtomicLong();
+    private final AtomicLong connectionFailures = new AtomicLong();
+    private final AtomicLong connectionDrops = new AtomicLong();
+
+    void deviceConnected()
+    {
+        this.connectedDevices.incrementAndGet();
+    }
+
+    void connectionFailed()
+    {
+        this.connectionFailures.incrementAndGet();
+    }
+
+    void connectionDropped()
+    {
+        this.connectionDrops.incrementAndGet();
+    }
+
+    long getConnectedDevices()
+    {
+        return this.connectedDevices.get();
+    }
+
+    long getConnectionFailures()
+    {
+        return this.connectionFailures.get();
+    }
+
+    long getConnectionDrops()
+    {
+        return this.connectionDrops.get();
+    }
+}
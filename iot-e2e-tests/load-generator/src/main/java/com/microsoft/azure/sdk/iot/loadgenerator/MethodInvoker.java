@@ -0,0 +1,104 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.loadgenerator;
+
+import com.microsoft.azure.sdk.iot.service.devicetwin.DeviceMethod;
+import com.microsoft.azure.sdk.iot.service.devicetwin.MethodResult;
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Invokes direct methods on random simulated devices at a fixed pace. {@code DeviceMethod.invoke} is
+ * synchronized, so each invoker owns its {@link DeviceMethod} and the invokers do not serialize each other.
+ */
+final class MethodInvoker implements Runnable
+{
+    private static final long RESPONSE_TIMEOUT_SECONDS = 30;
+    private static final long CONNECT_TIMEOUT_SECONDS = 5;
+    private static final String PAYLOAD = "ping";
+
+    private final DeviceMethod deviceMethod;
+    private final List<SimulatedDevice> devices;
+    private final LoadStatistics statistics;
+    private final long intervalNanos;
+    private final Random random = new Random();
+    private volatile boolean stopped;
+
+    /**
+     * @param connectionString the service connection string.
+     * @param devices the devices to call.
+     * @param statistics where the calls are counted.
+     * @param rate the calls per second of this invoker.
+     * @throws IOException if the connection string is invalid.
+     */
+    MethodInvoker(String connectionString, List<SimulatedDevice> devices, LoadStatistics statistics, double rate) throws IOException
+    {
+        this.deviceMethod = DeviceMethod.createFromConnectionString(connectionString);
+        this.devices = devices;
+        this.statistics = statistics;
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+    }
+
+    void stop()
+    {
+        this.stopped = true;
+    }
+
+    @Override
+    public void run()
+    {
+        long nextCall = System.nanoTime() + (long) (this.random.nextDouble() * this.intervalNanos);
+        while (!this.stopped)
+        {
+            long wait = nextCall - System.nanoTime();
+            if (wait > 0)
+            {
+                try
+                {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                catch (InterruptedException e)
+                {
+                    return;
+                }
+            }
+            else if (-wait > this.intervalNanos)
+            {
+                // Too slow to keep the pace, the missed calls are dropped rather than sent in a burst.
+                nextCall = System.nanoTime();
+            }
+            nextCall += this.intervalNanos;
+
+            invoke(this.devices.get(this.random.nextInt(this.devices.size())).getDeviceId());
+        }
+    }
+
+    private void invoke(String deviceId)
+    {
+        this.statistics.methods.started();
+        long start = System.nanoTime();
+        try
+        {
+            MethodResult result = this.deviceMethod.invoke(deviceId, SimulatedDevice.METHOD_NAME, RESPONSE_TIMEOUT_SECONDS, CONNECT_TIMEOUT_SECONDS, PAYLOAD);
+            if (result.getStatus() != null && result.getStatus() == 200)
+            {
+                this.statistics.methods.succeeded(System.nanoTime() - start);
+            }
+            else
+            {
+                this.statistics.methods.failed();
+            }
+        }
+        catch (IotHubException | IOException | RuntimeException e)
+        {
+            this.statistics.methods.failed();
+        }
+    }
+}
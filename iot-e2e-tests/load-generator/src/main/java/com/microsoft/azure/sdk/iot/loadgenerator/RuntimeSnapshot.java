@@ -0,0 +1,54 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.loadgenerator;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+
+/**
+ * Threads, heap and garbage collection of the JVM at one point in time.
+ */
+final class RuntimeSnapshot
+{
+    final int threadCount;
+    final int peakThreadCount;
+    final long heapUsedBytes;
+    final long heapCommittedBytes;
+    final long gcCount;
+    final long gcTimeMillis;
+
+    private RuntimeSnapshot(int threadCount, int peakThreadCount, long heapUsedBytes, long heapCommittedBytes, long gcCount, long gcTimeMillis)
+    {
+        this.threadCount = threadCount;
+        this.peakThreadCount = peakThreadCount;
+        this.heapUsedBytes = heapUsedBytes;
+        this.heapCommittedBytes = heapCommittedBytes;
+        this.gcCount = gcCount;
+        this.gcTimeMillis = gcTimeMillis;
+    }
+
+    static RuntimeSnapshot capture()
+    {
+        long gcCount = 0;
+        long gcTimeMillis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            // -1 when the collector does not report it.
+            gcCount += Math.max(0, collector.getCollectionCount());
+            gcTimeMillis += Math.max(0, collector.getCollectionTime());
+        }
+
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        return new RuntimeSnapshot(
+                ManagementFactory.getThreadMXBean().getThreadCount(),
+                ManagementFactory.getThreadMXBean().getPeakThreadCount(),
+                heap.getUsed(),
+                heap.getCommitted(),
+                gcCount,
+                gcTimeMillis);
+    }
+}
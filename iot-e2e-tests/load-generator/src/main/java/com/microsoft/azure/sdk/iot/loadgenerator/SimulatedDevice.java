@@ -0,0 +1,251 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.loadgenerator;
+
+import com.microsoft.azure.sdk.iot.device.*;
+import com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceMethodCallback;
+import com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceMethodData;
+import com.microsoft.azure.sdk.iot.device.DeviceTwin.Property;
+import com.microsoft.azure.sdk.iot.device.DeviceTwin.PropertyCallBack;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One simulated device. The periodic work of every device runs on a shared scheduler, so the threads the
+ * load generator adds stay constant and any thread growth with the fleet size comes from the SDK.
+ */
+final class SimulatedDevice
+{
+    static final String METHOD_NAME = "loadGenerator";
+    private static final String REPORTED_PROPERTY_NAME = "loadGeneratorCounter";
+
+    private final String deviceId;
+    private final DeviceClient client;
+    private final LoadStatistics statistics;
+    private final byte[] payload;
+    private final Queue<Long> pendingReportedProperties = new ConcurrentLinkedQueue<>();
+    private final List<ScheduledFuture<?>> tasks = new ArrayList<>();
+    private long reportedPropertiesCounter;
+    private volatile boolean connected;
+
+    private final IotHubEventCallback telemetryCallback = new IotHubEventCallback()
+    {
+        @Override
+        public void execute(IotHubStatusCode status, Object context)
+        {
+            long latency = System.nanoTime() - (Long) context;
+            if (isSuccess(status))
+            {
+                statistics.telemetry.succeeded(latency);
+            }
+            else
+            {
+                statistics.telemetry.failed();
+            }
+        }
+    };
+
+    private final IotHubEventCallback twinStatusCallback = new IotHubEventCallback()
+    {
+        @Override
+        public void execute(IotHubStatusCode status, Object context)
+        {
+            // The twin answers in order, so the oldest pending update is the one acknowledged. The
+            // answer to the twin GET sent by startDeviceTwin finds nothing pending and is not counted.
+            Long sendTime = pendingReportedProperties.poll();
+            if (sendTime == null)
+            {
+                return;
+            }
+
+            if (isSuccess(status))
+            {
+                statistics.reportedProperties.succeeded(System.nanoTime() - sendTime);
+            }
+            else
+            {
+                statistics.reportedProperties.failed();
+            }
+        }
+    };
+
+    SimulatedDevice(String deviceId, DeviceClient client, LoadStatistics statistics, byte[] payload)
+    {
+        this.deviceId = deviceId;
+        this.client = client;
+        this.statistics = statistics;
+        this.payload = payload;
+    }
+
+    String getDeviceId()
+    {
+        return this.deviceId;
+    }
+
+    DeviceClient getClient()
+    {
+        return this.client;
+    }
+
+    /**
+     * Whether the client is open and subscribed.
+     */
+    boolean isConnected()
+    {
+        return this.connected;
+    }
+
+    /**
+     * Subscribes to what the load needs. Called once the client is open.
+     *
+     * @param methods whether the device answers direct methods.
+     * @param twin whether the device updates its reported properties.
+     * @throws IOException if a subscription could not be sent.
+     */
+    void subscribe(boolean methods, boolean twin) throws IOException
+    {
+        this.client.registerConnectionStateCallback(new IotHubConnectionStateCallback()
+        {
+            @Override
+            public void execute(IotHubConnectionState state, Object callbackContext)
+            {
+                if (state == IotHubConnectionState.CONNECTION_DROP)
+                {
+                    statistics.connectionDropped();
+                }
+            }
+        }, null);
+
+        IotHubEventCallback ignoreStatus = new IotHubEventCallback()
+        {
+            @Override
+            public void execute(IotHubStatusCode status, Object context)
+            {
+            }
+        };
+
+        if (methods)
+        {
+            this.client.subscribeToDeviceMethod(new DeviceMethodCallback()
+            {
+                @Override
+                public DeviceMethodData call(String methodName, Object methodData, Object context)
+                {
+                    // Echoes the payload, so the size of the response follows the size of the request.
+                    String payload = (methodData instanceof byte[]) ? new String((byte[]) methodData, StandardCharsets.UTF_8) : "null";
+                    return new DeviceMethodData(200, payload);
+                }
+            }, null, ignoreStatus, null);
+        }
+
+        if (twin)
+        {
+            this.client.startDeviceTwin(this.twinStatusCallback, null, new PropertyCallBack<String, Object>()
+            {
+                @Override
+                public void PropertyCall(String propertyKey, Object propertyValue, Object context)
+                {
+                }
+            }, null);
+        }
+
+        this.connected = true;
+    }
+
+    /**
+     * Schedules the telemetry and the reported property updates. The first run of each is delayed by a
+     * random part of its period, so the devices do not all send at the same instant.
+     *
+     * @param scheduler the shared scheduler.
+     * @param telemetryRate telemetry messages per second, 0 for none.
+     * @param twinIntervalSeconds seconds between reported property updates, 0 for none.
+     * @param random the source of the start offsets.
+     */
+    synchronized void start(ScheduledExecutorService scheduler, double telemetryRate, long twinIntervalSeconds, Random random)
+    {
+        if (telemetryRate > 0)
+        {
+            long periodNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / telemetryRate));
+            this.tasks.add(scheduler.scheduleAtFixedRate(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    sendTelemetry();
+                }
+            }, (long) (random.nextDouble() * periodNanos), periodNanos, TimeUnit.NANOSECONDS));
+        }
+
+        if (twinIntervalSeconds > 0)
+        {
+            long periodNanos = TimeUnit.SECONDS.toNanos(twinIntervalSeconds);
+            // A full period plus the offset, the twin GET sent by startDeviceTwin has been answered by then.
+            this.tasks.add(scheduler.scheduleAtFixedRate(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    sendReportedProperties();
+                }
+            }, periodNanos + (long) (random.nextDouble() * periodNanos), periodNanos, TimeUnit.NANOSECONDS));
+        }
+    }
+
+    /**
+     * Cancels the scheduled work. Operations already sent can still be acknowledged.
+     */
+    synchronized void stop()
+    {
+        for (ScheduledFuture<?> task : this.tasks)
+        {
+            task.cancel(false);
+        }
+        this.tasks.clear();
+    }
+
+    private void sendTelemetry()
+    {
+        this.statistics.telemetry.started();
+        try
+        {
+            this.client.sendEventAsync(new Message(this.payload), this.telemetryCallback, System.nanoTime());
+        }
+        catch (RuntimeException e)
+        {
+            this.statistics.telemetry.failed();
+        }
+    }
+
+    private void sendReportedProperties()
+    {
+        this.statistics.reportedProperties.started();
+        Set<Property> reportedProperties = new HashSet<>();
+        reportedProperties.add(new Property(REPORTED_PROPERTY_NAME, ++this.reportedPropertiesCounter));
+
+        Long sendTime = System.nanoTime();
+        this.pendingReportedProperties.add(sendTime);
+        try
+        {
+            this.client.sendReportedProperties(reportedProperties);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            this.pendingReportedProperties.remove(sendTime);
+            this.statistics.reportedProperties.failed();
+        }
+    }
+
+    private static boolean isSuccess(IotHubStatusCode status)
+    {
+        return status == IotHubStatusCode.OK || status == IotHubStatusCode.OK_EMPTY;
+    }
+}
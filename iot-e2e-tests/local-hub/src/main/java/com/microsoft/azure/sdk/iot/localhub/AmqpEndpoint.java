@@ -0,0 +1,664 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.localhub;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.messaging.*;
+import org.apache.qpid.proton.amqp.messaging.Properties;
+import org.apache.qpid.proton.amqp.transport.SenderSettleMode;
+import org.apache.qpid.proton.engine.*;
+import org.apache.qpid.proton.message.Message;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * AMQP 1.0 endpoint of the local hub, built on the proton-j engine. It accepts SASL PLAIN and ANONYMOUS,
+ * answers every CBS put-token with a 200, and serves the device telemetry, cloud to device, direct method
+ * and twin links, plus the service cloud to device and feedback links. Several devices may share one
+ * connection, as they do when multiplexed through a {@code TransportClient}.
+ */
+final class AmqpEndpoint extends TlsSocketEndpoint
+{
+    private static final String CONTAINER_ID = "local-hub";
+    private static final int LINK_CREDIT = 1000;
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    private static final String CBS_ADDRESS = "$cbs";
+    private static final String SERVICE_DEVICEBOUND_ADDRESS = "/messages/devicebound";
+    private static final String DEVICES_PREFIX = "/devices/";
+    private static final String EVENTS_SUFFIX = "/messages/events";
+    private static final String DEVICEBOUND_SUFFIX = "/messages/devicebound";
+    private static final String ACK_PROPERTY = "iothub-ack";
+    private static final String METHODS_SUFFIX = "/methods/devicebound";
+    private static final String TWIN_SUFFIX = "/twin";
+
+    private static final String STATUS_CODE_KEY = "status-code";
+    private static final String METHOD_NAME_KEY = "IoThub-methodname";
+    private static final String METHOD_STATUS_KEY = "IoThub-status";
+    private static final Symbol OPERATION_ANNOTATION = Symbol.valueOf("operation");
+    private static final Symbol RESOURCE_ANNOTATION = Symbol.valueOf("resource");
+    private static final Symbol STATUS_ANNOTATION = Symbol.valueOf("status");
+    private static final Symbol VERSION_ANNOTATION = Symbol.valueOf("version");
+    private static final String REPORTED_RESOURCE = "/properties/reported";
+    private static final String DESIRED_RESOURCE = "/properties/desired";
+
+    private final LocalIotHub hub;
+
+    AmqpEndpoint(LocalIotHub hub, SSLContext sslContext, InetAddress address, int port) throws IOException
+    {
+        super("local-hub-amqp", sslContext, address, port);
+        this.hub = hub;
+    }
+
+    @Override
+    void serve(Socket socket) throws IOException
+    {
+        new AmqpConnectionHandler(socket.getInputStream(), socket.getOutputStream()).run();
+    }
+
+    /**
+     * Drives one proton connection. The connection thread blocks on the socket; other threads push
+     * cloud to device traffic through {@link AmqpDeviceLinks} under the same lock.
+     */
+    private final class AmqpConnectionHandler
+    {
+        private final Object lock = new Object();
+        private final InputStream input;
+        private final OutputStream output;
+        private final Connection connection = Proton.connection();
+        private final Transport transport = Proton.transport();
+        private final Collector collector = Proton.collector();
+        private final Map<String, AmqpDeviceLinks> devices = new HashMap<>();
+        private final Map<Sender, Queue<Message>> pendingMessages = new HashMap<>();
+        private final List<LocalMessage> serviceMessages = new ArrayList<>();
+        private Sender cbsSender;
+        private long nextTag;
+
+        private AmqpConnectionHandler(InputStream input, OutputStream output)
+        {
+            this.input = input;
+            this.output = output;
+
+            Sasl sasl = this.transport.sasl();
+            sasl.server();
+            sasl.setMechanisms("PLAIN", "ANONYMOUS");
+            // Tokens are never validated, the local hub trusts every client.
+            sasl.done(Sasl.SaslOutcome.PN_SASL_OK);
+
+            this.connection.collect(this.collector);
+            this.transport.bind(this.connection);
+        }
+
+        private void run() throws IOException
+        {
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            try
+            {
+                while (true)
+                {
+                    int read = this.input.read(buffer);
+
+                    synchronized (this.lock)
+                    {
+                        if (read < 0)
+                        {
+                            this.transport.close_tail();
+                        }
+                        else
+                        {
+                            feed(buffer, read);
+                        }
+
+                        processEvents();
+                        flush();
+
+                        if (read < 0 || this.transport.capacity() < 0)
+                        {
+                            return;
+                        }
+                    }
+
+                    routeServiceMessages();
+                }
+            }
+            finally
+            {
+                synchronized (this.lock)
+                {
+                    for (AmqpDeviceLinks deviceLinks : this.devices.values())
+                    {
+                        deviceLinks.device.removeConnection(deviceLinks);
+                    }
+                    this.devices.clear();
+                }
+
+                // The service client closes right after sending, its last messages arrive with the close.
+                routeServiceMessages();
+            }
+        }
+
+        /**
+         * Hands the cloud to device messages sent by the service to their devices. Called outside of the lock,
+         * the target device may be served by another connection.
+         */
+        private void routeServiceMessages()
+        {
+            List<LocalMessage> messagesToRoute;
+            synchronized (this.lock)
+            {
+                messagesToRoute = new ArrayList<>(this.serviceMessages);
+                this.serviceMessages.clear();
+            }
+
+            for (LocalMessage message : messagesToRoute)
+            {
+                hub.getOrCreateDevice(message.getDeviceId()).sendCloudToDeviceMessage(message);
+            }
+        }
+
+        private void feed(byte[] buffer, int length) throws IOException
+        {
+            int offset = 0;
+            while (offset < length)
+            {
+                if (this.transport.capacity() < 0)
+                {
+                    throw new IOException("AMQP transport closed while reading");
+                }
+
+                ByteBuffer tail = this.transport.tail();
+                int chunk = Math.min(tail.remaining(), length - offset);
+                tail.put(buffer, offset, chunk);
+                offset += chunk;
+
+                try
+                {
+                    this.transport.process();
+                }
+                catch (TransportException e)
+                {
+                    throw new IOException("Invalid AMQP frame", e);
+                }
+            }
+        }
+
+        private void flush() throws IOException
+        {
+            int pending;
+            while ((pending = this.transport.pending()) > 0)
+            {
+                ByteBuffer head = this.transport.head();
+                byte[] bytes = new byte[pending];
+                head.get(bytes);
+                this.output.write(bytes);
+                this.transport.pop(pending);
+            }
+            this.output.flush();
+        }
+
+        private void processEvents()
+        {
+            Event event;
+            while ((event = this.collector.peek()) != null)
+            {
+                switch (event.getType())
+                {
+                    case CONNECTION_REMOTE_OPEN:
+                        this.connection.setContainer(CONTAINER_ID);
+                        this.connection.open();
+                        break;
+                    case SESSION_REMOTE_OPEN:
+                        event.getSession().open();
+                        break;
+                    case LINK_REMOTE_OPEN:
+                        onLinkRemoteOpen(event.getLink());
+                        break;
+                    case LINK_FLOW:
+                        if (event.getLink() instanceof Sender)
+                        {
+                            sendPending((Sender) event.getLink());
+                        }
+                        break;
+                    case DELIVERY:
+                        onDelivery(event.getDelivery());
+                        break;
+                    case LINK_REMOTE_CLOSE:
+                        onLinkRemoteClose(event.getLink());
+                        break;
+                    case SESSION_REMOTE_CLOSE:
+                        event.getSession().close();
+                        break;
+                    case CONNECTION_REMOTE_CLOSE:
+                        this.connection.close();
+                        break;
+                    default:
+                        break;
+                }
+                this.collector.pop();
+            }
+        }
+
+        private void onLinkRemoteOpen(Link link)
+        {
+            link.setSource(link.getRemoteSource());
+            link.setTarget(link.getRemoteTarget());
+            link.setSenderSettleMode(link.getRemoteSenderSettleMode());
+            link.setReceiverSettleMode(link.getRemoteReceiverSettleMode());
+            link.open();
+
+            if (link instanceof Receiver)
+            {
+                link.setContext(link.getRemoteTarget().getAddress());
+                ((Receiver) link).flow(LINK_CREDIT);
+                return;
+            }
+
+            Sender sender = (Sender) link;
+            String address = link.getRemoteSource().getAddress();
+            link.setContext(address);
+            this.pendingMessages.put(sender, new ArrayDeque<Message>());
+
+            if (address.equals(CBS_ADDRESS))
+            {
+                this.cbsSender = sender;
+            }
+            else if (address.startsWith(DEVICES_PREFIX))
+            {
+                AmqpDeviceLinks deviceLinks = getDeviceLinks(address);
+                if (address.endsWith(DEVICEBOUND_SUFFIX))
+                {
+                    deviceLinks.cloudToDeviceSender = sender;
+                    deviceLinks.device.drainCloudToDeviceMessages(deviceLinks);
+                }
+                else if (address.endsWith(METHODS_SUFFIX))
+                {
+                    deviceLinks.methodSender = sender;
+                }
+                else if (address.endsWith(TWIN_SUFFIX))
+                {
+                    deviceLinks.twinSender = sender;
+                }
+            }
+        }
+
+        private void onLinkRemoteClose(Link link)
+        {
+            link.close();
+            if (link instanceof Sender)
+            {
+                this.pendingMessages.remove(link);
+                for (AmqpDeviceLinks deviceLinks : this.devices.values())
+                {
+                    deviceLinks.senderClosed((Sender) link);
+                }
+            }
+        }
+
+        private void onDelivery(Delivery delivery)
+        {
+            if (delivery.getLink() instanceof Sender)
+            {
+                if (delivery.remotelySettled() || delivery.getRemoteState() != null)
+                {
+                    delivery.settle();
+                }
+                return;
+            }
+
+            if (!delivery.isReadable() || delivery.isPartial())
+            {
+                return;
+            }
+
+            Receiver receiver = (Receiver) delivery.getLink();
+            byte[] encoded = new byte[delivery.pending()];
+            int read = receiver.recv(encoded, 0, encoded.length);
+            receiver.advance();
+
+            Message message = Proton.message();
+            message.decode(encoded, 0, read);
+            onMessage((String) receiver.getContext(), message);
+
+            delivery.disposition(Accepted.getInstance());
+            delivery.settle();
+
+            if (receiver.getCredit() < LINK_CREDIT / 2)
+            {
+                receiver.flow(LINK_CREDIT - receiver.getCredit());
+            }
+        }
+
+        private void onMessage(String address, Message message)
+        {
+            if (address.equals(CBS_ADDRESS))
+            {
+                Message response = Proton.message();
+                Properties properties = new Properties();
+                properties.setCorrelationId(message.getMessageId());
+                properties.setTo(message.getReplyTo());
+                response.setProperties(properties);
+                // Only the status code, the device client reads every application property as an Integer.
+                Map<String, Object> applicationProperties = new HashMap<>();
+                applicationProperties.put(STATUS_CODE_KEY, 200);
+                response.setApplicationProperties(new ApplicationProperties(applicationProperties));
+                send(this.cbsSender, response);
+            }
+            else if (address.equals(SERVICE_DEVICEBOUND_ADDRESS))
+            {
+                String to = (message.getAddress() != null) ? message.getAddress() : "";
+                String deviceId = getDeviceId(to);
+                // The feedback request is for the hub, not an application property of the device message.
+                Map<String, String> applicationProperties = getApplicationProperties(message);
+                applicationProperties.remove(ACK_PROPERTY);
+                this.serviceMessages.add(new LocalMessage(deviceId, getBody(message), applicationProperties,
+                        toStringOrNull(message.getMessageId()), toStringOrNull(message.getCorrelationId())));
+            }
+            else if (address.startsWith(DEVICES_PREFIX))
+            {
+                AmqpDeviceLinks deviceLinks = getDeviceLinks(address);
+                if (address.endsWith(EVENTS_SUFFIX))
+                {
+                    hub.telemetryReceived(deviceLinks.device, new LocalMessage(deviceLinks.device.getDeviceId(), getBody(message),
+                            getApplicationProperties(message), toStringOrNull(message.getMessageId()), toStringOrNull(message.getCorrelationId())));
+                }
+                else if (address.endsWith(METHODS_SUFFIX))
+                {
+                    if (message.getCorrelationId() == null)
+                    {
+                        // The device client also sends its subscription on this link, there is nothing to answer.
+                        return;
+                    }
+
+                    Object status = (message.getApplicationProperties() == null) ? null
+                            : message.getApplicationProperties().getValue().get(METHOD_STATUS_KEY);
+                    byte[] body = getBody(message);
+                    deviceLinks.device.methodResponseReceived(toStringOrNull(message.getCorrelationId()),
+                            (status == null) ? 200 : Integer.parseInt(status.toString()),
+                            (body.length == 0) ? null : new String(body, StandardCharsets.UTF_8));
+                }
+                else if (address.endsWith(TWIN_SUFFIX))
+                {
+                    deviceLinks.onTwinRequest(message);
+                }
+            }
+        }
+
+        private AmqpDeviceLinks getDeviceLinks(String address)
+        {
+            String deviceId = getDeviceId(address);
+            AmqpDeviceLinks deviceLinks = this.devices.get(deviceId);
+            if (deviceLinks == null)
+            {
+                deviceLinks = new AmqpDeviceLinks(this, hub.getOrCreateDevice(deviceId));
+                this.devices.put(deviceId, deviceLinks);
+                deviceLinks.device.addConnection(deviceLinks);
+            }
+            return deviceLinks;
+        }
+
+        /**
+         * Queues a message on a sender and sends as much as the link credit allows. Shall be called with the lock held.
+         */
+        private boolean send(Sender sender, Message message)
+        {
+            Queue<Message> queue = (sender == null) ? null : this.pendingMessages.get(sender);
+            if (queue == null)
+            {
+                return false;
+            }
+
+            queue.add(message);
+            sendPending(sender);
+            return true;
+        }
+
+        private void sendPending(Sender sender)
+        {
+            Queue<Message> queue = this.pendingMessages.get(sender);
+            while (queue != null && !queue.isEmpty() && sender.getCredit() > 0)
+            {
+                byte[] encoded = encode(queue.poll());
+                sender.delivery(String.valueOf(this.nextTag++).getBytes(StandardCharsets.US_ASCII));
+                sender.send(encoded, 0, encoded.length);
+                if (sender.getRemoteSenderSettleMode() == SenderSettleMode.SETTLED)
+                {
+                    sender.current().settle();
+                }
+                sender.advance();
+            }
+        }
+    }
+
+    /**
+     * Links a device holds on a given AMQP connection.
+     */
+    private final class AmqpDeviceLinks implements DeviceConnection
+    {
+        private final AmqpConnectionHandler handler;
+        private final LocalDevice device;
+        private Sender cloudToDeviceSender;
+        private Sender methodSender;
+        private Sender twinSender;
+        private boolean desiredPropertiesSubscribed;
+
+        private AmqpDeviceLinks(AmqpConnectionHandler handler, LocalDevice device)
+        {
+            this.handler = handler;
+            this.device = device;
+        }
+
+        @Override
+        public boolean deliverCloudToDeviceMessage(LocalMessage message)
+        {
+            Message amqpMessage = Proton.message();
+            Properties properties = new Properties();
+            properties.setMessageId(message.getMessageId());
+            properties.setCorrelationId(message.getCorrelationId());
+            properties.setTo(DEVICES_PREFIX + this.device.getDeviceId() + DEVICEBOUND_SUFFIX);
+            amqpMessage.setProperties(properties);
+            amqpMessage.setApplicationProperties(new ApplicationProperties(new HashMap<String, Object>(message.getProperties())));
+            amqpMessage.setBody(new Data(new Binary(message.getBody())));
+
+            synchronized (this.handler.lock)
+            {
+                return this.handler.send(this.cloudToDeviceSender, amqpMessage) && flushQuietly();
+            }
+        }
+
+        @Override
+        public boolean deliverDesiredPropertiesPatch(String patch, int version)
+        {
+            Map<Symbol, Object> annotations = new HashMap<>();
+            annotations.put(RESOURCE_ANNOTATION, DESIRED_RESOURCE);
+            annotations.put(VERSION_ANNOTATION, (long) version);
+
+            Message amqpMessage = Proton.message();
+            amqpMessage.setProperties(new Properties());
+            amqpMessage.setMessageAnnotations(new MessageAnnotations(annotations));
+            amqpMessage.setBody(new Data(new Binary(patch.getBytes(StandardCharsets.UTF_8))));
+
+            synchronized (this.handler.lock)
+            {
+                return this.desiredPropertiesSubscribed && this.handler.send(this.twinSender, amqpMessage) && flushQuietly();
+            }
+        }
+
+        @Override
+        public boolean deliverMethodRequest(String methodName, String requestId, byte[] payload)
+        {
+            Message amqpMessage = Proton.message();
+            Properties properties = new Properties();
+            // The device client answers with a UUID correlation id, so the request id shall be one.
+            properties.setCorrelationId(UUID.fromString(requestId));
+            amqpMessage.setProperties(properties);
+            Map<String, Object> applicationProperties = new HashMap<>();
+            applicationProperties.put(METHOD_NAME_KEY, methodName);
+            amqpMessage.setApplicationProperties(new ApplicationProperties(applicationProperties));
+            amqpMessage.setBody(new Data(new Binary(payload)));
+
+            synchronized (this.handler.lock)
+            {
+                return this.handler.send(this.methodSender, amqpMessage) && flushQuietly();
+            }
+        }
+
+        /**
+         * Serves a twin request; called by the connection thread with the lock held.
+         */
+        private void onTwinRequest(Message request)
+        {
+            Map<Symbol, Object> requestAnnotations = (request.getMessageAnnotations() == null)
+                    ? Collections.<Symbol, Object>emptyMap()
+                    : request.getMessageAnnotations().getValue();
+            String operation = String.valueOf(requestAnnotations.get(OPERATION_ANNOTATION));
+            String resource = String.valueOf(requestAnnotations.get(RESOURCE_ANNOTATION));
+
+            Map<Symbol, Object> annotations = new HashMap<>();
+            byte[] body = new byte[0];
+            if (operation.equals("GET"))
+            {
+                annotations.put(STATUS_ANNOTATION, 200);
+                body = this.device.getDeviceTwinDocument().getBytes(StandardCharsets.UTF_8);
+            }
+            else if (operation.equals("PATCH") && resource.equals(REPORTED_RESOURCE))
+            {
+                int version = this.device.updateReportedProperties(new String(getBody(request), StandardCharsets.UTF_8));
+                annotations.put(STATUS_ANNOTATION, 204);
+                annotations.put(VERSION_ANNOTATION, (long) version);
+            }
+            else if (operation.equals("PUT"))
+            {
+                this.desiredPropertiesSubscribed = true;
+                annotations.put(STATUS_ANNOTATION, 200);
+            }
+            else if (operation.equals("DELETE"))
+            {
+                this.desiredPropertiesSubscribed = false;
+                annotations.put(STATUS_ANNOTATION, 200);
+            }
+            else
+            {
+                annotations.put(STATUS_ANNOTATION, 400);
+            }
+
+            Message response = Proton.message();
+            Properties properties = new Properties();
+            properties.setCorrelationId(request.getCorrelationId());
+            response.setProperties(properties);
+            response.setMessageAnnotations(new MessageAnnotations(annotations));
+            response.setBody(new Data(new Binary(body)));
+            this.handler.send(this.twinSender, response);
+        }
+
+        private void senderClosed(Sender sender)
+        {
+            if (sender == this.cloudToDeviceSender)
+            {
+                this.cloudToDeviceSender = null;
+            }
+            else if (sender == this.methodSender)
+            {
+                this.methodSender = null;
+            }
+            else if (sender == this.twinSender)
+            {
+                this.twinSender = null;
+                this.desiredPropertiesSubscribed = false;
+            }
+        }
+
+        private boolean flushQuietly()
+        {
+            try
+            {
+                this.handler.flush();
+                return true;
+            }
+            catch (IOException e)
+            {
+                return false;
+            }
+        }
+    }
+
+    private static String getDeviceId(String address)
+    {
+        // address is /devices/{deviceId}/...
+        String[] segments = address.split("/");
+        return (segments.length > 2) ? segments[2] : "";
+    }
+
+    private static byte[] getBody(Message message)
+    {
+        Object body = message.getBody();
+        if (body instanceof Data)
+        {
+            Binary binary = ((Data) body).getValue();
+            return Arrays.copyOfRange(binary.getArray(), binary.getArrayOffset(), binary.getArrayOffset() + binary.getLength());
+        }
+        if (body instanceof AmqpValue)
+        {
+            Object value = ((AmqpValue) body).getValue();
+            if (value instanceof Binary)
+            {
+                Binary binary = (Binary) value;
+                return Arrays.copyOfRange(binary.getArray(), binary.getArrayOffset(), binary.getArrayOffset() + binary.getLength());
+            }
+            if (value != null)
+            {
+                return value.toString().getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        return new byte[0];
+    }
+
+    private static Map<String, String> getApplicationProperties(Message message)
+    {
+        Map<String, String> properties = new HashMap<>();
+        if (message.getApplicationProperties() != null)
+        {
+            for (Object entry : message.getApplicationProperties().getValue().entrySet())
+            {
+                Map.Entry<?, ?> property = (Map.Entry<?, ?>) entry;
+                properties.put(String.valueOf(property.getKey()), String.valueOf(property.getValue()));
+            }
+        }
+        return properties;
+    }
+
+    private static String toStringOrNull(Object value)
+    {
+        return (value == null) ? null : value.toString();
+    }
+
+    private static byte[] encode(Message message)
+    {
+        byte[] buffer = new byte[1024];
+        while (true)
+        {
+            try
+            {
+                int length = message.encode(buffer, 0, buffer.length);
+                return Arrays.copyOf(buffer, length);
+            }
+            catch (BufferOverflowException e)
+            {
+                buffer = new byte[buffer.length * 2];
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.localhub;
+
+/**
+ * A live connection from a device to one of the local hub endpoints, used to push
+ * cloud to device traffic to it.
+ */
+interface DeviceConnection
+{
+    /**
+     * Delivers a cloud to device message if the device is listening for them on this connection.
+     *
+     * @param message the message to deliver.
+     * @return {@code true} if the message was handed to the device, {@code false} otherwise.
+     */
+    boolean deliverCloudToDeviceMessage(LocalMessage message);
+
+    /**
+     * Sends a desired properties patch if the device subscribed to them on this connection.
+     *
+     * @param patch the patch in json format, including the {@code $version}.
+     * @param version the new desired properties version.
+     * @return {@code true} if the patch was sent, {@code false} otherwise.
+     */
+    boolean deliverDesiredPropertiesPatch(String patch, int version);
+
+    /**
+     * Sends a direct method request if the device subscribed to them on this connection.
+     *
+     * @param methodName the name of the method to invoke.
+     * @param requestId the id the device shall use in its response.
+     * @param payload the method payload in json format.
+     * @return {@code true} if the request was sent, {@code false} otherwise.
+     */
+    boolean deliverMethodRequest(String methodName, String requestId, byte[] payload);
+}
@@ -0,0 +1,345 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.localhub;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.microsoft.azure.sdk.iot.deps.util.Base64;
+import com.sun.net.httpserver.*;
+
+import javax.net.ssl.SSLContext;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTPS endpoint of the local hub. It serves the device telemetry and cloud to device message
+ * resources, and the service twin and direct method resources.
+ */
+final class HttpsEndpoint implements Closeable
+{
+    private static final String DEVICES_PATH = "/devices/";
+    private static final String TWINS_PATH = "/twins/";
+    private static final String EVENTS_SEGMENT = "messages/events";
+    private static final String DEVICEBOUND_SEGMENT = "messages/devicebound";
+    private static final String METHODS_SEGMENT = "methods";
+    private static final String ABANDON_SEGMENT = "abandon";
+
+    private static final String BATCH_CONTENT_TYPE = "application/vnd.microsoft.iothub.json";
+    private static final String APP_PROPERTY_PREFIX = "iothub-app-";
+    private static final String MESSAGE_ID_HEADER = "iothub-messageid";
+    private static final String CORRELATION_ID_HEADER = "iothub-correlationid";
+    private static final String METHOD_OVERRIDE_HEADER = "X-HTTP-Method-Override";
+    private static final long DEFAULT_METHOD_TIMEOUT_SECONDS = 30;
+
+    private final LocalIotHub hub;
+    private final HttpsServer server;
+    private final ExecutorService executor;
+    private final JsonParser jsonParser = new JsonParser();
+
+    HttpsEndpoint(LocalIotHub hub, final SSLContext sslContext, InetSocketAddress address) throws IOException
+    {
+        this.hub = hub;
+        this.server = HttpsServer.create(address, 128);
+        this.server.setHttpsConfigurator(new HttpsConfigurator(sslContext));
+        this.executor = Executors.newCachedThreadPool();
+        this.server.setExecutor(this.executor);
+
+        this.server.createContext(DEVICES_PATH, new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                try
+                {
+                    handleDeviceRequest(exchange);
+                }
+                finally
+                {
+                    exchange.close();
+                }
+            }
+        });
+        this.server.createContext(TWINS_PATH, new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                try
+                {
+                    handleServiceRequest(exchange);
+                }
+                finally
+                {
+                    exchange.close();
+                }
+            }
+        });
+    }
+
+    void start()
+    {
+        this.server.start();
+    }
+
+    int getPort()
+    {
+        return this.server.getAddress().getPort();
+    }
+
+    @Override
+    public void close()
+    {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Serves {@code /devices/{deviceId}/messages/events} and {@code /devices/{deviceId}/messages/devicebound[/{lockToken}[/abandon]]}.
+     */
+    private void handleDeviceRequest(HttpExchange exchange) throws IOException
+    {
+        String[] segments = exchange.getRequestURI().getPath().substring(DEVICES_PATH.length()).split("/", 2);
+        if (segments.length < 2)
+        {
+            sendResponse(exchange, 404, null);
+            return;
+        }
+
+        LocalDevice device = this.hub.getOrCreateDevice(segments[0]);
+        String resource = segments[1];
+        String method = exchange.getRequestMethod();
+
+        if (resource.equals(EVENTS_SEGMENT) && method.equals("POST"))
+        {
+            receiveTelemetry(device, exchange);
+            sendResponse(exchange, 204, null);
+        }
+        else if (resource.equals(DEVICEBOUND_SEGMENT) && method.equals("GET"))
+        {
+            sendCloudToDeviceMessage(device, exchange);
+        }
+        else if (resource.startsWith(DEVICEBOUND_SEGMENT + "/"))
+        {
+            String[] lockSegments = resource.substring(DEVICEBOUND_SEGMENT.length() + 1).split("/");
+            String lockToken = lockSegments[0];
+            boolean found;
+            if (lockSegments.length > 1 && lockSegments[1].equals(ABANDON_SEGMENT) && method.equals("POST"))
+            {
+                found = device.abandonCloudToDeviceMessage(lockToken);
+            }
+            else if (method.equals("DELETE"))
+            {
+                // Reject and complete both remove the message, the local hub keeps no dead letter queue.
+                found = device.completeCloudToDeviceMessage(lockToken);
+            }
+            else
+            {
+                sendResponse(exchange, 405, null);
+                return;
+            }
+            sendResponse(exchange, found ? 204 : 412, null);
+        }
+        else
+        {
+            sendResponse(exchange, 404, null);
+        }
+    }
+
+    /**
+     * Serves {@code /twins/{deviceId}} and {@code /twins/{deviceId}/methods}.
+     */
+    private void handleServiceRequest(HttpExchange exchange) throws IOException
+    {
+        String[] segments = exchange.getRequestURI().getPath().substring(TWINS_PATH.length()).split("/", 2);
+        LocalDevice device = this.hub.getOrCreateDevice(segments[0]);
+        String resource = (segments.length > 1) ? segments[1] : "";
+
+        String method = exchange.getRequestMethod();
+        String methodOverride = exchange.getRequestHeaders().getFirst(METHOD_OVERRIDE_HEADER);
+        if (methodOverride != null)
+        {
+            method = methodOverride;
+        }
+
+        if (resource.isEmpty() && method.equals("GET"))
+        {
+            sendResponse(exchange, 200, device.getServiceTwinDocument().getBytes(StandardCharsets.UTF_8));
+        }
+        else if ((resource.isEmpty() || resource.startsWith("properties/desired")) && method.equals("PATCH"))
+        {
+            String patch = new String(readBody(exchange), StandardCharsets.UTF_8);
+            if (resource.isEmpty())
+            {
+                device.updateTwin(patch);
+            }
+            else
+            {
+                device.updateDesiredProperties(patch);
+            }
+            sendResponse(exchange, 200, device.getServiceTwinDocument().getBytes(StandardCharsets.UTF_8));
+        }
+        else if (resource.equals(METHODS_SEGMENT) && method.equals("POST"))
+        {
+            invokeMethod(device, exchange);
+        }
+        else
+        {
+            sendResponse(exchange, 404, null);
+        }
+    }
+
+    private void receiveTelemetry(LocalDevice device, HttpExchange exchange) throws IOException
+    {
+        byte[] body = readBody(exchange);
+        Headers headers = exchange.getRequestHeaders();
+        String contentType = headers.getFirst("Content-Type");
+
+        if (contentType != null && contentType.startsWith(BATCH_CONTENT_TYPE))
+        {
+            for (JsonElement element : this.jsonParser.parse(new String(body, StandardCharsets.UTF_8)).getAsJsonArray())
+            {
+                JsonObject batchedMessage = element.getAsJsonObject();
+                String batchedBody = batchedMessage.get("body").getAsString();
+                boolean base64Encoded = batchedMessage.has("base64Encoded") && batchedMessage.get("base64Encoded").getAsBoolean();
+                byte[] payload = base64Encoded
+                        ? Base64.decodeBase64Local(batchedBody.getBytes(StandardCharsets.US_ASCII))
+                        : batchedBody.getBytes(StandardCharsets.UTF_8);
+
+                Map<String, String> properties = new HashMap<>();
+                if (batchedMessage.has("properties"))
+                {
+                    for (Map.Entry<String, JsonElement> property : batchedMessage.getAsJsonObject("properties").entrySet())
+                    {
+                        putAppProperty(properties, property.getKey(), property.getValue().getAsString());
+                    }
+                }
+                this.hub.telemetryReceived(device, new LocalMessage(device.getDeviceId(), payload, properties, null, null));
+            }
+        }
+        else
+        {
+            Map<String, String> properties = new HashMap<>();
+            for (Map.Entry<String, List<String>> header : headers.entrySet())
+            {
+                putAppProperty(properties, header.getKey(), header.getValue().get(0));
+            }
+            this.hub.telemetryReceived(device, new LocalMessage(device.getDeviceId(), body, properties,
+                    headers.getFirst(MESSAGE_ID_HEADER), headers.getFirst(CORRELATION_ID_HEADER)));
+        }
+    }
+
+    private void sendCloudToDeviceMessage(LocalDevice device, HttpExchange exchange) throws IOException
+    {
+        String lockToken = device.lockCloudToDeviceMessage();
+        if (lockToken == null)
+        {
+            sendResponse(exchange, 204, null);
+            return;
+        }
+
+        LocalMessage message = device.getLockedMessage(lockToken);
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("ETag", "\"" + lockToken + "\"");
+        if (message.getMessageId() != null)
+        {
+            headers.set(MESSAGE_ID_HEADER, message.getMessageId());
+        }
+        if (message.getCorrelationId() != null)
+        {
+            headers.set(CORRELATION_ID_HEADER, message.getCorrelationId());
+        }
+        for (Map.Entry<String, String> property : message.getProperties().entrySet())
+        {
+            headers.set(APP_PROPERTY_PREFIX + property.getKey(), property.getValue());
+        }
+        sendResponse(exchange, 200, message.getBody());
+    }
+
+    private void invokeMethod(LocalDevice device, HttpExchange exchange) throws IOException
+    {
+        JsonObject request = this.jsonParser.parse(new String(readBody(exchange), StandardCharsets.UTF_8)).getAsJsonObject();
+        String methodName = request.get("methodName").getAsString();
+        long timeoutSeconds = request.has("responseTimeoutInSeconds")
+                ? request.get("responseTimeoutInSeconds").getAsLong()
+                : DEFAULT_METHOD_TIMEOUT_SECONDS;
+        byte[] payload = request.has("payload")
+                ? request.get("payload").toString().getBytes(StandardCharsets.UTF_8)
+                : new byte[0];
+
+        LocalMethodResponse methodResponse;
+        try
+        {
+            methodResponse = device.invokeMethod(methodName, payload, timeoutSeconds * 1000);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            sendResponse(exchange, 503, null);
+            return;
+        }
+
+        if (methodResponse.getStatus() == 404 || methodResponse.getStatus() == 504)
+        {
+            sendResponse(exchange, methodResponse.getStatus(), null);
+            return;
+        }
+
+        JsonObject response = new JsonObject();
+        response.addProperty("status", methodResponse.getStatus());
+        if (methodResponse.getPayload() != null)
+        {
+            response.add("payload", this.jsonParser.parse(methodResponse.getPayload()));
+        }
+        sendResponse(exchange, 200, response.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void putAppProperty(Map<String, String> properties, String name, String value)
+    {
+        if (name.toLowerCase().startsWith(APP_PROPERTY_PREFIX))
+        {
+            properties.put(name.substring(APP_PROPERTY_PREFIX.length()), value);
+        }
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException
+    {
+        InputStream inputStream = exchange.getRequestBody();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1)
+        {
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    private static void sendResponse(HttpExchange exchange, int status, byte[] body) throws IOException
+    {
+        if (body == null || body.length == 0)
+        {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        OutputStream outputStream = exchange.getResponseBody();
+        outputStream.write(body);
+        outputStream.close();
+    }
+}
@@ -0,0 +1,420 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.localhub;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * State the local hub keeps for one device: its twin, the cloud to device messages waiting for it,
+ * the direct methods in flight and the connections it currently holds.
+ */
+public final class LocalDevice
+{
+    private static final String VERSION_TAG = "$version";
+    private static final String METADATA_TAG = "$metadata";
+
+    private final String deviceId;
+    private final JsonParser jsonParser = new JsonParser();
+
+    private final Object twinLock = new Object();
+    private JsonObject desired = new JsonObject();
+    private JsonObject reported = new JsonObject();
+    private JsonObject tags = new JsonObject();
+    private int desiredVersion = 1;
+    private int reportedVersion = 1;
+    private int twinVersion = 1;
+
+    private final Queue<LocalMessage> cloudToDeviceMessages = new ConcurrentLinkedQueue<>();
+    private final Map<String, LocalMessage> lockedMessages = new ConcurrentHashMap<>();
+    private final AtomicLong lockTokens = new AtomicLong();
+
+    private final Map<String, PendingMethod> pendingMethods = new ConcurrentHashMap<>();
+
+    private final List<DeviceConnection> connections = new CopyOnWriteArrayList<>();
+    private final AtomicLong telemetryCount = new AtomicLong();
+
+    LocalDevice(String deviceId)
+    {
+        this.deviceId = deviceId;
+    }
+
+    /**
+     * Getter for the device id.
+     *
+     * @return the device id.
+     */
+    public String getDeviceId()
+    {
+        return this.deviceId;
+    }
+
+    /**
+     * Getter for the number of telemetry messages accepted from this device.
+     *
+     * @return the telemetry count.
+     */
+    public long getTelemetryCount()
+    {
+        return this.telemetryCount.get();
+    }
+
+    /**
+     * Getter for the number of connections the device currently holds with the local hub.
+     *
+     * @return the number of open connections.
+     */
+    public int getConnectionCount()
+    {
+        return this.connections.size();
+    }
+
+    /**
+     * Getter for the reported properties, as last patched by the device.
+     *
+     * @return the reported properties in json format.
+     */
+    public String getReportedProperties()
+    {
+        synchronized (this.twinLock)
+        {
+            return this.reported.toString();
+        }
+    }
+
+    /**
+     * Getter for the desired properties version.
+     *
+     * @return the desired properties version.
+     */
+    public int getDesiredVersion()
+    {
+        synchronized (this.twinLock)
+        {
+            return this.desiredVersion;
+        }
+    }
+
+    void addConnection(DeviceConnection connection)
+    {
+        this.connections.add(connection);
+    }
+
+    void removeConnection(DeviceConnection connection)
+    {
+        this.connections.remove(connection);
+    }
+
+    void telemetryReceived()
+    {
+        this.telemetryCount.incrementAndGet();
+    }
+
+    /**
+     * Builds the twin document in the format the device transports expect on a twin GET.
+     */
+    String getDeviceTwinDocument()
+    {
+        synchronized (this.twinLock)
+        {
+            JsonObject document = new JsonObject();
+            document.add("desired", withVersion(this.desired, this.desiredVersion));
+            document.add("reported", withVersion(this.reported, this.reportedVersion));
+            return document.toString();
+        }
+    }
+
+    /**
+     * Builds the twin document in the format the service twin API returns.
+     */
+    String getServiceTwinDocument()
+    {
+        synchronized (this.twinLock)
+        {
+            JsonObject properties = new JsonObject();
+            properties.add("desired", withVersion(this.desired, this.desiredVersion));
+            properties.add("reported", withVersion(this.reported, this.reportedVersion));
+
+            JsonObject document = new JsonObject();
+            document.addProperty("deviceId", this.deviceId);
+            document.addProperty("etag", getTwinEtag());
+            document.addProperty("version", this.twinVersion);
+            document.add("tags", copyOf(this.tags));
+            document.add("properties", properties);
+            return document.toString();
+        }
+    }
+
+    String getTwinEtag()
+    {
+        synchronized (this.twinLock)
+        {
+            return "\"" + this.twinVersion + "\"";
+        }
+    }
+
+    /**
+     * Applies a reported properties patch sent by the device.
+     *
+     * @return the new reported properties version.
+     */
+    int updateReportedProperties(String patch)
+    {
+        JsonObject patchObject = this.jsonParser.parse(patch).getAsJsonObject();
+        synchronized (this.twinLock)
+        {
+            mergePatch(this.reported, patchObject);
+            this.twinVersion++;
+            return ++this.reportedVersion;
+        }
+    }
+
+    /**
+     * Applies a service side twin patch, which may touch the tags and the desired properties,
+     * and pushes the desired part to the connections subscribed to it.
+     */
+    void updateTwin(String patch)
+    {
+        JsonObject patchObject = this.jsonParser.parse(patch).getAsJsonObject();
+
+        JsonObject desiredPatch = null;
+        if (patchObject.has("properties") && patchObject.get("properties").isJsonObject())
+        {
+            JsonElement desiredElement = patchObject.getAsJsonObject("properties").get("desired");
+            if (desiredElement != null && desiredElement.isJsonObject())
+            {
+                desiredPatch = desiredElement.getAsJsonObject();
+            }
+        }
+
+        if (patchObject.has("tags") && patchObject.get("tags").isJsonObject())
+        {
+            synchronized (this.twinLock)
+            {
+                mergePatch(this.tags, patchObject.getAsJsonObject("tags"));
+                this.twinVersion++;
+            }
+        }
+
+        if (desiredPatch != null)
+        {
+            updateDesiredProperties(desiredPatch);
+        }
+    }
+
+    /**
+     * Applies a desired properties patch and pushes it to the connections subscribed to it.
+     */
+    void updateDesiredProperties(String patch)
+    {
+        updateDesiredProperties(this.jsonParser.parse(patch).getAsJsonObject());
+    }
+
+    private void updateDesiredProperties(JsonObject patch)
+    {
+        String notification;
+        int version;
+        synchronized (this.twinLock)
+        {
+            mergePatch(this.desired, patch);
+            this.twinVersion++;
+            version = ++this.desiredVersion;
+            notification = withVersion(patch, version).toString();
+        }
+
+        for (DeviceConnection connection : this.connections)
+        {
+            connection.deliverDesiredPropertiesPatch(notification, version);
+        }
+    }
+
+    /**
+     * Hands a cloud to device message to the first connection listening for them, or queues it
+     * until the device connects or polls for it.
+     */
+    void sendCloudToDeviceMessage(LocalMessage message)
+    {
+        for (DeviceConnection connection : this.connections)
+        {
+            if (connection.deliverCloudToDeviceMessage(message))
+            {
+                return;
+            }
+        }
+
+        this.cloudToDeviceMessages.add(message);
+    }
+
+    /**
+     * Delivers the queued cloud to device messages to a connection that just started listening for them.
+     */
+    void drainCloudToDeviceMessages(DeviceConnection connection)
+    {
+        LocalMessage message;
+        while ((message = this.cloudToDeviceMessages.poll()) != null)
+        {
+            if (!connection.deliverCloudToDeviceMessage(message))
+            {
+                this.cloudToDeviceMessages.add(message);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Takes the next queued cloud to device message and locks it until it is completed or abandoned.
+     *
+     * @return the lock token, or {@code null} if no message is waiting.
+     */
+    String lockCloudToDeviceMessage()
+    {
+        LocalMessage message = this.cloudToDeviceMessages.poll();
+        if (message == null)
+        {
+            return null;
+        }
+
+        String lockToken = String.valueOf(this.lockTokens.incrementAndGet());
+        this.lockedMessages.put(lockToken, message);
+        return lockToken;
+    }
+
+    LocalMessage getLockedMessage(String lockToken)
+    {
+        return this.lockedMessages.get(lockToken);
+    }
+
+    boolean completeCloudToDeviceMessage(String lockToken)
+    {
+        return this.lockedMessages.remove(lockToken) != null;
+    }
+
+    boolean abandonCloudToDeviceMessage(String lockToken)
+    {
+        LocalMessage message = this.lockedMessages.remove(lockToken);
+        if (message == null)
+        {
+            return false;
+        }
+
+        this.cloudToDeviceMessages.add(message);
+        return true;
+    }
+
+    /**
+     * Sends a direct method request to the device and waits for its response.
+     *
+     * @return the device response, a 404 if the device is not listening for methods,
+     * or a 504 if it did not answer in time.
+     */
+    LocalMethodResponse invokeMethod(String methodName, byte[] payload, long timeoutMillis) throws InterruptedException
+    {
+        // A UUID, as the AMQP device client parses the request id it answers with as one.
+        String requestId = UUID.randomUUID().toString();
+        PendingMethod pendingMethod = new PendingMethod();
+        this.pendingMethods.put(requestId, pendingMethod);
+
+        try
+        {
+            boolean sent = false;
+            for (DeviceConnection connection : this.connections)
+            {
+                if (connection.deliverMethodRequest(methodName, requestId, payload))
+                {
+                    sent = true;
+                    break;
+                }
+            }
+
+            if (!sent)
+            {
+                return new LocalMethodResponse(404, null);
+            }
+
+            if (!pendingMethod.latch.await(timeoutMillis, TimeUnit.MILLISECONDS))
+            {
+                return new LocalMethodResponse(504, null);
+            }
+
+            return pendingMethod.response;
+        }
+        finally
+        {
+            this.pendingMethods.remove(requestId);
+        }
+    }
+
+    /**
+     * Completes a direct method invocation with the response sent by the device.
+     */
+    void methodResponseReceived(String requestId, int status, String payload)
+    {
+        PendingMethod pendingMethod = (requestId == null) ? null : this.pendingMethods.get(requestId);
+        if (pendingMethod != null)
+        {
+            pendingMethod.response = new LocalMethodResponse(status, payload);
+            pendingMethod.latch.countDown();
+        }
+    }
+
+    private static JsonObject withVersion(JsonObject properties, int version)
+    {
+        JsonObject copy = copyOf(properties).getAsJsonObject();
+        copy.addProperty(VERSION_TAG, version);
+        return copy;
+    }
+
+    /**
+     * Merges a json patch into the target, removing the properties set to null in the patch.
+     */
+    private static void mergePatch(JsonObject target, JsonObject patch)
+    {
+        for (Map.Entry<String, JsonElement> entry : patch.entrySet())
+        {
+            String key = entry.getKey();
+            JsonElement value = entry.getValue();
+            if (key.equals(VERSION_TAG) || key.equals(METADATA_TAG))
+            {
+                continue;
+            }
+
+            if (value.isJsonNull())
+            {
+                target.remove(key);
+            }
+            else if (value.isJsonObject() && target.has(key) && target.get(key).isJsonObject())
+            {
+                mergePatch(target.getAsJsonObject(key), value.getAsJsonObject());
+            }
+            else
+            {
+                target.add(key, copyOf(value));
+            }
+        }
+    }
+
+    /**
+     * Copies a json tree; {@code JsonElement.deepCopy} is not public in the gson version used by the SDK.
+     */
+    private static JsonElement copyOf(JsonElement element)
+    {
+        return new JsonParser().parse(element.toString());
+    }
+
+    private static final class PendingMethod
+    {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile LocalMethodResponse response;
+    }
+}
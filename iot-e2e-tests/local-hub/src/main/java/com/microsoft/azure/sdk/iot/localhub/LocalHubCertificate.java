@@ -0,0 +1,160 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.localhub;
+
+import com.microsoft.azure.sdk.iot.deps.util.Base64;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.spec.PKCS8EncodedKeySpec;
+
+/**
+ * Self signed certificate presented by the local hub on every endpoint. It is issued for
+ * {@code 127.0.0.1} and {@code localhost}, so clients that check the host name accept it once they trust it.
+ */
+final class LocalHubCertificate
+{
+    private static final String CERTIFICATE_RESOURCE = "local-hub-cert.pem";
+    private static final String PRIVATE_KEY_RESOURCE = "local-hub-key.pem";
+    private static final String KEY_ALIAS = "local-hub";
+    private static final char[] KEY_PASSWORD = "local-hub".toCharArray();
+    private static final String TLS_PROTOCOL = "TLSv1.2";
+
+    private final String certificatePem;
+    private final Certificate certificate;
+    private final PrivateKey privateKey;
+
+    LocalHubCertificate() throws IOException
+    {
+        this.certificatePem = readResource(CERTIFICATE_RESOURCE);
+
+        try
+        {
+            CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
+            this.certificate = certificateFactory.generateCertificate(new ByteArrayInputStream(this.certificatePem.getBytes(StandardCharsets.US_ASCII)));
+
+            byte[] encodedKey = decodePem(readResource(PRIVATE_KEY_RESOURCE));
+            this.privateKey = KeyFactory.getInstance("RSA").generatePrivate(new PKCS8EncodedKeySpec(encodedKey));
+        }
+        catch (GeneralSecurityException e)
+        {
+            throw new IOException("Could not load the local hub certificate", e);
+        }
+    }
+
+    /**
+     * Getter for the certificate in PEM format, as expected by {@code setIotHubTrustedCert}.
+     *
+     * @return the PEM encoded certificate.
+     */
+    String getCertificatePem()
+    {
+        return this.certificatePem;
+    }
+
+    /**
+     * Creates the context used by the local hub endpoints to accept TLS connections.
+     *
+     * @return a server side {@link SSLContext} holding the local hub key.
+     * @throws IOException if the context could not be created.
+     */
+    SSLContext createServerContext() throws IOException
+    {
+        try
+        {
+            KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+            keyStore.load(null);
+            keyStore.setKeyEntry(KEY_ALIAS, this.privateKey, KEY_PASSWORD, new Certificate[] { this.certificate });
+
+            KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagerFactory.init(keyStore, KEY_PASSWORD);
+
+            SSLContext sslContext = SSLContext.getInstance(TLS_PROTOCOL);
+            sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+            return sslContext;
+        }
+        catch (GeneralSecurityException e)
+        {
+            throw new IOException("Could not create the local hub server context", e);
+        }
+    }
+
+    /**
+     * Creates a client context that trusts only the local hub certificate.
+     *
+     * @return a client side {@link SSLContext}.
+     * @throws IOException if the context could not be created.
+     */
+    SSLContext createClientContext() throws IOException
+    {
+        try
+        {
+            KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+            trustStore.load(null);
+            trustStore.setCertificateEntry(KEY_ALIAS, this.certificate);
+
+            TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trustManagerFactory.init(trustStore);
+
+            SSLContext sslContext = SSLContext.getInstance(TLS_PROTOCOL);
+            sslContext.init(null, trustManagerFactory.getTrustManagers(), null);
+            return sslContext;
+        }
+        catch (GeneralSecurityException e)
+        {
+            throw new IOException("Could not create the local hub client context", e);
+        }
+    }
+
+    private static byte[] decodePem(String pem)
+    {
+        StringBuilder base64 = new StringBuilder();
+        for (String line : pem.split("\n"))
+        {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("-----"))
+            {
+                base64.append(line);
+            }
+        }
+
+        return Base64.decodeBase64Local(base64.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String readResource(String name) throws IOException
+    {
+        InputStream inputStream = LocalHubCertificate.class.getResourceAsStream(name);
+        if (inputStream == null)
+        {
+            throw new FileNotFoundException("Missing local hub resource " + name);
+        }
+
+        try
+        {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1)
+            {
+                content.write(buffer, 0, read);
+            }
+            return new String(content.toByteArray(), StandardCharsets.US_ASCII);
+        }
+        finally
+        {
+            inputStream.close();
+        }
+    }
+}
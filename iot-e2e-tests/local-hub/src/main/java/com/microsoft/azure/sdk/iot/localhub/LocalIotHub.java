@@ -0,0 +1,373 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.localhub;
+
+import javax.net.ssl.HttpsURLConnection;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded stand-in for an IoT Hub, listening on the loopback interface. It speaks enough MQTT, AMQP
+ * and HTTPS for the device and service clients to send telemetry, receive cloud to device messages,
+ * use the device twin and invoke direct methods, so throughput and latency can be measured without
+ * a hub.
+ *
+ * <p>The default constructor binds free ports, so the local hub runs without elevated rights and next to
+ * other instances. MQTT and AMQPS devices reach it through
+ * {@code client.getConfig().setIotHubPort(...)} with {@link #getMqttPort()} or {@link #getAmqpsPort()}.
+ * The HTTPS device transport and the service clients always connect to 443, so using them needs a local
+ * hub created with {@link #STANDARD_HTTPS_PORT}, which may need elevated rights. The local hub presents a
+ * self signed certificate: devices trust it through
+ * {@code client.getConfig().getSasTokenAuthentication().setIotHubTrustedCert(...)} with {@link #getTrustedCertificate()}
+ * on any protocol, or {@code DeviceClient.setOption("SetCertificatePath", ...)} with {@link #getTrustedCertificatePath()}
+ * on AMQPS, and the service clients through {@link #trustForServiceClients()}.
+ * Any device id and any SAS token are accepted, devices are created on first use.
+ *
+ * <p>The WebSocket variants of MQTT and AMQP, file upload, jobs, query and the registry are not served.
+ */
+public final class LocalIotHub implements Closeable
+{
+    public static final int STANDARD_MQTT_PORT = 8883;
+    public static final int STANDARD_AMQPS_PORT = 5671;
+    public static final int STANDARD_HTTPS_PORT = 443;
+
+    private static final String HOST_NAME = "127.0.0.1";
+    private static final String SHARED_ACCESS_KEY_NAME = "iothubowner";
+    private static final String SHARED_ACCESS_KEY = "bG9jYWwtaHViLXNoYXJlZC1hY2Nlc3Mta2V5LW5vdC1hLXNlY3JldA==";
+
+    private final int mqttPort;
+    private final int amqpsPort;
+    private final int httpsPort;
+    private final LocalHubCertificate certificate;
+    private final ConcurrentMap<String, LocalDevice> devices = new ConcurrentHashMap<>();
+    private final AtomicLong telemetryCount = new AtomicLong();
+    private volatile TelemetryListener telemetryListener;
+
+    private MqttEndpoint mqttEndpoint;
+    private AmqpEndpoint amqpEndpoint;
+    private HttpsEndpoint httpsEndpoint;
+    private File trustedCertificateFile;
+
+    /**
+     * Creates a local hub listening on free ports.
+     *
+     * @throws IOException if the local hub certificate could not be loaded.
+     */
+    public LocalIotHub() throws IOException
+    {
+        this(0, 0, 0);
+    }
+
+    /**
+     * Creates a local hub listening on the given ports. A port of 0 picks a free port,
+     * a negative port disables the endpoint.
+     *
+     * @param mqttPort the MQTT port.
+     * @param amqpsPort the AMQPS port.
+     * @param httpsPort the HTTPS port.
+     * @throws IOException if the local hub certificate could not be loaded.
+     */
+    public LocalIotHub(int mqttPort, int amqpsPort, int httpsPort) throws IOException
+    {
+        this.mqttPort = mqttPort;
+        this.amqpsPort = amqpsPort;
+        this.httpsPort = httpsPort;
+        this.certificate = new LocalHubCertificate();
+    }
+
+    /**
+     * Opens the endpoints.
+     *
+     * @throws IOException if an endpoint could not be bound.
+     */
+    public synchronized void start() throws IOException
+    {
+        if (this.trustedCertificateFile != null)
+        {
+            throw new IllegalStateException("The local hub is already started");
+        }
+
+        this.trustedCertificateFile = File.createTempFile("local-hub-", ".pem");
+        this.trustedCertificateFile.deleteOnExit();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(this.trustedCertificateFile), StandardCharsets.US_ASCII))
+        {
+            writer.write(this.certificate.getCertificatePem());
+        }
+
+        InetAddress address = InetAddress.getByName(HOST_NAME);
+        try
+        {
+            if (this.mqttPort >= 0)
+            {
+                this.mqttEndpoint = new MqttEndpoint(this, this.certificate.createServerContext(), address, this.mqttPort);
+                this.mqttEndpoint.start();
+            }
+            if (this.amqpsPort >= 0)
+            {
+                this.amqpEndpoint = new AmqpEndpoint(this, this.certificate.createServerContext(), address, this.amqpsPort);
+                this.amqpEndpoint.start();
+            }
+            if (this.httpsPort >= 0)
+            {
+                this.httpsEndpoint = new HttpsEndpoint(this, this.certificate.createServerContext(), new InetSocketAddress(address, this.httpsPort));
+                this.httpsEndpoint.start();
+            }
+        }
+        catch (IOException e)
+        {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the endpoints and every open connection.
+     */
+    @Override
+    public synchronized void close()
+    {
+        if (this.mqttEndpoint != null)
+        {
+            closeQuietly(this.mqttEndpoint);
+            this.mqttEndpoint = null;
+        }
+        if (this.amqpEndpoint != null)
+        {
+            closeQuietly(this.amqpEndpoint);
+            this.amqpEndpoint = null;
+        }
+        if (this.httpsEndpoint != null)
+        {
+            this.httpsEndpoint.close();
+            this.httpsEndpoint = null;
+        }
+        if (this.trustedCertificateFile != null)
+        {
+            this.trustedCertificateFile.delete();
+            this.trustedCertificateFile = null;
+        }
+    }
+
+    /**
+     * Getter for the host name the clients shall connect to.
+     *
+     * @return the local hub host name.
+     */
+    public String getHostName()
+    {
+        return HOST_NAME;
+    }
+
+    /**
+     * Getter for the port the MQTT endpoint is bound to.
+     *
+     * @return the MQTT port, or -1 if the endpoint is not open.
+     */
+    public synchronized int getMqttPort()
+    {
+        return (this.mqttEndpoint == null) ? -1 : this.mqttEndpoint.getPort();
+    }
+
+    /**
+     * Getter for the port the AMQPS endpoint is bound to.
+     *
+     * @return the AMQPS port, or -1 if the endpoint is not open.
+     */
+    public synchronized int getAmqpsPort()
+    {
+        return (this.amqpEndpoint == null) ? -1 : this.amqpEndpoint.getPort();
+    }
+
+    /**
+     * Getter for the port the HTTPS endpoint is bound to.
+     *
+     * @return the HTTPS port, or -1 if the endpoint is not open.
+     */
+    public synchronized int getHttpsPort()
+    {
+        return (this.httpsEndpoint == null) ? -1 : this.httpsEndpoint.getPort();
+    }
+
+    /**
+     * Builds a device connection string for the local hub.
+     *
+     * @param deviceId the device id.
+     * @return the device connection string.
+     */
+    public String getDeviceConnectionString(String deviceId)
+    {
+        if (deviceId == null || deviceId.isEmpty())
+        {
+            throw new IllegalArgumentException("deviceId cannot be null or empty");
+        }
+
+        return "HostName=" + HOST_NAME + ";DeviceId=" + deviceId + ";SharedAccessKey=" + SHARED_ACCESS_KEY;
+    }
+
+    /**
+     * Builds a service connection string for the local hub.
+     *
+     * @return the service connection string.
+     */
+    public String getServiceConnectionString()
+    {
+        return "HostName=" + HOST_NAME + ";SharedAccessKeyName=" + SHARED_ACCESS_KEY_NAME + ";SharedAccessKey=" + SHARED_ACCESS_KEY;
+    }
+
+    /**
+     * Getter for the local hub certificate, in the PEM format {@code setIotHubTrustedCert} expects.
+     *
+     * @return the PEM encoded certificate.
+     */
+    public String getTrustedCertificate()
+    {
+        return this.certificate.getCertificatePem();
+    }
+
+    /**
+     * Getter for the path of a file holding the local hub certificate, to be used with
+     * {@code DeviceClient.setOption("SetCertificatePath", path)}. The file exists while the local hub is started.
+     *
+     * @return the certificate file path.
+     */
+    public synchronized String getTrustedCertificatePath()
+    {
+        if (this.trustedCertificateFile == null)
+        {
+            throw new IllegalStateException("The local hub is not started");
+        }
+
+        return this.trustedCertificateFile.getAbsolutePath();
+    }
+
+    /**
+     * Makes the service clients trust the local hub. The service clients have no trusted certificate option,
+     * so this replaces the default socket factory of {@link HttpsURLConnection} for the whole JVM; the service
+     * AMQP connections do not verify the certificate.
+     *
+     * @throws IOException if the trust context could not be created.
+     */
+    public void trustForServiceClients() throws IOException
+    {
+        HttpsURLConnection.setDefaultSSLSocketFactory(this.certificate.createClientContext().getSocketFactory());
+    }
+
+    /**
+     * Getter for the state of a device, creating it if the device never connected.
+     *
+     * @param deviceId the device id.
+     * @return the device state.
+     */
+    public LocalDevice getDevice(String deviceId)
+    {
+        return getOrCreateDevice(deviceId);
+    }
+
+    /**
+     * Getter for the number of telemetry messages accepted from all devices.
+     *
+     * @return the telemetry count.
+     */
+    public long getTelemetryCount()
+    {
+        return this.telemetryCount.get();
+    }
+
+    /**
+     * Setter for the listener notified of every telemetry message.
+     *
+     * @param telemetryListener the listener, or {@code null} to remove it.
+     */
+    public void setTelemetryListener(TelemetryListener telemetryListener)
+    {
+        this.telemetryListener = telemetryListener;
+    }
+
+    /**
+     * Sends a cloud to device message. It is delivered right away if the device is listening for them,
+     * or queued until it does.
+     *
+     * @param deviceId the target device.
+     * @param body the message payload.
+     * @param properties the application properties, may be {@code null}.
+     */
+    public void sendCloudToDeviceMessage(String deviceId, byte[] body, Map<String, String> properties)
+    {
+        getOrCreateDevice(deviceId).sendCloudToDeviceMessage(new LocalMessage(deviceId, body, properties, null, null));
+    }
+
+    /**
+     * Patches the desired properties of a device and notifies it if it subscribed to them.
+     *
+     * @param deviceId the target device.
+     * @param patch the desired properties patch in json format.
+     */
+    public void updateDesiredProperties(String deviceId, String patch)
+    {
+        getOrCreateDevice(deviceId).updateDesiredProperties(patch);
+    }
+
+    /**
+     * Invokes a direct method on a device and waits for its response.
+     *
+     * @param deviceId the target device.
+     * @param methodName the method name.
+     * @param payload the method payload in json format, may be {@code null}.
+     * @param timeoutMillis how long to wait for the device response.
+     * @return the device response; the status is 404 if the device does not listen for methods and 504 on timeout.
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    public LocalMethodResponse invokeMethod(String deviceId, String methodName, String payload, long timeoutMillis) throws InterruptedException
+    {
+        byte[] encodedPayload = (payload == null) ? "null".getBytes(StandardCharsets.UTF_8) : payload.getBytes(StandardCharsets.UTF_8);
+        return getOrCreateDevice(deviceId).invokeMethod(methodName, encodedPayload, timeoutMillis);
+    }
+
+    LocalDevice getOrCreateDevice(String deviceId)
+    {
+        LocalDevice device = this.devices.get(deviceId);
+        if (device == null)
+        {
+            LocalDevice newDevice = new LocalDevice(deviceId);
+            device = this.devices.putIfAbsent(deviceId, newDevice);
+            if (device == null)
+            {
+                device = newDevice;
+            }
+        }
+        return device;
+    }
+
+    void telemetryReceived(LocalDevice device, LocalMessage message)
+    {
+        device.telemetryReceived();
+        this.telemetryCount.incrementAndGet();
+
+        TelemetryListener listener = this.telemetryListener;
+        if (listener != null)
+        {
+            listener.onTelemetry(message);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable)
+    {
+        try
+        {
+            closeable.close();
+        }
+        catch (IOException e)
+        {
+            // Closing anyway.
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.localhub;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A message that went through the local hub, either telemetry received from a device
+ * or a cloud to device message waiting to be delivered.
+ */
+public final class LocalMessage
+{
+    private final String deviceId;
+    private final byte[] body;
+    private final Map<String, String> properties;
+    private final String messageId;
+    private final String correlationId;
+    private final long receivedNanoTime;
+
+    LocalMessage(String deviceId, byte[] body, Map<String, String> properties, String messageId, String correlationId)
+    {
+        this.deviceId = deviceId;
+        this.body = (body == null) ? new byte[0] : body;
+        this.properties = (properties == null) ? Collections.<String, String>emptyMap() : Collections.unmodifiableMap(new HashMap<>(properties));
+        this.messageId = messageId;
+        this.correlationId = correlationId;
+        this.receivedNanoTime = System.nanoTime();
+    }
+
+    /**
+     * Getter for the device that sent, or shall receive, the message.
+     *
+     * @return the device id.
+     */
+    public String getDeviceId()
+    {
+        return this.deviceId;
+    }
+
+    /**
+     * Getter for the message payload.
+     *
+     * @return the payload, never {@code null}.
+     */
+    public byte[] getBody()
+    {
+        return this.body;
+    }
+
+    /**
+     * Getter for the application properties of the message.
+     *
+     * @return an unmodifiable map with the application properties.
+     */
+    public Map<String, String> getProperties()
+    {
+        return this.properties;
+    }
+
+    /**
+     * Getter for the message id.
+     *
+     * @return the message id, or {@code null} if none was set.
+     */
+    public String getMessageId()
+    {
+        return this.messageId;
+    }
+
+    /**
+     * Getter for the correlation id.
+     *
+     * @return the correlation id, or {@code null} if none was set.
+     */
+    public String getCorrelationId()
+    {
+        return this.correlationId;
+    }
+
+    /**
+     * Getter for the moment the local hub accepted the message, as given by {@link System#nanoTime()}.
+     *
+     * @return the time the message was accepted, in nanoseconds.
+     */
+    public long getReceivedNanoTime()
+    {
+        return this.receivedNanoTime;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.localhub;
+
+/**
+ * Response of a device to a direct method invoked through the local hub.
+ */
+public final class LocalMethodResponse
+{
+    private final int status;
+    private final String payload;
+
+    LocalMethodResponse(int status, String payload)
+    {
+        this.status = status;
+        this.payload = payload;
+    }
+
+    /**
+     * Getter for the status returned by the device.
+     *
+     * @return the method status.
+     */
+    public int getStatus()
+    {
+        return this.status;
+    }
+
+    /**
+     * Getter for the payload returned by the device.
+     *
+     * @return the payload in json format, or {@code null} if the device did not return one.
+     */
+    public String getPayload()
+    {
+        return this.payload;
+    }
+}
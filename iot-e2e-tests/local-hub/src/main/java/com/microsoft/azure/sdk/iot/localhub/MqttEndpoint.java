@@ -0,0 +1,434 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.localhub;
+
+import javax.net.ssl.SSLContext;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MQTT 3.1.1 endpoint of the local hub. It implements the subset of the protocol the device client uses:
+ * CONNECT, PUBLISH with QoS 0 and 1, SUBSCRIBE, UNSUBSCRIBE, PINGREQ and DISCONNECT, and routes
+ * the IoT Hub topics for telemetry, cloud to device messages, twin and direct methods.
+ */
+final class MqttEndpoint extends TlsSocketEndpoint
+{
+    private static final int CONNECT = 1;
+    private static final int CONNACK = 2;
+    private static final int PUBLISH = 3;
+    private static final int PUBACK = 4;
+    private static final int SUBSCRIBE = 8;
+    private static final int SUBACK = 9;
+    private static final int UNSUBSCRIBE = 10;
+    private static final int UNSUBACK = 11;
+    private static final int PINGREQ = 12;
+    private static final int PINGRESP = 13;
+    private static final int DISCONNECT = 14;
+
+    private static final int MAX_REMAINING_LENGTH = 256 * 1024 + 1024;
+
+    private static final String DEVICES_PREFIX = "devices/";
+    private static final String EVENTS_SEGMENT = "/messages/events/";
+    private static final String DEVICEBOUND_SEGMENT = "/messages/devicebound";
+    private static final String TWIN_GET = "$iothub/twin/GET/";
+    private static final String TWIN_PATCH_REPORTED = "$iothub/twin/PATCH/properties/reported/";
+    private static final String TWIN_PATCH_DESIRED = "$iothub/twin/PATCH/properties/desired";
+    private static final String TWIN_RESPONSE = "$iothub/twin/res/";
+    private static final String METHOD_POST = "$iothub/methods/POST";
+    private static final String METHOD_RESPONSE = "$iothub/methods/res/";
+    private static final String REQUEST_ID = "$rid=";
+    private static final String MESSAGE_ID = "$.mid";
+    private static final String CORRELATION_ID = "$.cid";
+
+    private final LocalIotHub hub;
+
+    MqttEndpoint(LocalIotHub hub, SSLContext sslContext, InetAddress address, int port) throws IOException
+    {
+        super("local-hub-mqtt", sslContext, address, port);
+        this.hub = hub;
+    }
+
+    @Override
+    void serve(Socket socket) throws IOException
+    {
+        MqttDeviceSession session = new MqttDeviceSession(
+                new DataInputStream(new BufferedInputStream(socket.getInputStream())),
+                new BufferedOutputStream(socket.getOutputStream()));
+        try
+        {
+            session.run();
+        }
+        finally
+        {
+            session.detach();
+        }
+    }
+
+    /**
+     * One device connected over MQTT.
+     */
+    private final class MqttDeviceSession implements DeviceConnection
+    {
+        private final DataInputStream input;
+        private final OutputStream output;
+        private final Set<String> subscriptions = Collections.synchronizedSet(new HashSet<String>());
+        private final AtomicInteger packetIds = new AtomicInteger();
+        private LocalDevice device;
+        private String deviceId;
+
+        private MqttDeviceSession(DataInputStream input, OutputStream output)
+        {
+            this.input = input;
+            this.output = output;
+        }
+
+        private void run() throws IOException
+        {
+            while (true)
+            {
+                int header = this.input.read();
+                if (header < 0)
+                {
+                    return;
+                }
+
+                int packetType = (header >> 4) & 0x0F;
+                byte[] packet = new byte[readRemainingLength()];
+                this.input.readFully(packet);
+
+                if (this.device == null && packetType != CONNECT)
+                {
+                    throw new IOException("First MQTT packet shall be CONNECT");
+                }
+
+                switch (packetType)
+                {
+                    case CONNECT:
+                        onConnect(packet);
+                        break;
+                    case PUBLISH:
+                        onPublish(header, packet);
+                        break;
+                    case PUBACK:
+                        break;
+                    case SUBSCRIBE:
+                        onSubscribe(packet);
+                        break;
+                    case UNSUBSCRIBE:
+                        onUnsubscribe(packet);
+                        break;
+                    case PINGREQ:
+                        write(new byte[] { (byte) (PINGRESP << 4), 0 });
+                        break;
+                    case DISCONNECT:
+                        return;
+                    default:
+                        throw new IOException("Unsupported MQTT packet type " + packetType);
+                }
+            }
+        }
+
+        private void detach()
+        {
+            if (this.device != null)
+            {
+                this.device.removeConnection(this);
+            }
+        }
+
+        private void onConnect(byte[] packet) throws IOException
+        {
+            DataInputStream reader = new DataInputStream(new ByteArrayInputStream(packet));
+            reader.readUTF();       // protocol name
+            reader.readUnsignedByte(); // protocol level
+            reader.readUnsignedByte(); // connect flags
+            reader.readUnsignedShort(); // keep alive
+
+            this.deviceId = reader.readUTF();
+            this.device = hub.getOrCreateDevice(this.deviceId);
+            this.device.addConnection(this);
+
+            write(new byte[] { (byte) (CONNACK << 4), 2, 0, 0 });
+        }
+
+        private void onPublish(int header, byte[] packet) throws IOException
+        {
+            int qos = (header >> 1) & 0x03;
+            DataInputStream reader = new DataInputStream(new ByteArrayInputStream(packet));
+            String topic = reader.readUTF();
+            int packetId = (qos > 0) ? reader.readUnsignedShort() : 0;
+            byte[] payload = Arrays.copyOfRange(packet, packet.length - reader.available(), packet.length);
+
+            String eventsPrefix = DEVICES_PREFIX + this.deviceId + EVENTS_SEGMENT;
+            if (topic.startsWith(eventsPrefix))
+            {
+                Map<String, String> properties = parseProperties(topic.substring(eventsPrefix.length()));
+                String messageId = properties.remove(MESSAGE_ID);
+                String correlationId = properties.remove(CORRELATION_ID);
+                hub.telemetryReceived(this.device, new LocalMessage(this.deviceId, payload, properties, messageId, correlationId));
+            }
+            else if (topic.startsWith(TWIN_GET))
+            {
+                publish(TWIN_RESPONSE + "200/?" + REQUEST_ID + getRequestId(topic),
+                        this.device.getDeviceTwinDocument().getBytes(StandardCharsets.UTF_8), 0);
+            }
+            else if (topic.startsWith(TWIN_PATCH_REPORTED))
+            {
+                int version = this.device.updateReportedProperties(new String(payload, StandardCharsets.UTF_8));
+                publish(TWIN_RESPONSE + "204/?" + REQUEST_ID + getRequestId(topic) + "&$version=" + version, new byte[0], 0);
+            }
+            else if (topic.startsWith(METHOD_RESPONSE))
+            {
+                String[] tokens = topic.split("/");
+                String methodPayload = (payload.length == 0) ? null : new String(payload, StandardCharsets.UTF_8);
+                this.device.methodResponseReceived(getRequestId(topic), Integer.parseInt(tokens[3]), methodPayload);
+            }
+
+            if (qos > 0)
+            {
+                write(new byte[] { (byte) (PUBACK << 4), 2, (byte) (packetId >> 8), (byte) packetId });
+            }
+        }
+
+        private void onSubscribe(byte[] packet) throws IOException
+        {
+            DataInputStream reader = new DataInputStream(new ByteArrayInputStream(packet));
+            int packetId = reader.readUnsignedShort();
+
+            ByteArrayOutputStream grantedQos = new ByteArrayOutputStream();
+            boolean cloudToDeviceSubscribed = false;
+            while (reader.available() > 0)
+            {
+                String topicFilter = reader.readUTF();
+                int requestedQos = reader.readUnsignedByte();
+                this.subscriptions.add(topicFilter);
+                grantedQos.write(Math.min(requestedQos, 1));
+                cloudToDeviceSubscribed |= topicFilter.startsWith(DEVICES_PREFIX + this.deviceId + DEVICEBOUND_SEGMENT);
+            }
+
+            ByteArrayOutputStream suback = new ByteArrayOutputStream();
+            suback.write(SUBACK << 4);
+            writeRemainingLength(suback, 2 + grantedQos.size());
+            suback.write(packetId >> 8);
+            suback.write(packetId);
+            grantedQos.writeTo(suback);
+            write(suback.toByteArray());
+
+            if (cloudToDeviceSubscribed)
+            {
+                this.device.drainCloudToDeviceMessages(this);
+            }
+        }
+
+        private void onUnsubscribe(byte[] packet) throws IOException
+        {
+            DataInputStream reader = new DataInputStream(new ByteArrayInputStream(packet));
+            int packetId = reader.readUnsignedShort();
+            while (reader.available() > 0)
+            {
+                this.subscriptions.remove(reader.readUTF());
+            }
+
+            write(new byte[] { (byte) (UNSUBACK << 4), 2, (byte) (packetId >> 8), (byte) packetId });
+        }
+
+        @Override
+        public boolean deliverCloudToDeviceMessage(LocalMessage message)
+        {
+            String topicPrefix = DEVICES_PREFIX + this.deviceId + DEVICEBOUND_SEGMENT;
+            if (!isSubscribed(topicPrefix))
+            {
+                return false;
+            }
+
+            Map<String, String> properties = new LinkedHashMap<>();
+            if (message.getMessageId() != null)
+            {
+                properties.put(MESSAGE_ID, message.getMessageId());
+            }
+            if (message.getCorrelationId() != null)
+            {
+                properties.put(CORRELATION_ID, message.getCorrelationId());
+            }
+            properties.put("$.to", "/devices/" + this.deviceId + "/messages/devicebound");
+            properties.putAll(message.getProperties());
+
+            return tryPublish(topicPrefix + "/" + encodeProperties(properties), message.getBody(), 1);
+        }
+
+        @Override
+        public boolean deliverDesiredPropertiesPatch(String patch, int version)
+        {
+            return isSubscribed(TWIN_PATCH_DESIRED)
+                    && tryPublish(TWIN_PATCH_DESIRED + "/?$version=" + version, patch.getBytes(StandardCharsets.UTF_8), 0);
+        }
+
+        @Override
+        public boolean deliverMethodRequest(String methodName, String requestId, byte[] payload)
+        {
+            return isSubscribed(METHOD_POST)
+                    && tryPublish(METHOD_POST + "/" + methodName + "/?" + REQUEST_ID + requestId, payload, 0);
+        }
+
+        private boolean isSubscribed(String topicPrefix)
+        {
+            synchronized (this.subscriptions)
+            {
+                for (String topicFilter : this.subscriptions)
+                {
+                    if (topicFilter.startsWith(topicPrefix))
+                    {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean tryPublish(String topic, byte[] payload, int qos)
+        {
+            try
+            {
+                publish(topic, payload, qos);
+                return true;
+            }
+            catch (IOException e)
+            {
+                return false;
+            }
+        }
+
+        private void publish(String topic, byte[] payload, int qos) throws IOException
+        {
+            byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+            int remainingLength = 2 + topicBytes.length + ((qos > 0) ? 2 : 0) + payload.length;
+
+            ByteArrayOutputStream packet = new ByteArrayOutputStream(remainingLength + 5);
+            packet.write((PUBLISH << 4) | (qos << 1));
+            writeRemainingLength(packet, remainingLength);
+            packet.write(topicBytes.length >> 8);
+            packet.write(topicBytes.length);
+            packet.write(topicBytes);
+            if (qos > 0)
+            {
+                int packetId = (this.packetIds.incrementAndGet() % 0xFFFF) + 1;
+                packet.write(packetId >> 8);
+                packet.write(packetId);
+            }
+            packet.write(payload);
+            write(packet.toByteArray());
+        }
+
+        private void write(byte[] packet) throws IOException
+        {
+            synchronized (this.output)
+            {
+                this.output.write(packet);
+                this.output.flush();
+            }
+        }
+
+        private int readRemainingLength() throws IOException
+        {
+            int length = 0;
+            int multiplier = 1;
+            int encodedByte;
+            do
+            {
+                encodedByte = this.input.readUnsignedByte();
+                length += (encodedByte & 0x7F) * multiplier;
+                multiplier *= 128;
+            }
+            while ((encodedByte & 0x80) != 0 && multiplier <= 128 * 128 * 128);
+
+            if (length > MAX_REMAINING_LENGTH)
+            {
+                throw new IOException("MQTT packet of " + length + " bytes exceeds the IoT Hub limit");
+            }
+            return length;
+        }
+    }
+
+    private static void writeRemainingLength(ByteArrayOutputStream packet, int length)
+    {
+        do
+        {
+            int encodedByte = length % 128;
+            length /= 128;
+            packet.write((length > 0) ? (encodedByte | 0x80) : encodedByte);
+        }
+        while (length > 0);
+    }
+
+    private static String getRequestId(String topic)
+    {
+        int start = topic.indexOf(REQUEST_ID);
+        if (start < 0)
+        {
+            return null;
+        }
+
+        start += REQUEST_ID.length();
+        int end = topic.indexOf('&', start);
+        return (end < 0) ? topic.substring(start) : topic.substring(start, end);
+    }
+
+    private static Map<String, String> parseProperties(String propertiesString)
+    {
+        Map<String, String> properties = new LinkedHashMap<>();
+        for (String property : propertiesString.split("&"))
+        {
+            int separator = property.indexOf('=');
+            if (separator > 0)
+            {
+                properties.put(decode(property.substring(0, separator)), decode(property.substring(separator + 1)));
+            }
+        }
+        return properties;
+    }
+
+    private static String encodeProperties(Map<String, String> properties)
+    {
+        StringBuilder encoded = new StringBuilder();
+        for (Map.Entry<String, String> property : properties.entrySet())
+        {
+            if (encoded.length() > 0)
+            {
+                encoded.append('&');
+            }
+            try
+            {
+                encoded.append(URLEncoder.encode(property.getKey(), StandardCharsets.UTF_8.name()));
+                encoded.append('=');
+                encoded.append(URLEncoder.encode(property.getValue(), StandardCharsets.UTF_8.name()));
+            }
+            catch (UnsupportedEncodingException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+        return encoded.toString();
+    }
+
+    private static String decode(String value)
+    {
+        try
+        {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+        }
+        catch (UnsupportedEncodingException | IllegalArgumentException e)
+        {
+            // Older clients do not encode the properties, keep them as they are.
+            return value;
+        }
+    }
+}
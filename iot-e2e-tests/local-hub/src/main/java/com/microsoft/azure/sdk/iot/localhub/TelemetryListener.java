@@ -0,0 +1,20 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.localhub;
+
+/**
+ * Callback notified for every telemetry message accepted by the local hub.
+ * It is called on the thread serving the device connection, so it shall return quickly.
+ */
+public interface TelemetryListener
+{
+    /**
+     * Called once the local hub accepted a telemetry message, before it is acknowledged to the device.
+     *
+     * @param message the accepted message.
+     */
+    void onTelemetry(LocalMessage message);
+}
@@ -0,0 +1,149 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.localhub;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TLS listener that serves every accepted connection on its own thread. The local hub favours
+ * a blocking thread per connection over a selector, so the latency it adds stays predictable.
+ */
+abstract class TlsSocketEndpoint implements Closeable
+{
+    private final String name;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> sockets = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+    private volatile boolean closed;
+
+    TlsSocketEndpoint(String name, SSLContext sslContext, InetAddress address, int port) throws IOException
+    {
+        this.name = name;
+        SSLServerSocket sslServerSocket = (SSLServerSocket) sslContext.getServerSocketFactory().createServerSocket(port, 128, address);
+        sslServerSocket.setNeedClientAuth(false);
+        this.serverSocket = sslServerSocket;
+    }
+
+    /**
+     * Starts accepting connections.
+     */
+    void start()
+    {
+        Thread acceptThread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                acceptConnections();
+            }
+        }, this.name + "-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * Getter for the port the endpoint listens on.
+     *
+     * @return the local port.
+     */
+    int getPort()
+    {
+        return this.serverSocket.getLocalPort();
+    }
+
+    /**
+     * Serves one connection until it is closed. Called on the thread dedicated to the connection.
+     *
+     * @param socket the accepted socket, closed by the caller once this method returns.
+     * @throws IOException if the connection failed.
+     */
+    abstract void serve(Socket socket) throws IOException;
+
+    @Override
+    public void close() throws IOException
+    {
+        this.closed = true;
+        this.serverSocket.close();
+        for (Socket socket : this.sockets)
+        {
+            closeQuietly(socket);
+        }
+    }
+
+    private void acceptConnections()
+    {
+        int connectionNumber = 0;
+        while (!this.closed)
+        {
+            final Socket socket;
+            try
+            {
+                socket = this.serverSocket.accept();
+                socket.setTcpNoDelay(true);
+            }
+            catch (IOException e)
+            {
+                if (!this.closed)
+                {
+                    System.err.println(this.name + " stopped accepting connections: " + e.getMessage());
+                }
+                return;
+            }
+
+            this.sockets.add(socket);
+            Thread connectionThread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        serve(socket);
+                    }
+                    catch (SocketException e)
+                    {
+                        // The peer went away, nothing to report.
+                    }
+                    catch (IOException | RuntimeException e)
+                    {
+                        if (!closed)
+                        {
+                            System.err.println(name + " connection failed: " + e);
+                        }
+                    }
+                    finally
+                    {
+                        sockets.remove(socket);
+                        closeQuietly(socket);
+                    }
+                }
+            }, this.name + "-connection-" + (++connectionNumber));
+            connectionThread.setDaemon(true);
+            connectionThread.start();
+        }
+    }
+
+    private static void closeQuietly(Socket socket)
+    {
+        try
+        {
+            socket.close();
+        }
+        catch (IOException e)
+        {
+            // Already closed.
+        }
+    }
+}
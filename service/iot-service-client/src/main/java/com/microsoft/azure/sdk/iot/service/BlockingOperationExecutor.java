@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The threads that run the blocking AMQP operations of the async methods of the service clients.
+ *
+ * <p>
+ *     These operations hold their thread until the link opens, the message is acknowledged or the receive times out,
+ *     so they do not run on the I/O threads of the HTTP engine. At most {@code maxConcurrentOperations} operations (10
+ *     by default) run at a time in the process, and up to 1000 more wait in a queue. When the queue is full, the
+ *     thread that calls the async method runs the operation itself, which slows down a caller that starts operations
+ *     faster than they complete. The threads are daemon threads that stop when they are idle, so the executor never
+ *     needs to be shut down.
+ * </p>
+ */
+public final class BlockingOperationExecutor implements Executor
+{
+    private static final int DEFAULT_MAX_CONCURRENT_OPERATIONS = 10;
+    private static final int MAX_QUEUED_OPERATIONS = 1000;
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 60;
+
+    private static final class InstanceHolder
+    {
+        private static final BlockingOperationExecutor INSTANCE = new BlockingOperationExecutor(DEFAULT_MAX_CONCURRENT_OPERATIONS);
+    }
+
+    private final ThreadPoolExecutor executor;
+
+    BlockingOperationExecutor(int maxConcurrentOperations)
+    {
+        this.executor = new ThreadPoolExecutor(maxConcurrentOperations, maxConcurrentOperations, IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(MAX_QUEUED_OPERATIONS), new ThreadFactory()
+        {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "azure-iot-service-amqp-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Getter for the executor shared by the process.
+     *
+     * @return the shared executor.
+     */
+    public static BlockingOperationExecutor getInstance()
+    {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * Setter for the number of blocking operations that run at a time in the process.
+     *
+     * @param maxConcurrentOperations is the number of threads. Cannot be less than 1.
+     * @throws IllegalArgumentException if the number is less than 1.
+     */
+    public synchronized void setMaxConcurrentOperations(int maxConcurrentOperations) throws IllegalArgumentException
+    {
+        if (maxConcurrentOperations < 1)
+        {
+            throw new IllegalArgumentException("maxConcurrentOperations shall be at least 1");
+        }
+
+        // The maximum pool size cannot go below the core size, so the order depends on the direction.
+        if (maxConcurrentOperations > this.executor.getMaximumPoolSize())
+        {
+            this.executor.setMaximumPoolSize(maxConcurrentOperations);
+            this.executor.setCorePoolSize(maxConcurrentOperations);
+        }
+        else
+        {
+            this.executor.setCorePoolSize(maxConcurrentOperations);
+            this.executor.setMaximumPoolSize(maxConcurrentOperations);
+        }
+    }
+
+    /**
+     * Getter for the number of blocking operations that run at a time in the process.
+     *
+     * @return the number of threads.
+     */
+    public synchronized int getMaxConcurrentOperations()
+    {
+        return this.executor.getMaximumPoolSize();
+    }
+
+    /**
+     * Run an operation on a thread of the executor, or on the calling thread if the queue is full.
+     *
+     * @param operation is the blocking operation.
+     */
+    @Override
+    public void execute(Runnable operation)
+    {
+        this.executor.execute(operation);
+    }
+}
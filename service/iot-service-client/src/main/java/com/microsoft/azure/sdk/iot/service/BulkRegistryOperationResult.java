@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+import com.microsoft.azure.sdk.iot.deps.serializer.BulkRegistryOperationResultParser;
+import com.microsoft.azure.sdk.iot.deps.serializer.DeviceRegistryOperationErrorParser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of a bulk registry operation, aggregated over all the requests the devices were sent in.
+ * The operation succeeded for every device that is not listed in the errors.
+ */
+public class BulkRegistryOperationResult
+{
+    private final List<DeviceRegistryOperationError> errors = new ArrayList<>();
+    private final List<DeviceRegistryOperationError> warnings = new ArrayList<>();
+
+    BulkRegistryOperationResult()
+    {
+    }
+
+    /**
+     * Getter for the success of the operation
+     * @return true if the operation succeeded for every device, false otherwise
+     */
+    public synchronized boolean isSuccessful()
+    {
+        return this.errors.isEmpty();
+    }
+
+    /**
+     * Getter for the errors
+     * @return the devices the operation failed for
+     */
+    public synchronized List<DeviceRegistryOperationError> getErrors()
+    {
+        return Collections.unmodifiableList(new ArrayList<>(this.errors));
+    }
+
+    /**
+     * Getter for the warnings
+     * @return the devices the operation succeeded for with a warning
+     */
+    public synchronized List<DeviceRegistryOperationError> getWarnings()
+    {
+        return Collections.unmodifiableList(new ArrayList<>(this.warnings));
+    }
+
+    synchronized void add(BulkRegistryOperationResultParser parser)
+    {
+        for (DeviceRegistryOperationErrorParser error : parser.getErrors())
+        {
+            this.errors.add(new DeviceRegistryOperationError(error));
+        }
+
+        for (DeviceRegistryOperationErrorParser warning : parser.getWarnings())
+        {
+            this.warnings.add(new DeviceRegistryOperationError(warning));
+        }
+    }
+
+    synchronized void addFailure(List<ExportImportDevice> devices, Exception failure)
+    {
+        for (ExportImportDevice device : devices)
+        {
+            this.errors.add(new DeviceRegistryOperationError(device.getId(), failure.getClass().getSimpleName(), failure.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+import com.microsoft.azure.sdk.iot.deps.serializer.DeviceRegistryOperationErrorParser;
+
+/**
+ * The failure, or the warning, of a bulk registry operation for one device.
+ */
+public class DeviceRegistryOperationError
+{
+    private final String deviceId;
+    private final String errorCode;
+    private final String errorStatus;
+
+    DeviceRegistryOperationError(String deviceId, String errorCode, String errorStatus)
+    {
+        this.deviceId = deviceId;
+        this.errorCode = errorCode;
+        this.errorStatus = errorStatus;
+    }
+
+    DeviceRegistryOperationError(DeviceRegistryOperationErrorParser parser)
+    {
+        this(parser.getDeviceId(), parser.getErrorCode(), parser.getErrorStatus());
+    }
+
+    /**
+     * Getter for the device id
+     * @return the id of the device the error is about
+     */
+    public String getDeviceId()
+    {
+        return deviceId;
+    }
+
+    /**
+     * Getter for the error code
+     * @return the code of the error given by the IotHub, or the name of the exception if the request of the device
+     * failed as a whole
+     */
+    public String getErrorCode()
+    {
+        return errorCode;
+    }
+
+    /**
+     * Getter for the error status
+     * @return the description of the error
+     */
+    public String getErrorStatus()
+    {
+        return errorStatus;
+    }
+}
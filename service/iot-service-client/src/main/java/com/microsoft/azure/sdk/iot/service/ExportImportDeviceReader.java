@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+import com.microsoft.azure.sdk.iot.deps.serializer.ExportImportDeviceParser;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Reads the devices of an export blob, or of an import blob, one json line at a time.
+ *
+ * The input is read in batches of lines. With an executor, up to {@code parallelism} batches are parsed at the same
+ * time on the executor while the caller consumes the previous ones, and the devices are still returned in the order of
+ * the input. Only these batches are held in memory, so a file of any size is read in constant memory.
+ *
+ * A reader is not thread safe.
+ */
+public class ExportImportDeviceReader implements Closeable
+{
+    /**
+     * The devices of a batch of lines, up to the first invalid line.
+     */
+    private static final class Batch
+    {
+        private final List<ExportImportDevice> devices;
+        private final IllegalArgumentException error;
+
+        private Batch(List<ExportImportDevice> devices, IllegalArgumentException error)
+        {
+            this.devices = devices;
+            this.error = error;
+        }
+    }
+
+    private static final int LINES_PER_BATCH = 512;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final BufferedReader lines;
+    private final Executor executor;
+    private final int parallelism;
+    private final ArrayDeque<Future<Batch>> batches = new ArrayDeque<>();
+    private Iterator<ExportImportDevice> currentBatch = Collections.emptyIterator();
+    private IllegalArgumentException currentBatchError;
+    private long lineNumber;
+    private boolean endOfInput;
+
+    /**
+     * Creates a reader that parses the devices on the calling thread.
+     *
+     * @param input the UTF-8 json lines of the devices. It is closed with the reader.
+     * @throws IllegalArgumentException if the input is {@code null}.
+     */
+    public ExportImportDeviceReader(InputStream input) throws IllegalArgumentException
+    {
+        this(input, null, 1);
+    }
+
+    /**
+     * Creates a reader that parses the devices on an executor.
+     *
+     * @param input the UTF-8 json lines of the devices. It is closed with the reader.
+     * @param executor the executor of the parsing, {@code null} to parse on the calling thread.
+     * @param parallelism the number of batches of lines parsed at the same time.
+     * @throws IllegalArgumentException if the input is {@code null} or the parallelism is less than 1.
+     */
+    public ExportImportDeviceReader(InputStream input, Executor executor, int parallelism) throws IllegalArgumentException
+    {
+        if (input == null)
+        {
+            throw new IllegalArgumentException("input cannot be null");
+        }
+
+        if (parallelism < 1)
+        {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+
+        this.lines = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), READ_BUFFER_SIZE);
+        this.executor = executor;
+        this.parallelism = (executor == null) ? 1 : parallelism;
+    }
+
+    /**
+     * Creates a reader on a local file. The file is mapped in memory instead of being copied through a stream buffer.
+     *
+     * @param file the path of the file of json lines.
+     * @param executor the executor of the parsing, {@code null} to parse on the calling thread.
+     * @param parallelism the number of batches of lines parsed at the same time.
+     * @return the reader of the file.
+     * @throws IOException if the file cannot be opened.
+     * @throws IllegalArgumentException if the file is {@code null} or the parallelism is less than 1.
+     */
+    public static ExportImportDeviceReader open(Path file, Executor executor, int parallelism) throws IOException, IllegalArgumentException
+    {
+        if (file == null)
+        {
+            throw new IllegalArgumentException("file cannot be null");
+        }
+
+        return new ExportImportDeviceReader(new MappedFileInputStream(file), executor, parallelism);
+    }
+
+    /**
+     * Reads the next device.
+     *
+     * @return the next device, or {@code null} at the end of the input.
+     * @throws IOException if the input cannot be read.
+     * @throws IllegalArgumentException if the next line is not a valid device. The message gives the number of the
+     * line, and the reader is closed.
+     */
+    public ExportImportDevice read() throws IOException, IllegalArgumentException
+    {
+        while (!this.currentBatch.hasNext())
+        {
+            if (this.currentBatchError != null)
+            {
+                // The devices before the invalid line were returned, the reader stops at the invalid line.
+                IllegalArgumentException error = this.currentBatchError;
+                this.close();
+                throw error;
+            }
+
+            fillBatches();
+            Future<Batch> batch = this.batches.poll();
+            if (batch == null)
+            {
+                return null;
+            }
+            Batch parsedBatch = awaitBatch(batch);
+            this.currentBatch = parsedBatch.devices.iterator();
+            this.currentBatchError = parsedBatch.error;
+        }
+
+        return this.currentBatch.next();
+    }
+
+    /**
+     * Stops the parsing of the batches that were not read yet and closes the input.
+     *
+     * @throws IOException if the input cannot be closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        for (Future<Batch> batch : this.batches)
+        {
+            batch.cancel(false);
+        }
+        this.batches.clear();
+        this.currentBatch = Collections.emptyIterator();
+        this.currentBatchError = null;
+        this.endOfInput = true;
+        this.lines.close();
+    }
+
+    private void fillBatches() throws IOException
+    {
+        while (!this.endOfInput && this.batches.size() < this.parallelism)
+        {
+            final long firstLineNumber = this.lineNumber + 1;
+            final List<String> batchLines = new ArrayList<>(LINES_PER_BATCH);
+            while (batchLines.size() < LINES_PER_BATCH)
+            {
+                String line = this.lines.readLine();
+                if (line == null)
+                {
+                    this.endOfInput = true;
+                    break;
+                }
+                batchLines.add(line);
+            }
+            this.lineNumber += batchLines.size();
+
+            if (batchLines.isEmpty())
+            {
+                return;
+            }
+
+            FutureTask<Batch> batch = new FutureTask<>(() -> parseBatch(batchLines, firstLineNumber));
+            this.batches.add(batch);
+            if (this.executor == null)
+            {
+                batch.run();
+            }
+            else
+            {
+                this.executor.execute(batch);
+            }
+        }
+    }
+
+    private static Batch parseBatch(List<String> batchLines, long firstLineNumber)
+    {
+        List<ExportImportDevice> devices = new ArrayList<>(batchLines.size());
+        for (int i = 0; i < batchLines.size(); i++)
+        {
+            String line = batchLines.get(i);
+            if (line.trim().isEmpty())
+            {
+                continue;
+            }
+
+            try
+            {
+                devices.add(new ExportImportDevice(new ExportImportDeviceParser(line)));
+            }
+            catch (IllegalArgumentException e)
+            {
+                return new Batch(devices, new IllegalArgumentException("Invalid device at line " + (firstLineNumber + i) + ": " + e.getMessage(), e));
+            }
+        }
+        return new Batch(devices, null);
+    }
+
+    private static Batch awaitBatch(Future<Batch> batch) throws IOException
+    {
+        try
+        {
+            return batch.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing the devices");
+        }
+        catch (ExecutionException e)
+        {
+            throw new IOException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes devices as the json lines of an import blob, one device per line, as {@link ExportImportDeviceReader} reads
+ * them.
+ *
+ * A writer is not thread safe.
+ */
+public class ExportImportDeviceWriter implements Closeable, Flushable
+{
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final BufferedWriter lines;
+
+    /**
+     * Creates a writer.
+     *
+     * @param output the stream of the json lines. It is closed with the writer.
+     * @throws IllegalArgumentException if the output is {@code null}.
+     */
+    public ExportImportDeviceWriter(OutputStream output) throws IllegalArgumentException
+    {
+        if (output == null)
+        {
+            throw new IllegalArgumentException("output cannot be null");
+        }
+
+        this.lines = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+    }
+
+    /**
+     * Writes a device on a new line.
+     *
+     * @param device the device to write.
+     * @throws IOException if the output cannot be written.
+     * @throws IllegalArgumentException if the device is {@code null}.
+     */
+    public void write(ExportImportDevice device) throws IOException, IllegalArgumentException
+    {
+        if (device == null)
+        {
+            throw new IllegalArgumentException("device cannot be null");
+        }
+
+        this.lines.write(device.toExportImportDeviceParser().toJson());
+        this.lines.write('\n');
+    }
+
+    /**
+     * Writes the buffered lines to the output.
+     *
+     * @throws IOException if the output cannot be written.
+     */
+    @Override
+    public void flush() throws IOException
+    {
+        this.lines.flush();
+    }
+
+    /**
+     * Writes the buffered lines and closes the output.
+     *
+     * @throws IOException if the output cannot be written or closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        this.lines.close();
+    }
+}
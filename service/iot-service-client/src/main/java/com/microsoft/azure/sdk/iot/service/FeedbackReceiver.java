@@ -8,9 +8,10 @@ package com.microsoft.azure.sdk.iot.service;
 import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpReceive;
 
 import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 /**
  * FeedbackReceiver is a specialized receiver whose ReceiveAsync
@@ -19,7 +20,7 @@ import java.util.concurrent.Executors;
 public class FeedbackReceiver extends Receiver
 {
     private final long DEFAULT_TIMEOUT_MS = 60000;
-    private final ExecutorService executor = Executors.newFixedThreadPool(10);
+    private final Executor executor = BlockingOperationExecutor.getInstance();
 
     private String deviceId;
     private AmqpReceive amqpReceive;
@@ -160,6 +161,78 @@ public class FeedbackReceiver extends Receiver
         return this.amqpReceive.receive(timeoutMs);
     }
 
+    /**
+     * Opens a long-lived receiver link that pushes every feedback batch to the given handler as it arrives, instead of
+     * opening a connection for every receive call. The link is opened again if the connection is lost, until
+     * {@link #stopReceiving()} or close() is called.
+     *
+     * The handler is called on the thread of the link, one feedback batch at a time. The feedback batch is acknowledged
+     * once the handler returns, the acknowledgements are sent in batches, and at most prefetchCount feedback batches are
+     * in flight between the service and the handler. If the handler throws, the exception is logged and the feedback batch is
+     * returned as a failed delivery: the service sends it again until it reaches the maximum delivery count of the
+     * queue, then dead-letters it.
+     *
+     * @param feedbackBatchHandler the handler of the received feedback batches
+     * @param prefetchCount the number of feedback batches the service can send ahead of the handler
+     * @throws IOException if the receiver is not initialized or is already receiving
+     * @throws IllegalArgumentException if the handler is null or the prefetch count is less than 1
+     */
+    public void startReceiving(Consumer<FeedbackBatch> feedbackBatchHandler, int prefetchCount) throws IOException, IllegalArgumentException
+    {
+        if (this.amqpReceive == null)
+        {
+            throw new IOException("AMQP receiver is not initialized");
+        }
+        this.amqpReceive.startReceiving(feedbackBatchHandler, prefetchCount);
+    }
+
+    /**
+     * Opens a long-lived receiver link that puts every feedback batch in the given queue as it arrives, see
+     * {@link #startReceiving(Consumer, int)}. When the queue is full the link waits for room, and the service stops
+     * sending once prefetchCount feedback batches are waiting.
+     *
+     * @param feedbackBatchQueue the queue of the received feedback batches
+     * @param prefetchCount the number of feedback batches the service can send ahead of the queue
+     * @throws IOException if the receiver is not initialized or is already receiving
+     * @throws IllegalArgumentException if the queue is null or the prefetch count is less than 1
+     */
+    public void startReceiving(BlockingQueue<FeedbackBatch> feedbackBatchQueue, int prefetchCount) throws IOException, IllegalArgumentException
+    {
+        if (feedbackBatchQueue == null)
+        {
+            throw new IllegalArgumentException("feedbackBatchQueue cannot be null");
+        }
+
+        startReceiving((FeedbackBatch received) ->
+        {
+            try
+            {
+                feedbackBatchQueue.put(received);
+            }
+            catch (InterruptedException e)
+            {
+                // The receiver is stopping, the feedback batch is released.
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }, prefetchCount);
+    }
+
+    /**
+     * Closes the long-lived receiver link opened by startReceiving, after the feedback batches handed to the handler are
+     * acknowledged. Does nothing if the receiver is not receiving.
+     *
+     * @throws IOException if the receiver is not initialized
+     */
+    public void stopReceiving() throws IOException
+    {
+        if (this.amqpReceive == null)
+        {
+            throw new IOException("AMQP receiver is not initialized");
+        }
+        this.amqpReceive.stopReceiving();
+    }
+
     /**
      * Async wrapper for open() operation
      *
@@ -170,7 +243,7 @@ public class FeedbackReceiver extends Receiver
     {
         // Codes_SRS_SERVICE_SDK_JAVA_FEEDBACKRECEIVER_12_011: [The function shall create an async wrapper around the open() function call]
         final CompletableFuture<Void> future = new CompletableFuture<>();
-        executor.submit(() -> {
+        executor.execute(() -> {
             try
             {
                 open();
@@ -193,7 +266,7 @@ public class FeedbackReceiver extends Receiver
     {
         // Codes_SRS_SERVICE_SDK_JAVA_FEEDBACKRECEIVER_12_012: [The function shall create an async wrapper around the close() function call]
         final CompletableFuture<Void> future = new CompletableFuture<>();
-        executor.submit(() -> {
+        executor.execute(() -> {
             try
             {
                 close();
@@ -228,7 +301,7 @@ public class FeedbackReceiver extends Receiver
     {
         // Codes_SRS_SERVICE_SDK_JAVA_FEEDBACKRECEIVER_12_014: [The function shall create an async wrapper around the receive(long timeoutMs) function call]
         final CompletableFuture<FeedbackBatch> future = new CompletableFuture<>();
-        executor.submit(() -> {
+        executor.execute(() -> {
         try
         {
             FeedbackBatch responseFeedbackBatch = receive(timeoutMs);
@@ -8,14 +8,15 @@ package com.microsoft.azure.sdk.iot.service;
 import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpFileUploadNotificationReceive;
 
 import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 public class FileUploadNotificationReceiver extends Receiver
 {
     private final long DEFAULT_TIMEOUT_MS = 60000;
-    private final ExecutorService executor = Executors.newFixedThreadPool(3);
+    private final Executor executor = BlockingOperationExecutor.getInstance();
     private AmqpFileUploadNotificationReceive amqpFileUploadNotificationReceive;
 
     /**
@@ -103,6 +104,78 @@ public class FileUploadNotificationReceiver extends Receiver
         return this.amqpFileUploadNotificationReceive.receive(timeoutMs);
     }
 
+    /**
+     * Opens a long-lived receiver link that pushes every notification to the given handler as it arrives, instead of
+     * opening a connection for every receive call. The link is opened again if the connection is lost, until
+     * {@link #stopReceiving()} or close() is called.
+     *
+     * The handler is called on the thread of the link, one notification at a time. The notification is acknowledged
+     * once the handler returns, the acknowledgements are sent in batches, and at most prefetchCount notifications are
+     * in flight between the service and the handler. If the handler throws, the exception is logged and the notification is
+     * returned as a failed delivery: the service sends it again until it reaches the maximum delivery count of the
+     * queue, then dead-letters it.
+     *
+     * @param notificationHandler the handler of the received notifications
+     * @param prefetchCount the number of notifications the service can send ahead of the handler
+     * @throws IOException if the receiver is not initialized or is already receiving
+     * @throws IllegalArgumentException if the handler is null or the prefetch count is less than 1
+     */
+    public void startReceiving(Consumer<FileUploadNotification> notificationHandler, int prefetchCount) throws IOException, IllegalArgumentException
+    {
+        if (this.amqpFileUploadNotificationReceive == null)
+        {
+            throw new IOException("AMQP receiver is not initialized");
+        }
+        this.amqpFileUploadNotificationReceive.startReceiving(notificationHandler, prefetchCount);
+    }
+
+    /**
+     * Opens a long-lived receiver link that puts every notification in the given queue as it arrives, see
+     * {@link #startReceiving(Consumer, int)}. When the queue is full the link waits for room, and the service stops
+     * sending once prefetchCount notifications are waiting.
+     *
+     * @param notificationQueue the queue of the received notifications
+     * @param prefetchCount the number of notifications the service can send ahead of the queue
+     * @throws IOException if the receiver is not initialized or is already receiving
+     * @throws IllegalArgumentException if the queue is null or the prefetch count is less than 1
+     */
+    public void startReceiving(BlockingQueue<FileUploadNotification> notificationQueue, int prefetchCount) throws IOException, IllegalArgumentException
+    {
+        if (notificationQueue == null)
+        {
+            throw new IllegalArgumentException("notificationQueue cannot be null");
+        }
+
+        startReceiving((FileUploadNotification received) ->
+        {
+            try
+            {
+                notificationQueue.put(received);
+            }
+            catch (InterruptedException e)
+            {
+                // The receiver is stopping, the notification is released.
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }, prefetchCount);
+    }
+
+    /**
+     * Closes the long-lived receiver link opened by startReceiving, after the notifications handed to the handler are
+     * acknowledged. Does nothing if the receiver is not receiving.
+     *
+     * @throws IOException if the receiver is not initialized
+     */
+    public void stopReceiving() throws IOException
+    {
+        if (this.amqpFileUploadNotificationReceive == null)
+        {
+            throw new IOException("AMQP receiver is not initialized");
+        }
+        this.amqpFileUploadNotificationReceive.stopReceiving();
+    }
+
     /**
      * Async wrapper for open() operation
      *
@@ -113,7 +186,7 @@ public class FileUploadNotificationReceiver extends Receiver
     {
         // Codes_SRS_SERVICE_SDK_JAVA_FILEUPLOADNOTIFICATIONRECEIVER_25_010: [** The function shall create an async wrapper around the open() function call **]**
         final CompletableFuture<Void> future = new CompletableFuture<>();
-        executor.submit(() -> {
+        executor.execute(() -> {
             try
             {
                 open();
@@ -136,7 +209,7 @@ public class FileUploadNotificationReceiver extends Receiver
     {
         // Codes_SRS_SERVICE_SDK_JAVA_FILEUPLOADNOTIFICATIONRECEIVER_25_011: [** The function shall create an async wrapper around the close() function call **]**
         final CompletableFuture<Void> future = new CompletableFuture<>();
-        executor.submit(() -> {
+        executor.execute(() -> {
             try
             {
                 close();
@@ -171,7 +244,7 @@ public class FileUploadNotificationReceiver extends Receiver
     {
         // Codes_SRS_SERVICE_SDK_JAVA_FILEUPLOADNOTIFICATIONRECEIVER_25_013: [** The function shall create an async wrapper around the receive(long timeoutMs) function call **]**
         final CompletableFuture<FileUploadNotification> future = new CompletableFuture<>();
-        executor.submit(() -> {
+        executor.execute(() -> {
             try
             {
                 FileUploadNotification responseFileUploadNotification = receive(timeoutMs);
@@ -419,6 +419,24 @@ public class IotHubConnectionString extends IotHubConnectionStringBuilder
         return new URL(stringBuilder.toString());
     }
 
+    /**
+     * Create url for bulk registry operations on a set of devices
+     *
+     * @return The bulk registry Url in the following format: "https:hostname/devices?api-version=201X-XX-XX"
+     * @throws MalformedURLException This exception is thrown if the URL creation failed due to malformed string
+     */
+    public URL getUrlBulkDevices() throws MalformedURLException
+    {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append(URL_HTTPS);
+        stringBuilder.append(hostName);
+        stringBuilder.append(URL_SEPARATOR_0);
+        stringBuilder.append(URL_PATH_DEVICES);
+        stringBuilder.append(URL_SEPARATOR_1);
+        stringBuilder.append(URL_API_VERSION);
+        return new URL(stringBuilder.toString());
+    }
+
     /**
      * Create url for processing a bulk import/export job
      *
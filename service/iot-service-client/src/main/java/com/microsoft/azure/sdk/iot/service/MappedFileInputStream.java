@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a local file through successive read only memory mappings, so that files larger than a single mapping can be
+ * read without copying them through the buffers of a file stream.
+ */
+class MappedFileInputStream extends InputStream
+{
+    private static final long REGION_SIZE = 64L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private long regionEnd;
+    private MappedByteBuffer region;
+
+    MappedFileInputStream(Path file) throws IOException
+    {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = this.channel.size();
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        if (!nextRegionIfNeeded())
+        {
+            return -1;
+        }
+        return this.region.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException
+    {
+        if (length == 0)
+        {
+            return 0;
+        }
+
+        if (!nextRegionIfNeeded())
+        {
+            return -1;
+        }
+
+        int count = Math.min(length, this.region.remaining());
+        this.region.get(buffer, offset, count);
+        return count;
+    }
+
+    @Override
+    public int available()
+    {
+        return (this.region == null) ? 0 : this.region.remaining();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.region = null;
+        this.channel.close();
+    }
+
+    private boolean nextRegionIfNeeded() throws IOException
+    {
+        if (this.region != null && this.region.hasRemaining())
+        {
+            return true;
+        }
+
+        if (this.regionEnd >= this.size)
+        {
+            return false;
+        }
+
+        long regionStart = this.regionEnd;
+        this.regionEnd = Math.min(this.size, regionStart + REGION_SIZE);
+        this.region = this.channel.map(FileChannel.MapMode.READ_ONLY, regionStart, this.regionEnd - regionStart);
+        return true;
+    }
+}
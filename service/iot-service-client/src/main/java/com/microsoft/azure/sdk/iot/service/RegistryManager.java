@@ -6,7 +6,9 @@
 package com.microsoft.azure.sdk.iot.service;
 
 import com.google.gson.JsonSyntaxException;
+import com.microsoft.azure.sdk.iot.deps.serializer.BulkRegistryOperationResultParser;
 import com.microsoft.azure.sdk.iot.deps.serializer.DeviceParser;
+import com.microsoft.azure.sdk.iot.deps.serializer.ExportImportDeviceParser;
 import com.microsoft.azure.sdk.iot.deps.serializer.JobPropertiesParser;
 import com.microsoft.azure.sdk.iot.deps.serializer.RegistryStatisticsParser;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
@@ -21,13 +23,16 @@ import javax.json.JsonArray;
 import javax.json.JsonObject;
 import javax.json.JsonReader;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.StringReader;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
 
 /**
  * Use the RegistryManager class to manage the identity registry in IoT Hubs.
@@ -35,9 +40,26 @@ import java.util.concurrent.Executors;
 public class RegistryManager
 {
     private final Integer DEFAULT_HTTP_TIMEOUT_MS = 24000;
-    private final ExecutorService executor = Executors.newFixedThreadPool(10);
+    private final int MAX_DEVICES_PER_BULK_REQUEST = 100;
+    private final int MAX_PARALLEL_BULK_REQUESTS = 4;
     private IotHubConnectionString iotHubConnectionString;
 
+    /**
+     * Turns the response to a request into the result of the operation.
+     */
+    private interface ResponseHandler<T>
+    {
+        T handle(HttpResponse response) throws IOException, IotHubException;
+    }
+
+    /**
+     * Builds the request of an operation.
+     */
+    private interface RequestFactory
+    {
+        HttpRequest create() throws IOException;
+    }
+
     /**
      * Static constructor to create instance from connection string
      *
@@ -88,29 +110,14 @@ public class RegistryManager
             throw new IllegalArgumentException("device cannot be null");
         }
 
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_005: [The function shall deserialize the given device object to Json string]
-        String deviceJson = device.toDeviceParser().toJson();
-
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_006: [The function shall get the URL for the device]
-        URL url = iotHubConnectionString.getUrlDevice(device.getDeviceId());
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_007: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
-
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_008: [The function shall create a new HttpRequest for adding the device to IotHub]
-        HttpRequest request = CreateRequest(url, HttpMethod.PUT, deviceJson.getBytes(), sasTokenString);
+        HttpRequest request = CreateAddDeviceRequest(device);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_009: [The function shall send the created request and get the response]
         HttpResponse response = request.send();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_010: [The function shall verify the response status and throw proper Exception]
-        IotHubExceptionManager.httpResponseVerification(response);
-
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_011: [The function shall create a new Device object from the response and return with it]
-        String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
-
-        Device iotHubDevice = new Device(new DeviceParser(bodyStr));
-
-        return iotHubDevice;
+        return ProcessDeviceResponse(response);
     }
 
     /**
@@ -130,20 +137,7 @@ public class RegistryManager
         }
 
         // Codes_SRS_SERVICE_SDK_JAVA_ REGISTRYMANAGER_12_013: [The function shall create an async wrapper around the addDevice() function call, handle the return value or delegate exception]
-        final CompletableFuture<Device> future = new CompletableFuture<>();
-        executor.submit(() ->
-        {
-            try
-            {
-                Device responseDevice = addDevice(device);
-                future.complete(responseDevice);
-            }
-            catch (IOException | IotHubException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+        return SendAsync(() -> CreateAddDeviceRequest(device), this::ProcessDeviceResponse);
     }
 
     /**
@@ -163,24 +157,16 @@ public class RegistryManager
         }
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_015: [The function shall get the URL for the device]
-        URL url = iotHubConnectionString.getUrlDevice(deviceId);
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_016: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
-
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_017: [The function shall create a new HttpRequest for getting a device from IotHub]
-        HttpRequest request = CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
+        HttpRequest request = CreateGetRequest(iotHubConnectionString.getUrlDevice(deviceId));
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_018: [The function shall send the created request and get the response]
         HttpResponse response = request.send();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_019: [The function shall verify the response status and throw proper Exception]
-        IotHubExceptionManager.httpResponseVerification(response);
-
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_020: [The function shall create a new Device object from the response and return with it]
-        String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
-
-        Device iotHubDevice = new Device(new DeviceParser(bodyStr));
-        return iotHubDevice;
+        return ProcessDeviceResponse(response);
     }
 
     /**
@@ -200,20 +186,7 @@ public class RegistryManager
         }
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_022: [The function shall create an async wrapper around the addDevice() function call, handle the return value or delegate exception]
-        final CompletableFuture<Device> future = new CompletableFuture<>();
-        executor.submit(() ->
-        {
-            try
-            {
-                Device responseDevice = getDevice(deviceId);
-                future.complete(responseDevice);
-            }
-            catch (IotHubException | IOException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+        return SendAsync(() -> CreateGetRequest(iotHubConnectionString.getUrlDevice(deviceId)), this::ProcessDeviceResponse);
     }
 
     /**
@@ -233,34 +206,16 @@ public class RegistryManager
         }
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_024: [The function shall get the URL for the device]
-        URL url = iotHubConnectionString.getUrlDeviceList(maxCount);
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_025: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
-
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_026: [The function shall create a new HttpRequest for getting a device list from IotHub]
-        HttpRequest request = CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
+        HttpRequest request = CreateGetRequest(iotHubConnectionString.getUrlDeviceList(maxCount));
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_027: [The function shall send the created request and get the response]
         HttpResponse response = request.send();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_028: [The function shall verify the response status and throw proper Exception]
-        IotHubExceptionManager.httpResponseVerification(response);
-
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_029: [The function shall create a new ArrayList<Device> object from the response and return with it]
-        String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
-        try (JsonReader jsonReader = Json.createReader(new StringReader(bodyStr)))
-        {
-            ArrayList<Device> deviceList = new ArrayList<>();
-            JsonArray deviceArray = jsonReader.readArray();
-            
-            for (int i = 0; i < deviceArray.size(); i++)
-            {
-                JsonObject jsonObject = deviceArray.getJsonObject(i);
-                Device iotHubDevice = new Device(new DeviceParser(jsonObject.toString()));
-                deviceList.add(iotHubDevice);
-            }
-            return deviceList;
-        }
+        return ProcessDeviceListResponse(response);
     }
 
     /**
@@ -280,20 +235,7 @@ public class RegistryManager
         }
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_031: [The function shall create an async wrapper around the getDevices() function call, handle the return value or delegate exception]
-        final CompletableFuture<ArrayList<Device>> future = new CompletableFuture<>();
-        executor.submit(() ->
-        {
-            try
-            {
-                ArrayList<Device> response = getDevices(maxCount);
-                future.complete(response);
-            }
-            catch (IotHubException | IOException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+        return SendAsync(() -> CreateGetRequest(iotHubConnectionString.getUrlDeviceList(maxCount)), this::ProcessDeviceListResponse);
     }
 
     /**
@@ -367,29 +309,14 @@ public class RegistryManager
             throw new IllegalArgumentException("device cannot be null");
         }
 
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_035: [The function shall set forceUpdate on the device]
-        device.setForceUpdate(forceUpdate);
-
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_036: [The function shall get the URL for the device]
-        URL url = iotHubConnectionString.getUrlDevice(device.getDeviceId());
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_037: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
-
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_038: [The function shall create a new HttpRequest for updating the device on IotHub]
-        HttpRequest request = CreateRequest(url, HttpMethod.PUT, device.toDeviceParser().toJson().getBytes(), sasTokenString);
-        request.setHeaderField("If-Match", "*");
+        HttpRequest request = CreateUpdateDeviceRequest(device, forceUpdate);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_039: [The function shall send the created request and get the response]
         HttpResponse response = request.send();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_040: [The function shall verify the response status and throw proper Exception]
-        IotHubExceptionManager.httpResponseVerification(response);
-
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_041: [The function shall create a new Device object from the response and return with it]
-        String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
-        Device iotHubDevice = new Device(new DeviceParser(bodyStr));
-
-        return iotHubDevice;
+        return ProcessDeviceResponse(response);
     }
 
     /**
@@ -408,20 +335,7 @@ public class RegistryManager
             throw new IllegalArgumentException("device cannot be null");
         }
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_043: [The function shall create an async wrapper around the updateDevice() function call, handle the return value or delegate exception]
-        final CompletableFuture<Device> future = new CompletableFuture<>();
-        executor.submit(() ->
-        {
-            try
-            {
-                Device responseDevice = updateDevice(device);
-                future.complete(responseDevice);
-            }
-            catch (IotHubException | IOException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+        return SendAsync(() -> CreateUpdateDeviceRequest(device, false), this::ProcessDeviceResponse);
     }
 
     /**
@@ -441,20 +355,7 @@ public class RegistryManager
             throw new IllegalArgumentException("device cannot be null");
         }
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_045: [The function shall create an async wrapper around the updateDevice(Device, device, Boolean forceUpdate) function call, handle the return value or delegate exception]
-        final CompletableFuture<Device> future = new CompletableFuture<>();
-        executor.submit(() ->
-        {
-            try
-            {
-                Device responseDevice = updateDevice(device, forceUpdate);
-                future.complete(responseDevice);
-            }
-            catch (IotHubException | IOException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+        return SendAsync(() -> CreateUpdateDeviceRequest(device, forceUpdate), this::ProcessDeviceResponse);
     }
 
     /**
@@ -472,17 +373,7 @@ public class RegistryManager
             throw new IllegalArgumentException("deviceId cannot be null or empty");
         }
 
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_047: [The function shall get the URL for the device]
-        URL url = iotHubConnectionString.getUrlDevice(deviceId);
-
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_048: [The function shall create a new SAS token for the device]
-        String sasToken = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
-
-        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_049: [The function shall create a new HttpRequest for removing the device from IotHub]
-        HttpRequest request = new HttpRequest(url, HttpMethod.DELETE, new byte[0]);
-        request.setReadTimeoutMillis(DEFAULT_HTTP_TIMEOUT_MS);
-        request.setHeaderField("authorization", sasToken);
-        request.setHeaderField("If-Match", "*");
+        HttpRequest request = CreateRemoveDeviceRequest(deviceId);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_050: [The function shall send the created request and get the response]
         HttpResponse response = request.send();
@@ -508,20 +399,62 @@ public class RegistryManager
         }
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_053: [The function shall create an async wrapper around the removeDevice() function call, handle the return value or delegate exception]
-        final CompletableFuture<Boolean> future = new CompletableFuture<Boolean>();
-        executor.submit(() ->
+        return SendAsync(() -> CreateRemoveDeviceRequest(deviceId), response ->
         {
-            try
-            {
-                removeDevice(deviceId);
-                future.complete(true);
-            }
-            catch (IotHubException | IOException e)
-            {
-                future.completeExceptionally(e);
-            }
+            IotHubExceptionManager.httpResponseVerification(response);
+            return true;
         });
-        return future;
+    }
+
+    /**
+     * Add a set of devices with the bulk registry operation of the IotHub
+     *
+     * The devices are sent in requests of up to 100 devices, a few requests at a time. The operation goes on when it
+     * fails for some devices, the devices it failed for are listed in the returned result.
+     *
+     * @param devices The devices to add
+     * @return The result of the operation for the devices
+     * @throws IOException This exception is thrown if the thread is interrupted while waiting for the requests
+     * @throws IllegalArgumentException This exception is thrown if the devices are null or empty, contain null, or
+     * contain a device that cannot be serialized
+     */
+    public BulkRegistryOperationResult addDevices(Collection<ExportImportDevice> devices) throws IOException, IllegalArgumentException
+    {
+        return bulkRegistryOperation(devices, ImportMode.Create, ImportMode.Create);
+    }
+
+    /**
+     * Update a set of devices with the bulk registry operation of the IotHub
+     *
+     * The update of a device that has an eTag only succeeds if the eTag matches the one of the registry, the update of
+     * a device without eTag is forced. See {@link #addDevices(Collection)} for how the devices are sent.
+     *
+     * @param devices The devices containing updated data
+     * @return The result of the operation for the devices
+     * @throws IOException This exception is thrown if the thread is interrupted while waiting for the requests
+     * @throws IllegalArgumentException This exception is thrown if the devices are null or empty, contain null, or
+     * contain a device that cannot be serialized
+     */
+    public BulkRegistryOperationResult updateDevices(Collection<ExportImportDevice> devices) throws IOException, IllegalArgumentException
+    {
+        return bulkRegistryOperation(devices, ImportMode.Update, ImportMode.UpdateIfMatchETag);
+    }
+
+    /**
+     * Remove a set of devices with the bulk registry operation of the IotHub
+     *
+     * The removal of a device that has an eTag only succeeds if the eTag matches the one of the registry, the removal
+     * of a device without eTag is forced. See {@link #addDevices(Collection)} for how the devices are sent.
+     *
+     * @param devices The devices to remove
+     * @return The result of the operation for the devices
+     * @throws IOException This exception is thrown if the thread is interrupted while waiting for the requests
+     * @throws IllegalArgumentException This exception is thrown if the devices are null or empty, contain null, or
+     * contain a device that cannot be serialized
+     */
+    public BulkRegistryOperationResult removeDevices(Collection<ExportImportDevice> devices) throws IOException, IllegalArgumentException
+    {
+        return bulkRegistryOperation(devices, ImportMode.Delete, ImportMode.DeleteIfMatchETag);
     }
 
     /**
@@ -534,24 +467,16 @@ public class RegistryManager
     public RegistryStatistics getStatistics() throws IOException, IotHubException, JsonSyntaxException
     {
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_054: [The function shall get the URL for the device]
-        URL url = iotHubConnectionString.getUrlDeviceStatistics();
-
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_055: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
-
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_056: [The function shall create a new HttpRequest for getting statistics a device from IotHub]
-        HttpRequest request = CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
+        HttpRequest request = CreateGetRequest(iotHubConnectionString.getUrlDeviceStatistics());
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_057: [The function shall send the created request and get the response]
         HttpResponse response = request.send();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_058: [The function shall verify the response status and throw proper Exception]
-        IotHubExceptionManager.httpResponseVerification(response);
-
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_059: [The function shall create a new RegistryStatistics object from the response and return with it]
-        String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
-        RegistryStatistics registryStatistics = new RegistryStatistics(new RegistryStatisticsParser(bodyStr));
-        return registryStatistics;
+        return ProcessStatisticsResponse(response);
     }
 
     /**
@@ -564,24 +489,11 @@ public class RegistryManager
     public CompletableFuture<RegistryStatistics> getStatisticsAsync() throws IOException, IotHubException
     {
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_060: [The function shall create an async wrapper around the getStatistics() function call, handle the return value or delegate exception]
-        final CompletableFuture<RegistryStatistics> future = new CompletableFuture<>();
-        executor.submit(() ->
-        {
-            try
-            {
-                RegistryStatistics responseDevice = getStatistics();
-                future.complete(responseDevice);
-            }
-            catch (IotHubException | IOException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+        return SendAsync(() -> CreateGetRequest(iotHubConnectionString.getUrlDeviceStatistics()), this::ProcessStatisticsResponse);
     }
 
     /**
-     * Create a bulk export job.
+     * Create a bulk export job. The exported devices.txt blob can be read with {@link ExportImportDeviceReader}.
      *
      * @param exportBlobContainerUri URI containing SAS token to a blob container where export data will be placed
      * @param excludeKeys Whether the devices keys should be excluded from the exported data or not
@@ -595,22 +507,7 @@ public class RegistryManager
     public JobProperties exportDevices(String exportBlobContainerUri, Boolean excludeKeys)
             throws IllegalArgumentException, IOException, IotHubException, JsonSyntaxException
     {
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_061: [The function shall throw IllegalArgumentException
-        // if any of the input parameters is null]
-        if (exportBlobContainerUri == null || excludeKeys == null)
-        {
-            throw new IllegalArgumentException("Export blob uri cannot be null");
-        }
-
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_062: [The function shall get the URL for the bulk export job creation]
-        URL url = iotHubConnectionString.getUrlCreateExportImportJob();
-
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_063: [The function shall create a new SAS token for the bulk export job]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
-
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_064: [The function shall create a new HttpRequest for the bulk export job creation ]
-        String jobPropertiesJson = CreateExportJobPropertiesJson(exportBlobContainerUri, excludeKeys);
-        HttpRequest request = CreateRequest(url, HttpMethod.POST, jobPropertiesJson.getBytes(), sasTokenString);
+        HttpRequest request = CreateExportDevicesRequest(exportBlobContainerUri, excludeKeys);
 
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_065: [The function shall send the created request and get the response]
         HttpResponse response = request.send();
@@ -635,24 +532,11 @@ public class RegistryManager
     {
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_068: [The function shall create an async wrapper around the
         // exportDevices() function call, handle the return value or delegate exception]
-        final CompletableFuture<JobProperties> future = new CompletableFuture<>();
-        executor.submit(() ->
-        {
-            try
-            {
-                JobProperties responseJobProperties = exportDevices(exportBlobContainerUri, excludeKeys);
-                future.complete(responseJobProperties);
-            }
-            catch (IllegalArgumentException | IotHubException | IOException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+        return SendAsync(() -> CreateExportDevicesRequest(exportBlobContainerUri, excludeKeys), this::ProcessJobResponse);
     }
 
     /**
-     * Create a bulk import job.
+     * Create a bulk import job. The devices.txt blob to import can be written with {@link ExportImportDeviceWriter}.
      *
      * @param importBlobContainerUri URI containing SAS token to a blob container that contains registry data to sync
      * @param outputBlobContainerUri URI containing SAS token to a blob container where the result of the bulk import operation will be placed
@@ -666,21 +550,7 @@ public class RegistryManager
     public JobProperties importDevices(String importBlobContainerUri, String outputBlobContainerUri)
             throws IllegalArgumentException, IOException, IotHubException, JsonSyntaxException
     {
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_069: [The function shall throw IllegalArgumentException if any of the input parameters is null]
-        if (importBlobContainerUri == null || outputBlobContainerUri == null)
-        {
-            throw new IllegalArgumentException("Import blob uri or output blob uri cannot be null");
-        }
-
-        //CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_070: [The function shall get the URL for the bulk import job creation]
-        URL url = iotHubConnectionString.getUrlCreateExportImportJob();
-
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_071: [The function shall create a new SAS token for the bulk import job]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
-
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_072: [The function shall create a new HttpRequest for the bulk import job creation]
-        String jobPropertiesJson = CreateImportJobPropertiesJson(importBlobContainerUri, outputBlobContainerUri);
-        HttpRequest request = CreateRequest(url, HttpMethod.POST, jobPropertiesJson.getBytes(), sasTokenString);
+        HttpRequest request = CreateImportDevicesRequest(importBlobContainerUri, outputBlobContainerUri);
 
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_073: [The function shall send the created request and get the response]
         HttpResponse response = request.send();
@@ -706,20 +576,7 @@ public class RegistryManager
     {
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_076: [The function shall create an async wrapper around
         // the importDevices() function call, handle the return value or delegate exception]
-        final CompletableFuture<JobProperties> future = new CompletableFuture<>();
-        executor.submit(() ->
-        {
-            try
-            {
-                JobProperties responseJobProperties = importDevices(importBlobContainerUri, outputBlobContainerUri);
-                future.complete(responseJobProperties);
-            }
-            catch (IllegalArgumentException | IotHubException | IOException e)
-            {
-                future.completeExceptionally(e);
-            }
-        });
-        return future;
+        return SendAsync(() -> CreateImportDevicesRequest(importBlobContainerUri, outputBlobContainerUri), this::ProcessJobResponse);
     }
 
     /**
@@ -735,20 +592,7 @@ public class RegistryManager
      */
     public JobProperties getJob(String jobId) throws IllegalArgumentException, IOException, IotHubException, JsonSyntaxException
     {
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_077: [The function shall throw IllegalArgumentException if the input parameter is null]
-        if (jobId == null)
-        {
-            throw new IllegalArgumentException("Job id cannot be null");
-        }
-
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_078: [The function shall get the URL for the get request]
-        URL url = iotHubConnectionString.getUrlImportExportJob(jobId);
-
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_079: [The function shall create a new SAS token for the get request **]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
-
-        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_080: [The function shall create a new HttpRequest for getting the properties of a job]
-        HttpRequest request = CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
+        HttpRequest request = CreateGetJobRequest(jobId);
 
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_081: [The function shall send the created request and get the response]
         HttpResponse response = request.send();
@@ -772,20 +616,302 @@ public class RegistryManager
     {
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_084: [The function shall create an async wrapper around
         // the getJob() function call, handle the return value or delegate exception]
-        final CompletableFuture<JobProperties> future = new CompletableFuture<>();
-        executor.submit(() ->
+        return SendAsync(() -> CreateGetJobRequest(jobId), this::ProcessJobResponse);
+    }
+
+    private BulkRegistryOperationResult bulkRegistryOperation(Collection<ExportImportDevice> devices,
+                                                              ImportMode importMode,
+                                                              ImportMode importModeIfMatchETag) throws IOException
+    {
+        if (devices == null || devices.isEmpty())
+        {
+            throw new IllegalArgumentException("devices cannot be null or empty");
+        }
+
+        // The requests are serialized up front, so a device that cannot be serialized fails the call before anything is sent.
+        List<List<ExportImportDevice>> requestDevices = new ArrayList<>();
+        List<StringBuilder> requestPayloads = new ArrayList<>();
+        for (ExportImportDevice device : devices)
+        {
+            if (device == null)
+            {
+                throw new IllegalArgumentException("devices cannot contain null");
+            }
+
+            ExportImportDeviceParser parser;
+            try
+            {
+                parser = device.toExportImportDeviceParser();
+            }
+            catch (IllegalStateException e)
+            {
+                throw new IllegalArgumentException("Device " + device.getId() + " cannot be serialized: " + e.getMessage());
+            }
+            parser.setImportMode((device.geteTag() == null ? importMode : importModeIfMatchETag).toString());
+
+            int last = requestDevices.size() - 1;
+            if (last < 0 || requestDevices.get(last).size() == MAX_DEVICES_PER_BULK_REQUEST)
+            {
+                requestDevices.add(new ArrayList<>(MAX_DEVICES_PER_BULK_REQUEST));
+                requestPayloads.add(new StringBuilder("["));
+                last++;
+            }
+            else
+            {
+                requestPayloads.get(last).append(',');
+            }
+            requestDevices.get(last).add(device);
+            requestPayloads.get(last).append(parser.toJson());
+        }
+
+        // Every request holds a permit until its response is processed, the last acquire waits for all of them.
+        BulkRegistryOperationResult result = new BulkRegistryOperationResult();
+        Semaphore requests = new Semaphore(MAX_PARALLEL_BULK_REQUESTS);
+        try
+        {
+            for (int i = 0; i < requestDevices.size(); i++)
+            {
+                requests.acquire();
+                byte[] payload = requestPayloads.get(i).append(']').toString().getBytes(StandardCharsets.UTF_8);
+                sendBulkRequest(requestDevices.get(i), payload, result, requests);
+            }
+            requests.acquire(MAX_PARALLEL_BULK_REQUESTS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the bulk registry requests");
+        }
+
+        return result;
+    }
+
+    private void sendBulkRequest(List<ExportImportDevice> devices, byte[] payload, BulkRegistryOperationResult result,
+                                 Semaphore requests)
+    {
+        CompletableFuture<HttpResponse> response;
+        try
+        {
+            URL url = iotHubConnectionString.getUrlBulkDevices();
+            String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+            response = CreateRequest(url, HttpMethod.POST, payload, sasTokenString).sendAsync();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            result.addFailure(devices, e);
+            requests.release();
+            return;
+        }
+
+        response.whenComplete((bulkResponse, failure) ->
+        {
+            try
+            {
+                if (failure != null)
+                {
+                    result.addFailure(devices, failure instanceof Exception ? (Exception) failure : new IOException(failure));
+                }
+                else
+                {
+                    result.add(ProcessBulkResponse(bulkResponse));
+                }
+            }
+            catch (IOException | IotHubException | RuntimeException e)
+            {
+                result.addFailure(devices, e);
+            }
+            finally
+            {
+                requests.release();
+            }
+        });
+    }
+
+    private BulkRegistryOperationResultParser ProcessBulkResponse(HttpResponse response) throws IOException, IotHubException
+    {
+        // The hub answers 400 with the result of every device when the operation failed for some of them.
+        byte[] body = response.getStatus() < 300 ? response.getBody() : response.getErrorReason();
+        try
+        {
+            return new BulkRegistryOperationResultParser(new String(body, StandardCharsets.UTF_8));
+        }
+        catch (IllegalArgumentException e)
+        {
+            IotHubExceptionManager.httpResponseVerification(response);
+            throw new IOException("Unexpected response to a bulk registry operation");
+        }
+    }
+
+    /**
+     * Builds the request, sends it on the HTTP engine and handles its response on the I/O thread that received it.
+     *
+     * @return the future result. It completes exceptionally with the exception of the request factory, with the
+     * IOException of a failed exchange, or with the IotHubException, IOException or runtime exception of the handler.
+     */
+    private <T> CompletableFuture<T> SendAsync(RequestFactory requestFactory, ResponseHandler<T> handler)
+    {
+        // A bad argument or a failure to build the request fails the future, not the call.
+        HttpRequest request;
+        try
+        {
+            request = requestFactory.create();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        return request.sendAsync().thenApply(response ->
         {
             try
             {
-                JobProperties responseJobProperties = getJob(jobId);
-                future.complete(responseJobProperties);
+                return handler.handle(response);
             }
-            catch (IllegalArgumentException | IotHubException | IOException e)
+            catch (IOException | IotHubException e)
             {
-                future.completeExceptionally(e);
+                throw new CompletionException(e);
             }
         });
-        return future;
+    }
+
+    private HttpRequest CreateGetRequest(URL url) throws IOException
+    {
+        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        return CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
+    }
+
+    private HttpRequest CreateAddDeviceRequest(Device device) throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_005: [The function shall deserialize the given device object to Json string]
+        String deviceJson = device.toDeviceParser().toJson();
+
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_006: [The function shall get the URL for the device]
+        URL url = iotHubConnectionString.getUrlDevice(device.getDeviceId());
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_007: [The function shall create a new SAS token for the device]
+        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_008: [The function shall create a new HttpRequest for adding the device to IotHub]
+        return CreateRequest(url, HttpMethod.PUT, deviceJson.getBytes(), sasTokenString);
+    }
+
+    private HttpRequest CreateUpdateDeviceRequest(Device device, Boolean forceUpdate) throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_035: [The function shall set forceUpdate on the device]
+        device.setForceUpdate(forceUpdate);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_036: [The function shall get the URL for the device]
+        URL url = iotHubConnectionString.getUrlDevice(device.getDeviceId());
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_037: [The function shall create a new SAS token for the device]
+        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_038: [The function shall create a new HttpRequest for updating the device on IotHub]
+        HttpRequest request = CreateRequest(url, HttpMethod.PUT, device.toDeviceParser().toJson().getBytes(), sasTokenString);
+        request.setHeaderField("If-Match", "*");
+        return request;
+    }
+
+    private HttpRequest CreateRemoveDeviceRequest(String deviceId) throws IOException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_047: [The function shall get the URL for the device]
+        URL url = iotHubConnectionString.getUrlDevice(deviceId);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_048: [The function shall create a new SAS token for the device]
+        String sasToken = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+
+        // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_049: [The function shall create a new HttpRequest for removing the device from IotHub]
+        HttpRequest request = new HttpRequest(url, HttpMethod.DELETE, new byte[0]);
+        request.setReadTimeoutMillis(DEFAULT_HTTP_TIMEOUT_MS);
+        request.setHeaderField("authorization", sasToken);
+        request.setHeaderField("If-Match", "*");
+        return request;
+    }
+
+    private HttpRequest CreateExportDevicesRequest(String exportBlobContainerUri, Boolean excludeKeys) throws IOException
+    {
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_061: [The function shall throw IllegalArgumentException
+        // if any of the input parameters is null]
+        if (exportBlobContainerUri == null || excludeKeys == null)
+        {
+            throw new IllegalArgumentException("Export blob uri cannot be null");
+        }
+
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_062: [The function shall get the URL for the bulk export job creation]
+        URL url = iotHubConnectionString.getUrlCreateExportImportJob();
+
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_063: [The function shall create a new SAS token for the bulk export job]
+        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_064: [The function shall create a new HttpRequest for the bulk export job creation ]
+        String jobPropertiesJson = CreateExportJobPropertiesJson(exportBlobContainerUri, excludeKeys);
+        return CreateRequest(url, HttpMethod.POST, jobPropertiesJson.getBytes(), sasTokenString);
+    }
+
+    private HttpRequest CreateImportDevicesRequest(String importBlobContainerUri, String outputBlobContainerUri) throws IOException
+    {
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_069: [The function shall throw IllegalArgumentException if any of the input parameters is null]
+        if (importBlobContainerUri == null || outputBlobContainerUri == null)
+        {
+            throw new IllegalArgumentException("Import blob uri or output blob uri cannot be null");
+        }
+
+        //CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_070: [The function shall get the URL for the bulk import job creation]
+        URL url = iotHubConnectionString.getUrlCreateExportImportJob();
+
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_071: [The function shall create a new SAS token for the bulk import job]
+        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_072: [The function shall create a new HttpRequest for the bulk import job creation]
+        String jobPropertiesJson = CreateImportJobPropertiesJson(importBlobContainerUri, outputBlobContainerUri);
+        return CreateRequest(url, HttpMethod.POST, jobPropertiesJson.getBytes(), sasTokenString);
+    }
+
+    private HttpRequest CreateGetJobRequest(String jobId) throws IOException
+    {
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_077: [The function shall throw IllegalArgumentException if the input parameter is null]
+        if (jobId == null)
+        {
+            throw new IllegalArgumentException("Job id cannot be null");
+        }
+
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_078: [The function shall get the URL for the get request]
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_079: [The function shall create a new SAS token for the get request **]
+        // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_080: [The function shall create a new HttpRequest for getting the properties of a job]
+        return CreateGetRequest(iotHubConnectionString.getUrlImportExportJob(jobId));
+    }
+
+    private Device ProcessDeviceResponse(HttpResponse response) throws IotHubException, JsonSyntaxException
+    {
+        IotHubExceptionManager.httpResponseVerification(response);
+        String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
+        return new Device(new DeviceParser(bodyStr));
+    }
+
+    private ArrayList<Device> ProcessDeviceListResponse(HttpResponse response) throws IotHubException, JsonSyntaxException
+    {
+        IotHubExceptionManager.httpResponseVerification(response);
+        String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
+        try (JsonReader jsonReader = Json.createReader(new StringReader(bodyStr)))
+        {
+            ArrayList<Device> deviceList = new ArrayList<>();
+            JsonArray deviceArray = jsonReader.readArray();
+
+            for (int i = 0; i < deviceArray.size(); i++)
+            {
+                JsonObject jsonObject = deviceArray.getJsonObject(i);
+                Device iotHubDevice = new Device(new DeviceParser(jsonObject.toString()));
+                deviceList.add(iotHubDevice);
+            }
+            return deviceList;
+        }
+    }
+
+    private RegistryStatistics ProcessStatisticsResponse(HttpResponse response) throws IotHubException, JsonSyntaxException
+    {
+        IotHubExceptionManager.httpResponseVerification(response);
+        String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
+        return new RegistryStatistics(new RegistryStatisticsParser(bodyStr));
     }
 
     private String CreateExportJobPropertiesJson(String exportBlobContainerUri, Boolean excludeKeysInExport)
@@ -11,15 +11,14 @@ import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpSend;
 
 import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 /**
  * Extend the ServiceClient class and provide AMPQ specific implementation.
  */
 public class ServiceClient
 {
-    private final ExecutorService executor = Executors.newFixedThreadPool(10);
+    private final Executor executor = BlockingOperationExecutor.getInstance();
 
     private AmqpSend amqpMessageSender;
     private final String hostName;
@@ -137,7 +136,7 @@ public class ServiceClient
     {
         // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_12_014: [The function shall create an async wrapper around the open() function call]
         final CompletableFuture<Void> future = new CompletableFuture<>();
-        executor.submit(() -> {
+        executor.execute(() -> {
             try
             {
                 open();
@@ -159,7 +158,7 @@ public class ServiceClient
     {
         // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_12_015: [The function shall create an async wrapper around the close() function call]
         final CompletableFuture<Void> future = new CompletableFuture<>();
-        executor.submit(() -> {
+        executor.execute(() -> {
             try
             {
                 close();
@@ -183,7 +182,7 @@ public class ServiceClient
     {
         // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_12_016: [The function shall create an async wrapper around the send() function call]
         final CompletableFuture<Void> future = new CompletableFuture<>();
-        executor.submit(() -> {
+        executor.execute(() -> {
         try
         {
             send(deviceId, message);
@@ -15,6 +15,8 @@ import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
 import java.io.IOException;
 import java.net.URL;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Set of common operations for Twin and Method.
@@ -32,6 +34,7 @@ public class DeviceOperations
     private static final String ACCEPT_CHARSET = "charset=utf-8";
     private static final String CONTENT_TYPE = "Content-Type";
     private static final Integer DEFAULT_HTTP_TIMEOUT_MS = 24000;
+    private static final int NOT_MODIFIED = 304;
     private static Map<String, String> headers = null;
 
     /**
@@ -55,6 +58,93 @@ public class DeviceOperations
             String requestId,
             long timeoutInMs) 
             throws IOException, IotHubException, IllegalArgumentException
+    {
+        return request(iotHubConnectionString, url, method, payload, requestId, timeoutInMs, null);
+    }
+
+    /**
+     * Send a http request to the IoTHub using the Twin/Method standard, with additional headers for this request
+     * only, and return its response. A 304 (Not Modified) answer to a conditional request is returned as is.
+     *
+     * @param iotHubConnectionString is the connection string for the IoTHub
+     * @param url is the Twin URL for the device ID.
+     * @param method is the HTTP method (GET, POST, DELETE, PATCH, PUT).
+     * @param payload is the array of bytes that contains the payload.
+     * @param requestId is an unique number that identify the request.
+     * @param timeoutInMs is timeout in milliseconds.
+     * @param requestHeaders are the additional headers of this request. Can be {@code null}.
+     * @return the result of the request.
+     * @throws IotHubException This exception is thrown if the response verification failed
+     * @throws IOException This exception is thrown if the IO operation failed
+     */
+    public static HttpResponse request(
+            IotHubConnectionString iotHubConnectionString,
+            URL url,
+            HttpMethod method,
+            byte[] payload,
+            String requestId,
+            long timeoutInMs,
+            Map<String, String> requestHeaders)
+            throws IOException, IotHubException, IllegalArgumentException
+    {
+        HttpRequest request = createRequest(iotHubConnectionString, url, method, payload, requestId, timeoutInMs, requestHeaders);
+
+        /* Codes_SRS_DEVICE_OPERATIONS_21_015: [The request shall send the created request and get the response.] */
+        HttpResponse response = request.send();
+
+        return verifyResponse(response, requestHeaders);
+    }
+
+    /**
+     * Send a http request to the IoTHub using the Twin/Method standard without blocking, see
+     * {@link #request(IotHubConnectionString, URL, HttpMethod, byte[], String, long, Map)}. The request runs on the
+     * I/O threads shared by the service clients, and does not hold a thread while it waits for a connection.
+     *
+     * @param iotHubConnectionString is the connection string for the IoTHub
+     * @param url is the Twin URL for the device ID.
+     * @param method is the HTTP method (GET, POST, DELETE, PATCH, PUT).
+     * @param payload is the array of bytes that contains the payload.
+     * @param requestId is an unique number that identify the request.
+     * @param timeoutInMs is timeout in milliseconds.
+     * @param requestHeaders are the additional headers of this request. Can be {@code null}.
+     * @return the future result of the request. It completes exceptionally with the IotHubException of a failed
+     * response, or with the IOException of a failed exchange.
+     * @throws IOException This exception is thrown if the request could not be created
+     */
+    public static CompletableFuture<HttpResponse> requestAsync(
+            IotHubConnectionString iotHubConnectionString,
+            URL url,
+            HttpMethod method,
+            byte[] payload,
+            String requestId,
+            long timeoutInMs,
+            Map<String, String> requestHeaders)
+            throws IOException, IllegalArgumentException
+    {
+        HttpRequest request = createRequest(iotHubConnectionString, url, method, payload, requestId, timeoutInMs, requestHeaders);
+
+        return request.sendAsync().thenApply(response ->
+        {
+            try
+            {
+                return verifyResponse(response, requestHeaders);
+            }
+            catch (IotHubException e)
+            {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    private static HttpRequest createRequest(
+            IotHubConnectionString iotHubConnectionString,
+            URL url,
+            HttpMethod method,
+            byte[] payload,
+            String requestId,
+            long timeoutInMs,
+            Map<String, String> requestHeaders)
+            throws IOException, IllegalArgumentException
     {
         /* Codes_SRS_DEVICE_OPERATIONS_21_001: [The request shall throw IllegalArgumentException if the provided `iotHubConnectionString` is null.] */
         if(iotHubConnectionString == null)
@@ -130,8 +220,23 @@ public class DeviceOperations
             headers = null;
         }
 
-        /* Codes_SRS_DEVICE_OPERATIONS_21_015: [The request shall send the created request and get the response.] */
-        HttpResponse response = request.send();
+        if (requestHeaders != null)
+        {
+            for(Map.Entry<String, String> header : requestHeaders.entrySet())
+            {
+                request.setHeaderField(header.getKey(), header.getValue());
+            }
+        }
+
+        return request;
+    }
+
+    private static HttpResponse verifyResponse(HttpResponse response, Map<String, String> requestHeaders) throws IotHubException
+    {
+        if ((response.getStatus() == NOT_MODIFIED) && (requestHeaders != null))
+        {
+            return response;
+        }
 
         /* Codes_SRS_DEVICE_OPERATIONS_21_016: [If the resulted HttpResponseStatus represents fail, the request shall throw proper Exception by calling httpResponseVerification.] */
         IotHubExceptionManager.httpResponseVerification(response);
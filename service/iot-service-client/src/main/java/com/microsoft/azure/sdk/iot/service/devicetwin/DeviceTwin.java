@@ -25,6 +25,9 @@ public class DeviceTwin
     private Integer requestId = 0;
     private final long USE_DEFAULT_TIMEOUT = 0;
     private final int DEFAULT_PAGE_SIZE = 100;
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final int NOT_MODIFIED = 304;
+    private TwinCache twinCache = null;
 
     /**
      * Static constructor to create instance from connection string
@@ -53,6 +56,27 @@ public class DeviceTwin
         return deviceTwin;
     }
 
+    /**
+     * Static constructor to create instance from connection string, reading the twins through a cache. A read of
+     * a cached twin is a conditional request, that downloads and parses the twin only if it changed.
+     *
+     * @param connectionString The iot hub connection string
+     * @param twinCache The cache of the twins read by this instance. It can be shared by several instances of the same hub.
+     * @return The instance of DeviceTwin
+     * @throws IOException This exception is thrown if the object creation failed
+     */
+    public static DeviceTwin createFromConnectionString(String connectionString, TwinCache twinCache) throws IOException
+    {
+        if (twinCache == null)
+        {
+            throw new IllegalArgumentException("Twin cache cannot be null");
+        }
+
+        DeviceTwin deviceTwin = createFromConnectionString(connectionString);
+        deviceTwin.twinCache = twinCache;
+        return deviceTwin;
+    }
+
     /**
      * This method retrieves device twin for the specified device.
      *
@@ -89,8 +113,40 @@ public class DeviceTwin
          **Codes_SRS_DEVICETWIN_25_009: [** The function shall send the created request and get the response **]**
          **Codes_SRS_DEVICETWIN_25_010: [** The function shall verify the response status and throw proper Exception **]**
          */
-        HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.GET, new byte[0], String.valueOf(requestId++), USE_DEFAULT_TIMEOUT);
-        String twin = new String(response.getBody(), StandardCharsets.UTF_8);
+        String twin;
+        if (this.twinCache == null)
+        {
+            HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.GET, new byte[0], String.valueOf(requestId++), USE_DEFAULT_TIMEOUT);
+            twin = new String(response.getBody(), StandardCharsets.UTF_8);
+        }
+        else
+        {
+            TwinCache.Entry cached = this.twinCache.get(device.getDeviceId());
+            if (cached == null)
+            {
+                HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.GET, new byte[0], String.valueOf(requestId++), USE_DEFAULT_TIMEOUT);
+                twin = new String(response.getBody(), StandardCharsets.UTF_8);
+            }
+            else
+            {
+                Map<String, String> conditionalHeaders = new HashMap<>();
+                conditionalHeaders.put(IF_NONE_MATCH, "\"" + cached.getETag() + "\"");
+                HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.GET, new byte[0], String.valueOf(requestId++), USE_DEFAULT_TIMEOUT, conditionalHeaders);
+                if (response.getStatus() != NOT_MODIFIED)
+                {
+                    twin = new String(response.getBody(), StandardCharsets.UTF_8);
+                }
+                else if (cached.getETag().equals(device.getETag()))
+                {
+                    // The device already holds this twin, there is nothing to parse.
+                    return;
+                }
+                else
+                {
+                    twin = cached.getTwinJson();
+                }
+            }
+        }
 
         /*
         **Codes_SRS_DEVICETWIN_25_011: [** The function shall deserialize the payload by calling updateTwin Api on the twin object **]**
@@ -104,6 +160,11 @@ public class DeviceTwin
         device.setTags(device.getTwinParser().getTagsMap());
         device.setDesiredProperties(device.getTwinParser().getDesiredPropertyMap());
         device.setReportedProperties(device.getTwinParser().getReportedPropertyMap());
+
+        if (this.twinCache != null)
+        {
+            this.twinCache.put(device.getDeviceId(), device.getETag(), twin);
+        }
     }
 
     /**
@@ -168,6 +229,10 @@ public class DeviceTwin
 
         **Codes_SRS_DEVICETWIN_25_020: [** The function shall verify the response status and throw proper Exception **]**
          */
+        if (this.twinCache != null)
+        {
+            this.twinCache.invalidate(device.getDeviceId());
+        }
         HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.PATCH, twinJson.getBytes(StandardCharsets.UTF_8), String.valueOf(requestId++),0);
     }
 
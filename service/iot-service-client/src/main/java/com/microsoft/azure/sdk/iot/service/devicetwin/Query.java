@@ -5,6 +5,7 @@
 
 package com.microsoft.azure.sdk.iot.service.devicetwin;
 
+import com.google.gson.JsonElement;
 import com.microsoft.azure.sdk.iot.deps.serializer.ParserUtility;
 import com.microsoft.azure.sdk.iot.deps.serializer.QueryRequestParser;
 import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
@@ -17,6 +18,7 @@ import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
 
 /*
     Sql style query IotHub for twin, jobs, device jobs or raw data
@@ -44,6 +46,8 @@ public class Query
     private HttpMethod httpMethod;
     private long timeout;
 
+    private QueryPagePrefetcher prefetcher;
+
     /**
      * Constructor for Query
      * @param query Sql style query to be sent to IotHub
@@ -166,6 +170,9 @@ public class Query
             throw new IllegalArgumentException("Input parameters cannot be null");
         }
 
+        // A new request restarts the query, the pages read ahead belong to the previous one.
+        this.prefetcher = null;
+
         //Codes_SRS_QUERY_25_020: [This method shall save all the parameters for future use.]
         this.iotHubConnectionString = iotHubConnectionString;
         this.url = url;
@@ -229,10 +236,35 @@ public class Query
         }
 
         //Codes_SRS_QUERY_25_013: [The method shall create a QueryResponse object with the contents from the response body and save it.]
-        this.queryResponse = new QueryResponse(new String(httpResponse.getBody()));
+        this.queryResponse = new QueryResponse(httpResponse.getBody());
         return this.queryResponse;
     }
 
+    /**
+     * Reads the next pages of this query in the background, while the current one is consumed. Each page is requested
+     * as soon as the previous one arrived, until readAheadPages pages or maxBufferedChars characters wait to be consumed.
+     *
+     * @param executor the executor that requests the pages. It is not shut down by the query.
+     * @param readAheadPages how many pages can wait to be consumed.
+     * @param maxBufferedChars the total length of the pages that can wait to be consumed.
+     * @throws IllegalArgumentException if the executor is {@code null}, if readAheadPages or maxBufferedChars are not
+     *                                  positive, or if the query was not sent yet.
+     */
+    public void enablePrefetch(Executor executor, int readAheadPages, long maxBufferedChars) throws IllegalArgumentException
+    {
+        QueryPagePrefetcher.validate(executor, readAheadPages, maxBufferedChars);
+
+        if (this.queryResponse == null)
+        {
+            throw new IllegalArgumentException("Send the query before enabling the prefetch");
+        }
+
+        byte[] payload = this.isSqlQuery ? new QueryRequestParser(this.query).toJson().getBytes() : new byte[0];
+        this.prefetcher = new QueryPagePrefetcher(this.iotHubConnectionString, this.url, this.httpMethod, payload,
+                this.timeout, this.pageSize, this.requestQueryType, executor, readAheadPages, maxBufferedChars);
+        this.prefetcher.start(this.responseContinuationToken);
+    }
+
     /**
      * Getter for the continuation token received on response
      * @return continuation token. Can be {@code null}.
@@ -253,7 +285,23 @@ public class Query
     {
         //Codes_SRS_QUERY_25_015: [The method shall return true if next element from QueryResponse is available and false otherwise.]
         boolean isNextAvailable = this.queryResponse.hasNext();
-        if (!isNextAvailable && this.getContinuationToken() != null)
+        if (!isNextAvailable && this.prefetcher != null)
+        {
+            // The pages come from the prefetcher, an empty page does not end the query while a token follows it.
+            while (!isNextAvailable && this.getContinuationToken() != null)
+            {
+                QueryPagePrefetcher.Page page = this.prefetcher.take();
+                if (page == null)
+                {
+                    break;
+                }
+                this.responseContinuationToken = page.getContinuationToken();
+                this.queryResponse = new QueryResponse(page.getBody());
+                isNextAvailable = this.queryResponse.hasNext();
+            }
+            return isNextAvailable;
+        }
+        else if (!isNextAvailable && this.getContinuationToken() != null)
         {
             //Codes_SRS_QUERY_25_021: [If no further query response is available, then this method shall continue to request query to IotHub if continuation token is available.]
             this.continueQuery(this.getContinuationToken());
@@ -287,4 +335,36 @@ public class Query
        }
 
     }
+
+    /**
+     * provides the next element in query response as a json tree, for the queries that project a few fields
+     * @return the next element in query response, {@code null} for a null element
+     * @throws IOException if sending the request is unsuccessful because of input parameters
+     * @throws IotHubException if sending the request is unsuccessful at the Hub
+     * @throws NoSuchElementException if no further elements are available
+     */
+    JsonElement nextJsonElement() throws IOException, IotHubException, NoSuchElementException
+    {
+        if (!this.hasNext())
+        {
+            throw new NoSuchElementException();
+        }
+        return this.queryResponse.nextJsonElement();
+    }
+
+    /**
+     * provides the next element in query response as a map of its fields, for the queries that project a few fields
+     * @return the next element in query response, {@code null} for a null element
+     * @throws IOException if sending the request is unsuccessful because of input parameters
+     * @throws IotHubException if sending the request is unsuccessful at the Hub
+     * @throws NoSuchElementException if no further elements are available
+     */
+    Map<String, Object> nextMap() throws IOException, IotHubException, NoSuchElementException
+    {
+        if (!this.hasNext())
+        {
+            throw new NoSuchElementException();
+        }
+        return this.queryResponse.nextMap();
+    }
 }
@@ -16,6 +16,7 @@ import java.io.IOException;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 public class QueryCollection
 {
@@ -39,6 +40,11 @@ public class QueryCollection
 
     private boolean isInitialQuery;
 
+    private Executor prefetchExecutor;
+    private int prefetchReadAheadPages;
+    private long prefetchMaxBufferedChars;
+    private QueryPagePrefetcher prefetcher;
+
     /**
      * Constructor for sql based queries
      *
@@ -127,6 +133,22 @@ public class QueryCollection
      */
     private QueryCollectionResponse<String> sendQueryRequest(QueryOptions options) throws IOException, IotHubException
     {
+        if (this.prefetcher != null)
+        {
+            if (options != null && options.getContinuationToken() == null && options.getPageSize() == this.prefetcher.getPageSize())
+            {
+                QueryPagePrefetcher.Page page = this.prefetcher.take();
+                if (page != null)
+                {
+                    this.responseContinuationToken = page.getContinuationToken();
+                    return new QueryCollectionResponse(new String(page.getBody()), this.responseContinuationToken);
+                }
+            }
+
+            // This request does not continue where the prefetch is, the pages read ahead cannot be used.
+            this.prefetcher = null;
+        }
+
         //Codes_SRS_QUERYCOLLECTION_34_011: [If the provided query options is not null and contains a continuation token, it shall be put in the query headers to continue the query.]
         //Codes_SRS_QUERYCOLLECTION_34_012: [If a continuation token is not provided from the passed in query options, but there is a continuation token saved in the latest queryCollectionResponse, that token shall be put in the query headers to continue the query.]
         //Codes_SRS_QUERYCOLLECTION_34_013: [If the provided query options is not null, the query option's page size shall be included in the query headers.]
@@ -154,6 +176,15 @@ public class QueryCollection
 
         //Codes_SRS_QUERYCOLLECTION_34_021: [The method shall create a QueryResponse object with the contents from the response body and its continuation token and return it.]
         this.isInitialQuery = false;
+
+        if (this.prefetchExecutor != null)
+        {
+            int requestPageSize = (options != null) ? options.getPageSize() : this.pageSize;
+            this.prefetcher = new QueryPagePrefetcher(this.iotHubConnectionString, this.url, this.httpMethod, payload,
+                    this.timeout, requestPageSize, this.requestQueryType, this.prefetchExecutor, this.prefetchReadAheadPages, this.prefetchMaxBufferedChars);
+            this.prefetcher.start(this.responseContinuationToken);
+        }
+
         return new QueryCollectionResponse(new String(httpResponse.getBody()), this.responseContinuationToken);
     }
 
@@ -214,6 +245,25 @@ public class QueryCollection
         }
     }
 
+    /**
+     * Reads the next pages of this query in the background, while the current one is consumed. Once a page arrived,
+     * the following ones are requested with the same page size, until readAheadPages pages or maxBufferedChars
+     * characters wait to be consumed. A next call with a continuation token or another page size drops them.
+     *
+     * @param executor the executor that requests the pages. It is not shut down by the query.
+     * @param readAheadPages how many pages can wait to be consumed.
+     * @param maxBufferedChars the total length of the pages that can wait to be consumed.
+     * @throws IllegalArgumentException if the executor is {@code null}, or if readAheadPages or maxBufferedChars are not positive.
+     */
+    public void enablePrefetch(Executor executor, int readAheadPages, long maxBufferedChars) throws IllegalArgumentException
+    {
+        QueryPagePrefetcher.validate(executor, readAheadPages, maxBufferedChars);
+
+        this.prefetchExecutor = executor;
+        this.prefetchReadAheadPages = readAheadPages;
+        this.prefetchMaxBufferedChars = maxBufferedChars;
+    }
+
     /**
      * Getter for page size.
      * @return the page size of this
@@ -0,0 +1,320 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.devicetwin;
+
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Reads the next pages of a query ahead of its consumer, on an executor.
+ *
+ * Each page carries the continuation token of the page after it, so the pages are fetched one after the other, as soon
+ * as the previous one arrived, until the read ahead depth or the memory cap is reached. The consumer takes them in order.
+ */
+final class QueryPagePrefetcher
+{
+    private static final String CONTINUATION_TOKEN_KEY = "x-ms-continuation";
+    private static final String ITEM_TYPE_KEY = "x-ms-item-type";
+    private static final String PAGE_SIZE_KEY = "x-ms-max-item-count";
+
+    /**
+     * One page of a query response.
+     */
+    static final class Page
+    {
+        private final byte[] body;
+        private final String continuationToken;
+
+        private Page(byte[] body, String continuationToken)
+        {
+            this.body = body;
+            this.continuationToken = continuationToken;
+        }
+
+        byte[] getBody()
+        {
+            return this.body;
+        }
+
+        String getContinuationToken()
+        {
+            return this.continuationToken;
+        }
+    }
+
+    private final IotHubConnectionString iotHubConnectionString;
+    private final URL url;
+    private final HttpMethod httpMethod;
+    private final byte[] payload;
+    private final long timeout;
+    private final int pageSize;
+    private final QueryType requestQueryType;
+
+    private final Executor executor;
+    private final int readAheadPages;
+    private final long maxBufferedChars;
+
+    private final LinkedList<Page> pages = new LinkedList<>();
+    private long bufferedChars;
+    private String nextContinuationToken;
+    private boolean fetching;
+    private Exception failure;
+
+    QueryPagePrefetcher(IotHubConnectionString iotHubConnectionString, URL url, HttpMethod httpMethod, byte[] payload,
+                        long timeout, int pageSize, QueryType requestQueryType,
+                        Executor executor, int readAheadPages, long maxBufferedChars)
+    {
+        this.iotHubConnectionString = iotHubConnectionString;
+        this.url = url;
+        this.httpMethod = httpMethod;
+        this.payload = payload;
+        this.timeout = timeout;
+        this.pageSize = pageSize;
+        this.requestQueryType = requestQueryType;
+        this.executor = executor;
+        this.readAheadPages = readAheadPages;
+        this.maxBufferedChars = maxBufferedChars;
+    }
+
+    /**
+     * Validates the prefetch settings of a query.
+     *
+     * @param executor the executor that fetches the pages.
+     * @param readAheadPages how many pages can wait for the consumer.
+     * @param maxBufferedChars the total length of the pages that can wait for the consumer.
+     * @throws IllegalArgumentException if the executor is {@code null}, or if readAheadPages or maxBufferedChars are not positive.
+     */
+    static void validate(Executor executor, int readAheadPages, long maxBufferedChars)
+    {
+        if (executor == null)
+        {
+            throw new IllegalArgumentException("executor cannot be null");
+        }
+
+        if (readAheadPages <= 0 || maxBufferedChars <= 0)
+        {
+            throw new IllegalArgumentException("readAheadPages and maxBufferedChars shall be positive");
+        }
+    }
+
+    /**
+     * Getter for the page size the pages are fetched with.
+     *
+     * @return the page size.
+     */
+    int getPageSize()
+    {
+        return this.pageSize;
+    }
+
+    /**
+     * Starts reading ahead from a continuation token.
+     *
+     * @param continuationToken the token of the first page to read, {@code null} if there is no more page.
+     */
+    synchronized void start(String continuationToken)
+    {
+        this.nextContinuationToken = continuationToken;
+        fetchAhead();
+    }
+
+    /**
+     * Returns the next page, waiting for it if it did not arrive yet.
+     *
+     * @return the next page, or {@code null} if there is no more page.
+     * @throws IOException if the page could not be fetched or its response is unexpected.
+     * @throws IotHubException if the hub failed the request of the page.
+     */
+    Page take() throws IOException, IotHubException
+    {
+        String inlineContinuationToken;
+        synchronized (this)
+        {
+            while (this.pages.isEmpty())
+            {
+                throwFailure();
+
+                if (this.nextContinuationToken == null && !this.fetching)
+                {
+                    return null;
+                }
+
+                if (!this.fetching)
+                {
+                    break;
+                }
+
+                try
+                {
+                    this.wait();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the next query page");
+                }
+            }
+
+            if (!this.pages.isEmpty())
+            {
+                Page page = this.pages.poll();
+                this.bufferedChars -= page.body.length;
+                fetchAhead();
+                return page;
+            }
+
+            // The executor rejected the fetch, the consumer fetches the page itself.
+            inlineContinuationToken = this.nextContinuationToken;
+            this.fetching = true;
+        }
+
+        Page page;
+        try
+        {
+            page = fetch(inlineContinuationToken);
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                this.fetching = false;
+            }
+        }
+
+        synchronized (this)
+        {
+            this.nextContinuationToken = page.continuationToken;
+            fetchAhead();
+        }
+        return page;
+    }
+
+    private void fetchAhead()
+    {
+        if (this.fetching || this.failure != null || this.nextContinuationToken == null
+                || this.pages.size() >= this.readAheadPages || this.bufferedChars >= this.maxBufferedChars)
+        {
+            return;
+        }
+
+        final String continuationToken = this.nextContinuationToken;
+        this.fetching = true;
+        try
+        {
+            this.executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    fetchInBackground(continuationToken);
+                }
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            this.fetching = false;
+        }
+    }
+
+    private void fetchInBackground(String continuationToken)
+    {
+        Page page = null;
+        Exception fetchFailure = null;
+        try
+        {
+            page = fetch(continuationToken);
+        }
+        catch (IOException | IotHubException | RuntimeException e)
+        {
+            fetchFailure = e;
+        }
+
+        synchronized (this)
+        {
+            this.fetching = false;
+            if (page != null)
+            {
+                this.pages.add(page);
+                // The pages are kept as the bytes of the response, at least as many as the characters they decode to.
+                this.bufferedChars += page.body.length;
+                this.nextContinuationToken = page.continuationToken;
+                fetchAhead();
+            }
+            else
+            {
+                this.failure = fetchFailure;
+            }
+            this.notifyAll();
+        }
+    }
+
+    private void throwFailure() throws IOException, IotHubException
+    {
+        if (this.failure instanceof IOException)
+        {
+            throw (IOException) this.failure;
+        }
+        else if (this.failure instanceof IotHubException)
+        {
+            throw (IotHubException) this.failure;
+        }
+        else if (this.failure != null)
+        {
+            throw (RuntimeException) this.failure;
+        }
+    }
+
+    private Page fetch(String continuationToken) throws IOException, IotHubException
+    {
+        // The headers are given to this request only, several pages can be fetched at the same time.
+        Map<String, String> queryHeaders = new HashMap<>();
+        queryHeaders.put(CONTINUATION_TOKEN_KEY, continuationToken);
+        queryHeaders.put(PAGE_SIZE_KEY, String.valueOf(this.pageSize));
+
+        HttpResponse httpResponse = DeviceOperations.request(this.iotHubConnectionString, this.url, this.httpMethod,
+                this.payload, null, this.timeout, queryHeaders);
+
+        String responseContinuationToken = null;
+        QueryType responseQueryType = QueryType.UNKNOWN;
+        for (Map.Entry<String, String> header : httpResponse.getHeaderFields().entrySet())
+        {
+            switch (header.getKey())
+            {
+                case CONTINUATION_TOKEN_KEY:
+                    responseContinuationToken = header.getValue();
+                    break;
+                case ITEM_TYPE_KEY:
+                    responseQueryType = QueryType.fromString(header.getValue());
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (responseQueryType == null || responseQueryType == QueryType.UNKNOWN)
+        {
+            throw new IOException("Query response type is not defined by IotHub");
+        }
+
+        if (this.requestQueryType != responseQueryType)
+        {
+            throw new IOException("Query response does not match query request");
+        }
+
+        return new Page(httpResponse.getBody(), responseContinuationToken);
+    }
+}
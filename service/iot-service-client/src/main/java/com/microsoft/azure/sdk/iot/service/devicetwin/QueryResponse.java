@@ -5,10 +5,14 @@
 
 package com.microsoft.azure.sdk.iot.service.devicetwin;
 
+import com.google.gson.JsonElement;
 import com.microsoft.azure.sdk.iot.deps.serializer.QueryResponseParser;
+import com.microsoft.azure.sdk.iot.deps.serializer.QueryResponseReader;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
+import java.util.Map;
 
 /**
  * Response for the Query
@@ -16,6 +20,7 @@ import java.util.Iterator;
 public class QueryResponse implements Iterator<Object>
 {
     private Iterator<?> responseElementsIterator;
+    private QueryResponseReader responseReader;
 
     /**
      * Creates an object for the query response
@@ -35,6 +40,17 @@ public class QueryResponse implements Iterator<Object>
         this.responseElementsIterator = responseParser.getJsonItems().iterator();
     }
 
+    /**
+     * Creates an object for the query response that decodes the elements lazily. An element is only read from the
+     * response when {@link #next()} reaches it.
+     * @param body the bytes of the json response for query
+     * @throws IllegalArgumentException if the body is null, empty, or not a json array
+     */
+    QueryResponse(byte[] body) throws IllegalArgumentException
+    {
+        this.responseReader = new QueryResponseReader(body);
+    }
+
     /**
      * returns the availability of next response
      * @return true if present and false otherwise
@@ -43,7 +59,7 @@ public class QueryResponse implements Iterator<Object>
     public boolean hasNext()
     {
         //Codes_SRS_QUERY_RESPONSE_25_003: [The method shall return true if next element from QueryResponse is available and false otherwise.]
-        return this.responseElementsIterator.hasNext();
+        return this.responseReader != null ? this.responseReader.hasNext() : this.responseElementsIterator.hasNext();
     }
 
     /**
@@ -54,6 +70,41 @@ public class QueryResponse implements Iterator<Object>
     public Object next()
     {
         //Codes_SRS_QUERY_RESPONSE_25_004: [The method shall return the next element for this QueryResponse.]
-        return this.responseElementsIterator.next();
+        return this.responseReader != null ? this.responseReader.nextJson() : this.responseElementsIterator.next();
+    }
+
+    /**
+     * returns next element in the response as a json tree, without building it as a string first
+     * @return next element in the response, {@code null} for a null element
+     */
+    JsonElement nextJsonElement()
+    {
+        if (this.responseReader != null)
+        {
+            return this.responseReader.nextJsonElement();
+        }
+
+        return nextItemReader().nextJsonElement();
+    }
+
+    /**
+     * returns next element in the response as a map of its fields
+     * @return next element in the response, {@code null} for a null element
+     */
+    Map<String, Object> nextMap()
+    {
+        if (this.responseReader != null)
+        {
+            return this.responseReader.nextMap();
+        }
+
+        return nextItemReader().nextMap();
+    }
+
+    private QueryResponseReader nextItemReader()
+    {
+        // The elements were already split as json, the next one is read again as a one element array.
+        String item = "[" + this.responseElementsIterator.next() + "]";
+        return new QueryResponseReader(item.getBytes(StandardCharsets.UTF_8));
     }
 }
@@ -5,12 +5,14 @@
 
 package com.microsoft.azure.sdk.iot.service.devicetwin;
 
+import com.google.gson.JsonElement;
 import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.service.IotHubConnectionStringBuilder;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 
 import java.io.IOException;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 public class RawTwinQuery
@@ -142,4 +144,42 @@ public class RawTwinQuery
         }
 
     }
+
+    /**
+     * Returns the next element available in response as a json tree. The element is decoded from the response
+     * directly, without building its json string, which suits the queries that select a few fields.
+     * @param query Object corresponding for this query
+     * @return Next element as a response to this query, {@code null} for a null element
+     * @throws IOException If any of input parameters are incorrect
+     * @throws IotHubException If IotHub could not respond successfully to the query request
+     * @throws NoSuchElementException If no other element is found
+     */
+    public synchronized JsonElement nextJsonElement(Query query) throws IOException, IotHubException, NoSuchElementException
+    {
+        if (query == null)
+        {
+            throw new IllegalArgumentException("Query cannot be null");
+        }
+
+        return query.nextJsonElement();
+    }
+
+    /**
+     * Returns the next element available in response as a map of its fields. Nested objects are maps and numbers
+     * are doubles.
+     * @param query Object corresponding for this query
+     * @return Next element as a response to this query, {@code null} for a null element
+     * @throws IOException If any of input parameters are incorrect
+     * @throws IotHubException If IotHub could not respond successfully to the query request
+     * @throws NoSuchElementException If no other element is found
+     */
+    public synchronized Map<String, Object> nextMap(Query query) throws IOException, IotHubException, NoSuchElementException
+    {
+        if (query == null)
+        {
+            throw new IllegalArgumentException("Query cannot be null");
+        }
+
+        return query.nextMap();
+    }
 }
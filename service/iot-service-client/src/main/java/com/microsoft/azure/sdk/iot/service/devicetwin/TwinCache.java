@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.devicetwin;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of twin documents, keyed by device id, for {@link DeviceTwin#getTwin(DeviceTwinDevice)}.
+ *
+ * A twin read for a cached device sends the cached ETag in {@code If-None-Match}. If the twin did not change, the hub
+ * answers 304 without a body and the cached document is used. The cache is bounded by the total size of the cached
+ * documents, the least recently used ones are evicted first.
+ */
+public final class TwinCache
+{
+    /**
+     * One cached twin document and its ETag.
+     */
+    static final class Entry
+    {
+        private final String eTag;
+        private final String twinJson;
+
+        private Entry(String eTag, String twinJson)
+        {
+            this.eTag = eTag;
+            this.twinJson = twinJson;
+        }
+
+        String getETag()
+        {
+            return this.eTag;
+        }
+
+        String getTwinJson()
+        {
+            return this.twinJson;
+        }
+    }
+
+    private final long maxSizeInChars;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeInChars;
+
+    /**
+     * Constructor.
+     *
+     * @param maxSizeInChars the maximum total length of the cached twin documents.
+     * @throws IllegalArgumentException if maxSizeInChars is not positive.
+     */
+    public TwinCache(long maxSizeInChars)
+    {
+        if (maxSizeInChars <= 0)
+        {
+            throw new IllegalArgumentException("maxSizeInChars shall be positive");
+        }
+
+        this.maxSizeInChars = maxSizeInChars;
+    }
+
+    /**
+     * Removes the twin of a device from the cache, so the next read downloads it.
+     *
+     * @param deviceId the device.
+     */
+    public synchronized void invalidate(String deviceId)
+    {
+        Entry entry = this.entries.remove(deviceId);
+        if (entry != null)
+        {
+            this.sizeInChars -= entry.twinJson.length();
+        }
+    }
+
+    /**
+     * Removes every twin from the cache.
+     */
+    public synchronized void clear()
+    {
+        this.entries.clear();
+        this.sizeInChars = 0;
+    }
+
+    /**
+     * Getter for the number of cached twins.
+     *
+     * @return the number of cached twins.
+     */
+    public synchronized int size()
+    {
+        return this.entries.size();
+    }
+
+    synchronized Entry get(String deviceId)
+    {
+        return this.entries.get(deviceId);
+    }
+
+    synchronized void put(String deviceId, String eTag, String twinJson)
+    {
+        invalidate(deviceId);
+        if (eTag == null || twinJson.length() > this.maxSizeInChars)
+        {
+            return;
+        }
+
+        this.entries.put(deviceId, new Entry(eTag, twinJson));
+        this.sizeInChars += twinJson.length();
+
+        Iterator<Map.Entry<String, Entry>> leastRecentlyUsed = this.entries.entrySet().iterator();
+        while (this.sizeInChars > this.maxSizeInChars)
+        {
+            this.sizeInChars -= leastRecentlyUsed.next().getValue().twinJson.length();
+            leastRecentlyUsed.remove();
+        }
+    }
+}
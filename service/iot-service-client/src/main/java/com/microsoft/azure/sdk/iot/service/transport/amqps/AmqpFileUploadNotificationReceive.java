@@ -9,6 +9,7 @@ import com.microsoft.azure.sdk.iot.deps.serializer.FileUploadNotificationParser;
 import com.microsoft.azure.sdk.iot.service.FileUploadNotification;
 import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
 import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.messaging.Data;
 import org.apache.qpid.proton.engine.BaseHandler;
 import org.apache.qpid.proton.engine.Event;
 import org.apache.qpid.proton.reactor.Reactor;
@@ -16,6 +17,7 @@ import org.apache.qpid.proton.reactor.Reactor;
 import java.io.IOException;
 import java.util.Queue;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.function.Consumer;
 
 /**
  * Instance of the QPID-Proton-J BaseHandler class
@@ -33,6 +35,7 @@ public class AmqpFileUploadNotificationReceive extends BaseHandler implements Am
     private FileUploadNotification fileUploadNotification;
     private Queue<FileUploadNotification> fileUploadNotificationQueue;
     private static final int REACTOR_TIMEOUT = 3141; // reactor timeout in milliseconds
+    private AmqpPersistentReceive amqpPersistentReceive;
 
     /**
      * Constructor to set up connection parameters
@@ -94,6 +97,63 @@ public class AmqpFileUploadNotificationReceive extends BaseHandler implements Am
             fileUploadNotificationQueue.clear();
         }
         fileUploadNotificationQueue = null;
+        stopReceiving();
+    }
+
+    /**
+     * Opens a persistent receiver link that pushes every file upload notification to the given handler as it arrives
+     * @param notificationHandler called on the receiver thread for every notification
+     * @param prefetchCount the number of notifications the service can send ahead of their settlement
+     * @throws IOException if the persistent receiver link is already open
+     * @throws IllegalArgumentException if the handler is null or the prefetch count is less than 1
+     */
+    public synchronized void startReceiving(final Consumer<FileUploadNotification> notificationHandler, int prefetchCount) throws IOException, IllegalArgumentException
+    {
+        if (notificationHandler == null)
+        {
+            throw new IllegalArgumentException("notificationHandler cannot be null");
+        }
+
+        if (this.amqpPersistentReceive != null)
+        {
+            throw new IOException("The receiver is already receiving");
+        }
+
+        AmqpPersistentReceive persistentReceive = new AmqpPersistentReceive(this.hostName, this.userName, this.sasToken,
+                this.iotHubServiceClientProtocol, AmqpFileUploadNotificationReceivedHandler.FILENOTIFICATION_ENDPOINT,
+                AmqpFileUploadNotificationReceivedHandler.FILE_NOTIFICATION_RECEIVE_TAG, prefetchCount,
+                message ->
+                {
+                    if (message.getBody() instanceof Data)
+                    {
+                        FileUploadNotification notification = parseNotification(((Data) message.getBody()).getValue().toString());
+                        if (notification != null)
+                        {
+                            notificationHandler.accept(notification);
+                        }
+                    }
+                });
+        persistentReceive.start();
+        this.amqpPersistentReceive = persistentReceive;
+    }
+
+    /**
+     * Closes the persistent receiver link, if any, once the notifications handed to the handler are settled
+     */
+    public synchronized void stopReceiving()
+    {
+        if (this.amqpPersistentReceive != null)
+        {
+            try
+            {
+                this.amqpPersistentReceive.stop();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            this.amqpPersistentReceive = null;
+        }
     }
 
     /**
@@ -156,22 +216,37 @@ public class AmqpFileUploadNotificationReceive extends BaseHandler implements Am
 
         try
         {
-            FileUploadNotificationParser notificationParser = new FileUploadNotificationParser(feedbackJson);
+            fileUploadNotification = parseNotification(feedbackJson);
+            if (fileUploadNotification != null)
+            {
+                fileUploadNotificationQueue.add(fileUploadNotification);
+            }
+        }
+        catch (Exception e)
+        {
+            // this should never happen. However if it does, proton can't handle it. So guard against throwing it at proton.
+            System.out.println("Service threw something mysteriously dangerous, message abandoned.");
+        }
+    }
+
+    /**
+     * Parse a received Json string to a FileUploadNotification object
+     * @param notificationJson Received Json string to process
+     * @return the notification, or null if the json is not a valid notification
+     */
+    private static FileUploadNotification parseNotification(String notificationJson)
+    {
+        try
+        {
+            FileUploadNotificationParser notificationParser = new FileUploadNotificationParser(notificationJson);
 
-            fileUploadNotification = new FileUploadNotification(notificationParser.getDeviceId(),
+            return new FileUploadNotification(notificationParser.getDeviceId(),
                     notificationParser.getBlobUri(), notificationParser.getBlobName(), notificationParser.getLastUpdatedTime(),
                     notificationParser.getBlobSizeInBytesTag(), notificationParser.getEnqueuedTimeUtc());
-
-            fileUploadNotificationQueue.add(fileUploadNotification);
         }
         catch (IOException e)
         {
-            this.fileUploadNotification = null;
-        }
-        catch (Exception e)
-        {
-            // this should never happen. However if it does, proton can't handle it. So guard against throwing it at proton.
-            System.out.println("Service threw something mysteriously dangerous, message abandoned.");
+            return null;
         }
     }
 }
@@ -0,0 +1,18 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import org.apache.qpid.proton.message.Message;
+
+/**
+ * Callback of a persistent receiver link, called on the thread of its reactor for every received message.
+ * The message is accepted when the callback returns. If the callback throws, the message is returned as a failed
+ * delivery, or released if the thread is interrupted because the receiver is stopping.
+ */
+public interface AmqpMessageReceivedEvent
+{
+    void onMessageReceived(Message message);
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.reactor.Reactor;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Instance of the QPID-Proton-J BaseHandler class that runs a receiver link on its own reactor thread until it is
+ * stopped, instead of one reactor per receive call.
+ *
+ * The messages are pushed to the callback as they arrive, see {@link AmqpPersistentReceiveHandler}. If the connection
+ * is lost, a new one is opened after a delay that grows from one second to thirty seconds, and goes back to one second
+ * once a link is opened again.
+ */
+public class AmqpPersistentReceive extends BaseHandler
+{
+    private static final int REACTOR_TIMEOUT = 500; // reactor timeout in milliseconds, the delay to notice a stop
+    private static final long MIN_RECONNECT_DELAY_MILLISECONDS = 1000;
+    private static final long MAX_RECONNECT_DELAY_MILLISECONDS = 30000;
+    private static final long STOP_TIMEOUT_MILLISECONDS = 5000;
+    private static final Logger LOGGER = Logger.getLogger(AmqpPersistentReceive.class.getName());
+
+    private final String hostName;
+    private final String userName;
+    private final String sasToken;
+    private final IotHubServiceClientProtocol iotHubServiceClientProtocol;
+    private final String endpoint;
+    private final String linkName;
+    private final int prefetchCount;
+    private final AmqpMessageReceivedEvent amqpMessageReceivedEvent;
+
+    private AmqpPersistentReceiveHandler amqpReceiveHandler;
+    private volatile Reactor reactor;
+    private volatile boolean stopped;
+    private Thread reactorThread;
+
+    /**
+     * Constructor to set up connection parameters
+     * @param hostName The address string of the service (example: AAA.BBB.CCC)
+     * @param userName The username string to use SASL authentication (example: user@sas.service)
+     * @param sasToken The SAS token string
+     * @param iotHubServiceClientProtocol protocol to use
+     * @param endpoint the address of the link source
+     * @param linkName the name of the receiver link
+     * @param prefetchCount the number of messages the service can send ahead of their settlement
+     * @param amqpMessageReceivedEvent callback to delegate the received messages to, called on the reactor thread
+     * @throws IllegalArgumentException if any of the parameters is null or empty, or if the prefetch count is less than 1
+     */
+    public AmqpPersistentReceive(String hostName, String userName, String sasToken, IotHubServiceClientProtocol iotHubServiceClientProtocol,
+                                 String endpoint, String linkName, int prefetchCount, AmqpMessageReceivedEvent amqpMessageReceivedEvent)
+            throws IllegalArgumentException
+    {
+        this.hostName = hostName;
+        this.userName = userName;
+        this.sasToken = sasToken;
+        this.iotHubServiceClientProtocol = iotHubServiceClientProtocol;
+        this.endpoint = endpoint;
+        this.linkName = linkName;
+        this.prefetchCount = prefetchCount;
+        this.amqpMessageReceivedEvent = amqpMessageReceivedEvent;
+
+        // Validates the parameters before the thread is started.
+        newHandler();
+    }
+
+    /**
+     * Event handler for the reactor init event
+     * @param event The proton event object
+     */
+    @Override
+    public void onReactorInit(Event event)
+    {
+        event.getReactor().connection(this.amqpReceiveHandler);
+    }
+
+    /**
+     * Event handler for the reactor quiesced event, the end of a burst of deliveries
+     * @param event The proton event object
+     */
+    @Override
+    public void onReactorQuiesced(Event event)
+    {
+        if (this.stopped)
+        {
+            this.amqpReceiveHandler.closeConnection();
+        }
+        else
+        {
+            this.amqpReceiveHandler.settleDeliveries();
+        }
+    }
+
+    /**
+     * Starts the reactor thread
+     * @throws IOException if the receiver was already started
+     */
+    public synchronized void start() throws IOException
+    {
+        if (this.reactorThread != null)
+        {
+            throw new IOException("The receiver is already started");
+        }
+
+        this.stopped = false;
+        this.reactorThread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                runReactors();
+            }
+        }, "azure-iot-service-receiver-" + this.linkName);
+        this.reactorThread.setDaemon(true);
+        this.reactorThread.start();
+    }
+
+    /**
+     * Stops the reactor thread. The deliveries that were handed to the callback are settled before the connection is
+     * closed.
+     * @throws InterruptedException if the calling thread is interrupted while it waits for the reactor thread
+     */
+    public synchronized void stop() throws InterruptedException
+    {
+        if (this.reactorThread == null)
+        {
+            return;
+        }
+
+        this.stopped = true;
+        Reactor currentReactor = this.reactor;
+        if (currentReactor != null)
+        {
+            try
+            {
+                currentReactor.wakeup();
+            }
+            catch (RuntimeException e)
+            {
+                // The reactor was freed meanwhile, the thread sees the stop before it creates the next one.
+            }
+        }
+
+        this.reactorThread.join(STOP_TIMEOUT_MILLISECONDS);
+        if (this.reactorThread.isAlive())
+        {
+            // The callback is blocked, for example on a full queue.
+            this.reactorThread.interrupt();
+            this.reactorThread.join();
+        }
+        this.reactorThread = null;
+    }
+
+    private void runReactors()
+    {
+        long reconnectDelay = MIN_RECONNECT_DELAY_MILLISECONDS;
+        while (!this.stopped)
+        {
+            try
+            {
+                this.reactor = Proton.reactor(this);
+                this.reactor.setTimeout(REACTOR_TIMEOUT);
+                this.reactor.start();
+                while (!this.stopped && this.reactor.process())
+                {
+                    // the handlers do the work
+                }
+
+                if (this.stopped)
+                {
+                    this.amqpReceiveHandler.closeConnection();
+                }
+                this.reactor.stop();
+                this.reactor.process();
+                this.reactor.free();
+                this.reactor = null;
+            }
+            catch (RuntimeException | IOException e)
+            {
+                // The connection is opened again below.
+                LOGGER.log(Level.WARNING, "The connection of link " + this.linkName + " failed", e);
+            }
+
+            if (this.amqpReceiveHandler.isLinkOpened())
+            {
+                reconnectDelay = MIN_RECONNECT_DELAY_MILLISECONDS;
+            }
+
+            if (!this.stopped)
+            {
+                try
+                {
+                    TimeUnit.MILLISECONDS.sleep(reconnectDelay);
+                }
+                catch (InterruptedException e)
+                {
+                    return;
+                }
+                reconnectDelay = Math.min(MAX_RECONNECT_DELAY_MILLISECONDS, reconnectDelay * 2);
+                newHandler();
+            }
+        }
+    }
+
+    private void newHandler()
+    {
+        this.amqpReceiveHandler = new AmqpPersistentReceiveHandler(this.hostName, this.userName, this.sasToken,
+                this.iotHubServiceClientProtocol, this.endpoint, this.linkName, this.prefetchCount, this.amqpMessageReceivedEvent);
+    }
+}
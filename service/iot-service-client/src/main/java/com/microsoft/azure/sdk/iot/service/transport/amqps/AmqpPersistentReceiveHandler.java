@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.deps.ws.impl.WebSocketImpl;
+import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
+import com.microsoft.azure.sdk.iot.service.transport.TransportUtils;
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.Modified;
+import org.apache.qpid.proton.amqp.messaging.Released;
+import org.apache.qpid.proton.amqp.messaging.Source;
+import org.apache.qpid.proton.amqp.messaging.Target;
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
+import org.apache.qpid.proton.engine.*;
+import org.apache.qpid.proton.engine.impl.TransportInternal;
+import org.apache.qpid.proton.reactor.Handshaker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Instance of the QPID-Proton-J BaseHandler class that keeps one receiver link open for the lifetime of its connection.
+ *
+ * Unlike the receive handlers, the link is not closed after the first message: the handler grants the link
+ * {@code prefetchCount} credits, hands every message to its callback, and settles the deliveries and tops up the
+ * credit in batches, once half of the credit is used or once the reactor has no more event to process. There are
+ * never more than {@code prefetchCount} unsettled messages.
+ *
+ * A message the callback throws on is given back to the service as a failed delivery, so the service counts the
+ * attempt and dead-letters the message once it reaches the maximum delivery count of the queue.
+ */
+public class AmqpPersistentReceiveHandler extends BaseHandler
+{
+    private static final String SEND_PORT_AMQPS = ":5671";
+    private static final String SEND_PORT_AMQPS_WS = ":443";
+    private static final String WEBSOCKET_PATH = "/$iothub/websocket";
+    private static final String WEBSOCKET_SUB_PROTOCOL = "AMQPWSB10";
+    private static final Logger LOGGER = Logger.getLogger(AmqpPersistentReceiveHandler.class.getName());
+
+    private final String hostName;
+    private final String webSocketHostName;
+    private final String userName;
+    private final String sasToken;
+    private final IotHubServiceClientProtocol iotHubServiceClientProtocol;
+    private final String endpoint;
+    private final String linkName;
+    private final int prefetchCount;
+    private final int settleBatchSize;
+    private final AmqpMessageReceivedEvent amqpMessageReceivedEvent;
+
+    private final List<Delivery> unsettledDeliveries = new ArrayList<>();
+    private Connection connection;
+    private Receiver receiver;
+    private boolean linkOpened;
+
+    /**
+     * Constructor to set up connection parameters and initialize handshaker for transport
+     * @param hostName The address string of the service (example: AAA.BBB.CCC)
+     * @param userName The username string to use SASL authentication (example: user@sas.service)
+     * @param sasToken The SAS token string
+     * @param iotHubServiceClientProtocol protocol to use
+     * @param endpoint the address of the link source
+     * @param linkName the name of the receiver link
+     * @param prefetchCount the number of messages the service can send ahead of their settlement
+     * @param amqpMessageReceivedEvent callback to delegate the received messages to
+     * @throws IllegalArgumentException if any of the parameters is null or empty, or if the prefetch count is less than 1
+     */
+    public AmqpPersistentReceiveHandler(String hostName, String userName, String sasToken, IotHubServiceClientProtocol iotHubServiceClientProtocol,
+                                        String endpoint, String linkName, int prefetchCount, AmqpMessageReceivedEvent amqpMessageReceivedEvent)
+            throws IllegalArgumentException
+    {
+        if (hostName == null || userName == null || sasToken == null || iotHubServiceClientProtocol == null || endpoint == null
+                || linkName == null || amqpMessageReceivedEvent == null || hostName.isEmpty() || userName.isEmpty() || sasToken.isEmpty())
+        {
+            throw new IllegalArgumentException("Input parameters cannot be null or empty");
+        }
+
+        if (prefetchCount < 1)
+        {
+            throw new IllegalArgumentException("prefetchCount must be at least 1");
+        }
+
+        this.iotHubServiceClientProtocol = iotHubServiceClientProtocol;
+        this.webSocketHostName = hostName;
+        if (this.iotHubServiceClientProtocol == IotHubServiceClientProtocol.AMQPS_WS)
+        {
+            this.hostName = hostName + SEND_PORT_AMQPS_WS;
+        }
+        else
+        {
+            this.hostName = hostName + SEND_PORT_AMQPS;
+        }
+
+        this.userName = userName;
+        this.sasToken = sasToken;
+        this.endpoint = endpoint;
+        this.linkName = linkName;
+        this.prefetchCount = prefetchCount;
+        this.settleBatchSize = Math.max(1, prefetchCount / 2);
+        this.amqpMessageReceivedEvent = amqpMessageReceivedEvent;
+
+        // The credit is managed by this handler, there is no FlowController.
+        add(new Handshaker());
+    }
+
+    /**
+     * Event handler for the on delivery event
+     * @param event The proton event object
+     */
+    @Override
+    public void onDelivery(Event event)
+    {
+        Receiver recv = (Receiver) event.getLink();
+        Delivery delivery = recv.current();
+        if (delivery == null || !delivery.isReadable() || delivery.isPartial() || !recv.getName().equals(this.linkName))
+        {
+            return;
+        }
+
+        int size = delivery.pending();
+        byte[] buffer = new byte[size];
+        int read = recv.recv(buffer, 0, buffer.length);
+        recv.advance();
+
+        org.apache.qpid.proton.message.Message msg = Proton.message();
+        msg.decode(buffer, 0, read);
+
+        DeliveryState outcome = Accepted.getInstance();
+        try
+        {
+            this.amqpMessageReceivedEvent.onMessageReceived(msg);
+        }
+        catch (RuntimeException e)
+        {
+            if (Thread.currentThread().isInterrupted())
+            {
+                // The receiver is stopping, the service sends the message again on the next connection.
+                outcome = Released.getInstance();
+            }
+            else
+            {
+                LOGGER.log(Level.WARNING, "The message handler of link " + this.linkName + " failed, the message is returned as a failed delivery", e);
+                Modified modified = new Modified();
+                modified.setDeliveryFailed(true);
+                outcome = modified;
+            }
+        }
+
+        delivery.disposition(outcome);
+        this.unsettledDeliveries.add(delivery);
+        if (this.unsettledDeliveries.size() >= this.settleBatchSize)
+        {
+            settleDeliveries();
+        }
+    }
+
+    /**
+     * Settles the deliveries handed to the callback since the last call, and tops up the credit of the link.
+     * Must be called on the thread of the reactor.
+     */
+    void settleDeliveries()
+    {
+        for (Delivery delivery : this.unsettledDeliveries)
+        {
+            delivery.settle();
+        }
+        this.unsettledDeliveries.clear();
+
+        if (this.receiver != null && this.receiver.getLocalState() == EndpointState.ACTIVE)
+        {
+            int credit = this.receiver.getCredit();
+            if (credit <= this.prefetchCount - this.settleBatchSize)
+            {
+                this.receiver.flow(this.prefetchCount - credit);
+            }
+        }
+    }
+
+    /**
+     * Settles the pending deliveries and closes the connection. Must be called on the thread of the reactor.
+     */
+    void closeConnection()
+    {
+        settleDeliveries();
+        if (this.connection != null && this.connection.getLocalState() != EndpointState.CLOSED)
+        {
+            this.connection.close();
+        }
+    }
+
+    /**
+     * Getter for the state of the link.
+     * @return true if the service opened the link since the handler was created.
+     */
+    boolean isLinkOpened()
+    {
+        return this.linkOpened;
+    }
+
+    @Override
+    public void onConnectionBound(Event event)
+    {
+        Transport transport = event.getConnection().getTransport();
+        if (transport != null)
+        {
+            if (this.iotHubServiceClientProtocol == IotHubServiceClientProtocol.AMQPS_WS)
+            {
+                WebSocketImpl webSocket = new WebSocketImpl();
+                webSocket.configure(this.webSocketHostName, WEBSOCKET_PATH, 0, WEBSOCKET_SUB_PROTOCOL, null, null);
+                ((TransportInternal) transport).addTransportLayer(webSocket);
+            }
+            Sasl sasl = transport.sasl();
+            sasl.plain(this.userName, this.sasToken);
+
+            SslDomain domain = Proton.sslDomain();
+            domain.init(SslDomain.Mode.CLIENT);
+            domain.setPeerAuthentication(SslDomain.VerifyMode.ANONYMOUS_PEER);
+            transport.ssl(domain);
+        }
+    }
+
+    @Override
+    public void onConnectionInit(Event event)
+    {
+        this.connection = event.getConnection();
+        this.connection.setHostname(this.hostName);
+
+        Session ssn = this.connection.session();
+
+        Map<Symbol, Object> properties = new HashMap<>();
+        properties.put(Symbol.getSymbol(TransportUtils.versionIdentifierKey), TransportUtils.javaServiceClientIdentifier + TransportUtils.serviceVersion);
+        this.receiver = ssn.receiver(this.linkName);
+        this.receiver.setProperties(properties);
+
+        this.connection.open();
+        ssn.open();
+        this.receiver.open();
+        this.receiver.flow(this.prefetchCount);
+    }
+
+    @Override
+    public void onLinkInit(Event event)
+    {
+        Link link = event.getLink();
+        if (link.getName().equals(this.linkName))
+        {
+            Target t = new Target();
+            t.setAddress(this.endpoint);
+            Source source = new Source();
+            source.setAddress(this.endpoint);
+            link.setTarget(t);
+            link.setSource(source);
+        }
+    }
+
+    @Override
+    public void onLinkRemoteOpen(Event event)
+    {
+        this.linkOpened = true;
+    }
+
+    @Override
+    public void onLinkRemoteClose(Event event)
+    {
+        // The link is not reopened on this connection, the owner of the reactor opens a new connection.
+        closeConnection();
+    }
+
+    @Override
+    public void onConnectionRemoteClose(Event event)
+    {
+        closeConnection();
+    }
+}
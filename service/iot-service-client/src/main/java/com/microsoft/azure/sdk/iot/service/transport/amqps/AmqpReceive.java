@@ -14,6 +14,7 @@ import org.apache.qpid.proton.engine.Event;
 import org.apache.qpid.proton.reactor.Reactor;
 
 import java.io.IOException;
+import java.util.function.Consumer;
 
 /**
  * Instance of the QPID-Proton-J BaseHandler class
@@ -30,6 +31,7 @@ public class AmqpReceive extends BaseHandler implements AmqpFeedbackReceivedEven
     private Reactor reactor = null;
     private FeedbackBatch feedbackBatch;
     private static final int REACTOR_TIMEOUT = 3141; // reactor timeout in milliseconds
+    private AmqpPersistentReceive amqpPersistentReceive;
 
     /**
      * Constructor to set up connection parameters
@@ -74,12 +76,58 @@ public class AmqpReceive extends BaseHandler implements AmqpFeedbackReceivedEven
     }
 
     /**
-     * Invalidate AmqpsReceiveHandler member variable
+     * Invalidate AmqpsReceiveHandler member variable and stop the persistent receiver link, if any
      */
     public void close()
     {
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPRECEIVE_12_004: [The function shall invalidate the member AmqpsReceiveHandler object]
         amqpReceiveHandler = null;
+        stopReceiving();
+    }
+
+    /**
+     * Opens a persistent receiver link that pushes every feedback batch to the given handler as it arrives
+     * @param feedbackBatchHandler called on the receiver thread for every feedback batch
+     * @param prefetchCount the number of feedback messages the service can send ahead of their settlement
+     * @throws IOException if the persistent receiver link is already open
+     * @throws IllegalArgumentException if the handler is null or the prefetch count is less than 1
+     */
+    public synchronized void startReceiving(final Consumer<FeedbackBatch> feedbackBatchHandler, int prefetchCount) throws IOException, IllegalArgumentException
+    {
+        if (feedbackBatchHandler == null)
+        {
+            throw new IllegalArgumentException("feedbackBatchHandler cannot be null");
+        }
+
+        if (this.amqpPersistentReceive != null)
+        {
+            throw new IOException("The receiver is already receiving");
+        }
+
+        AmqpPersistentReceive persistentReceive = new AmqpPersistentReceive(this.hostName, this.userName, this.sasToken,
+                this.iotHubServiceClientProtocol, AmqpFeedbackReceivedHandler.ENDPOINT, AmqpFeedbackReceivedHandler.RECEIVE_TAG, prefetchCount,
+                message -> feedbackBatchHandler.accept(FeedbackBatchMessage.parse(message.getBody().toString())));
+        persistentReceive.start();
+        this.amqpPersistentReceive = persistentReceive;
+    }
+
+    /**
+     * Closes the persistent receiver link, if any, once the feedback batches handed to the handler are settled
+     */
+    public synchronized void stopReceiving()
+    {
+        if (this.amqpPersistentReceive != null)
+        {
+            try
+            {
+                this.amqpPersistentReceive.stop();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            this.amqpPersistentReceive = null;
+        }
     }
 
     /**
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.http;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The I/O threads and the HTTPS connections shared by all the service clients of the process.
+ *
+ * A request sent with {@link #send(HttpRequest)} does not hold a thread while it waits for a connection: at most
+ * {@code http.maxConnections} requests (5 by default) run at a time per host, the others wait in a queue of that host.
+ * This is also the number of idle connections the JDK keeps alive per host, so every request that completes hands its
+ * connection to the next one instead of opening a new one. The threads are daemon threads that stop when they are
+ * idle, so the engine never needs to be shut down.
+ */
+public final class HttpClientEngine
+{
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 5;
+    private static final int IO_THREADS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 60;
+
+    private static final class InstanceHolder
+    {
+        private static final HttpClientEngine INSTANCE = new HttpClientEngine(IO_THREADS,
+                Integer.getInteger("http.maxConnections", DEFAULT_MAX_CONNECTIONS_PER_HOST));
+    }
+
+    /**
+     * The requests of one host.
+     */
+    private static final class Host
+    {
+        private final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+        private int running;
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final int maxConnectionsPerHost;
+    private final Map<String, Host> hosts = new HashMap<>();
+
+    HttpClientEngine(int ioThreads, int maxConnectionsPerHost)
+    {
+        this.maxConnectionsPerHost = Math.max(1, maxConnectionsPerHost);
+        this.executor = new ThreadPoolExecutor(ioThreads, ioThreads, IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+        {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "azure-iot-service-io-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Getter for the engine shared by the process.
+     *
+     * @return the shared engine.
+     */
+    public static HttpClientEngine getInstance()
+    {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * Sends a request on the I/O threads, once its host has a free connection.
+     *
+     * @param request the request to send.
+     * @return the future response. It completes exceptionally with the IOException of the request if it fails.
+     * @throws IllegalArgumentException if the request is {@code null}.
+     */
+    public CompletableFuture<HttpResponse> send(final HttpRequest request) throws IllegalArgumentException
+    {
+        if (request == null)
+        {
+            throw new IllegalArgumentException("request cannot be null");
+        }
+
+        final String hostKey = request.getHostKey();
+        final CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        Runnable exchange = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    future.complete(request.send());
+                }
+                catch (IOException | RuntimeException e)
+                {
+                    future.completeExceptionally(e);
+                }
+                finally
+                {
+                    release(hostKey);
+                }
+            }
+        };
+
+        synchronized (this.hosts)
+        {
+            Host host = this.hosts.get(hostKey);
+            if (host == null)
+            {
+                host = new Host();
+                this.hosts.put(hostKey, host);
+            }
+
+            if (host.running >= this.maxConnectionsPerHost)
+            {
+                host.pending.add(exchange);
+                return future;
+            }
+            host.running++;
+        }
+
+        // The executor has an unbounded queue and is never shut down, it does not reject.
+        this.executor.execute(exchange);
+        return future;
+    }
+
+    private void release(String hostKey)
+    {
+        Runnable next;
+        synchronized (this.hosts)
+        {
+            Host host = this.hosts.get(hostKey);
+            next = host.pending.poll();
+            if (next == null)
+            {
+                host.running--;
+                if (host.running == 0)
+                {
+                    this.hosts.remove(hostKey);
+                }
+                return;
+            }
+        }
+
+        // The connection goes to the next request of the host, the running count does not change.
+        this.executor.execute(next);
+    }
+}
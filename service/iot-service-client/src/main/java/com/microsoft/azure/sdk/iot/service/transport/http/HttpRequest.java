@@ -11,12 +11,16 @@ import java.io.IOException;
 import java.net.URL;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class HttpRequest
 {
     /** The underlying HTTPS connection stream. */
     protected final HttpConnection connection;
 
+    /** The host and port the request is sent to, the requests of a host share its connections. */
+    private final String hostKey;
+
     /**
      * Constructor. Takes a URL as an argument and returns an HTTPS request that
      * is ready to be sent.
@@ -36,6 +40,7 @@ public class HttpRequest
         // Codes_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_12_003: [The function shall use the given HTTPS method (i.e. GET) as the request method.]
         // Codes_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_12_004: [If an IOException occurs in setting up the HTTPS connection, the function shall throw an IOException.]
         this.connection = new HttpConnection(url, method);
+        this.hostKey = url.getHost() + ":" + url.getPort();
         this.connection.setRequestHeader("User-Agent", TransportUtils.javaServiceClientIdentifier + TransportUtils.serviceVersion);
         // Codes_SRS_SERVICE_SDK_JAVA_HTTPREQUEST_12_002: [The function shall write the body to the connection.]
         this.connection.writeOutput(body);
@@ -87,6 +92,23 @@ public class HttpRequest
                 errorReason);
     }
 
+    /**
+     * Executes the HTTPS request on the I/O threads shared by the service clients. No thread waits for the request
+     * while its host has no free connection.
+     *
+     * @return The future HTTPS response. It completes exceptionally with an IOException if the connection could not be
+     * established, or the input/output streams could not be accessed.
+     */
+    public CompletableFuture<HttpResponse> sendAsync()
+    {
+        return HttpClientEngine.getInstance().send(this);
+    }
+
+    String getHostKey()
+    {
+        return this.hostKey;
+    }
+
     /**
      * Sets the header field to the given value.
      *
@@ -121,5 +143,6 @@ public class HttpRequest
     protected HttpRequest()
     {
         this.connection = null;
+        this.hostKey = null;
     }
 }
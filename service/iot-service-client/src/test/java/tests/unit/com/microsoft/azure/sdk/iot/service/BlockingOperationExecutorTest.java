@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service;
+
+import com.microsoft.azure.sdk.iot.service.BlockingOperationExecutor;
+import mockit.Deencapsulation;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the executor of the blocking AMQP operations of the service clients.
+ */
+public class BlockingOperationExecutorTest
+{
+    @Test
+    public void getInstanceReturnsSharedExecutor()
+    {
+        // act - assert
+        assertSame(BlockingOperationExecutor.getInstance(), BlockingOperationExecutor.getInstance());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void setMaxConcurrentOperationsZeroThrows()
+    {
+        // arrange
+        BlockingOperationExecutor executor = Deencapsulation.newInstance(BlockingOperationExecutor.class, 1);
+
+        // act
+        executor.setMaxConcurrentOperations(0);
+    }
+
+    @Test
+    public void setMaxConcurrentOperationsUpAndDown()
+    {
+        // arrange
+        BlockingOperationExecutor executor = Deencapsulation.newInstance(BlockingOperationExecutor.class, 2);
+
+        // act - assert
+        executor.setMaxConcurrentOperations(5);
+        assertEquals(5, executor.getMaxConcurrentOperations());
+        executor.setMaxConcurrentOperations(1);
+        assertEquals(1, executor.getMaxConcurrentOperations());
+    }
+
+    @Test
+    public void executeRunsNoMoreThanMaxConcurrentOperations() throws InterruptedException
+    {
+        // arrange
+        BlockingOperationExecutor executor = Deencapsulation.newInstance(BlockingOperationExecutor.class, 2);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(5);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+
+        // act
+        for (int i = 0; i < 5; i++)
+        {
+            executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    int now = running.incrementAndGet();
+                    maxRunning.set(Math.max(maxRunning.get(), now));
+                    try
+                    {
+                        release.await();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+        release.countDown();
+
+        // assert
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(maxRunning.get() <= 2);
+    }
+
+    @Test
+    public void executeRunsOnCallerWhenQueueIsFull() throws InterruptedException
+    {
+        // arrange
+        BlockingOperationExecutor executor = Deencapsulation.newInstance(BlockingOperationExecutor.class, 1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable blocked = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        // One running and 1000 queued
+        for (int i = 0; i < 1001; i++)
+        {
+            executor.execute(blocked);
+        }
+        final AtomicReference<Thread> runner = new AtomicReference<>();
+
+        // act
+        executor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                runner.set(Thread.currentThread());
+            }
+        });
+        release.countDown();
+
+        // assert
+        assertSame(Thread.currentThread(), runner.get());
+    }
+}
@@ -0,0 +1,173 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.service;
+
+import com.microsoft.azure.sdk.iot.service.ExportImportDevice;
+import com.microsoft.azure.sdk.iot.service.ExportImportDeviceReader;
+import com.microsoft.azure.sdk.iot.service.ExportImportDeviceWriter;
+import com.microsoft.azure.sdk.iot.service.ImportMode;
+import com.microsoft.azure.sdk.iot.service.auth.AuthenticationType;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for ExportImportDeviceReader and ExportImportDeviceWriter
+ */
+public class ExportImportDeviceReaderTest
+{
+    private static final String DEVICE_LINE = "{\"id\":\"%s\",\"authentication\":{\"type\":\"certificateAuthority\"}}\n";
+
+    private static byte[] devicesOf(int count)
+    {
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < count; i++)
+        {
+            lines.append(String.format(DEVICE_LINE, "device" + i));
+        }
+        return lines.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void readReturnsTheDevicesInOrder() throws IOException
+    {
+        // arrange
+        ExportImportDeviceReader reader = new ExportImportDeviceReader(new ByteArrayInputStream(devicesOf(3)));
+
+        // act - assert
+        assertEquals("device0", reader.read().getId());
+        assertEquals("device1", reader.read().getId());
+        assertEquals("device2", reader.read().getId());
+        assertNull(reader.read());
+        reader.close();
+    }
+
+    @Test
+    public void readKeepsTheOrderWhenParsingInParallel() throws IOException
+    {
+        // arrange
+        final int deviceCount = 5000;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ExportImportDeviceReader reader = new ExportImportDeviceReader(new ByteArrayInputStream(devicesOf(deviceCount)), executor, 4);
+
+        // act
+        int count = 0;
+        ExportImportDevice device;
+        while ((device = reader.read()) != null)
+        {
+            // assert
+            assertEquals("device" + count, device.getId());
+            count++;
+        }
+        reader.close();
+        executor.shutdown();
+
+        // assert
+        assertEquals(deviceCount, count);
+    }
+
+    @Test
+    public void readSkipsEmptyLines() throws IOException
+    {
+        // arrange
+        String lines = "\n" + String.format(DEVICE_LINE, "device0") + "  \n";
+        ExportImportDeviceReader reader = new ExportImportDeviceReader(new ByteArrayInputStream(lines.getBytes(StandardCharsets.UTF_8)));
+
+        // act - assert
+        assertEquals("device0", reader.read().getId());
+        assertNull(reader.read());
+    }
+
+    @Test
+    public void readReturnsTheDevicesBeforeAnInvalidLine() throws IOException
+    {
+        // arrange
+        String lines = String.format(DEVICE_LINE, "device0") + "not json\n" + String.format(DEVICE_LINE, "device2");
+        ExportImportDeviceReader reader = new ExportImportDeviceReader(new ByteArrayInputStream(lines.getBytes(StandardCharsets.UTF_8)));
+        assertEquals("device0", reader.read().getId());
+
+        // act
+        try
+        {
+            reader.read();
+            fail("The second line should have been rejected");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // assert
+            assertTrue(e.getMessage().contains("line 2"));
+        }
+    }
+
+    @Test
+    public void openReadsALocalFile() throws IOException
+    {
+        // arrange
+        Path file = Files.createTempFile("devices", ".txt");
+        try
+        {
+            Files.write(file, devicesOf(2));
+            ExportImportDeviceReader reader = ExportImportDeviceReader.open(file, null, 1);
+
+            // act - assert
+            assertEquals("device0", reader.read().getId());
+            assertEquals("device1", reader.read().getId());
+            assertNull(reader.read());
+            reader.close();
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void writerWritesLinesTheReaderReads() throws IOException
+    {
+        // arrange
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ExportImportDevice expectedDevice = new ExportImportDevice("device0", AuthenticationType.SAS);
+        expectedDevice.setImportMode(ImportMode.Create);
+
+        // act
+        ExportImportDeviceWriter writer = new ExportImportDeviceWriter(output);
+        writer.write(expectedDevice);
+        writer.close();
+        ExportImportDeviceReader reader = new ExportImportDeviceReader(new ByteArrayInputStream(output.toByteArray()));
+
+        // assert
+        assertEquals(expectedDevice, reader.read());
+        assertNull(reader.read());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnNullInput()
+    {
+        // act
+        new ExportImportDeviceReader(null);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnParallelismLessThanOne()
+    {
+        // act
+        new ExportImportDeviceReader(new ByteArrayInputStream(new byte[0]), Executors.newSingleThreadExecutor(), 0);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void writeThrowsOnNullDevice() throws IOException
+    {
+        // act
+        new ExportImportDeviceWriter(new ByteArrayOutputStream()).write(null);
+    }
+}
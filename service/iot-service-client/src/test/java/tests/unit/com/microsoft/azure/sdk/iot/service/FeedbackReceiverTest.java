@@ -15,7 +15,10 @@ import mockit.Mocked;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
 
 import static org.junit.Assert.assertEquals;
 
@@ -751,4 +754,94 @@ public class FeedbackReceiverTest
         CompletableFuture<FeedbackBatch> completableFuture = feedbackReceiver.receiveAsync(timeoutMs);
         completableFuture.get();
     }
+
+    @Test
+    public void startReceiving_call_receiver_startReceiving() throws Exception
+    {
+        // Arrange
+        String hostName = "xxx";
+        String userName = "xxx";
+        String sasToken = "xxx";
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        FeedbackReceiver feedbackReceiver = new FeedbackReceiver(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        Consumer<FeedbackBatch> handler = feedbackBatch -> { };
+        // Assert
+        new Expectations()
+        {
+            {
+                amqpReceive.startReceiving(handler, 10);
+            }
+        };
+        // Act
+        feedbackReceiver.startReceiving(handler, 10);
+    }
+
+    @Test
+    public void startReceiving_queue_call_receiver_startReceiving() throws Exception
+    {
+        // Arrange
+        String hostName = "xxx";
+        String userName = "xxx";
+        String sasToken = "xxx";
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        FeedbackReceiver feedbackReceiver = new FeedbackReceiver(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        // Assert
+        new Expectations()
+        {
+            {
+                amqpReceive.startReceiving((Consumer<FeedbackBatch>) any, 10);
+            }
+        };
+        // Act
+        feedbackReceiver.startReceiving(new LinkedBlockingQueue<FeedbackBatch>(), 10);
+    }
+
+    // Assert
+    @Test (expected = IllegalArgumentException.class)
+    public void startReceiving_queue_null() throws Exception
+    {
+        // Arrange
+        String hostName = "xxx";
+        String userName = "xxx";
+        String sasToken = "xxx";
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        FeedbackReceiver feedbackReceiver = new FeedbackReceiver(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        // Act
+        feedbackReceiver.startReceiving((BlockingQueue<FeedbackBatch>) null, 10);
+    }
+
+    // Assert
+    @Test (expected = IOException.class)
+    public void startReceiving_receiver_null() throws Exception
+    {
+        // Arrange
+        String hostName = "xxx";
+        String userName = "xxx";
+        String sasToken = "xxx";
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        FeedbackReceiver feedbackReceiver = new FeedbackReceiver(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        Deencapsulation.setField(feedbackReceiver, "amqpReceive", null);
+        // Act
+        feedbackReceiver.startReceiving(feedbackBatch -> { }, 10);
+    }
+
+    @Test
+    public void stopReceiving_call_receiver_stopReceiving() throws Exception
+    {
+        // Arrange
+        String hostName = "xxx";
+        String userName = "xxx";
+        String sasToken = "xxx";
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        FeedbackReceiver feedbackReceiver = new FeedbackReceiver(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        // Assert
+        new Expectations()
+        {
+            {
+                amqpReceive.stopReceiving();
+            }
+        };
+        // Act
+        feedbackReceiver.stopReceiving();
+    }
 }
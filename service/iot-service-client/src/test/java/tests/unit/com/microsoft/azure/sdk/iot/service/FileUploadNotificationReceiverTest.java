@@ -16,6 +16,8 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
 
 public class FileUploadNotificationReceiverTest
 {
@@ -360,4 +362,90 @@ public class FileUploadNotificationReceiverTest
         };
 
     }
+
+    @Test
+    public void startReceivingCallsReceiverStartReceiving() throws Exception
+    {
+        // Arrange
+        final String hostName = "xxx";
+        final String userName = "xxx";
+        final String sasToken = "xxx";
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        FileUploadNotificationReceiver fileUploadNotificationReceiver = Deencapsulation.newInstance(FileUploadNotificationReceiver.class, hostName, userName, sasToken, iotHubServiceClientProtocol);
+        final Consumer<FileUploadNotification> handler = notification -> { };
+
+        // Act
+        fileUploadNotificationReceiver.startReceiving(handler, 10);
+
+        // Assert
+        new Verifications()
+        {
+            {
+                amqpFileUploadNotificationReceive.startReceiving(handler, 10);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void startReceivingWithQueueCallsReceiverStartReceiving() throws Exception
+    {
+        // Arrange
+        final String hostName = "xxx";
+        final String userName = "xxx";
+        final String sasToken = "xxx";
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        FileUploadNotificationReceiver fileUploadNotificationReceiver = Deencapsulation.newInstance(FileUploadNotificationReceiver.class, hostName, userName, sasToken, iotHubServiceClientProtocol);
+
+        // Act
+        fileUploadNotificationReceiver.startReceiving(new LinkedBlockingQueue<FileUploadNotification>(), 10);
+
+        // Assert
+        new Verifications()
+        {
+            {
+                amqpFileUploadNotificationReceive.startReceiving((Consumer<FileUploadNotification>) any, 10);
+                times = 1;
+            }
+        };
+    }
+
+    // Assert
+    @Test (expected = IOException.class)
+    public void startReceivingThrowsIfReceiverNull() throws Exception
+    {
+        // Arrange
+        final String hostName = "xxx";
+        final String userName = "xxx";
+        final String sasToken = "xxx";
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        FileUploadNotificationReceiver fileUploadNotificationReceiver = Deencapsulation.newInstance(FileUploadNotificationReceiver.class, hostName, userName, sasToken, iotHubServiceClientProtocol);
+        Deencapsulation.setField(fileUploadNotificationReceiver, "amqpFileUploadNotificationReceive", null);
+
+        // Act
+        fileUploadNotificationReceiver.startReceiving(notification -> { }, 10);
+    }
+
+    @Test
+    public void stopReceivingCallsReceiverStopReceiving() throws Exception
+    {
+        // Arrange
+        final String hostName = "xxx";
+        final String userName = "xxx";
+        final String sasToken = "xxx";
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        FileUploadNotificationReceiver fileUploadNotificationReceiver = Deencapsulation.newInstance(FileUploadNotificationReceiver.class, hostName, userName, sasToken, iotHubServiceClientProtocol);
+
+        // Act
+        fileUploadNotificationReceiver.stopReceiving();
+
+        // Assert
+        new Verifications()
+        {
+            {
+                amqpFileUploadNotificationReceive.stopReceiving();
+                times = 1;
+            }
+        };
+    }
 }
@@ -7,6 +7,7 @@ package tests.unit.com.microsoft.azure.sdk.iot.service;
 
 import com.microsoft.azure.sdk.iot.deps.serializer.DeviceParser;
 import com.microsoft.azure.sdk.iot.service.*;
+import com.microsoft.azure.sdk.iot.service.auth.AuthenticationType;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubExceptionManager;
@@ -20,11 +21,17 @@ import org.junit.runner.RunWith;
 
 import java.io.IOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Code Coverage
@@ -199,7 +206,7 @@ public class RegistryManagerTest
         CompletableFuture<Device> completableFuture =  registryManager.addDeviceAsync(device);
         Device returnDevice = completableFuture.get();
 
-        commonVerifications(HttpMethod.PUT, deviceId, returnDevice);
+        commonVerifications(HttpMethod.PUT, deviceId, returnDevice, true);
     }
 
     // Tests_SRS_SERVICE_SDK_JAVA_ REGISTRYMANAGER_12_013: [The function shall create an async wrapper around the addDevice() function call, handle the return value or delegate exception]
@@ -207,12 +214,11 @@ public class RegistryManagerTest
     @Test (expected = Exception.class)
     public void addDeviceAsync_future_throw() throws Exception
     {
-        new MockUp<RegistryManager>()
+        new NonStrictExpectations()
         {
-            @Mock
-            public Device addDevice(Device device) throws IOException, IotHubException
             {
-                throw new IOException();
+                mockHttpRequest.sendAsync();
+                result = failedFuture(new IOException());
             }
         };
 
@@ -278,7 +284,7 @@ public class RegistryManagerTest
         CompletableFuture<Device> completableFuture =  registryManager.getDeviceAsync(deviceId);
         Device returnDevice = completableFuture.get();
 
-        commonVerifications(HttpMethod.GET, deviceId, returnDevice);
+        commonVerifications(HttpMethod.GET, deviceId, returnDevice, true);
     }
 
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_022: [The function shall create an async wrapper around the addDevice() function call, handle the return value or delegate exception]
@@ -287,12 +293,11 @@ public class RegistryManagerTest
     public void getDeviceAsync_future_throw() throws Exception
     {
         String deviceId = "somedevice";
-        new MockUp<RegistryManager>()
+        new NonStrictExpectations()
         {
-            @Mock
-            public Device getDevice(String deviceId) throws IOException, IotHubException
             {
-                throw new IOException();
+                mockHttpRequest.sendAsync();
+                result = failedFuture(new IOException());
             }
         };
         String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
@@ -359,7 +364,7 @@ public class RegistryManagerTest
         CompletableFuture<ArrayList<Device>> completableFuture =  registryManager.getDevicesAsync(10);
         ArrayList<Device> devices = completableFuture.get();
 
-        getDevicesVerifications(numberOfDevices, devices);
+        getDevicesVerifications(numberOfDevices, devices, true);
     }
 
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_21_085: [The function shall return a connectionString for the input device]
@@ -559,12 +564,11 @@ public class RegistryManagerTest
     @Test (expected = Exception.class)
     public void getDevicesAsync_future_throw() throws Exception
     {
-        new MockUp<RegistryManager>()
+        new NonStrictExpectations()
         {
-            @Mock
-            public Device getDevices(Integer maxCount) throws IOException, IotHubException
             {
-                throw new IOException();
+                mockHttpRequest.sendAsync();
+                result = failedFuture(new IOException());
             }
         };
         String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
@@ -697,7 +701,7 @@ public class RegistryManagerTest
         CompletableFuture<Device> completableFuture = registryManager.updateDeviceAsync(device);
         Device returnDevice = completableFuture.get();
 
-        commonVerifications(HttpMethod.PUT, deviceId, returnDevice);
+        commonVerifications(HttpMethod.PUT, deviceId, returnDevice, true);
 
         new VerificationsInOrder()
         {
@@ -713,12 +717,11 @@ public class RegistryManagerTest
     @Test (expected = Exception.class)
     public void updateDeviceAsync_future_throw() throws Exception
     {
-        new MockUp<RegistryManager>()
+        new NonStrictExpectations()
         {
-            @Mock
-            public Device updateDevice(Device device) throws IOException, IotHubException
             {
-                throw new IOException();
+                mockHttpRequest.sendAsync();
+                result = failedFuture(new IOException());
             }
         };
         String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
@@ -760,7 +763,7 @@ public class RegistryManagerTest
         CompletableFuture<Device> completableFuture =  registryManager.updateDeviceAsync(device, true);
         Device returnDevice = completableFuture.get();
 
-        commonVerifications(HttpMethod.PUT, deviceId, returnDevice);
+        commonVerifications(HttpMethod.PUT, deviceId, returnDevice, true);
 
         new VerificationsInOrder()
         {
@@ -776,12 +779,11 @@ public class RegistryManagerTest
     @Test (expected = Exception.class)
     public void updateDeviceAsyncForce_future_throw() throws Exception
     {
-        new MockUp<RegistryManager>()
+        new NonStrictExpectations()
         {
-            @Mock
-            public Device updateDevice(Device device, Boolean forceUpdate) throws IOException, IotHubException
             {
-                throw new IOException();
+                mockHttpRequest.sendAsync();
+                result = failedFuture(new IOException());
             }
         };
         String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
@@ -898,18 +900,18 @@ public class RegistryManagerTest
     public void removeDeviceAsync_future_throw() throws Exception
     {
         String deviceId = "somedevice";
-        new MockUp<RegistryManager>()
+        new NonStrictExpectations()
         {
-            @Mock
-            public Device removeDevice(String deviceId) throws IOException, IotHubException
             {
-                throw new IOException();
+                mockHttpRequest.sendAsync();
+                result = failedFuture(new IOException());
             }
         };
         String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
         RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
 
         CompletableFuture completableFuture = registryManager.removeDeviceAsync(deviceId);
+        completableFuture.get();
     }
 
     // Tests_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_054: [The function shall get the URL for the device]
@@ -973,7 +975,7 @@ public class RegistryManagerTest
                 mockHttpRequest.setHeaderField("Accept", "application/json");
                 mockHttpRequest.setHeaderField("Content-Type", "application/json");
                 mockHttpRequest.setHeaderField("charset", "utf-8");
-                mockHttpRequest.send();
+                mockHttpRequest.sendAsync();
                 mockIotHubExceptionManager.httpResponseVerification((HttpResponse) any);
             }
         };
@@ -985,18 +987,18 @@ public class RegistryManagerTest
     @Test (expected = Exception.class)
     public void getStatisticsAsync_future_throw() throws Exception
     {
-        new MockUp<RegistryManager>()
+        new NonStrictExpectations()
         {
-            @Mock
-            public Device getStatistics() throws IOException, IotHubException
             {
-                throw new IOException();
+                mockHttpRequest.sendAsync();
+                result = failedFuture(new IOException());
             }
         };
         String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
         RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
 
-        registryManager.getStatisticsAsync();
+        CompletableFuture<RegistryStatistics> completableFuture = registryManager.getStatisticsAsync();
+        completableFuture.get();
     }
 
     // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_061: [The function shall throw IllegalArgumentException if any of the input parameters is null]
@@ -1039,6 +1041,8 @@ public class RegistryManagerTest
                 result = mockUrl;
                 mockHttpRequest.send();
                 result = mockHttpResponse;
+                mockHttpRequest.sendAsync();
+                result = CompletableFuture.completedFuture(mockHttpResponse);
                 mockIotHubExceptionManager.httpResponseVerification((HttpResponse) any);
                 mockHttpResponse.getBody();
                 result = jobPropertiesJson.getBytes();
@@ -1069,15 +1073,13 @@ public class RegistryManagerTest
     // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_068: [The function shall create an async wrapper around
     // the exportDevices() function call, handle the return value or delegate exception ]
     @Test (expected = Exception.class)
-    public void exportDevicesAsync_future_throw() throws Exception
+    public void exportDevicesAsync_send_throw() throws Exception
     {
-        new MockUp<RegistryManager>()
+        new NonStrictExpectations()
         {
-            @Mock
-            public JobProperties exportDevices(String url, Boolean excludeKeys)
-                    throws IllegalArgumentException, IOException, IotHubException
             {
-                throw new IllegalArgumentException();
+                mockHttpRequest.sendAsync();
+                result = failedFuture(new IOException());
             }
         };
 
@@ -1088,6 +1090,27 @@ public class RegistryManagerTest
         completableFuture.get();
     }
 
+    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_068: [The function shall create an async wrapper around
+    // the exportDevices() function call, handle the return value or delegate exception]
+    @Test
+    public void exportDevicesAsync_future_throw() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+
+        CompletableFuture<JobProperties> completableFuture = registryManager.exportDevicesAsync(null, true);
+
+        try
+        {
+            completableFuture.get();
+            fail("The future shall complete exceptionally");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
     // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_069: [The function shall throw IllegalArgumentException if any of the input parameters is null]
     @Test (expected = IllegalArgumentException.class)
     public void importDevices_blob_import_null() throws Exception
@@ -1128,6 +1151,8 @@ public class RegistryManagerTest
                 result = mockUrl;
                 mockHttpRequest.send();
                 result = mockHttpResponse;
+                mockHttpRequest.sendAsync();
+                result = CompletableFuture.completedFuture(mockHttpResponse);
                 mockIotHubExceptionManager.httpResponseVerification((HttpResponse) any);
                 mockHttpResponse.getBody();
                 result = jobPropertiesJson.getBytes();
@@ -1158,15 +1183,13 @@ public class RegistryManagerTest
     // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_076: [The function shall create an async wrapper around
     // the importDevices() function call, handle the return value or delegate exception]
     @Test (expected = Exception.class)
-    public void importDevicesAsync_future_throw() throws Exception
+    public void importDevicesAsync_send_throw() throws Exception
     {
-        new MockUp<RegistryManager>()
+        new NonStrictExpectations()
         {
-            @Mock
-            public JobProperties importDevices(String importBlobContainerUri, String outputBlobContainerUri)
-                    throws IllegalArgumentException, IOException, IotHubException
             {
-                throw new IllegalArgumentException();
+                mockHttpRequest.sendAsync();
+                result = failedFuture(new IOException());
             }
         };
 
@@ -1177,6 +1200,27 @@ public class RegistryManagerTest
         completableFuture.get();
     }
 
+    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_076: [The function shall create an async wrapper around
+    // the importDevices() function call, handle the return value or delegate exception]
+    @Test
+    public void importDevicesAsync_future_throw() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+
+        CompletableFuture<JobProperties> completableFuture = registryManager.importDevicesAsync("importblob", null);
+
+        try
+        {
+            completableFuture.get();
+            fail("The future shall complete exceptionally");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
     // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_077: [The function shall throw IllegalArgumentException if the input parameter is null]
     @Test (expected = IllegalArgumentException.class)
     public void getJob_job_id_null() throws Exception
@@ -1208,6 +1252,8 @@ public class RegistryManagerTest
                 result = mockUrl;
                 mockHttpRequest.send();
                 result = mockHttpResponse;
+                mockHttpRequest.sendAsync();
+                result = CompletableFuture.completedFuture(mockHttpResponse);
                 mockIotHubExceptionManager.httpResponseVerification((HttpResponse) any);
                 mockHttpResponse.getBody();
                 result = jobPropertiesJson.getBytes();
@@ -1238,15 +1284,13 @@ public class RegistryManagerTest
     // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_084: [The function shall create an async wrapper
     // around the getJob() function call, handle the return value or delegate exception]
     @Test (expected = Exception.class)
-    public void getJobAsync_future_throw() throws Exception
+    public void getJobAsync_send_throw() throws Exception
     {
-        new MockUp<RegistryManager>()
+        new NonStrictExpectations()
         {
-            @Mock
-            public JobProperties getJob(String jobId)
-                    throws IllegalArgumentException, IOException, IotHubException
             {
-                throw new IllegalArgumentException();
+                mockHttpRequest.sendAsync();
+                result = failedFuture(new IOException());
             }
         };
 
@@ -1257,6 +1301,134 @@ public class RegistryManagerTest
         completableFuture.get();
     }
 
+    // TESTS_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_084: [The function shall create an async wrapper around
+    // the getJob() function call, handle the return value or delegate exception]
+    @Test
+    public void getJobAsync_future_throw() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+
+        CompletableFuture<JobProperties> completableFuture = registryManager.getJobAsync(null);
+
+        try
+        {
+            completableFuture.get();
+            fail("The future shall complete exceptionally");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    public void addDevices_sends_the_devices_in_requests_of_100() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        bulkExpectations(connectionString, 200, "{\"isSuccessful\":true,\"errors\":[],\"warnings\":[]}");
+        List<ExportImportDevice> devices = new ArrayList<>();
+        for (int i = 0; i < 150; i++)
+        {
+            devices.add(new ExportImportDevice("device" + i, AuthenticationType.SAS));
+        }
+
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        BulkRegistryOperationResult result = registryManager.addDevices(devices);
+
+        assertTrue(result.isSuccessful());
+        new Verifications()
+        {
+            {
+                new HttpRequest(mockUrl, HttpMethod.POST, (byte[]) any);
+                times = 2;
+            }
+        };
+    }
+
+    @Test
+    public void addDevices_returns_the_errors_of_the_devices() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        bulkExpectations(connectionString, 400, "{\"isSuccessful\":false,\"errors\":[{\"deviceId\":\"device0\"," +
+                "\"errorCode\":\"DeviceAlreadyExists\",\"errorStatus\":\"already exists\"}],\"warnings\":[]}");
+        List<ExportImportDevice> devices = new ArrayList<>();
+        devices.add(new ExportImportDevice("device0", AuthenticationType.SAS));
+
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        BulkRegistryOperationResult result = registryManager.addDevices(devices);
+
+        assertFalse(result.isSuccessful());
+        assertEquals(1, result.getErrors().size());
+        assertEquals("device0", result.getErrors().get(0).getDeviceId());
+        assertEquals("DeviceAlreadyExists", result.getErrors().get(0).getErrorCode());
+    }
+
+    @Test
+    public void removeDevices_sends_the_delete_import_mode() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        bulkExpectations(connectionString, 200, "{\"isSuccessful\":true,\"errors\":[],\"warnings\":[]}");
+        List<ExportImportDevice> devices = new ArrayList<>();
+        devices.add(new ExportImportDevice("device0", AuthenticationType.SAS));
+        ExportImportDevice deviceWithETag = new ExportImportDevice("device1", AuthenticationType.SAS);
+        deviceWithETag.seteTag("MA==");
+        devices.add(deviceWithETag);
+
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+        registryManager.removeDevices(devices);
+
+        new Verifications()
+        {
+            {
+                byte[] payload;
+                new HttpRequest(mockUrl, HttpMethod.POST, payload = withCapture());
+                String json = new String(payload, StandardCharsets.UTF_8);
+                assertTrue(json.contains("\"importMode\":\"Delete\""));
+                assertTrue(json.contains("\"importMode\":\"DeleteIfMatchETag\""));
+            }
+        };
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void addDevices_devices_empty() throws Exception
+    {
+        String connectionString = "HostName=aaa.bbb.ccc;SharedAccessKeyName=XXX;SharedAccessKey=YYY";
+        RegistryManager registryManager = RegistryManager.createFromConnectionString(connectionString);
+
+        registryManager.addDevices(new ArrayList<ExportImportDevice>());
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Throwable failure)
+    {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(failure);
+        return future;
+    }
+
+    private void bulkExpectations(String connectionString, int status, String resultJson) throws Exception
+    {
+        new NonStrictExpectations()
+        {
+            {
+                IotHubConnectionStringBuilder.createConnectionString(connectionString);
+                result = iotHubConnectionString;
+                iotHubConnectionString.getUrlBulkDevices();
+                result = mockUrl;
+                mockHttpRequest.send();
+                result = mockHttpResponse;
+                mockHttpRequest.sendAsync();
+                result = CompletableFuture.completedFuture(mockHttpResponse);
+                mockHttpResponse.getStatus();
+                result = status;
+                mockHttpResponse.getBody();
+                result = resultJson.getBytes();
+                mockHttpResponse.getErrorReason();
+                result = resultJson.getBytes();
+            }
+        };
+    }
+
     private void commonExpectations(String connectionString, String deviceId) throws Exception
     {
         new NonStrictExpectations()
@@ -1268,6 +1440,8 @@ public class RegistryManagerTest
                 result = mockUrl;
                 mockHttpRequest.send();
                 result = mockHttpResponse;
+                mockHttpRequest.sendAsync();
+                result = CompletableFuture.completedFuture(mockHttpResponse);
                 mockIotHubExceptionManager.httpResponseVerification((HttpResponse) any);
                 mockHttpResponse.getBody();
                 result = deviceJson.getBytes();
@@ -1278,6 +1452,11 @@ public class RegistryManagerTest
     }
 
     private void commonVerifications(HttpMethod httpMethod, String requestDeviceId, Device responseDevice) throws Exception
+    {
+        commonVerifications(httpMethod, requestDeviceId, responseDevice, false);
+    }
+
+    private void commonVerifications(HttpMethod httpMethod, String requestDeviceId, Device responseDevice, boolean async) throws Exception
     {
         new VerificationsInOrder()
         {
@@ -1290,7 +1469,14 @@ public class RegistryManagerTest
                 mockHttpRequest.setHeaderField("Accept", "application/json");
                 mockHttpRequest.setHeaderField("Content-Type", "application/json");
                 mockHttpRequest.setHeaderField("charset", "utf-8");
-                mockHttpRequest.send();
+                if (async)
+                {
+                    mockHttpRequest.sendAsync();
+                }
+                else
+                {
+                    mockHttpRequest.send();
+                }
                 mockIotHubExceptionManager.httpResponseVerification((HttpResponse) any);
             }
         };
@@ -1308,6 +1494,8 @@ public class RegistryManagerTest
                 result = mockUrl;
                 mockHttpRequest.send();
                 result = mockHttpResponse;
+                mockHttpRequest.sendAsync();
+                result = CompletableFuture.completedFuture(mockHttpResponse);
                 mockIotHubExceptionManager.httpResponseVerification((HttpResponse) any);
                 mockHttpResponse.getBody();
                 result = devicesJson.getBytes();
@@ -1316,6 +1504,11 @@ public class RegistryManagerTest
     }
 
     private void getDevicesVerifications(int numberOfDevices, ArrayList<Device> devices) throws Exception
+    {
+        getDevicesVerifications(numberOfDevices, devices, false);
+    }
+
+    private void getDevicesVerifications(int numberOfDevices, ArrayList<Device> devices, boolean async) throws Exception
     {
         new VerificationsInOrder()
         {
@@ -1330,7 +1523,14 @@ public class RegistryManagerTest
                 mockHttpRequest.setHeaderField("Accept", "application/json");
                 mockHttpRequest.setHeaderField("Content-Type", "application/json");
                 mockHttpRequest.setHeaderField("charset", "utf-8");
-                mockHttpRequest.send();
+                if (async)
+                {
+                    mockHttpRequest.sendAsync();
+                }
+                else
+                {
+                    mockHttpRequest.send();
+                }
             }
         };
         assertNotEquals(null, devices);
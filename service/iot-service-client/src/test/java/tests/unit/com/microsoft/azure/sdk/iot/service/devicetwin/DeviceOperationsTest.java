@@ -23,9 +23,13 @@ import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import static junit.framework.TestCase.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Unit tests for Http requester
@@ -810,4 +814,81 @@ public class DeviceOperationsTest
         //act/assert
         DeviceOperations.setHeaders(new HashMap<>());
     }
+
+    @Test
+    public void requestAsyncSendsWithoutBlocking(@Mocked IotHubServiceSasToken iotHubServiceSasToken,
+                                                 @Mocked HttpRequest httpRequest,
+                                                 @Mocked HttpResponse httpResponse,
+                                                 @Mocked IotHubExceptionManager iotHubExceptionManager) throws Exception
+    {
+        //arrange
+        new NonStrictExpectations()
+        {
+            {
+                httpRequest.sendAsync();
+                result = CompletableFuture.completedFuture(httpResponse);
+            }
+        };
+
+        //act
+        CompletableFuture<HttpResponse> response = DeviceOperations.requestAsync(
+                IOT_HUB_CONNECTION_STRING,
+                new URL(STANDARD_URL),
+                HttpMethod.POST,
+                STANDARD_PAYLOAD,
+                STANDARD_REQUEST_ID,
+                0,
+                null);
+
+        //assert
+        assertEquals(httpResponse, response.get());
+        new Verifications()
+        {
+            {
+                httpRequest.send();
+                times = 0;
+                IotHubExceptionManager.httpResponseVerification(httpResponse);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void requestAsyncCompletesExceptionallyOnFailedResponse(@Mocked IotHubServiceSasToken iotHubServiceSasToken,
+                                                                   @Mocked HttpRequest httpRequest,
+                                                                   @Mocked HttpResponse httpResponse,
+                                                                   @Mocked IotHubExceptionManager iotHubExceptionManager) throws Exception
+    {
+        //arrange
+        new NonStrictExpectations()
+        {
+            {
+                httpRequest.sendAsync();
+                result = CompletableFuture.completedFuture(httpResponse);
+                IotHubExceptionManager.httpResponseVerification(httpResponse);
+                result = new IotHubBadFormatException();
+            }
+        };
+
+        //act
+        CompletableFuture<HttpResponse> response = DeviceOperations.requestAsync(
+                IOT_HUB_CONNECTION_STRING,
+                new URL(STANDARD_URL),
+                HttpMethod.POST,
+                STANDARD_PAYLOAD,
+                STANDARD_REQUEST_ID,
+                0,
+                null);
+
+        //assert
+        try
+        {
+            response.get();
+            fail("The response should have failed");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof IotHubBadFormatException);
+        }
+    }
 }
@@ -224,6 +224,99 @@ public class DeviceTwinTest
         };
     }
 
+    @Test
+    public void getTwinWithCacheSendsIfNoneMatchAndSkipsParsingOnNotModified(@Mocked DeviceTwinDevice mockedDevice) throws Exception
+    {
+        //arrange
+        final String connectionString = "testString";
+        TwinCache testCache = new TwinCache(1024);
+        DeviceTwin testTwin = DeviceTwin.createFromConnectionString(connectionString, testCache);
+        new NonStrictExpectations()
+        {
+            {
+                mockedDevice.getDeviceId();
+                result = "SomeDevID";
+                Deencapsulation.invoke(mockedDevice, "getTwinParser");
+                result = mockedTwinParser;
+                mockedHttpResponse.getBody();
+                result = "{}".getBytes();
+                mockedTwinParser.getETag();
+                result = "etag1";
+                mockedDevice.getETag();
+                result = "etag1";
+            }
+        };
+        testTwin.getTwin(mockedDevice);
+        assertEquals(1, testCache.size());
+        new NonStrictExpectations()
+        {
+            {
+                mockedHttpResponse.getStatus();
+                result = 304;
+            }
+        };
+
+        //act
+        testTwin.getTwin(mockedDevice);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedHttpRequest.setHeaderField("If-None-Match", "\"etag1\"");
+                times = 1;
+                mockedHttpRequest.send();
+                times = 2;
+                mockedTwinParser.updateTwin(anyString);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void updateTwinInvalidatesTheCachedTwin(@Mocked DeviceTwinDevice mockedDevice) throws Exception
+    {
+        //arrange
+        final String connectionString = "testString";
+        TwinCache testCache = new TwinCache(1024);
+        DeviceTwin testTwin = DeviceTwin.createFromConnectionString(connectionString, testCache);
+        final Map<String, Object> testMap = new HashMap<>();
+        testMap.put("key", "value");
+        new NonStrictExpectations()
+        {
+            {
+                mockedDevice.getDeviceId();
+                result = "SomeDevID";
+                Deencapsulation.invoke(mockedDevice, "getTwinParser");
+                result = mockedTwinParser;
+                mockedHttpResponse.getBody();
+                result = "{}".getBytes();
+                mockedTwinParser.getETag();
+                result = "etag1";
+                mockedDevice.getETag();
+                result = "etag1";
+                Deencapsulation.invoke(mockedDevice, "getDesiredMap");
+                result = testMap;
+                mockedTwinParser.updateTwin((Map<String, Object>)any, null, (Map<String, Object>)any);
+                result = "SomeJsonString";
+            }
+        };
+        testTwin.getTwin(mockedDevice);
+
+        //act
+        testTwin.updateTwin(mockedDevice);
+
+        //assert
+        assertEquals(0, testCache.size());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void twinCacheThrowsOnNonPositiveSize() throws Exception
+    {
+        //act
+        new TwinCache(0);
+    }
+
     /*
     **Tests_SRS_DEVICETWIN_25_004: [** The function shall throw IllegalArgumentException if the input device is null or if deviceId is null or empty **]**
      */
@@ -5,17 +5,20 @@
 
 package tests.unit.com.microsoft.azure.sdk.iot.service.devicetwin;
 
+import com.google.gson.JsonElement;
 import com.microsoft.azure.sdk.iot.deps.serializer.QueryResponseParser;
 import com.microsoft.azure.sdk.iot.service.devicetwin.QueryResponse;
 import mockit.Deencapsulation;
 import mockit.Mocked;
 import mockit.NonStrictExpectations;
+import mockit.Verifications;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 import static org.junit.Assert.*;
@@ -193,4 +196,50 @@ public class QueryResponseTest
         assertFalse(testResponse.hasNext());
         assertNull(testResponse.next());
     }
+
+    @Test
+    public void constructorFromBytesDecodesTheElementsOnNext()
+    {
+        //arrange
+        final byte[] body = "[{\"deviceId\":\"devA\"},{\"deviceId\":\"devB\"}]".getBytes();
+
+        //act
+        QueryResponse testResponse = Deencapsulation.newInstance(QueryResponse.class, new Class[] {byte[].class}, body);
+
+        //assert
+        assertTrue(testResponse.hasNext());
+        assertEquals("{\"deviceId\":\"devA\"}", testResponse.next());
+        assertEquals("devB", ((Map) Deencapsulation.invoke(testResponse, "nextMap")).get("deviceId"));
+        assertFalse(testResponse.hasNext());
+        new Verifications()
+        {
+            {
+                new QueryResponseParser(anyString);
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void nextJsonElementReadsTheParsedElements() throws IOException
+    {
+        //arrange
+        final List<String> testList = new LinkedList<>();
+        testList.add("{\"deviceId\":\"devA\"}");
+
+        new NonStrictExpectations()
+        {
+            {
+                mockedQueryResponseParser.getJsonItems();
+                result = testList;
+            }
+        };
+        QueryResponse testResponse = Deencapsulation.newInstance(QueryResponse.class, "testJson");
+
+        //act
+        JsonElement element = Deencapsulation.invoke(testResponse, "nextJsonElement");
+
+        //assert
+        assertEquals("devA", element.getAsJsonObject().get("deviceId").getAsString());
+    }
 }
@@ -20,9 +20,12 @@ import org.junit.Test;
 import java.io.IOException;
 import java.net.URL;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 
 import static org.junit.Assert.*;
 
@@ -502,7 +505,7 @@ public class QueryTest
             {
                 mockHttpResponse.getHeaderFields();
                 result = testHeaderResponseMap;
-                Deencapsulation.newInstance(QueryResponse.class, anyString);
+                Deencapsulation.newInstance(QueryResponse.class, new Class[] {byte[].class}, (byte[]) any);
                 result = new IOException("test");
             }
         };
@@ -924,4 +927,70 @@ public class QueryTest
         //act
         Object next = Deencapsulation.invoke(testQuery, "next");
     }
+
+    private static final class RecordingExecutor implements Executor
+    {
+        private final Queue<Runnable> tasks = new LinkedList<>();
+
+        @Override
+        public void execute(Runnable command)
+        {
+            tasks.add(command);
+        }
+
+        private void runNext()
+        {
+            tasks.poll().run();
+        }
+    }
+
+    @Test
+    public void enablePrefetchRequestsTheNextPageInBackground() throws IotHubException, IOException
+    {
+        //arrange
+        final String testResponseToken = UUID.randomUUID().toString();
+        final Map<String, String> testHeaderResponseMap = new HashMap<>();
+        testHeaderResponseMap.put("x-ms-item-type", DEFAULT_QUERY_TYPE.getValue());
+        testHeaderResponseMap.put("x-ms-continuation", testResponseToken);
+        Query testQuery = Deencapsulation.newInstance(Query.class, DEFAULT_QUERY, DEFAULT_PAGE_SIZE, DEFAULT_QUERY_TYPE);
+        new NonStrictExpectations()
+        {
+            {
+                mockHttpResponse.getHeaderFields();
+                result = testHeaderResponseMap;
+                mockHttpResponse.getBody();
+                result = "[]".getBytes();
+            }
+        };
+        Deencapsulation.invoke(testQuery, "sendQueryRequest", mockIotHubConnectionString, mockUrl, mockHttpMethod, (long) 0);
+        RecordingExecutor testExecutor = new RecordingExecutor();
+
+        //act
+        testQuery.enablePrefetch(testExecutor, 1, 1000);
+
+        //assert
+        assertEquals(1, testExecutor.tasks.size());
+        testExecutor.runNext();
+        // The read ahead depth is reached, no other page is requested until this one is consumed.
+        assertEquals(0, testExecutor.tasks.size());
+        new Verifications()
+        {
+            {
+                new HttpRequest(mockUrl, mockHttpMethod, (byte[]) any);
+                times = 2;
+                mockHttpRequest.setHeaderField("x-ms-continuation", testResponseToken);
+                times = 1;
+            }
+        };
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void enablePrefetchThrowsIfQueryWasNotSent() throws IllegalArgumentException
+    {
+        //arrange
+        Query testQuery = Deencapsulation.newInstance(Query.class, DEFAULT_QUERY, DEFAULT_PAGE_SIZE, DEFAULT_QUERY_TYPE);
+
+        //act
+        testQuery.enablePrefetch(new RecordingExecutor(), 1, 1000);
+    }
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service.transport.http;
+
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpClientEngine;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
+import mockit.Deencapsulation;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/** Unit tests for HttpClientEngine. */
+public class HttpClientEngineTest
+{
+    /**
+     * A request that waits for the test before it answers.
+     */
+    private static class BlockingRequest extends HttpRequest
+    {
+        private final CountDownLatch answer = new CountDownLatch(1);
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final AtomicInteger running;
+
+        private BlockingRequest(AtomicInteger running)
+        {
+            this.running = running;
+        }
+
+        @Override
+        public HttpResponse send() throws IOException
+        {
+            this.running.incrementAndGet();
+            this.started.countDown();
+            try
+            {
+                this.answer.await();
+            }
+            catch (InterruptedException e)
+            {
+                throw new IOException(e);
+            }
+            finally
+            {
+                this.running.decrementAndGet();
+            }
+            return new HttpResponse(200, new byte[0], new HashMap<>(), new byte[0]);
+        }
+    }
+
+    @Test
+    public void sendRunsAtMostMaxConnectionsRequestsPerHost() throws Exception
+    {
+        // Arrange
+        HttpClientEngine engine = Deencapsulation.newInstance(HttpClientEngine.class, 4, 1);
+        AtomicInteger running = new AtomicInteger();
+        BlockingRequest first = new BlockingRequest(running);
+        BlockingRequest second = new BlockingRequest(running);
+
+        // Act
+        CompletableFuture<HttpResponse> firstResponse = engine.send(first);
+        CompletableFuture<HttpResponse> secondResponse = engine.send(second);
+
+        // Assert
+        assertTrue(first.started.await(10, TimeUnit.SECONDS));
+        assertFalse(second.started.await(100, TimeUnit.MILLISECONDS));
+        first.answer.countDown();
+        assertEquals(200, firstResponse.get(10, TimeUnit.SECONDS).getStatus());
+        assertTrue(second.started.await(10, TimeUnit.SECONDS));
+        second.answer.countDown();
+        assertEquals(200, secondResponse.get(10, TimeUnit.SECONDS).getStatus());
+        assertEquals(0, running.get());
+    }
+
+    @Test
+    public void sendCompletesExceptionallyWhenTheRequestFails() throws Exception
+    {
+        // Arrange
+        HttpClientEngine engine = Deencapsulation.newInstance(HttpClientEngine.class, 1, 1);
+        HttpRequest failingRequest = new HttpRequest()
+        {
+            @Override
+            public HttpResponse send() throws IOException
+            {
+                throw new IOException("test");
+            }
+        };
+
+        // Act
+        CompletableFuture<HttpResponse> response = engine.send(failingRequest);
+
+        // Assert
+        try
+        {
+            response.get(10, TimeUnit.SECONDS);
+            fail("The response should have failed");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void sendThrowsOnNullRequest()
+    {
+        // Act
+        HttpClientEngine.getInstance().send(null);
+    }
+}